@@ -0,0 +1,88 @@
+package org.apache.nifi.processors.oraclecdc.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.processors.oraclecdc.utils.ColumnConverters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Converts driver datums of one Oracle type to the column value of a change event, one
+ * datum per operation. NUMBER_LONG holds integers and NUMBER_DECIMAL values with a scale.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ColumnConvertBenchmark {
+
+	private static final int DATUMS = 1024;
+
+	@Param({"NUMBER_LONG", "NUMBER_DECIMAL", "VARCHAR2", "DATE", "TIMESTAMP", "BINARY_DOUBLE", "RAW"})
+	public String type;
+
+	private ColumnConverters.Converter converter;
+	private Object[] datums;
+	private int next;
+
+	@Setup
+	public void setup() throws Exception {
+		final SyntheticLCRs synthetic = new SyntheticLCRs();
+		final int oracleType;
+		final int column;
+		switch (type) {
+		case "NUMBER_LONG":
+			oracleType = SyntheticEvents.TYPE_NUMBER;
+			column = 0;
+			break;
+		case "NUMBER_DECIMAL":
+			oracleType = SyntheticEvents.TYPE_NUMBER;
+			column = 1;
+			break;
+		case "DATE":
+			oracleType = SyntheticEvents.TYPE_DATE;
+			column = 0;
+			break;
+		case "TIMESTAMP":
+			oracleType = SyntheticEvents.TYPE_TIMESTAMP;
+			column = 0;
+			break;
+		case "BINARY_DOUBLE":
+			oracleType = SyntheticEvents.TYPE_BINARY_DOUBLE;
+			column = 0;
+			break;
+		case "RAW":
+			oracleType = SyntheticEvents.TYPE_RAW;
+			column = 0;
+			break;
+		default:
+			oracleType = SyntheticEvents.TYPE_VARCHAR2;
+			column = 0;
+			break;
+		}
+		converter = new ColumnConverters(synthetic.getBinding()).get(synthetic.typeCode(oracleType));
+		final Random random = new Random(42);
+		datums = new Object[DATUMS];
+		for (int i = 0; i < DATUMS; i++) {
+			datums[i] = synthetic.datum(oracleType, SyntheticEvents.value(oracleType, column, random));
+		}
+	}
+
+	@Benchmark
+	public Object convert() throws Throwable {
+		return converter.convert(datums[next++ & (DATUMS - 1)]);
+	}
+
+}
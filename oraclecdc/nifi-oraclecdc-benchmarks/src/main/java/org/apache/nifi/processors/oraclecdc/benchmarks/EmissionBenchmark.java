@@ -0,0 +1,107 @@
+package org.apache.nifi.processors.oraclecdc.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.processors.oraclecdc.OracleChangeCapture;
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the processor in the NiFi mock framework on synthetic change events, one trigger per
+ * operation: the events are grouped, rendered and written to flowfiles by the CDC handler and
+ * the session is committed. The events counter reports the change events emitted per second;
+ * the number per trigger is chosen by the processor, up to {@value #EVENTS_PER_TRIGGER}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EmissionBenchmark {
+
+	private static final String EVENTS_PER_TRIGGER = "1000";
+
+	@Param({"16"})
+	public int width;
+
+	@Param({SyntheticEvents.MIX_MIXED})
+	public String mix;
+
+	@Param({"10"})
+	public int transactionSize;
+
+	@Param({OracleChangeCapture.FORMAT_JSON, OracleChangeCapture.FORMAT_BINARY})
+	public String format;
+
+	@Param({OracleChangeCapture.GROUP_BATCH, OracleChangeCapture.GROUP_TRANSACTION})
+	public String grouping;
+
+	@Param({"1", "1000"})
+	public String batchRecords;
+
+	private TestRunner runner;
+	private SyntheticCDCService service;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Events {
+		public long events;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			events = 0;
+		}
+	}
+
+	@Setup
+	public void setup() throws Exception {
+		runner = TestRunners.newTestRunner(OracleChangeCapture.class);
+		service = new SyntheticCDCService(new SyntheticEvents(width, mix, transactionSize));
+		runner.addControllerService("cdc", service);
+		runner.enableControllerService(service);
+		runner.setProperty(OracleChangeCapture.CDC_SERVICE, "cdc");
+		runner.setProperty(OracleChangeCapture.XS_OUT, "bench");
+		runner.setProperty(OracleChangeCapture.EVENT_FORMAT, format);
+		runner.setProperty(OracleChangeCapture.GROUPING, grouping);
+		runner.setProperty(OracleChangeCapture.BATCH_MAX_RECORDS, batchRecords);
+		runner.setProperty(OracleChangeCapture.MAX_EVENTS_PER_TRIGGER, EVENTS_PER_TRIGGER);
+		// schedules the processor, later triggers reuse the scheduled state
+		runner.run(1, false, true);
+	}
+
+	@Benchmark
+	public void trigger(Events counter) {
+		final long before = service.getDelivered();
+		runner.run(1, false, false);
+		counter.events += service.getDelivered() - before;
+	}
+
+	@TearDown(Level.Invocation)
+	public void clear() {
+		// a trigger takes milliseconds, so dropping the flowfiles of the mock session after each one is cheap
+		runner.clearTransferState();
+		runner.clearProvenanceEvents();
+	}
+
+	@TearDown
+	public void tearDown() {
+		// unschedules and stops the processor with a context, which detaches and writes the last checkpoint
+		runner.run(1, true, false);
+	}
+
+}
@@ -0,0 +1,74 @@
+package org.apache.nifi.processors.oraclecdc.benchmarks;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.processors.oraclecdc.OracleChangeCapture;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.apache.nifi.processors.oraclecdc.utils.ChangeEventBinary;
+import org.apache.nifi.processors.oraclecdc.utils.ChangeEventJson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Renders row change events in the JSON or binary event format, one event per operation.
+ * Needs no driver.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EventRenderBenchmark {
+
+	private static final int EVENTS = 1024;
+
+	@Param({"4", "16", "64"})
+	public int width;
+
+	@Param({SyntheticEvents.MIX_NUMERIC, SyntheticEvents.MIX_TEXT, SyntheticEvents.MIX_MIXED})
+	public String mix;
+
+	@Param({OracleChangeCapture.FORMAT_JSON, OracleChangeCapture.FORMAT_BINARY})
+	public String format;
+
+	private final ChangeEventJson json = new ChangeEventJson();
+	private final ChangeEventBinary binary = new ChangeEventBinary();
+	// like a flowfile, the binary format writes a schema once
+	private final Set<Integer> schemas = new HashSet<Integer>();
+	private ChangeEvent[] events;
+	private int next;
+
+	@Setup
+	public void setup() {
+		// a single transaction, so every event is a row change
+		final SyntheticEvents synthetic = new SyntheticEvents(width, mix, EVENTS + 1);
+		events = new ChangeEvent[EVENTS];
+		for (int i = 0; i < EVENTS; i++) {
+			events[i] = new ChangeEvent();
+			synthetic.next(events[i]);
+		}
+	}
+
+	@Benchmark
+	public int render() throws IOException {
+		final ChangeEvent event = events[next++ & (EVENTS - 1)];
+		if (OracleChangeCapture.FORMAT_BINARY.equals(format)) {
+			return binary.write(event, schemas).size();
+		}
+		return json.write(event).size();
+	}
+
+}
@@ -0,0 +1,109 @@
+package org.apache.nifi.processors.oraclecdc.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.processors.oraclecdc.controller.CaptureFilter;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.apache.nifi.processors.oraclecdc.controller.OracleCDCEventHandler;
+import org.apache.nifi.processors.oraclecdc.utils.LCRCallBackHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decodes driver row LCRs into change events with {@link LCRCallBackHandler#processLCR(Object)},
+ * one LCR per operation. The handler receiving the events only counts their columns. With a projection
+ * only the first columns of each row are decoded.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LCRDecodeBenchmark {
+
+	@Param({"4", "16", "64"})
+	public int width;
+
+	@Param({SyntheticEvents.MIX_NUMERIC, SyntheticEvents.MIX_TEXT, SyntheticEvents.MIX_MIXED})
+	public String mix;
+
+	/** the number of columns captured through a CaptureFilter, 0 to decode all without a filter */
+	@Param({"0", "4"})
+	public int projected;
+
+	private final CountingHandler counter = new CountingHandler();
+	private LCRCallBackHandler handler;
+	private Object[] lcrs;
+	private int next;
+
+	@Setup
+	public void setup() throws Exception {
+		final SyntheticLCRs synthetic = new SyntheticLCRs();
+		CaptureFilter filter = null;
+		if (projected > 0) {
+			final StringBuilder columns = new StringBuilder("SCOTT.ORDERS=");
+			for (int i = 0; i < projected; i++) {
+				columns.append(i > 0 ? "," : "").append('C').append(i);
+			}
+			filter = CaptureFilter.compile(null, null, columns.toString());
+		}
+		handler = new LCRCallBackHandler(synthetic.getBinding(), counter, null, filter);
+		lcrs = synthetic.rows(width, mix);
+	}
+
+	@Benchmark
+	public long processLCR() throws Throwable {
+		handler.processLCR(lcrs[next++ & (lcrs.length - 1)]);
+		return counter.columns;
+	}
+
+	static class CountingHandler implements OracleCDCEventHandler {
+
+		long columns;
+
+		private void count(ChangeEvent event) {
+			columns += event.getNewValues().size() + event.getOldValues().size();
+		}
+
+		public void inserts(ChangeEvent event) {
+			count(event);
+		}
+
+		public void updates(ChangeEvent event) {
+			count(event);
+		}
+
+		public void deletes(ChangeEvent event) {
+			count(event);
+		}
+
+		public void commit(ChangeEvent event) {
+			count(event);
+		}
+
+		public void other(ChangeEvent event) {
+			count(event);
+		}
+
+		public String chunk(ChangeEvent event, String columnName, byte[] data, boolean lastChunk) {
+			columns += data.length;
+			return columnName;
+		}
+
+		@Override
+		public void skipped(byte[] position) {
+		}
+
+	}
+
+}
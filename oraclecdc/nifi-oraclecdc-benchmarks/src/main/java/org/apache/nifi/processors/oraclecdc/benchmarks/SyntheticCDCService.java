@@ -0,0 +1,103 @@
+package org.apache.nifi.processors.oraclecdc.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.nifi.controller.AbstractControllerService;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureFilter;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureMetrics;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.apache.nifi.processors.oraclecdc.controller.OracleCDCEventHandler;
+import org.apache.nifi.processors.oraclecdc.controller.OracleCDCService;
+import org.apache.nifi.processors.oraclecdc.controller.SnapshotChunk;
+import org.apache.nifi.processors.oraclecdc.utils.LCRCallBackHandler;
+
+/**
+ * A CDC service that delivers synthetic change events to the processor without a database,
+ * as many as the processor asks for on every call.
+ */
+public class SyntheticCDCService extends AbstractControllerService implements OracleCDCService {
+
+	private final SyntheticEvents events;
+	private final ChangeEvent event = new ChangeEvent();
+	private final CaptureMetrics metrics = new CaptureMetrics("bench");
+	private long delivered;
+
+	public SyntheticCDCService(SyntheticEvents events) {
+		this.events = events;
+	}
+
+	@Override
+	public Object attach(String xstreamOutServerName, byte[] lastPostion) {
+		return xstreamOutServerName;
+	}
+
+	@Override
+	public Object attach(String xstreamOutServerName, byte[] lastPostion, CaptureFilter filter) {
+		return xstreamOutServerName;
+	}
+
+	@Override
+	public int receiveEvents(Object xsOutServer, OracleCDCEventHandler handler, int maxEvents) {
+		for (int i = 0; i < maxEvents; i++) {
+			events.next(event);
+			LCRCallBackHandler.dispatch(event, handler);
+		}
+		delivered += maxEvents;
+		return maxEvents;
+	}
+
+	@Override
+	public void detach(Object xsOutServer) {
+	}
+
+	@Override
+	public void setProcessedLowWaterMark(Object xsOutServer, byte[] position) {
+	}
+
+	@Override
+	public CaptureMetrics getMetrics(Object xsOutServer) {
+		return metrics;
+	}
+
+	@Override
+	public Map<String, CaptureMetrics> getMetrics() {
+		return Collections.singletonMap(metrics.getName(), metrics);
+	}
+
+	// the synthetic stream has no tables to load
+
+	@Override
+	public long getCurrentScn() {
+		throw new UnsupportedOperationException("no initial load from synthetic events");
+	}
+
+	@Override
+	public byte[] getPosition(long scn) {
+		throw new UnsupportedOperationException("no initial load from synthetic events");
+	}
+
+	@Override
+	public List<String> listTables(CaptureFilter filter) {
+		throw new UnsupportedOperationException("no initial load from synthetic events");
+	}
+
+	@Override
+	public List<SnapshotChunk> planSnapshot(String owner, String table, long scn, int chunkRows) {
+		throw new UnsupportedOperationException("no initial load from synthetic events");
+	}
+
+	@Override
+	public long readSnapshot(SnapshotChunk chunk, CaptureFilter filter, OracleCDCEventHandler handler) {
+		throw new UnsupportedOperationException("no initial load from synthetic events");
+	}
+
+	/**
+	 * @return the number of events delivered since the service was created
+	 */
+	public long getDelivered() {
+		return delivered;
+	}
+
+}
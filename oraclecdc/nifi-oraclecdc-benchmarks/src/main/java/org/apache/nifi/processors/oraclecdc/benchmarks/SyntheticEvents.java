@@ -0,0 +1,169 @@
+package org.apache.nifi.processors.oraclecdc.benchmarks;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Random;
+
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.apache.nifi.processors.oraclecdc.controller.TableMetadata;
+
+/**
+ * Fills change events as the callback handler decodes them, without a driver: a stream of
+ * transactions on one table, each a number of row changes followed by a COMMIT. The column
+ * values are drawn once from a fixed seed and cycled, so runs are comparable.
+ */
+public class SyntheticEvents {
+
+	// integral and decimal NUMBER columns
+	public static final String MIX_NUMERIC = "NUMERIC";
+	// VARCHAR2 columns
+	public static final String MIX_TEXT = "TEXT";
+	// NUMBER, VARCHAR2, DATE, TIMESTAMP, BINARY_DOUBLE and RAW columns in turn
+	public static final String MIX_MIXED = "MIXED";
+
+	// Oracle internal type codes
+	static final int TYPE_VARCHAR2 = 1;
+	static final int TYPE_NUMBER = 2;
+	static final int TYPE_DATE = 12;
+	static final int TYPE_RAW = 23;
+	static final int TYPE_BINARY_DOUBLE = 101;
+	static final int TYPE_TIMESTAMP = 180;
+
+	private static final int ROWS = 1024;
+	private static final String[] COMMANDS = {"INSERT", "UPDATE", "DELETE"};
+
+	private final int transactionSize;
+	private final TableMetadata metadata;
+	private final Object[][] rows;
+	private long sequence = 0;
+	private long transaction = 0;
+	private String transactionId = "1.0.0";
+
+	/**
+	 * @param width number of columns of the table
+	 * @param mix one of the MIX constants
+	 * @param transactionSize row changes per transaction
+	 */
+	public SyntheticEvents(int width, String mix, int transactionSize) {
+		this.transactionSize = transactionSize;
+		TableMetadata table = new TableMetadata(1, "BENCH.SCOTT.ORDERS");
+		for (int i = 0; i < width; i++) {
+			final int type = columnType(mix, i);
+			table = table.withColumn(i + 2, "C" + i, type, typeName(type));
+		}
+		this.metadata = table;
+		final Random random = new Random(42);
+		this.rows = new Object[ROWS][width];
+		for (Object[] row : rows) {
+			for (int i = 0; i < width; i++) {
+				row[i] = value(metadata.getOracleType(i), i, random);
+			}
+		}
+	}
+
+	static int columnType(String mix, int column) {
+		switch (mix) {
+		case MIX_NUMERIC:
+			return TYPE_NUMBER;
+		case MIX_TEXT:
+			return TYPE_VARCHAR2;
+		case MIX_MIXED:
+			final int[] types = {TYPE_NUMBER, TYPE_VARCHAR2, TYPE_DATE, TYPE_TIMESTAMP, TYPE_BINARY_DOUBLE, TYPE_RAW};
+			return types[column % types.length];
+		default:
+			throw new IllegalArgumentException("unknown column mix " + mix);
+		}
+	}
+
+	static String typeName(int type) {
+		switch (type) {
+		case TYPE_NUMBER:
+			return "BigDecimal";
+		case TYPE_DATE:
+			return "Date";
+		case TYPE_TIMESTAMP:
+			return "Timestamp";
+		case TYPE_BINARY_DOUBLE:
+			return "double";
+		case TYPE_RAW:
+			return "bytes";
+		default:
+			return "String";
+		}
+	}
+
+	/**
+	 * a value of the java type the column converters produce for the Oracle type; every other
+	 * NUMBER column holds decimals
+	 */
+	static Object value(int type, int column, Random random) {
+		switch (type) {
+		case TYPE_NUMBER:
+			return column % 2 == 0 ? Long.valueOf(random.nextInt(10000000))
+					: BigDecimal.valueOf(random.nextInt(100000000), 2);
+		case TYPE_DATE:
+			return new Date(1500000000000L + random.nextInt(1000000) * 1000L);
+		case TYPE_TIMESTAMP:
+			final Timestamp timestamp = new Timestamp(1500000000000L + random.nextInt(1000000) * 1000L);
+			timestamp.setNanos(random.nextInt(1000000) * 1000);
+			return timestamp;
+		case TYPE_BINARY_DOUBLE:
+			return random.nextDouble() * 1000;
+		case TYPE_RAW:
+			final byte[] bytes = new byte[16];
+			random.nextBytes(bytes);
+			return bytes;
+		default:
+			return text(random, 8 + random.nextInt(24));
+		}
+	}
+
+	static String text(Random random, int length) {
+		final char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) ('a' + random.nextInt(26));
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * fills the event with the next row change, or the COMMIT that ends the current transaction
+	 */
+	public void next(ChangeEvent event) {
+		event.clear();
+		final long position = sequence++;
+		final boolean commit = position % (transactionSize + 1) == transactionSize;
+		event.setTimestamp(1500000000000L + position);
+		event.setDatabase("BENCH");
+		event.setSchema("SCOTT");
+		event.setTable("ORDERS");
+		event.setTransactionId(transactionId);
+		event.setPosition(ByteBuffer.allocate(8).putLong(position).array());
+		if (commit) {
+			event.setCommandType("COMMIT");
+			transaction++;
+			transactionId = "1." + (transaction % 32) + "." + transaction;
+			return;
+		}
+		final String command = COMMANDS[(int) (position % COMMANDS.length)];
+		event.setCommandType(command);
+		event.setMetadata(metadata);
+		event.setKeyHash((int) position * 0x9E3779B9);
+		final Object[] row = rows[(int) (position % ROWS)];
+		if (!"DELETE".equals(command)) {
+			addRow(event.getNewValues(), row);
+		}
+		if (!"INSERT".equals(command)) {
+			addRow(event.getOldValues(), rows[(int) ((position + 1) % ROWS)]);
+		}
+	}
+
+	private void addRow(ChangeEvent.ColumnList columns, Object[] row) {
+		for (int i = 0; i < row.length; i++) {
+			columns.add(metadata.getName(i), metadata.getOracleType(i), metadata.getType(i), row[i]);
+		}
+	}
+
+}
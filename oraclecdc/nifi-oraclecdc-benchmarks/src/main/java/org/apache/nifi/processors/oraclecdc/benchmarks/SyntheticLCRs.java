@@ -0,0 +1,152 @@
+package org.apache.nifi.processors.oraclecdc.benchmarks;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Random;
+
+import org.apache.nifi.processors.oraclecdc.utils.XStreamBinding;
+import org.apache.nifi.util.file.classloader.ClassLoaderUtils;
+
+/**
+ * Builds row LCRs and datums with the classes of the xstream and JDBC driver jars, so the
+ * decode path runs on the same objects it receives from an outbound server. The jars are
+ * found like the DB_DRIVER_LOCATION of the service, from the comma separated files and
+ * directories of the {@value #DRIVER_LOCATION} system property; without it the classes of the
+ * xstream stand-in on the classpath are used.
+ */
+public class SyntheticLCRs {
+
+	public static final String DRIVER_LOCATION = "oraclecdc.driver.location";
+
+	private static final int ROWS = 1024;
+	private static final int AL32UTF8 = 873;
+
+	private final ClassLoader classLoader;
+	private final XStreamBinding binding;
+	private final Class<?> datumCls;
+	private final Class<?> columnValueCls;
+	private final Class<?> characterSetCls;
+	private final Object characterSet;
+
+	public SyntheticLCRs() throws Exception {
+		final String location = System.getProperty(DRIVER_LOCATION);
+		if (location == null || location.trim().isEmpty()) {
+			this.classLoader = SyntheticLCRs.class.getClassLoader();
+		} else {
+			this.classLoader = ClassLoaderUtils.getCustomClassLoader(location, SyntheticLCRs.class.getClassLoader(),
+					(dir, name) -> name != null && name.endsWith(".jar"));
+		}
+		this.binding = new XStreamBinding(classLoader);
+		this.datumCls = classLoader.loadClass("oracle.sql.Datum");
+		this.columnValueCls = classLoader.loadClass("oracle.streams.ColumnValue");
+		this.characterSetCls = classLoader.loadClass("oracle.sql.CharacterSet");
+		this.characterSet = characterSetCls.getMethod("make", int.class).invoke(null, AL32UTF8);
+	}
+
+	public XStreamBinding getBinding() {
+		return binding;
+	}
+
+	/**
+	 * @return the datum of a value of the Oracle type, as the driver delivers it
+	 */
+	public Object datum(int type, Object value) throws Exception {
+		switch (type) {
+		case SyntheticEvents.TYPE_NUMBER:
+			return value instanceof Long ? construct("oracle.sql.NUMBER", long.class, value)
+					: construct("oracle.sql.NUMBER", BigDecimal.class, value);
+		case SyntheticEvents.TYPE_DATE:
+			return construct("oracle.sql.DATE", Timestamp.class, new Timestamp(((Date) value).getTime()));
+		case SyntheticEvents.TYPE_TIMESTAMP:
+			return construct("oracle.sql.TIMESTAMP", Timestamp.class, value);
+		case SyntheticEvents.TYPE_BINARY_DOUBLE:
+			return construct("oracle.sql.BINARY_DOUBLE", double.class, value);
+		case SyntheticEvents.TYPE_RAW:
+			return construct("oracle.sql.RAW", byte[].class, value);
+		default:
+			return classLoader.loadClass("oracle.sql.CHAR").getConstructor(String.class, characterSetCls)
+					.newInstance(value, characterSet);
+		}
+	}
+
+	/**
+	 * @return the xstream type code of the Oracle type, the ColumnValue constant
+	 */
+	public int typeCode(int type) throws Exception {
+		final String name;
+		switch (type) {
+		case SyntheticEvents.TYPE_NUMBER:
+			name = "NUMBER";
+			break;
+		case SyntheticEvents.TYPE_DATE:
+			name = "DATE";
+			break;
+		case SyntheticEvents.TYPE_TIMESTAMP:
+			name = "TIMESTAMP";
+			break;
+		case SyntheticEvents.TYPE_BINARY_DOUBLE:
+			name = "BINARY_DOUBLE";
+			break;
+		case SyntheticEvents.TYPE_RAW:
+			name = "RAW";
+			break;
+		default:
+			name = "CHAR";
+			break;
+		}
+		return columnValueCls.getField(name).getInt(null);
+	}
+
+	/**
+	 * @return row LCRs on one table, cycling INSERT, UPDATE and DELETE, with values drawn from a fixed seed
+	 */
+	public Object[] rows(int width, String mix) throws Exception {
+		final Class<?> rowLCRCls = classLoader.loadClass("oracle.streams.DefaultRowLCR");
+		final Object sourceTime = construct("oracle.sql.DATE", Timestamp.class, new Timestamp(1500000000000L));
+		final Random random = new Random(42);
+		final String[] commands = {"INSERT", "UPDATE", "DELETE"};
+		final Object[] lcrs = new Object[ROWS];
+		for (int r = 0; r < ROWS; r++) {
+			final Object lcr = rowLCRCls.newInstance();
+			final String command = commands[r % commands.length];
+			invoke(lcr, "setSourceDatabaseName", String.class, "BENCH");
+			invoke(lcr, "setObjectOwner", String.class, "SCOTT");
+			invoke(lcr, "setObjectName", String.class, "ORDERS");
+			invoke(lcr, "setCommandType", String.class, command);
+			invoke(lcr, "setTransactionId", String.class, "1." + (r % 32) + "." + r / 10);
+			invoke(lcr, "setPosition", byte[].class, ByteBuffer.allocate(8).putLong(r).array());
+			invoke(lcr, "setSourceTime", sourceTime.getClass(), sourceTime);
+			if (!"DELETE".equals(command)) {
+				invoke(lcr, "setNewValues", Array.newInstance(columnValueCls, 0).getClass(), columns(width, mix, random));
+			}
+			if (!"INSERT".equals(command)) {
+				invoke(lcr, "setOldValues", Array.newInstance(columnValueCls, 0).getClass(), columns(width, mix, random));
+			}
+			lcrs[r] = lcr;
+		}
+		return lcrs;
+	}
+
+	private Object columns(int width, String mix, Random random) throws Exception {
+		final Class<?> defaultColumnValueCls = classLoader.loadClass("oracle.streams.DefaultColumnValue");
+		final Object columns = Array.newInstance(columnValueCls, width);
+		for (int i = 0; i < width; i++) {
+			final int type = SyntheticEvents.columnType(mix, i);
+			Array.set(columns, i, defaultColumnValueCls.getConstructor(String.class, datumCls)
+					.newInstance("C" + i, datum(type, SyntheticEvents.value(type, i, random))));
+		}
+		return columns;
+	}
+
+	private Object construct(String className, Class<?> parameterType, Object value) throws Exception {
+		return classLoader.loadClass(className).getConstructor(parameterType).newInstance(value);
+	}
+
+	private static void invoke(Object target, String name, Class<?> parameterType, Object value) throws Exception {
+		target.getClass().getMethod(name, parameterType).invoke(target, value);
+	}
+
+}
@@ -16,14 +16,28 @@
  */
 package org.apache.nifi.processors.oraclecdc;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.codec.binary.Base32;
 import org.apache.nifi.annotation.behavior.InputRequirement;
@@ -31,7 +45,6 @@ import org.apache.nifi.annotation.behavior.InputRequirement.Requirement;
 import org.apache.nifi.annotation.behavior.ReadsAttribute;
 import org.apache.nifi.annotation.behavior.ReadsAttributes;
 import org.apache.nifi.annotation.behavior.Stateful;
-import org.apache.nifi.annotation.behavior.TriggerSerially;
 import org.apache.nifi.annotation.behavior.WritesAttribute;
 import org.apache.nifi.annotation.behavior.WritesAttributes;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
@@ -42,12 +55,15 @@ import org.apache.nifi.annotation.lifecycle.OnShutdown;
 import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.annotation.lifecycle.OnUnscheduled;
 import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
 import org.apache.nifi.components.state.Scope;
 import org.apache.nifi.components.state.StateManager;
-import org.apache.nifi.components.state.StateMap;
 import org.apache.nifi.dbcp.DBCPService;
 import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
 import org.apache.nifi.processor.AbstractProcessor;
+import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.processor.ProcessContext;
 import org.apache.nifi.processor.ProcessSession;
 import org.apache.nifi.processor.ProcessorInitializationContext;
@@ -55,27 +71,63 @@ import org.apache.nifi.processor.Relationship;
 import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.processor.io.OutputStreamCallback;
 import org.apache.nifi.processor.util.StandardValidators;
+import org.apache.nifi.schema.access.SchemaNotFoundException;
+import org.apache.nifi.serialization.RecordSetWriter;
+import org.apache.nifi.serialization.RecordSetWriterFactory;
+import org.apache.nifi.serialization.WriteResult;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureFilter;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureMetrics;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
 import org.apache.nifi.processors.oraclecdc.controller.OracleCDCEventHandler;
 import org.apache.nifi.processors.oraclecdc.controller.OracleCDCService;
+import org.apache.nifi.processors.oraclecdc.controller.SnapshotChunk;
+import org.apache.nifi.processors.oraclecdc.utils.AdaptiveBatchSizer;
+import org.apache.nifi.processors.oraclecdc.utils.ChangeEventBinary;
+import org.apache.nifi.processors.oraclecdc.utils.ChangeEventJson;
+import org.apache.nifi.processors.oraclecdc.utils.ChangeEventJson.EventBuffer;
+import org.apache.nifi.processors.oraclecdc.utils.ChangeEventRecords;
+import org.apache.nifi.processors.oraclecdc.utils.ContentCompressor;
+import org.apache.nifi.processors.oraclecdc.utils.EmittedPositions;
+import org.apache.nifi.processors.oraclecdc.utils.NetChangeCoalescer;
+import org.apache.nifi.processors.oraclecdc.utils.PositionCheckpointer;
+import org.apache.nifi.processors.oraclecdc.utils.SnapshotProgress;
+import org.apache.nifi.processors.oraclecdc.utils.TransactionAssembler;
+import org.apache.nifi.processors.oraclecdc.utils.TransactionAssembler.TransactionBuffer;
 
 
-@TriggerSerially
 @Tags({"Oracle","CDC","change capture"})
-@CapabilityDescription("capture oracle CDC changes using xstream api")
+@CapabilityDescription("capture oracle CDC changes using xstream api. Several outbound servers can be captured by one processor; "
+		+ "each concurrent task takes the changes of one outbound server at a time, so the changes of a server stay in order.")
 @SeeAlso({})
 @InputRequirement(Requirement.INPUT_FORBIDDEN)
 @ReadsAttributes({@ReadsAttribute(attribute="", description="")})
-@WritesAttributes({@WritesAttribute(attribute="", description="")})
-@Stateful(scopes = Scope.CLUSTER, description = "After receiving cdc events from the xstream out server "
-		+ "the processor will store the last position received in the state map. "
-		+ "It will be used to set the low watermark for the next call")
+@WritesAttributes({@WritesAttribute(attribute="cdc_type", description="The operation of the change events in the flowfile"),
+	@WritesAttribute(attribute="record.count", description="The number of change events in the flowfile, one JSON document per line"),
+	@WritesAttribute(attribute="cdc.first.position", description="The xstream position of the first change event in the flowfile"),
+	@WritesAttribute(attribute="cdc.last.position", description="The xstream position of the last change event in the flowfile"),
+	@WritesAttribute(attribute="cdc.transaction.id", description="The transaction id of a flowfile routed to TRANSACTIONS or LOBS"),
+	@WritesAttribute(attribute="cdc.lob.column", description="The column whose content a flowfile routed to LOBS holds"),
+	@WritesAttribute(attribute="cdc.xstream.server", description="The outbound server the change events were captured from"),
+	@WritesAttribute(attribute="partition", description="The partition of the rows changed by the events in an INSERTS, UPDATES or DELETES flowfile. "
+			+ "All changes of a row are in the same partition, in order")})
+@Stateful(scopes = {Scope.CLUSTER, Scope.LOCAL}, description = "After receiving cdc events from the xstream out server "
+		+ "the processor will store the last position received in the state map under the key 'position.<outbound server>', "
+		+ "at most once per checkpoint interval and once more when the processor stops. "
+		+ "It will be used to set the low watermark when the processor attaches again. With replay deduplication the position "
+		+ "of the last change emitted is also stored in local state under the key 'emitted.<outbound server>' after every "
+		+ "session commit, and the processor attaches from the later of both positions. During an initial load the SCN "
+		+ "and the chunks loaded are stored under the key 'snapshot.<outbound server>' and replaced by the position once "
+		+ "the load is complete")
 
 public class OracleChangeCapture extends AbstractProcessor{
 
     public static final PropertyDescriptor XS_OUT = new PropertyDescriptor
             .Builder().name("XS_OUT")
             .displayName("XStream Outbound Server Name")
-            .description("xout")
+            .description("The name of the outbound server, or a comma separated list of names to capture from several "
+            		+ "outbound servers in parallel. Each outbound server is attached with its own connection and position.")
             .required(true)
             .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
             .build();
@@ -86,6 +138,246 @@ public class OracleChangeCapture extends AbstractProcessor{
             .required(true)
             .identifiesControllerService(OracleCDCService.class)
             .build();
+    
+    public static final PropertyDescriptor BATCH_MAX_RECORDS = new PropertyDescriptor
+            .Builder().name("BATCH_MAX_RECORDS")
+            .displayName("Max Batch Records")
+            .description("The maximum number of change events written to a single flowfile as newline-delimited JSON. "
+            		+ "A value of 1 emits one flowfile per change event.")
+            .defaultValue("1")
+            .required(true)
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+    
+    public static final PropertyDescriptor BATCH_MAX_SIZE = new PropertyDescriptor
+            .Builder().name("BATCH_MAX_SIZE")
+            .displayName("Max Batch Size")
+            .description("The maximum content size of a batch flowfile. The batch is emitted once it reaches this size.")
+            .defaultValue("1 MB")
+            .required(true)
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .build();
+    
+    public static final PropertyDescriptor BATCH_MAX_LATENCY = new PropertyDescriptor
+            .Builder().name("BATCH_MAX_LATENCY")
+            .displayName("Max Batch Latency")
+            .description("The maximum time a change event is held in an open batch before the batch is emitted. "
+            		+ "Open batches are always emitted at the end of each trigger.")
+            .defaultValue("1 sec")
+            .required(true)
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+    
+    public static final PropertyDescriptor RECORD_WRITER = new PropertyDescriptor.Builder()
+            .name("RECORD_WRITER")
+            .displayName("Record Writer")
+            .description("When set, change events are written with this record writer instead of as JSON. The record schema "
+            		+ "of a table is derived from the xstream column metadata, and a batch only holds changes of one table. "
+            		+ "Max Batch Size does not apply to record batches. Only supported with BATCH grouping.")
+            .required(false)
+            .identifiesControllerService(RecordSetWriterFactory.class)
+            .build();
+    
+    public static final PropertyDescriptor MAX_EVENTS_PER_TRIGGER = new PropertyDescriptor
+            .Builder().name("MAX_EVENTS_PER_TRIGGER")
+            .displayName("Max Events Per Trigger")
+            .description("The upper bound on the number of change events taken from the service in one trigger. "
+            		+ "Within this bound the number is adapted to the measured cost per event to meet the target trigger duration.")
+            .defaultValue("10000")
+            .required(true)
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+    
+    public static final PropertyDescriptor TARGET_TRIGGER_DURATION = new PropertyDescriptor
+            .Builder().name("TARGET_TRIGGER_DURATION")
+            .displayName("Target Trigger Duration")
+            .description("The time one trigger should spend writing change events to flowfiles")
+            .defaultValue("500 ms")
+            .required(true)
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+    
+    public static final PropertyDescriptor CHECKPOINT_INTERVAL = new PropertyDescriptor
+            .Builder().name("CHECKPOINT_INTERVAL")
+            .displayName("Checkpoint Interval")
+            .description("How often the last processed position is written to cluster state. "
+            		+ "Positions processed in between are coalesced into one write.")
+            .defaultValue("5 sec")
+            .required(true)
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+    
+    public static final PropertyDescriptor CHECKPOINT_SIZE = new PropertyDescriptor
+            .Builder().name("CHECKPOINT_SIZE")
+            .displayName("Checkpoint Data Size")
+            .description("The position is also written as soon as this much content has been emitted since the last write")
+            .defaultValue("10 MB")
+            .required(true)
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .build();
+    
+    public static final PropertyDescriptor PARTITION_COUNT = new PropertyDescriptor
+            .Builder().name("PARTITION_COUNT")
+            .displayName("Partition Count")
+            .description("The number of partitions row changes are hashed into by the primary key of the row. "
+            		+ "A batch only holds changes of one partition, written to the partition attribute.")
+            .defaultValue("1")
+            .required(true)
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+    
+    public static final String FORMAT_JSON = "JSON";
+    public static final String FORMAT_BINARY = "BINARY";
+    
+    public static final PropertyDescriptor EVENT_FORMAT = new PropertyDescriptor
+            .Builder().name("EVENT_FORMAT")
+            .displayName("Event Format")
+            .description("JSON writes one JSON document per change event. BINARY writes the compact format read by "
+            		+ "ChangeEventBinaryReader: values without column names, referring to a table schema that is written once "
+            		+ "per flowfile. Not used when a record writer is set.")
+            .allowableValues(FORMAT_JSON, FORMAT_BINARY)
+            .defaultValue(FORMAT_JSON)
+            .required(true)
+            .build();
+    
+    public static final String COMPRESSION_NONE = "NONE";
+    
+    public static final PropertyDescriptor COMPRESSION_FORMAT = new PropertyDescriptor
+            .Builder().name("COMPRESSION_FORMAT")
+            .displayName("Compression Format")
+            .description("Compresses the content of INSERTS, UPDATES, DELETES, UNMATCHED and TRANSACTIONS flowfiles while it "
+            		+ "is written, and sets mime.type to application/gzip or application/deflate. The content can be read back "
+            		+ "with CompressContent. LOB content is written as it arrives and is not compressed.")
+            .allowableValues(COMPRESSION_NONE, ContentCompressor.GZIP, ContentCompressor.DEFLATE)
+            .defaultValue(COMPRESSION_NONE)
+            .required(true)
+            .build();
+    
+    public static final PropertyDescriptor COMPRESSION_LEVEL = new PropertyDescriptor
+            .Builder().name("COMPRESSION_LEVEL")
+            .displayName("Compression Level")
+            .description("The deflate level, from 0 for no compression to 9 for the best and slowest compression")
+            .defaultValue("1")
+            .required(true)
+            .addValidator(StandardValidators.createLongValidator(0, 9, true))
+            .build();
+    
+    public static final String GROUP_BATCH = "BATCH";
+    public static final String GROUP_TRANSACTION = "TRANSACTION";
+    
+    public static final PropertyDescriptor GROUPING = new PropertyDescriptor
+            .Builder().name("GROUPING")
+            .displayName("Event Grouping")
+            .description("BATCH groups change events per operation according to the batch properties. "
+            		+ "TRANSACTION emits one flowfile per committed transaction, in commit order, to the TRANSACTIONS relationship.")
+            .allowableValues(GROUP_BATCH, GROUP_TRANSACTION)
+            .defaultValue(GROUP_BATCH)
+            .required(true)
+            .build();
+    
+    public static final PropertyDescriptor TXN_HEAP_BUDGET = new PropertyDescriptor
+            .Builder().name("TXN_HEAP_BUDGET")
+            .displayName("Transaction Heap Budget")
+            .description("The maximum size of open transactions kept in memory. Once exceeded, the transaction being "
+            		+ "assembled is spilled to a file in the spill directory. Only used with TRANSACTION grouping.")
+            .defaultValue("64 MB")
+            .required(true)
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .build();
+    
+    public static final PropertyDescriptor TXN_SPILL_DIRECTORY = new PropertyDescriptor
+            .Builder().name("TXN_SPILL_DIRECTORY")
+            .displayName("Transaction Spill Directory")
+            .description("The directory used for transactions that exceed the heap budget, and for the part of a LOB "
+            		+ "column received when a trigger ends in the middle of it. Defaults to the JVM temporary directory.")
+            .required(false)
+            .addValidator(StandardValidators.createDirectoryExistsValidator(false, false))
+            .build();
+    
+    public static final PropertyDescriptor NET_CHANGES = new PropertyDescriptor
+            .Builder().name("NET_CHANGES")
+            .displayName("Net Changes")
+            .description("Collapses the changes of a transaction to the same row, identified by its primary key, into one net "
+            		+ "insert, update or delete, emitted when the transaction commits. Updates only carry the key columns and the "
+            		+ "columns whose value changed. Changes of tables without a known primary key are emitted unchanged.")
+            .allowableValues("true", "false")
+            .defaultValue("false")
+            .required(true)
+            .build();
+    
+    public static final PropertyDescriptor DEDUPLICATE_REPLAY = new PropertyDescriptor
+            .Builder().name("DEDUPLICATE_REPLAY")
+            .displayName("Deduplicate Replay")
+            .description("Stores the position of the last change emitted in local state each time a session is committed, and "
+            		+ "drops the changes up to it before they are decoded when the outbound server replays them after a restart. "
+            		+ "Without it, the changes emitted since the last checkpoint are emitted again. Costs one local state write "
+            		+ "per trigger that emits changes.")
+            .allowableValues("true", "false")
+            .defaultValue("true")
+            .required(true)
+            .build();
+    
+    public static final PropertyDescriptor NET_CHANGE_MAX_ROWS = new PropertyDescriptor
+            .Builder().name("NET_CHANGE_MAX_ROWS")
+            .displayName("Net Change Max Rows")
+            .description("The number of rows with a pending net change kept for an open transaction. Once reached, the pending "
+            		+ "net changes are emitted and collapsing starts over for the rest of the transaction.")
+            .defaultValue("10000")
+            .required(true)
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+    
+    public static final PropertyDescriptor INCLUDE_TABLES = new PropertyDescriptor
+            .Builder().name("INCLUDE_TABLES")
+            .displayName("Include Tables")
+            .description("Comma separated OWNER.TABLE patterns of the tables to capture, where * matches any characters, "
+            		+ "for example HR.* or *.ORDERS. Row changes of other tables are dropped by the receiver before they are decoded. "
+            		+ "All tables are captured when not set.")
+            .required(false)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+    
+    public static final PropertyDescriptor EXCLUDE_TABLES = new PropertyDescriptor
+            .Builder().name("EXCLUDE_TABLES")
+            .displayName("Exclude Tables")
+            .description("Comma separated OWNER.TABLE patterns of tables not captured, even if they are included.")
+            .required(false)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+    
+    public static final PropertyDescriptor CAPTURED_COLUMNS = new PropertyDescriptor
+            .Builder().name("CAPTURED_COLUMNS")
+            .displayName("Captured Columns")
+            .description("The columns to capture per table, as OWNER.TABLE=COLUMN[,COLUMN...] entries separated by semicolons. "
+            		+ "Other columns of a listed table are neither read nor converted, except its primary key columns, which "
+            		+ "are kept for partitioning. Tables that are not listed are captured with all columns.")
+            .required(false)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+    
+    public static final PropertyDescriptor INITIAL_LOAD = new PropertyDescriptor
+            .Builder().name("INITIAL_LOAD")
+            .displayName("Initial Load")
+            .description("When an outbound server has no stored position, first emits every row of the included tables as "
+            		+ "of the current SCN as INSERT events, then attaches the outbound server from that SCN, so every change "
+            		+ "committed afterwards follows the load. The tables are read in chunks by all concurrent tasks in "
+            		+ "parallel, each on its own pooled connection, and an interrupted load resumes with the chunks not yet "
+            		+ "emitted. The outbound server must capture changes from before the SCN. Requires Include Tables.")
+            .allowableValues("true", "false")
+            .defaultValue("false")
+            .required(true)
+            .build();
+    
+    public static final PropertyDescriptor SNAPSHOT_CHUNK_ROWS = new PropertyDescriptor
+            .Builder().name("SNAPSHOT_CHUNK_ROWS")
+            .displayName("Initial Load Chunk Rows")
+            .description("The number of rows of a table read by one task in one trigger during the initial load, estimated "
+            		+ "from the table statistics and its extents. A chunk is committed as a whole, and read again if the processor "
+            		+ "stops before it is committed.")
+            .defaultValue("100000")
+            .required(true)
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
 	
 
     public static final Relationship INSERTS = new Relationship.Builder()
@@ -106,6 +398,18 @@ public class OracleChangeCapture extends AbstractProcessor{
             .name("UNMATCHED")
             .description("UNSUPPORTED OPERATION")
             .build();
+    
+    public static final Relationship LOBS = new Relationship.Builder()
+            .name("LOBS")
+            .description("Content of LOB, LONG and XMLTYPE columns. The row event references it by flowfile uuid")
+            .build();
+    
+    public static final Relationship TRANSACTIONS = new Relationship.Builder()
+            .name("TRANSACTIONS")
+            .description("CDC changes of one committed transaction, used with TRANSACTION grouping")
+            .build();
+
+    private static final int MIN_EVENTS_PER_TRIGGER = 100;
 
     private List<PropertyDescriptor> descriptors;
 
@@ -113,17 +417,58 @@ public class OracleChangeCapture extends AbstractProcessor{
     
     protected DBCPService dbcpService;
     
-    protected Object xsOut;
+    private volatile List<Capture> captures;
     
+    private final AtomicInteger nextCapture = new AtomicInteger(0);
     
+    // triggers taken so far, the odd ones try the outbound servers before the initial loads
+    private final AtomicInteger turns = new AtomicInteger(0);
     
     private OracleCDCService cdcService;
+    
+    private volatile int batchMaxRecords;
+    private volatile long batchMaxBytes;
+    private volatile long batchMaxLatencyNanos;
+    private volatile int partitionCount;
+    private volatile boolean binary;
+    private volatile int netChangeMaxRows;
+    private volatile int snapshotChunkRows;
+    private volatile File spillDirectory;
+    
+    private volatile PositionCheckpointer checkpointer;
+    
+    private volatile EmittedPositions emittedPositions;
+    
+    private volatile RecordSetWriterFactory recordWriterFactory;
 
     @Override
     protected void init(final ProcessorInitializationContext context) {
         final List<PropertyDescriptor> descriptors = new ArrayList<PropertyDescriptor>();
         descriptors.add(XS_OUT);
         descriptors.add(CDC_SERVICE);
+        descriptors.add(BATCH_MAX_RECORDS);
+        descriptors.add(BATCH_MAX_SIZE);
+        descriptors.add(BATCH_MAX_LATENCY);
+        descriptors.add(EVENT_FORMAT);
+        descriptors.add(RECORD_WRITER);
+        descriptors.add(COMPRESSION_FORMAT);
+        descriptors.add(COMPRESSION_LEVEL);
+        descriptors.add(PARTITION_COUNT);
+        descriptors.add(MAX_EVENTS_PER_TRIGGER);
+        descriptors.add(TARGET_TRIGGER_DURATION);
+        descriptors.add(CHECKPOINT_INTERVAL);
+        descriptors.add(CHECKPOINT_SIZE);
+        descriptors.add(DEDUPLICATE_REPLAY);
+        descriptors.add(GROUPING);
+        descriptors.add(TXN_HEAP_BUDGET);
+        descriptors.add(TXN_SPILL_DIRECTORY);
+        descriptors.add(NET_CHANGES);
+        descriptors.add(NET_CHANGE_MAX_ROWS);
+        descriptors.add(INCLUDE_TABLES);
+        descriptors.add(EXCLUDE_TABLES);
+        descriptors.add(CAPTURED_COLUMNS);
+        descriptors.add(INITIAL_LOAD);
+        descriptors.add(SNAPSHOT_CHUNK_ROWS);
         this.descriptors = Collections.unmodifiableList(descriptors);
 
         final Set<Relationship> relationships = new HashSet<Relationship>();
@@ -131,6 +476,8 @@ public class OracleChangeCapture extends AbstractProcessor{
         relationships.add(UPDATES);
         relationships.add(DELETES);
         relationships.add(UNMATCHED);
+        relationships.add(TRANSACTIONS);
+        relationships.add(LOBS);
         this.relationships = Collections.unmodifiableSet(relationships);
     }
 
@@ -144,49 +491,557 @@ public class OracleChangeCapture extends AbstractProcessor{
         return descriptors;
     }
 
+    @Override
+    protected Collection<ValidationResult> customValidate(final ValidationContext context) {
+        final List<ValidationResult> results = new ArrayList<ValidationResult>();
+        if(context.getProperty(RECORD_WRITER).isSet() && GROUP_TRANSACTION.equals(context.getProperty(GROUPING).getValue())){
+            results.add(new ValidationResult.Builder()
+                    .subject(RECORD_WRITER.getName())
+                    .valid(false)
+                    .explanation("a record writer can only be used with BATCH grouping")
+                    .build());
+        }
+        if(context.getProperty(RECORD_WRITER).isSet() && FORMAT_BINARY.equals(context.getProperty(EVENT_FORMAT).getValue())){
+            results.add(new ValidationResult.Builder()
+                    .subject(EVENT_FORMAT.getName())
+                    .valid(false)
+                    .explanation("the BINARY event format can not be combined with a record writer")
+                    .build());
+        }
+        if(context.getProperty(INITIAL_LOAD).asBoolean() && !context.getProperty(INCLUDE_TABLES).isSet()){
+            results.add(new ValidationResult.Builder()
+                    .subject(INITIAL_LOAD.getName())
+                    .valid(false)
+                    .explanation("the tables of an initial load must be set with Include Tables")
+                    .build());
+        }
+        for(PropertyDescriptor property : Arrays.asList(INCLUDE_TABLES, EXCLUDE_TABLES, CAPTURED_COLUMNS)){
+            final String value = context.getProperty(property).getValue();
+            try{
+                if(property==CAPTURED_COLUMNS){
+                    CaptureFilter.parseColumns(value);
+                }else{
+                    CaptureFilter.parseTables(value);
+                }
+            }catch(IllegalArgumentException e){
+                results.add(new ValidationResult.Builder()
+                        .subject(property.getName())
+                        .input(value)
+                        .valid(false)
+                        .explanation(e.getMessage())
+                        .build());
+            }
+        }
+        return results;
+    }
+
     @OnScheduled
     public void onScheduled(final ProcessContext context) {
-    	 byte[] position=null;
+    	 Map<String,byte[]> positions=Collections.emptyMap();
+    	 Map<String,String> snapshots=Collections.emptyMap();
     	 final StateManager stateManager = context.getStateManager();
-         StateMap stateMap;
          try {
-             stateMap = stateManager.getState(Scope.CLUSTER);
+             positions = PositionCheckpointer.restore(stateManager);
+             snapshots = PositionCheckpointer.restoreSnapshots(stateManager);
          } catch (final IOException ioe) {
-        	 stateMap=null;
              getLogger().warn("Failed to retrieve the low watermark from State Manager", ioe);
          }
-         if(stateMap!=null){
-        	 System.out.println("position from statemap"+stateMap.get("positon"));
-        	 position = new Base32(true).decode(stateMap.get("positon"));
+         emittedPositions = null;
+         if(context.getProperty(DEDUPLICATE_REPLAY).asBoolean()){
+        	 Map<String,byte[]> emitted=Collections.emptyMap();
+        	 try {
+        		 emitted = EmittedPositions.restore(stateManager);
+        	 } catch (final IOException ioe) {
+        		 getLogger().warn("Failed to retrieve the emitted positions from State Manager", ioe);
+        	 }
+        	 emittedPositions = new EmittedPositions(stateManager, emitted);
          }
+         checkpointer = new PositionCheckpointer(stateManager,
+        		 context.getProperty(CHECKPOINT_INTERVAL).asTimePeriod(TimeUnit.MILLISECONDS),
+        		 context.getProperty(CHECKPOINT_SIZE).asDataSize(DataUnit.B).longValue(), getLogger());
     	 cdcService = context.getProperty(CDC_SERVICE).asControllerService(OracleCDCService.class);
-    	 String xsOutServerName = context.getProperty(XS_OUT).getValue();
-    	 xsOut = cdcService.attach(xsOutServerName, position);
+    	 batchMaxRecords = context.getProperty(BATCH_MAX_RECORDS).asInteger();
+    	 batchMaxBytes = context.getProperty(BATCH_MAX_SIZE).asDataSize(DataUnit.B).longValue();
+    	 partitionCount = context.getProperty(PARTITION_COUNT).asInteger();
+    	 binary = FORMAT_BINARY.equals(context.getProperty(EVENT_FORMAT).getValue());
+    	 batchMaxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(context.getProperty(BATCH_MAX_LATENCY).asTimePeriod(TimeUnit.MILLISECONDS));
+    	 recordWriterFactory = context.getProperty(RECORD_WRITER).asControllerService(RecordSetWriterFactory.class);
+    	 netChangeMaxRows = context.getProperty(NET_CHANGE_MAX_ROWS).asInteger();
+    	 snapshotChunkRows = context.getProperty(SNAPSHOT_CHUNK_ROWS).asInteger();
+    	 final String spillPath = context.getProperty(TXN_SPILL_DIRECTORY).getValue();
+    	 spillDirectory = spillPath==null ? null : new File(spillPath);
+    	 final List<String> names = new ArrayList<String>();
+    	 for(String name : context.getProperty(XS_OUT).getValue().split(",")){
+    		 if(!name.trim().isEmpty() && !names.contains(name.trim())){
+    			 names.add(name.trim());
+    		 }
+    	 }
+    	 final CaptureFilter filter = CaptureFilter.compile(context.getProperty(INCLUDE_TABLES).getValue(),
+    			 context.getProperty(EXCLUDE_TABLES).getValue(), context.getProperty(CAPTURED_COLUMNS).getValue());
+    	 final List<Capture> attached = new ArrayList<Capture>();
+    	 captures = attached;
+    	 for(String xsOutServerName : names){
+    		 byte[] position = positions.get(xsOutServerName);
+    		 if(position==null && names.size()==1){
+    			 // written before the position was kept per outbound server
+    			 position = positions.get("");
+    		 }
+    		 if(emittedPositions!=null){
+    			 // the checkpoint can lag behind the changes already emitted, which are skipped when replayed
+    			 position = EmittedPositions.later(position, emittedPositions.get(xsOutServerName));
+    		 }
+    		 final Capture capture = new Capture(xsOutServerName,
+    				 new AdaptiveBatchSizer(MIN_EVENTS_PER_TRIGGER, context.getProperty(MAX_EVENTS_PER_TRIGGER).asInteger(),
+    						 TimeUnit.MILLISECONDS.toNanos(context.getProperty(TARGET_TRIGGER_DURATION).asTimePeriod(TimeUnit.MILLISECONDS))));
+    		 if(GROUP_TRANSACTION.equals(context.getProperty(GROUPING).getValue())){
+    			 capture.assembler = new TransactionAssembler(context.getProperty(TXN_HEAP_BUDGET).asDataSize(DataUnit.B).longValue(),
+    					 spillDirectory, !binary);
+    		 }
+    		 final String compression = context.getProperty(COMPRESSION_FORMAT).getValue();
+    		 if(!COMPRESSION_NONE.equals(compression)){
+    			 capture.compressor = new ContentCompressor(compression, context.getProperty(COMPRESSION_LEVEL).asInteger());
+    		 }
+    		 if(context.getProperty(NET_CHANGES).asBoolean()){
+    			 capture.netChanges = new NetChangeCoalescer();
+    		 }
+    		 checkpointer.restored(xsOutServerName, position);
+    		 if(position==null && context.getProperty(INITIAL_LOAD).asBoolean()){
+    			 // attached once the tables are loaded
+    			 capture.snapshot = startSnapshot(xsOutServerName, snapshots.get(xsOutServerName), filter,
+    					 COMPRESSION_NONE.equals(compression) ? null : compression, context.getProperty(COMPRESSION_LEVEL).asInteger());
+    			 attached.add(capture);
+    			 continue;
+    		 }
+    		 capture.xsOut = cdcService.attach(xsOutServerName, position, filter);
+    		 capture.metrics = cdcService.getMetrics(capture.xsOut);
+    		 checkpointer.register(xsOutServerName, capture.metrics);
+    		 attached.add(capture);
+    	 }
 
     }
     
+    /**
+     * resumes the initial load stored in state, or fixes the SCN and the tables of a new one
+     */
+    private Snapshot startSnapshot(String xsOutServerName,String stored,CaptureFilter filter,String compression,int compressionLevel){
+    	SnapshotProgress progress = null;
+    	if(stored!=null){
+    		try{
+    			progress = SnapshotProgress.parse(stored);
+    		}catch(IllegalArgumentException e){
+    			getLogger().warn("ignoring the stored initial load of "+xsOutServerName+", it is started again", e);
+    		}
+    	}
+    	if(progress==null){
+    		progress = new SnapshotProgress(cdcService.getCurrentScn(), cdcService.listTables(filter));
+    		getLogger().info("starting the initial load of "+xsOutServerName+" as of SCN "+progress.getScn()+": "+progress.getTables());
+    	}else{
+    		getLogger().info("resuming the initial load of "+xsOutServerName+" as of SCN "+progress.getScn());
+    	}
+    	// the SCN is stored before any row is emitted, so a restart reads the same rows
+    	checkpointer.snapshot(xsOutServerName, progress.encode());
+    	try{
+    		checkpointer.flush();
+    	}catch(IOException e){
+    		throw new ProcessException("cannot store the initial load of "+xsOutServerName, e);
+    	}
+    	return new Snapshot(xsOutServerName, progress, filter, compression, compressionLevel);
+    }
+    
     @OnShutdown
     @OnStopped
     public void shutdown(final ProcessContext context){
-    	  cdcService.detach(xsOut);
+    	  final List<Capture> attached = captures;
+    	  captures = null;
+    	  ProcessException failure = null;
+    	  try{
+    		  if(attached!=null){
+    			  for(Capture capture : attached){
+    				  if(capture.assembler!=null){
+    					  // uncommitted transactions are redelivered after the last committed position
+    					  capture.assembler.clear();
+    					  capture.transactionSchemas.clear();
+    				  }
+    				  if(capture.netChanges!=null){
+    					  // held until their commit, so they are redelivered as well
+    					  capture.netChanges.clear();
+    				  }
+    				  if(capture.compressor!=null){
+    					  capture.compressor.end();
+    				  }
+    				  // its row is redelivered with all of its chunks
+    				  capture.discardLob();
+    				  if(capture.snapshot!=null){
+    					  // chunks not committed are read again when the load resumes
+    					  capture.snapshot.end();
+    					  continue;
+    				  }
+    				  try{
+    					  cdcService.detach(capture.xsOut);
+    				  }catch(ProcessException e){
+    					  getLogger().error("cannot detach from the outbound server "+capture.name, e);
+    					  failure = e;
+    				  }
+    			  }
+    		  }
+    		  if(failure!=null){
+    			  throw failure;
+    		  }
+    	  }finally{
+    		  if(checkpointer!=null){
+    			  try {
+    				  checkpointer.shutdown();
+    			  } catch (final IOException ioe) {
+    				  getLogger().warn("Failed to set the low watermark to State Manager", ioe);
+    			  }
+    			  checkpointer=null;
+    		  }
+    	  }
     }
     
     @Override
     public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
-    	CDCHandler handler = new CDCHandler(session);
-    	cdcService.receiveEvents(xsOut,handler);    	 
+    	if(context.getAvailableRelationships().size()<getRelationships().size()){
+    		// a downstream connection is back-pressured; the receiver keeps the outbound server
+    		// attached and stops reading once its buffer is full
+    		final List<Capture> attached = captures;
+    		if(attached!=null){
+    			for(Capture capture : attached){
+    				capture.sizer.backPressure();
+    			}
+    		}
+    		context.yield();
+    		return;
+    	}
+    	// loads and outbound servers take turns, so neither starves the other on a single task
+    	final boolean loadFirst = (turns.getAndIncrement() & 1) == 0;
+    	if(loadFirst && loadSnapshot(session)){
+    		return;
+    	}
+    	final Capture capture = claim();
+    	if(capture!=null){
+    		try{
+    			if(onTrigger(context, session, capture)>0){
+    				return;
+    			}
+    		}finally{
+    			capture.busy.set(false);
+    		}
+    	}
+    	if(!loadFirst && loadSnapshot(session)){
+    		return;
+    	}
+    	if(capture!=null){
+    		// nothing decoded by the receiver yet, free the thread instead of polling
+    		context.yield();
+    	}
+    }
+    
+    /**
+     * takes the next outbound server no other task is working on, in turn
+     */
+    private Capture claim(){
+    	final List<Capture> attached = captures;
+    	if(attached==null || attached.isEmpty()){
+    		return null;
+    	}
+    	final int start = nextCapture.getAndIncrement();
+    	for(int i=0;i<attached.size();i++){
+    		final Capture capture = attached.get(Math.abs((start+i)%attached.size()));
+    		if(capture.snapshot==null && capture.busy.compareAndSet(false, true)){
+    			return capture;
+    		}
+    	}
+    	return null;
+    }
+    
+    /**
+     * reads the next chunk of an initial load, or hands a completed load off to its outbound server
+     *
+     * @return false if no load has work for this task
+     */
+    private boolean loadSnapshot(final ProcessSession session){
+    	final List<Capture> attached = captures;
+    	if(attached==null){
+    		return false;
+    	}
+    	for(Capture capture : attached){
+    		final Snapshot snapshot = capture.snapshot;
+    		if(snapshot==null){
+    			continue;
+    		}
+    		final SnapshotChunk chunk = snapshot.next(cdcService, snapshotChunkRows);
+    		if(chunk!=null){
+    			load(session, snapshot, chunk);
+    			return true;
+    		}
+    		if(snapshot.claimHandoff()){
+    			handoff(capture, snapshot);
+    			return true;
+    		}
+    	}
+    	return false;
+    }
+    
+    private void load(final ProcessSession session, final Snapshot snapshot, final SnapshotChunk chunk){
+    	final Capture worker = snapshot.worker();
+    	boolean committed = false;
+    	try{
+    		final CDCHandler handler = new CDCHandler(session, worker);
+    		final long rows;
+    		try{
+    			rows = cdcService.readSnapshot(chunk, snapshot.filter, handler);
+    		}finally{
+    			handler.flushAll();
+    		}
+    		handler.publishMetrics();
+    		session.adjustCounter(snapshot.name+" snapshot rows", rows, false);
+    		session.commit();
+    		committed = true;
+    		snapshot.progress.chunkDone(chunk.getTableName(), chunk.getIndex(), rows);
+    		checkpointer.snapshot(snapshot.name, snapshot.progress.encode());
+    		try{
+    			checkpointer.flush();
+    		}catch(IOException e){
+    			getLogger().warn("Failed to store the initial load of "+snapshot.name+" to State Manager, chunk "+chunk
+    					+" is read again after a restart", e);
+    		}
+    	}finally{
+    		snapshot.finished(chunk, worker, committed);
+    	}
+    }
+    
+    /**
+     * attaches the outbound server from the SCN the tables were loaded as of
+     */
+    private void handoff(final Capture capture, final Snapshot snapshot){
+    	final SnapshotProgress progress = snapshot.progress;
+    	final Object xsOut;
+    	final byte[] position;
+    	try{
+    		position = cdcService.getPosition(progress.getScn());
+    		xsOut = cdcService.attach(capture.name, position, snapshot.filter);
+    	}catch(ProcessException e){
+    		snapshot.handoffFailed();
+    		throw e;
+    	}
+    	getLogger().info("loaded "+progress.getRows()+" rows of "+capture.name+" as of SCN "+progress.getScn()
+    			+", capturing the changes committed after it");
+    	capture.xsOut = xsOut;
+    	capture.metrics = cdcService.getMetrics(xsOut);
+    	checkpointer.register(capture.name, capture.metrics);
+    	checkpointer.update(capture.name, position, 0);
+    	checkpointer.snapshotDone(capture.name);
+    	try{
+    		checkpointer.flush();
+    	}catch(IOException e){
+    		getLogger().warn("Failed to set the low watermark to State Manager", e);
+    	}
+    	snapshot.end();
+    	capture.snapshot = null;
+    }
+    
+    /**
+     * @return the number of events received, nothing is committed if none
+     */
+    private int onTrigger(final ProcessContext context, final ProcessSession session, final Capture capture){
+    	CDCHandler handler = new CDCHandler(session,capture);
+    	final long start = System.nanoTime();
+    	final int received;
+    	try{
+    		received = cdcService.receiveEvents(capture.xsOut,handler,capture.sizer.nextSize());
+    		handler.keepOpenLob();
+    	}finally{
+    		handler.flushAll();
+    	}
+    	capture.sizer.record(received, System.nanoTime()-start);
+    	handler.publishMetrics();
+    	if(received==0){
+    		return 0;
+    	}
     	if(handler.isMoveMarker()){
-    		cdcService.setProcessedLowWaterMark(xsOut, handler.getLastPosition());
-    		
-    		final StateManager stateManager = context.getStateManager();
-            try {
-            	HashMap<String,String > stateMap = new HashMap<String,String>();
-            	System.out.println("setting position in SM"+new String(new Base32(true).encode(handler.getLastPosition())));
-            	stateMap.put("position", new String(new Base32(true).encode(handler.getLastPosition())));
-            	stateManager.setState(stateMap, Scope.CLUSTER);
-            } catch (final IOException ioe) {
-                getLogger().warn("Failed to set the low watermark to State Manager", ioe);
-            }
+    		// the flowfiles are committed before their position is recorded anywhere
+    		session.commit();
+    		cdcService.setProcessedLowWaterMark(capture.xsOut, handler.getLastPosition());
+    		checkpointer.update(capture.name, handler.getLastPosition(), handler.getBytesWritten());
+    		final EmittedPositions emitted = emittedPositions;
+    		if(emitted!=null){
+    			try{
+    				emitted.emitted(capture.name, handler.getLastPosition());
+    			}catch(IOException e){
+    				getLogger().warn("Failed to store the emitted position of "+capture.name+" to State Manager", e);
+    			}
+    		}
+    	}
+    	return received;
+    }
+    
+    /**
+     * an attached outbound server and the state used to turn its changes into flowfiles,
+     * which is only touched by the task that claimed it
+     */
+    static class Capture{
+    	final String name;
+    	final AdaptiveBatchSizer sizer;
+    	final ChangeEventRecords records = new ChangeEventRecords();
+    	final ChangeEventJson json = new ChangeEventJson();
+    	final ChangeEventBinary binary = new ChangeEventBinary();
+    	// binary schema versions written to each open transaction
+    	final Map<String,Set<Integer>> transactionSchemas = new HashMap<String,Set<Integer>>();
+    	final AtomicBoolean busy = new AtomicBoolean(false);
+    	TransactionAssembler assembler;
+    	NetChangeCoalescer netChanges;
+    	ContentCompressor compressor;
+    	// the initial load still running before the outbound server is attached
+    	volatile Snapshot snapshot;
+    	volatile Object xsOut;
+    	volatile CaptureMetrics metrics;
+    	// the part of a LOB column received by an earlier trigger, completed by a later one
+    	File lobFile;
+    	OutputStream lobOut;
+    	Map<String,String> lobAttributes;
+    	
+    	Capture(String name,AdaptiveBatchSizer sizer){
+    		this.name=name;
+    		this.sizer=sizer;
+    	}
+    	
+    	void discardLob(){
+    		if(lobOut!=null){
+    			try{
+    				lobOut.close();
+    			}catch(IOException e){
+    				// nothing to recover, the file is removed below
+    			}
+    			lobOut=null;
+    		}
+    		if(lobFile!=null){
+    			lobFile.delete();
+    			lobFile=null;
+    		}
+    		lobAttributes=null;
+    	}
+    }
+    
+    /**
+     * the initial load of an outbound server, whose chunks are read by any number of tasks at once.
+     * Each task writes through a capture of its own, taken from the pool of workers.
+     */
+    static class Snapshot{
+    	final String name;
+    	final SnapshotProgress progress;
+    	final CaptureFilter filter;
+    	final CaptureMetrics metrics;
+    	private final String compression;
+    	private final int compressionLevel;
+    	private final Deque<String> unplanned;
+    	private final Deque<SnapshotChunk> pending = new ArrayDeque<SnapshotChunk>();
+    	private final ConcurrentLinkedQueue<Capture> workers = new ConcurrentLinkedQueue<Capture>();
+    	private int reading = 0;
+    	// tables being planned by a task outside the lock
+    	private int planning = 0;
+    	private boolean handingOff = false;
+    	
+    	Snapshot(String name,SnapshotProgress progress,CaptureFilter filter,String compression,int compressionLevel){
+    		this.name=name;
+    		this.progress=progress;
+    		this.filter=filter;
+    		this.metrics=new CaptureMetrics(name);
+    		this.compression=compression;
+    		this.compressionLevel=compressionLevel;
+    		this.unplanned=new ArrayDeque<String>(progress.getTables());
+    	}
+    	
+    	/**
+    	 * @return the next chunk not loaded yet, planning the next table when needed; null if all are taken.
+    	 * A table is planned outside the lock, so the other tasks keep reading the chunks planned before
+    	 */
+    	SnapshotChunk next(OracleCDCService service,int chunkRows){
+    		while(true){
+    			final String table;
+    			synchronized(this){
+    				while(!pending.isEmpty()){
+    					final SnapshotChunk chunk = pending.poll();
+    					if(!progress.isChunkDone(chunk.getTableName(), chunk.getIndex())){
+    						reading++;
+    						return chunk;
+    					}
+    				}
+    				table = unplanned.poll();
+    				if(table==null){
+    					return null;
+    				}
+    				if(progress.isTableDone(table)){
+    					continue;
+    				}
+    				planning++;
+    			}
+    			final int dot = table.indexOf('.');
+    			final List<SnapshotChunk> chunks;
+    			try{
+    				chunks = service.planSnapshot(table.substring(0, dot), table.substring(dot+1), progress.getScn(), chunkRows);
+    			}catch(RuntimeException e){
+    				synchronized(this){
+    					planning--;
+    					unplanned.addFirst(table);
+    				}
+    				throw e;
+    			}
+    			synchronized(this){
+    				planning--;
+    				progress.planned(table, chunks.size());
+    				pending.addAll(chunks);
+    			}
+    		}
+    	}
+    	
+    	/**
+    	 * returns a chunk taken with {@link #next}, to be read again unless it was committed
+    	 */
+    	synchronized void finished(SnapshotChunk chunk,Capture worker,boolean committed){
+    		reading--;
+    		if(!committed){
+    			pending.addFirst(chunk);
+    		}
+    		workers.add(worker);
+    	}
+    	
+    	/**
+    	 * @return true for the one task that attaches the outbound server once every table is loaded
+    	 */
+    	synchronized boolean claimHandoff(){
+    		if(handingOff || reading>0 || planning>0 || !pending.isEmpty() || !unplanned.isEmpty() || !progress.isDone()){
+    			return false;
+    		}
+    		handingOff=true;
+    		return true;
+    	}
+    	
+    	synchronized void handoffFailed(){
+    		handingOff=false;
+    	}
+    	
+    	Capture worker(){
+    		Capture worker = workers.poll();
+    		if(worker==null){
+    			worker = new Capture(name, null);
+    			worker.metrics = metrics;
+    			if(compression!=null){
+    				worker.compressor = new ContentCompressor(compression, compressionLevel);
+    			}
+    		}
+    		return worker;
+    	}
+    	
+    	/**
+    	 * releases the compressors of the workers, which are all returned once no task runs
+    	 */
+    	void end(){
+    		for(Capture worker; (worker = workers.poll())!=null;){
+    			if(worker.compressor!=null){
+    				worker.compressor.end();
+    			}
+    		}
     	}
     }
     
@@ -195,62 +1050,485 @@ public class OracleChangeCapture extends AbstractProcessor{
     	private boolean moveMarker=false;
 
     	private final ProcessSession session;
+    	private final Capture capture;
+    	private final TransactionAssembler assembler;
+    	private final Map<String,Batch> batches = new HashMap<String,Batch>();
+    	private FlowFile lobFlowFile;
+    	private Map<String,String> lobAttributes;
+    	private long bytesWritten=0;
+    	// metrics of the trigger, published once at its end
+    	private final Map<String,long[]> operationCounts = new HashMap<String,long[]>();
+    	private final Map<String,long[]> tableCounts = new HashMap<String,long[]>();
+    	private long serializeNanos=0;
+    	private long serialized=0;
+    	private long transferNanos=0;
+    	private long transferred=0;
+    	private long spilled=0;
+    	private long oldestSourceTime=Long.MAX_VALUE;
+    	private final NetChangeCoalescer netChanges;
+    	private final long coalescedBefore;
     	
-    	public CDCHandler(final ProcessSession session) {
+    	public CDCHandler(final ProcessSession session,final Capture capture) {
 			this.session=session;
+			this.capture=capture;
+			this.assembler=capture.assembler;
+			this.netChanges=capture.netChanges;
+			this.coalescedBefore=netChanges==null ? 0 : netChanges.getCoalesced();
 		}
 
 	@Override
-	public void inserts(String events,byte[] position) {
-		// TODO Auto-generated method stub
-		FlowFile flowFile = createFF(events);
-		flowFile=session.putAttribute(flowFile, "cdc_type", "INSERT");
-		session.transfer(flowFile,INSERTS);
-		this.lastPosition=position;
-		this.moveMarker=true;
+	public void inserts(ChangeEvent event) {
+		count(event,true);
+		if(!coalesce(event)){
+			add(INSERTS,"INSERT",event);
+		}
 	}
 
 	@Override
-	public void updates(String events,byte[] position) {
-		FlowFile flowFile = createFF(events);
-		flowFile=session.putAttribute(flowFile, "cdc_type", "UPDATE");
-		session.transfer(flowFile,UPDATES);
-		this.lastPosition=position;
-		this.moveMarker=true;
-		
+	public void updates(ChangeEvent event) {
+		count(event,true);
+		if(!coalesce(event)){
+			add(UPDATES,"UPDATE",event);
+		}
 	}
 
 	@Override
-	public void deletes(String events,byte[] position) {
-		FlowFile flowFile = createFF(events);
-		flowFile=session.putAttribute(flowFile, "cdc_type", "DELETE");
-		session.transfer(flowFile,DELETES);
-		this.lastPosition=position;
-		this.moveMarker=true;
-		
+	public void deletes(ChangeEvent event) {
+		count(event,true);
+		if(!coalesce(event)){
+			add(DELETES,"DELETE",event);
+		}
+	}
+	
+	/**
+	 * @return true if the row change is held as a net change until its transaction commits
+	 */
+	private boolean coalesce(ChangeEvent event){
+		if(netChanges==null){
+			return false;
+		}
+		netChanges.add(event);
+		if(netChanges.size()>=netChangeMaxRows){
+			emitNetChanges();
+		}
+		return true;
+	}
+	
+	private void emitNetChanges(){
+		if(netChanges==null || netChanges.size()==0){
+			return;
+		}
+		for(ChangeEvent net : netChanges.drain()){
+			switch(net.getCommandType()){
+			case "INSERT":
+				add(INSERTS,"INSERT",net);
+				break;
+			case "UPDATE":
+				add(UPDATES,"UPDATE",net);
+				break;
+			default:
+				add(DELETES,"DELETE",net);
+				break;
+			}
+		}
+		if(assembler==null){
+			// net changes leave in the order of their first change, the marker goes past all of them
+			this.lastPosition=netChanges.getLastPosition();
+		}
 	}
 
 	@Override
-	public void other(String events,byte[] position) {
-		FlowFile flowFile = createFF(events);
-		flowFile=session.putAttribute(flowFile, "cdc_type", "UNMATCHED");
-		session.transfer(flowFile,UNMATCHED);
-		this.lastPosition=position;
+	public void commit(ChangeEvent event) {
+		count(event,false);
+		emitNetChanges();
+		if(assembler==null){
+			add(UNMATCHED,"UNMATCHED",event);
+			return;
+		}
+		final TransactionBuffer buffer;
+		try{
+			buffer = assembler.commit(event.getTransactionId());
+			capture.transactionSchemas.remove(event.getTransactionId());
+		}catch(IOException e){
+			throw new ProcessException("cannot complete transaction "+event.getTransactionId(), e);
+		}
+		if(buffer!=null){
+			final long start = System.nanoTime();
+			try{
+				emit(buffer,event.getPosition());
+				transferred++;
+				if(buffer.isSpilled()){
+					spilled++;
+				}
+			}finally{
+				buffer.discard();
+				transferNanos+=System.nanoTime()-start;
+			}
+		}
+		this.lastPosition=event.getPosition();
 		this.moveMarker=true;
-		
+	}
+
+	@Override
+	public void other(ChangeEvent event) {
+		count(event,false);
+		emitNetChanges();
+		add(UNMATCHED,"UNMATCHED",event);
+	}
+	
+	private void count(ChangeEvent event,boolean row){
+		increment(operationCounts, event.getCommandType());
+		if(row){
+			increment(tableCounts, event.getMetadata()!=null ? event.getMetadata().getTableKey() : event.getTableKey());
+		}
+		if(event.getTimestamp()>0 && event.getTimestamp()<oldestSourceTime){
+			oldestSourceTime=event.getTimestamp();
+		}
+	}
+	
+	private void increment(Map<String,long[]> counts,String key){
+		long[] count = counts.get(key);
+		if(count==null){
+			count = new long[1];
+			counts.put(key, count);
+		}
+		count[0]++;
+	}
+	
+	/**
+	 * adds the counts and timings of the trigger to the metrics of the outbound server and to the
+	 * processor counters, which are committed with the session
+	 */
+	void publishMetrics(){
+		final CaptureMetrics metrics = capture.metrics;
+		for(Map.Entry<String,long[]> entry : operationCounts.entrySet()){
+			metrics.addOperationEvents(entry.getKey(), entry.getValue()[0]);
+			session.adjustCounter(capture.name+" "+entry.getKey()+" events", entry.getValue()[0], false);
+		}
+		for(Map.Entry<String,long[]> entry : tableCounts.entrySet()){
+			metrics.addTableEvents(entry.getKey(), entry.getValue()[0]);
+			session.adjustCounter(capture.name+" "+entry.getKey()+" events", entry.getValue()[0], false);
+		}
+		if(serialized>0){
+			metrics.addStage(CaptureMetrics.SERIALIZE, serializeNanos, serialized);
+			session.adjustCounter(capture.name+" serialize millis", TimeUnit.NANOSECONDS.toMillis(serializeNanos), false);
+		}
+		if(transferred>0){
+			metrics.addStage(CaptureMetrics.TRANSFER, transferNanos, transferred);
+			session.adjustCounter(capture.name+" transfer millis", TimeUnit.NANOSECONDS.toMillis(transferNanos), false);
+		}
+		if(spilled>0){
+			session.adjustCounter(capture.name+" spilled transactions", spilled, false);
+		}
+		if(netChanges!=null && netChanges.getCoalesced()>coalescedBefore){
+			session.adjustCounter(capture.name+" coalesced events", netChanges.getCoalesced()-coalescedBefore, false);
+		}
+		if(oldestSourceTime!=Long.MAX_VALUE){
+			metrics.setLagMillis(Math.max(0, System.currentTimeMillis()-oldestSourceTime));
+		}
+	}
+	
+	@Override
+	public String chunk(ChangeEvent event,String columnName,final byte[] data,boolean lastChunk) {
+		final long start = System.nanoTime();
+		try{
+			if(lobFlowFile==null && capture.lobFile!=null){
+				// the column continues from an earlier trigger, its content so far is in a file
+				try{
+					capture.lobOut.write(data);
+					if(!lastChunk){
+						return null;
+					}
+					capture.lobOut.close();
+					capture.lobOut=null;
+				}catch(IOException e){
+					throw new ProcessException("cannot append to the LOB column "+columnName+" of "+capture.name, e);
+				}
+				lobFlowFile = session.importFrom(capture.lobFile.toPath(), false, session.create());
+				lobFlowFile = session.putAllAttributes(lobFlowFile, capture.lobAttributes);
+				capture.discardLob();
+			}else{
+				if(lobFlowFile==null){
+					lobFlowFile = session.create();
+					final Map<String,String> attributes = new HashMap<String,String>();
+					attributes.put("cdc_type", "LOB");
+					attributes.put("cdc.lob.column", columnName);
+					attributes.put("cdc.table", event.getTableKey());
+					if(event.getTransactionId()!=null){
+						// rows of an initial load have no transaction
+						attributes.put("cdc.transaction.id", event.getTransactionId());
+					}
+					attributes.put("cdc.first.position", new String(new Base32(true).encode(event.getPosition())));
+					attributes.put("cdc.xstream.server", capture.name);
+					lobFlowFile = session.putAllAttributes(lobFlowFile, attributes);
+					lobAttributes = attributes;
+				}
+				// each chunk is appended as it arrives so the column is never held in memory as a whole
+				lobFlowFile = session.append(lobFlowFile, new OutputStreamCallback() {
+					
+					@Override
+					public void process(OutputStream outputStream) throws IOException {
+						outputStream.write(data);
+					}
+				});
+			}
+			final String reference = lobFlowFile.getAttribute(CoreAttributes.UUID.key());
+			if(lastChunk){
+				bytesWritten+=lobFlowFile.getSize();
+				session.transfer(lobFlowFile, LOBS);
+				lobFlowFile=null;
+				transferred++;
+			}
+			return reference;
+		}finally{
+			transferNanos+=System.nanoTime()-start;
+		}
+	}
+	
+	/**
+	 * moves the part of a LOB column received so far to a file kept with the capture, when the
+	 * trigger ends before the last chunk; the rest of the column and its row follow with a later trigger
+	 */
+	void keepOpenLob(){
+		if(lobFlowFile==null){
+			return;
+		}
+		File file = null;
+		try{
+			file = File.createTempFile("oraclecdc-lob-", ".bin", spillDirectory);
+			session.exportTo(lobFlowFile, file.toPath(), false);
+			capture.lobOut = new BufferedOutputStream(new FileOutputStream(file, true));
+		}catch(IOException e){
+			if(file!=null){
+				file.delete();
+			}
+			throw new ProcessException("cannot keep the LOB column "+lobAttributes.get("cdc.lob.column")+" of "+capture.name, e);
+		}
+		capture.lobFile=file;
+		capture.lobAttributes=lobAttributes;
+		session.remove(lobFlowFile);
+		lobFlowFile=null;
+	}
+
+	@Override
+	public void skipped(byte[] position) {
+		// rows held for their commit keep the marker where it is
+		if(assembler==null && (netChanges==null || netChanges.size()==0)){
+			this.lastPosition=position;
+			this.moveMarker=true;
+		}
+	}
+
+	private void emit(final TransactionBuffer buffer,byte[] commitPosition){
+		FlowFile flowFile = session.create();
+		if(buffer.isSpilled() && capture.compressor==null){
+			flowFile = session.importFrom(buffer.getSpillFile().toPath(), false, flowFile);
+		}else if(buffer.isSpilled()){
+			flowFile = session.write(flowFile, compressing(new OutputStreamCallback() {
+				
+				@Override
+				public void process(OutputStream outputStream) throws IOException {
+					Files.copy(buffer.getSpillFile().toPath(), outputStream);
+				}
+			}));
+		}else{
+			flowFile = session.write(flowFile, compressing(new OutputStreamCallback() {
+				
+				@Override
+				public void process(OutputStream outputStream) throws IOException {
+					buffer.writeTo(outputStream);
+				}
+			}));
+		}
+		final Map<String,String> attributes = new HashMap<String,String>();
+		attributes.put("cdc_type", "TRANSACTION");
+		attributes.put("cdc.transaction.id", buffer.getTransactionId());
+		attributes.put("record.count", String.valueOf(buffer.getCount()));
+		attributes.put("cdc.first.position", new String(new Base32(true).encode(buffer.getFirstPosition())));
+		attributes.put("cdc.last.position", new String(new Base32(true).encode(commitPosition)));
+		attributes.put(CoreAttributes.MIME_TYPE.key(), mimeType());
+		attributes.put("cdc.xstream.server", capture.name);
+		flowFile=session.putAllAttributes(flowFile, attributes);
+		bytesWritten+=flowFile.getSize();
+		session.transfer(flowFile,TRANSACTIONS);
+	}
+	
+	private void add(Relationship relationship,String cdcType,ChangeEvent event){
+		final byte[] position = event.getPosition();
+		if(assembler!=null && relationship!=UNMATCHED){
+			try{
+				Set<Integer> schemas = capture.transactionSchemas.get(event.getTransactionId());
+				if(schemas==null){
+					schemas = new HashSet<Integer>();
+					capture.transactionSchemas.put(event.getTransactionId(), schemas);
+				}
+				final EventBuffer buffer = encode(event,schemas);
+				assembler.add(event.getTransactionId(), buffer.array(), buffer.size(), position);
+			}catch(IOException e){
+				throw new ProcessException("cannot buffer transaction "+event.getTransactionId(), e);
+			}
+			// the marker only moves on commit, an open transaction is redelivered after a restart
+			return;
+		}
+		// row changes are kept per partition, so that changes of one row stay in one flowfile sequence
+		final int partition = relationship==UNMATCHED ? -1 : Math.floorMod(event.getKeyHash(), partitionCount);
+		String key = partition<0 ? relationship.getName() : relationship.getName()+"#"+partition;
+		if(recordWriterFactory!=null){
+			// a record flowfile has a single schema, so record batches are kept per table
+			key = key+"/"+event.getTableKey();
+		}
+		Batch batch = batches.get(key);
+		if(batch==null){
+			batch = new Batch(relationship,cdcType,event.getTableKey(),partition);
+			batches.put(key, batch);
+		}
+		if(recordWriterFactory==null){
+			final EventBuffer buffer = encode(event,batch.schemas);
+			batch.add(buffer.array(), buffer.size(), position, !binary);
+		}else{
+			final long start = System.nanoTime();
+			batch.add(capture.records.toRecord(event), position);
+			serializeNanos+=System.nanoTime()-start;
+			serialized++;
+		}
+		if(assembler==null){
+			this.lastPosition=position;
+			this.moveMarker=true;
+		}
+		if(batch.count>=batchMaxRecords || batch.content.size()>=batchMaxBytes){
+			flush(batch);
+		}
+		flushExpired();
+	}
+	
+	/**
+	 * renders the event in the configured format
+	 *
+	 * @param schemas binary schema versions already written to the destination
+	 */
+	private EventBuffer encode(ChangeEvent event,Set<Integer> schemas){
+		final long start = System.nanoTime();
+		try{
+			return binary ? capture.binary.write(event, schemas) : capture.json.write(event);
+		}catch(IOException e){
+			throw new ProcessException("error rendering change event at "+new String(new Base32(true).encode(event.getPosition())), e);
+		}finally{
+			serializeNanos+=System.nanoTime()-start;
+			serialized++;
+		}
+	}
+	
+	private void flushExpired(){
+		final long now = System.nanoTime();
+		for(Batch batch : batches.values()){
+			if(batch.count>0 && now-batch.startNanos>=batchMaxLatencyNanos){
+				flush(batch);
+			}
+		}
+	}
+	
+	void flushAll(){
+		if(lobFlowFile!=null){
+			// the trigger failed within the row, which is not acknowledged yet and
+			// is delivered again with all of its chunks by the next session
+			session.remove(lobFlowFile);
+			lobFlowFile=null;
+		}
+		for(Batch batch : batches.values()){
+			if(batch.count>0){
+				flush(batch);
+			}
+		}
 	}
 	
-	private FlowFile createFF(String events){
+	private void flush(final Batch batch){
+		final long start = System.nanoTime();
+		// records are rendered by the writer while the flowfile is written
+		final long recordsSerializeNanos = serializeNanos;
+		final Map<String,String> attributes = new HashMap<String,String>();
 		FlowFile flowFile = session.create();
-		flowFile = session.write(flowFile, new OutputStreamCallback() {
+		if(recordWriterFactory==null){
+			flowFile = session.write(flowFile, compressing(new OutputStreamCallback() {
+				
+				@Override
+				public void process(OutputStream outputStream) throws IOException {
+					batch.content.writeTo(outputStream);
+				}
+			}));
+			attributes.put(CoreAttributes.MIME_TYPE.key(), mimeType());
+		}else{
+			flowFile = session.write(flowFile, compressing(new OutputStreamCallback() {
+				
+				@Override
+				public void process(OutputStream outputStream) throws IOException {
+					writeRecords(batch, outputStream, attributes);
+				}
+			}));
+			if(capture.compressor!=null){
+				attributes.put(CoreAttributes.MIME_TYPE.key(), capture.compressor.getMimeType());
+			}
+		}
+		attributes.put("cdc_type", batch.cdcType);
+		attributes.put("record.count", String.valueOf(batch.count));
+		attributes.put("cdc.first.position", new String(new Base32(true).encode(batch.firstPosition)));
+		attributes.put("cdc.last.position", new String(new Base32(true).encode(batch.lastPosition)));
+		attributes.put("cdc.xstream.server", capture.name);
+		if(batch.partition>=0){
+			attributes.put("partition", String.valueOf(batch.partition));
+		}
+		flowFile=session.putAllAttributes(flowFile, attributes);
+		bytesWritten+=flowFile.getSize();
+		session.transfer(flowFile,batch.relationship);
+		batch.reset();
+		transferNanos+=System.nanoTime()-start-(serializeNanos-recordsSerializeNanos);
+		transferred++;
+	}
+	
+	private void writeRecords(Batch batch,OutputStream outputStream,Map<String,String> attributes) throws IOException{
+		final long start = System.nanoTime();
+		try{
+			final RecordSchema writeSchema = recordWriterFactory.getSchema(Collections.<String,String>emptyMap(),
+					capture.records.getSchema(batch.tableKey));
+			try(final RecordSetWriter writer = recordWriterFactory.createWriter(getLogger(), writeSchema, outputStream)){
+				writer.beginRecordSet();
+				for(Record record : batch.records){
+					writer.write(record);
+				}
+				final WriteResult result = writer.finishRecordSet();
+				attributes.putAll(result.getAttributes());
+				attributes.put(CoreAttributes.MIME_TYPE.key(), writer.getMimeType());
+			}
+		}catch(SchemaNotFoundException e){
+			throw new IOException("cannot resolve the record schema for "+batch.tableKey, e);
+		}finally{
+			serializeNanos+=System.nanoTime()-start;
+		}
+	}
+	
+	/**
+	 * writes the content through the compressor of the capture, if it has one
+	 */
+	private OutputStreamCallback compressing(final OutputStreamCallback callback){
+		final ContentCompressor compressor = capture.compressor;
+		if(compressor==null){
+			return callback;
+		}
+		return new OutputStreamCallback() {
 			
 			@Override
 			public void process(OutputStream outputStream) throws IOException {
-				// TODO Auto-generated method stub
-				outputStream.write(events.getBytes());
+				final OutputStream compressed = compressor.open(outputStream);
+				callback.process(compressed);
+				compressed.close();
 			}
-		});
-		return flowFile;
+		};
+	}
+	
+	private String mimeType(){
+		if(capture.compressor!=null){
+			return capture.compressor.getMimeType();
+		}
+		return binary ? "application/octet-stream" : "application/json";
 	}
 	
 	public byte[] getLastPosition() {
@@ -261,6 +1539,67 @@ public class OracleChangeCapture extends AbstractProcessor{
 		return moveMarker;
 	}
 	
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+	
+    }
+    
+    /**
+     * change events collected for one relationship and partition, written as newline-delimited JSON
+     * or, when a record writer is configured, kept as records of a single table
+     */
+    static class Batch{
+    	final Relationship relationship;
+    	final String cdcType;
+    	final String tableKey;
+    	final int partition;
+    	final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    	final List<Record> records = new ArrayList<Record>();
+    	// binary schema versions written to the content
+    	final Set<Integer> schemas = new HashSet<Integer>();
+    	int count=0;
+    	byte[] firstPosition;
+    	byte[] lastPosition;
+    	long startNanos;
+    	
+    	Batch(Relationship relationship,String cdcType,String tableKey,int partition){
+    		this.relationship=relationship;
+    		this.cdcType=cdcType;
+    		this.tableKey=tableKey;
+    		this.partition=partition;
+    	}
+    	
+    	void add(byte[] event,int length,byte[] position,boolean newlineDelimited){
+    		if(count>0 && newlineDelimited){
+    			content.write('\n');
+    		}
+    		content.write(event, 0, length);
+    		added(position);
+    	}
+    	
+    	void add(Record record,byte[] position){
+    		records.add(record);
+    		added(position);
+    	}
+    	
+    	private void added(byte[] position){
+    		if(count==0){
+    			firstPosition=position;
+    			startNanos=System.nanoTime();
+    		}
+    		lastPosition=position;
+    		count++;
+    	}
+    	
+    	void reset(){
+    		content.reset();
+    		records.clear();
+    		schemas.clear();
+    		count=0;
+    		firstPosition=null;
+    		lastPosition=null;
+    	}
     }
     
     
@@ -0,0 +1,138 @@
+package org.apache.nifi.processors.oraclecdc.controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * The tables and columns a processor captures. It is compiled once when the processor is
+ * scheduled and handed to the receiver with the attach, which checks it before an LCR or a
+ * column is decoded. Names match without regard to case. Instances are never changed.
+ */
+public class CaptureFilter {
+
+	private final List<Pattern> includes;
+	private final List<Pattern> excludes;
+	private final Map<String,Set<String>> columns;
+
+	private CaptureFilter(List<Pattern> includes, List<Pattern> excludes, Map<String,Set<String>> columns) {
+		this.includes = includes;
+		this.excludes = excludes;
+		this.columns = columns;
+	}
+
+	/**
+	 * @param includeTables the tables to capture, see {@link #parseTables(String)}, all tables if null
+	 * @param excludeTables tables not captured even if included, may be null
+	 * @param columns the columns to capture per table, see {@link #parseColumns(String)}, may be null
+	 * @return the filter, null if nothing is filtered
+	 * @throws IllegalArgumentException if a value is malformed
+	 */
+	public static CaptureFilter compile(String includeTables, String excludeTables, String columns) {
+		final List<Pattern> includes = parseTables(includeTables);
+		final List<Pattern> excludes = parseTables(excludeTables);
+		final Map<String,Set<String>> projections = parseColumns(columns);
+		if (includes.isEmpty() && excludes.isEmpty() && projections.isEmpty()) {
+			return null;
+		}
+		return new CaptureFilter(includes, excludes, projections);
+	}
+
+	/**
+	 * parses comma separated OWNER.TABLE patterns, where * matches any characters
+	 *
+	 * @throws IllegalArgumentException for a pattern without owner or table
+	 */
+	public static List<Pattern> parseTables(String value) {
+		final List<Pattern> patterns = new ArrayList<Pattern>();
+		if (value == null) {
+			return patterns;
+		}
+		for (String entry : value.split(",")) {
+			final String table = entry.trim();
+			if (table.isEmpty()) {
+				continue;
+			}
+			final int separator = table.indexOf('.');
+			if (separator <= 0 || separator == table.length() - 1 || table.indexOf('.', separator + 1) >= 0) {
+				throw new IllegalArgumentException("'" + table + "' is not an OWNER.TABLE pattern");
+			}
+			final StringBuilder regex = new StringBuilder();
+			final String[] parts = table.split("\\*", -1);
+			for (int i = 0; i < parts.length; i++) {
+				if (i > 0) {
+					regex.append(".*");
+				}
+				if (!parts[i].isEmpty()) {
+					regex.append(Pattern.quote(parts[i]));
+				}
+			}
+			patterns.add(Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE));
+		}
+		return patterns;
+	}
+
+	/**
+	 * parses the columns of tables given as OWNER.TABLE=COLUMN[,COLUMN...] entries separated by semicolons
+	 *
+	 * @return the column names by upper case OWNER.TABLE
+	 * @throws IllegalArgumentException for an entry without table or columns
+	 */
+	public static Map<String,Set<String>> parseColumns(String value) {
+		final Map<String,Set<String>> parsed = new HashMap<String,Set<String>>();
+		if (value == null) {
+			return parsed;
+		}
+		for (String entry : value.split(";")) {
+			if (entry.trim().isEmpty()) {
+				continue;
+			}
+			final int separator = entry.indexOf('=');
+			final String table = separator < 0 ? "" : entry.substring(0, separator).trim();
+			if (table.indexOf('.') <= 0) {
+				throw new IllegalArgumentException("'" + entry.trim() + "' is not an OWNER.TABLE=COLUMN[,COLUMN...] entry");
+			}
+			final Set<String> names = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+			for (String column : entry.substring(separator + 1).split(",")) {
+				if (!column.trim().isEmpty()) {
+					names.add(column.trim());
+				}
+			}
+			if (names.isEmpty()) {
+				throw new IllegalArgumentException("no columns listed for " + table);
+			}
+			parsed.put(table.toUpperCase(), Collections.unmodifiableSet(names));
+		}
+		return parsed;
+	}
+
+	/**
+	 * @return true if changes of the table are captured
+	 */
+	public boolean includesTable(String owner, String table) {
+		final String name = owner + "." + table;
+		return (includes.isEmpty() || matches(includes, name)) && !matches(excludes, name);
+	}
+
+	private static boolean matches(List<Pattern> patterns, String name) {
+		for (Pattern pattern : patterns) {
+			if (pattern.matcher(name).matches()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the columns captured for the table, compared without regard to case, null for all columns
+	 */
+	public Set<String> getColumns(String owner, String table) {
+		return columns.get((owner + "." + table).toUpperCase());
+	}
+
+}
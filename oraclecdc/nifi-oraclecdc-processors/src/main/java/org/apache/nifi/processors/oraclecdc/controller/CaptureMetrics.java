@@ -0,0 +1,180 @@
+package org.apache.nifi.processors.oraclecdc.controller;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and stage timings of the capture from one outbound server. The receiver thread
+ * records the xstream receive and decode stages, the processor task working on the server
+ * records the rest. Values are totals since the server was attached, so a reader takes
+ * rates as the difference between two reads.
+ */
+public class CaptureMetrics {
+
+	/** time in the xstream receive call, without the decoding done in its callbacks */
+	public static final int RECEIVE = 0;
+	/** time decoding LCRs into change events */
+	public static final int DECODE = 1;
+	/** time the receiver waited for the processor on a full event buffer */
+	public static final int BACKPRESSURE = 2;
+	/** time rendering change events as JSON, binary or records */
+	public static final int SERIALIZE = 3;
+	/** time creating, writing and transferring flowfiles */
+	public static final int TRANSFER = 4;
+	/** time writing positions to cluster state */
+	public static final int CHECKPOINT = 5;
+
+	private static final String[] STAGE_NAMES = {"receive", "decode", "backpressure", "serialize", "transfer", "checkpoint"};
+
+	private final String name;
+	private final LongAdder[] stageNanos = new LongAdder[STAGE_NAMES.length];
+	private final LongAdder[] stageCounts = new LongAdder[STAGE_NAMES.length];
+	private final ConcurrentMap<String, LongAdder> operations = new ConcurrentHashMap<String, LongAdder>();
+	private final ConcurrentMap<String, LongAdder> tables = new ConcurrentHashMap<String, LongAdder>();
+	private final LongAdder reconnects = new LongAdder();
+	private final LongAdder replaySkipped = new LongAdder();
+	private volatile long lagMillis = -1;
+	private volatile long lastCheckpointNanos = -1;
+
+	public CaptureMetrics(String name) {
+		this.name = name;
+		for (int i = 0; i < STAGE_NAMES.length; i++) {
+			stageNanos[i] = new LongAdder();
+			stageCounts[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @return the outbound server name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public static int getStageCount() {
+		return STAGE_NAMES.length;
+	}
+
+	public static String getStageName(int stage) {
+		return STAGE_NAMES[stage];
+	}
+
+	/**
+	 * @param count the number of items, LCRs, events or flowfiles, handled in the time
+	 */
+	public void addStage(int stage, long nanos, long count) {
+		stageNanos[stage].add(nanos);
+		stageCounts[stage].add(count);
+	}
+
+	public long getStageNanos(int stage) {
+		return stageNanos[stage].sum();
+	}
+
+	public long getStageItems(int stage) {
+		return stageCounts[stage].sum();
+	}
+
+	/**
+	 * counts change events emitted by command type
+	 */
+	public void addOperationEvents(String operation, long count) {
+		add(operations, operation, count);
+	}
+
+	/**
+	 * counts row change events emitted by database.schema.table
+	 */
+	public void addTableEvents(String tableKey, long count) {
+		add(tables, tableKey, count);
+	}
+
+	private static void add(ConcurrentMap<String, LongAdder> counters, String key, long count) {
+		LongAdder counter = counters.get(key);
+		if (counter == null) {
+			final LongAdder created = new LongAdder();
+			counter = counters.putIfAbsent(key, created);
+			if (counter == null) {
+				counter = created;
+			}
+		}
+		counter.add(count);
+	}
+
+	/**
+	 * @return the events emitted by command type, sorted
+	 */
+	public Map<String, Long> getOperationCounts() {
+		return snapshot(operations);
+	}
+
+	/**
+	 * @return the row events emitted by database.schema.table, sorted
+	 */
+	public Map<String, Long> getTableCounts() {
+		return snapshot(tables);
+	}
+
+	private static Map<String, Long> snapshot(ConcurrentMap<String, LongAdder> counters) {
+		final Map<String, Long> snapshot = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().sum());
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @param lagMillis the emit time minus the source time of the oldest change emitted by the last trigger
+	 */
+	public void setLagMillis(long lagMillis) {
+		this.lagMillis = lagMillis;
+	}
+
+	/**
+	 * @return the capture lag in milliseconds, -1 before the first change is emitted. The source
+	 * time is the local time of the database, so the clocks and time zones of both sides must agree
+	 */
+	public long getLagMillis() {
+		return lagMillis;
+	}
+
+	public void checkpointed(long nanos) {
+		addStage(CHECKPOINT, nanos, 1);
+		lastCheckpointNanos = nanos;
+	}
+
+	/**
+	 * @return the duration of the last state write in milliseconds, -1 before the first one
+	 */
+	public long getLastCheckpointMillis() {
+		final long nanos = lastCheckpointNanos;
+		return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	public void reconnected() {
+		reconnects.increment();
+	}
+
+	/**
+	 * @return the times the outbound server was attached again after its session broke
+	 */
+	public long getReconnects() {
+		return reconnects.sum();
+	}
+
+	public void skippedReplayed(long count) {
+		replaySkipped.add(count);
+	}
+
+	/**
+	 * @return the LCRs the outbound server sent again up to a position already emitted, which were dropped before decoding
+	 */
+	public long getReplaySkipped() {
+		return replaySkipped.sum();
+	}
+
+}
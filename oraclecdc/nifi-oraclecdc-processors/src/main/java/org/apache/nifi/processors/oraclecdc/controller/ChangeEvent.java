@@ -0,0 +1,296 @@
+package org.apache.nifi.processors.oraclecdc.controller;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A row change decoded from a RowLCR, independent of the format it is written in.
+ * Instances are reused from one LCR to the next, see {@link #clear()}.
+ */
+public class ChangeEvent {
+
+	/**
+	 * added to the ChunkColumnValue type of a LOB column to give its oracle type, which keeps it
+	 * apart from the ColumnValue data types the chunk types share their numbers with
+	 */
+	public static final int LOB_TYPE_OFFSET = 100;
+
+	private long timestamp;
+	private String database;
+	private String schema;
+	private String table;
+	private String commandType;
+	private String transactionId;
+	private byte[] position;
+	private int keyHash;
+	private List<String> keyColumns = Collections.emptyList();
+	private TableMetadata metadata;
+	private final ColumnList newValues = new ColumnList();
+	private final ColumnList oldValues = new ColumnList();
+
+	/**
+	 * @return the oracle type of a column whose content is delivered in chunks of the type
+	 */
+	public static int lobType(int chunkType) {
+		return LOB_TYPE_OFFSET + chunkType;
+	}
+
+	/**
+	 * resets the event so it can hold the next LCR, column objects are kept for reuse
+	 */
+	public void clear() {
+		timestamp = 0;
+		database = null;
+		schema = null;
+		table = null;
+		commandType = null;
+		transactionId = null;
+		position = null;
+		keyHash = 0;
+		keyColumns = Collections.emptyList();
+		metadata = null;
+		newValues.clear();
+		oldValues.clear();
+	}
+
+	/**
+	 * copies the other event into this one, reusing this event's column objects
+	 *
+	 * @param columns false to copy only the header fields
+	 */
+	public void copyFrom(ChangeEvent other, boolean columns) {
+		clear();
+		timestamp = other.timestamp;
+		database = other.database;
+		schema = other.schema;
+		table = other.table;
+		commandType = other.commandType;
+		transactionId = other.transactionId;
+		position = other.position;
+		keyHash = other.keyHash;
+		keyColumns = other.keyColumns;
+		metadata = other.metadata;
+		if (columns) {
+			newValues.addAll(other.newValues);
+			oldValues.addAll(other.oldValues);
+		}
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public void setTimestamp(long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	public String getDatabase() {
+		return database;
+	}
+
+	public void setDatabase(String database) {
+		this.database = database;
+	}
+
+	public String getSchema() {
+		return schema;
+	}
+
+	public void setSchema(String schema) {
+		this.schema = schema;
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	public void setTable(String table) {
+		this.table = table;
+	}
+
+	/**
+	 * @return database.schema.table of the changed object
+	 */
+	public String getTableKey() {
+		return database + "." + schema + "." + table;
+	}
+
+	public String getCommandType() {
+		return commandType;
+	}
+
+	public void setCommandType(String commandType) {
+		this.commandType = commandType;
+	}
+
+	public String getTransactionId() {
+		return transactionId;
+	}
+
+	public void setTransactionId(String transactionId) {
+		this.transactionId = transactionId;
+	}
+
+	public byte[] getPosition() {
+		return position;
+	}
+
+	public void setPosition(byte[] position) {
+		this.position = position;
+	}
+
+	/**
+	 * @return a hash of the table and its primary key values, equal for every change of the same row
+	 */
+	public int getKeyHash() {
+		return keyHash;
+	}
+
+	public void setKeyHash(int keyHash) {
+		this.keyHash = keyHash;
+	}
+
+	/**
+	 * @return the primary key columns of the table, empty if they are not known
+	 */
+	public List<String> getKeyColumns() {
+		return keyColumns;
+	}
+
+	public void setKeyColumns(List<String> keyColumns) {
+		this.keyColumns = keyColumns;
+	}
+
+	/**
+	 * @return the version of the table the columns were decoded with, null for events without columns
+	 */
+	public TableMetadata getMetadata() {
+		return metadata;
+	}
+
+	public void setMetadata(TableMetadata metadata) {
+		this.metadata = metadata;
+	}
+
+	public ColumnList getNewValues() {
+		return newValues;
+	}
+
+	public ColumnList getOldValues() {
+		return oldValues;
+	}
+
+	/**
+	 * @return the value of the column in the list, null if the column is not in it
+	 */
+	public static Column find(ColumnList columns, String name) {
+		for (int i = 0; i < columns.size(); i++) {
+			final Column column = columns.get(i);
+			if (name.equals(column.getName())) {
+				return column;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * list of columns that keeps its column objects across {@link #clear()}
+	 */
+	public static class ColumnList extends AbstractList<Column> {
+		private Column[] columns = new Column[16];
+		private int size = 0;
+
+		/**
+		 * @param name column name
+		 * @param oracleType the xstream column data type code
+		 * @param type the java type name the value was converted to
+		 * @param value the converted value
+		 */
+		public void add(String name, int oracleType, String type, Object value) {
+			if (size == columns.length) {
+				columns = Arrays.copyOf(columns, size * 2);
+			}
+			Column column = columns[size];
+			if (column == null) {
+				column = new Column();
+				columns[size] = column;
+			}
+			column.set(name, oracleType, type, value);
+			size++;
+		}
+
+		/**
+		 * copies the columns of the other list into this one
+		 */
+		public void addAll(ColumnList other) {
+			for (int i = 0; i < other.size; i++) {
+				addCopy(other.columns[i]);
+			}
+		}
+
+		/**
+		 * adds a copy of the column
+		 */
+		public void addCopy(Column column) {
+			add(column.name, column.oracleType, column.type, column.value);
+		}
+
+		@Override
+		public Column get(int index) {
+			if (index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return columns[index];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public void clear() {
+			for (int i = 0; i < size; i++) {
+				columns[i].set(null, 0, null, null);
+			}
+			size = 0;
+		}
+	}
+
+	public static class Column {
+		private String name;
+		private int oracleType;
+		private String type;
+		private Object value;
+
+		void set(String name, int oracleType, String type, Object value) {
+			this.name = name;
+			this.oracleType = oracleType;
+			this.type = type;
+			this.value = value;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getOracleType() {
+			return oracleType;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public Object getValue() {
+			return value;
+		}
+
+		public void setValue(Object value) {
+			this.value = value;
+		}
+	}
+
+}
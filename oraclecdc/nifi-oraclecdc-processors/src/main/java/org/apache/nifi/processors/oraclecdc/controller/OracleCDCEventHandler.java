@@ -1,13 +1,37 @@
 package org.apache.nifi.processors.oraclecdc.controller;
 
+/**
+ * Receives decoded change events. The event passed to a callback is reused for the next
+ * LCR once the callback returns, so implementations must copy anything they keep.
+ */
 public interface OracleCDCEventHandler {
 	
-	public void inserts(String events,byte[] position);
+	public void inserts(ChangeEvent event);
 	
-	public void updates(String events,byte[] position);
+	public void updates(ChangeEvent event);
 	
-	public void deletes(String events,byte[] position);
+	public void deletes(ChangeEvent event);
 	
-	public void other(String events,byte[] position);
+	public void commit(ChangeEvent event);
+	
+	public void other(ChangeEvent event);
+	
+	/**
+	 * receives the content of a LOB, LONG or XMLTYPE column chunk by chunk, before the row
+	 * event the column belongs to is delivered. The chunks of one column arrive in order.
+	 *
+	 * @param data chunk content, raw bytes for binary columns and UTF-8 for character columns
+	 * @param lastChunk true for the last chunk of the column
+	 * @return a reference to the column content, the reference returned for the last chunk
+	 *         is stored as the column value of the row event
+	 */
+	public String chunk(ChangeEvent event,String columnName,byte[] data,boolean lastChunk);
+	
+	/**
+	 * receives the position of LCRs that were not delivered because their table is not
+	 * captured, so the processed low watermark can move past them. Several skipped LCRs may
+	 * be reported by the position of the last one only.
+	 */
+	public void skipped(byte[] position);
 
 }
@@ -1,15 +1,72 @@
 package org.apache.nifi.processors.oraclecdc.controller;
 
+import java.util.List;
+import java.util.Map;
+
 import org.apache.nifi.controller.ControllerService;
 
 public interface OracleCDCService extends ControllerService {
 	
 	
 	public Object attach (String xstreamOutServerName,byte[] lastPostion);
+	
+	/**
+	 * attaches capturing only the tables and columns of the filter
+	 *
+	 * @param filter checked by the receiver before LCRs are decoded, null to capture everything
+	 */
+	public Object attach (String xstreamOutServerName,byte[] lastPostion,CaptureFilter filter);
 
-	public void receiveEvents(Object xsOutServer, OracleCDCEventHandler handler);
+	/**
+	 * delivers the change events received since the last call, without waiting for new ones
+	 *
+	 * @param maxEvents the maximum number of events to deliver
+	 * @return the number of events delivered
+	 */
+	public int receiveEvents(Object xsOutServer, OracleCDCEventHandler handler, int maxEvents);
 	
 	public void detach(Object xsOutServer);
 	
 	public void setProcessedLowWaterMark(Object xsOutServer,byte[] position);
+	
+	/**
+	 * @return the metrics of an attached outbound server, shared by the service and the processor
+	 */
+	public CaptureMetrics getMetrics(Object xsOutServer);
+	
+	/**
+	 * @return the metrics of the outbound servers currently attached through this service, by name
+	 */
+	public Map<String,CaptureMetrics> getMetrics();
+
+	/**
+	 * @return the current SCN of the database, which an initial load reads the tables as of
+	 */
+	public long getCurrentScn();
+	
+	/**
+	 * @return the xstream position to attach from to receive the transactions committed after the SCN
+	 */
+	public byte[] getPosition(long scn);
+	
+	/**
+	 * @return the tables the filter includes, as OWNER.TABLE sorted by name
+	 */
+	public List<String> listTables(CaptureFilter filter);
+	
+	/**
+	 * splits the rows a table held at the SCN into ROWID ranges read separately
+	 *
+	 * @param chunkRows the number of rows of a range
+	 */
+	public List<SnapshotChunk> planSnapshot(String owner, String table, long scn, int chunkRows);
+	
+	/**
+	 * reads the rows of a chunk as of its SCN on a pooled connection and delivers each of them
+	 * to the handler as an INSERT event, decoded like the rows of the LCRs
+	 *
+	 * @param filter the columns read, null for all
+	 * @return the number of rows delivered
+	 */
+	public long readSnapshot(SnapshotChunk chunk, CaptureFilter filter, OracleCDCEventHandler handler);
 }
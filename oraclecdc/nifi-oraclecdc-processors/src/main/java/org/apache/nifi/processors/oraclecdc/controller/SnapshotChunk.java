@@ -0,0 +1,71 @@
+package org.apache.nifi.processors.oraclecdc.controller;
+
+/**
+ * A range of the rows a table held at the SCN of an initial load. Ranges are ROWIDs as text;
+ * a chunk without bounds reads the whole table, which is how index organized tables, whose
+ * rows have no physical ROWID, are read. Instances are never changed.
+ */
+public class SnapshotChunk {
+
+	private final String owner;
+	private final String table;
+	private final long scn;
+	private final int index;
+	private final String lowRowid;
+	private final String highRowid;
+
+	/**
+	 * @param index the number of the chunk within its table, counted from 0
+	 * @param lowRowid the first ROWID of the chunk, null for an unbounded chunk
+	 * @param highRowid the last ROWID of the chunk, null for an unbounded chunk
+	 */
+	public SnapshotChunk(String owner, String table, long scn, int index, String lowRowid, String highRowid) {
+		this.owner = owner;
+		this.table = table;
+		this.scn = scn;
+		this.index = index;
+		this.lowRowid = lowRowid;
+		this.highRowid = highRowid;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * @return OWNER.TABLE
+	 */
+	public String getTableName() {
+		return owner + "." + table;
+	}
+
+	public long getScn() {
+		return scn;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public String getLowRowid() {
+		return lowRowid;
+	}
+
+	public String getHighRowid() {
+		return highRowid;
+	}
+
+	public boolean isBounded() {
+		return lowRowid != null && highRowid != null;
+	}
+
+	@Override
+	public String toString() {
+		return getTableName() + "#" + index + "@" + scn;
+	}
+
+}
@@ -0,0 +1,86 @@
+package org.apache.nifi.processors.oraclecdc.controller;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The columns seen so far for one version of a table. Instances are never changed once
+ * created; a column that appears for the first time produces a new version, so a version
+ * id always stands for the same list of columns.
+ */
+public class TableMetadata {
+
+	private final int version;
+	private final String tableKey;
+	private final String[] names;
+	private final int[] oracleTypes;
+	private final String[] types;
+	private final Map<String,Integer> index;
+
+	public TableMetadata(int version, String tableKey) {
+		this(version, tableKey, new String[0], new int[0], new String[0]);
+	}
+
+	private TableMetadata(int version, String tableKey, String[] names, int[] oracleTypes, String[] types) {
+		this.version = version;
+		this.tableKey = tableKey;
+		this.names = names;
+		this.oracleTypes = oracleTypes;
+		this.types = types;
+		this.index = new HashMap<String,Integer>(names.length * 2);
+		for (int i = 0; i < names.length; i++) {
+			index.put(names[i], i);
+		}
+	}
+
+	/**
+	 * @return a copy of this table with the column added, under the new version id
+	 */
+	public TableMetadata withColumn(int newVersion, String name, int oracleType, String type) {
+		final int size = names.length;
+		final String[] newNames = Arrays.copyOf(names, size + 1);
+		final int[] newOracleTypes = Arrays.copyOf(oracleTypes, size + 1);
+		final String[] newTypes = Arrays.copyOf(types, size + 1);
+		newNames[size] = name;
+		newOracleTypes[size] = oracleType;
+		newTypes[size] = type;
+		return new TableMetadata(newVersion, tableKey, newNames, newOracleTypes, newTypes);
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public String getTableKey() {
+		return tableKey;
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * @return the position of the column, or -1 if it has not been seen
+	 */
+	public int indexOf(String name) {
+		final Integer i = index.get(name);
+		return i == null ? -1 : i;
+	}
+
+	public String getName(int i) {
+		return names[i];
+	}
+
+	public int getOracleType(int i) {
+		return oracleTypes[i];
+	}
+
+	/**
+	 * @return the java type name values of the column are converted to
+	 */
+	public String getType(int i) {
+		return types[i];
+	}
+
+}
@@ -0,0 +1,484 @@
+package org.apache.nifi.processors.oraclecdc.controller.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.nifi.processors.oraclecdc.controller.CaptureFilter;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.apache.nifi.processors.oraclecdc.controller.OracleCDCEventHandler;
+import org.apache.nifi.processors.oraclecdc.controller.SnapshotChunk;
+import org.apache.nifi.processors.oraclecdc.controller.TableMetadata;
+import org.apache.nifi.processors.oraclecdc.utils.ColumnConverters;
+import org.apache.nifi.processors.oraclecdc.utils.PrimaryKeys;
+import org.apache.nifi.processors.oraclecdc.utils.XStreamBinding;
+
+/**
+ * Reads the rows of tables as of one SCN for an initial load, each chunk on its own pooled
+ * connection, so as many chunks run in parallel as the pool and the processor tasks allow.
+ * Column values are read as driver datums and decoded by the converters of the LCR path, so a
+ * row of the load carries the same names, types and values as the row of an INSERT LCR. LOB
+ * and LONG columns are streamed to the handler in chunks like the chunks of an LCR.
+ */
+class SnapshotReader {
+
+	private static final String SCN_QUERY = "SELECT CURRENT_SCN FROM V$DATABASE";
+	// the source database name of LCRs is the global name
+	private static final String DATABASE_QUERY = "SELECT GLOBAL_NAME FROM GLOBAL_NAME";
+	private static final String TABLES_QUERY = "SELECT owner, table_name FROM all_tables "
+			+ "WHERE temporary = 'N' AND nested = 'NO' AND secondary = 'N' ORDER BY owner, table_name";
+	// the optimizer statistics the rows per block are estimated from
+	private static final String TABLE_QUERY = "SELECT t.iot_type, t.num_rows, t.blocks, t.avg_row_len, s.block_size FROM all_tables t "
+			+ "LEFT JOIN dba_tablespaces s ON s.tablespace_name = t.tablespace_name WHERE t.owner = ? AND t.table_name = ?";
+	// the extents of every segment of the table, read from the dictionary without touching its rows
+	private static final String EXTENTS_QUERY = "SELECT o.data_object_id, e.relative_fno, e.block_id, e.blocks "
+			+ "FROM dba_extents e JOIN dba_objects o ON o.owner = e.owner AND o.object_name = e.segment_name "
+			+ "AND o.object_type = e.segment_type AND NVL(o.subobject_name, ' ') = NVL(e.partition_name, ' ') "
+			+ "WHERE e.owner = ? AND e.segment_name = ? AND e.segment_type IN ('TABLE', 'TABLE PARTITION', 'TABLE SUBPARTITION') "
+			+ "ORDER BY o.data_object_id, e.relative_fno, e.block_id";
+	// rows per block of a table without statistics
+	private static final long DEFAULT_ROWS_PER_BLOCK = 50;
+	// the base 64 digits of an extended ROWID
+	private static final String ROWID_DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+	// above the row number of any row of a block
+	private static final int MAX_ROW = 32767;
+	private static final String CHUNK_QUERY = "SELECT * FROM %s AS OF SCN ?";
+	private static final String ROWID_RANGE = " WHERE ROWID BETWEEN CHARTOROWID(?) AND CHARTOROWID(?)";
+	private static final int FETCH_SIZE = 1000;
+	private static final int LOB_CHUNK_SIZE = 64 * 1024;
+
+	private static final int KIND_STRING = 0;
+	private static final int KIND_DATUM = 1;
+	private static final int KIND_BINARY_LOB = 2;
+	private static final int KIND_CHARACTER_LOB = 3;
+
+	private final XStreamBinding binding;
+	private final DataSource dataSource;
+	private final PrimaryKeys primaryKeys;
+	private final ColumnConverters converters;
+	private final Map<String,Integer> typeCodes = new ConcurrentHashMap<String,Integer>();
+	// versions of the table metadata built for the chunks, unique within the load
+	private final AtomicInteger nextVersion = new AtomicInteger(1);
+	private volatile String database;
+
+	SnapshotReader(XStreamBinding binding, DataSource dataSource, PrimaryKeys primaryKeys, TimeZone databaseTimeZone) {
+		this.binding = binding;
+		this.dataSource = dataSource;
+		this.primaryKeys = primaryKeys;
+		this.converters = new ColumnConverters(binding, databaseTimeZone);
+	}
+
+	long currentScn() throws SQLException {
+		try (final Connection conn = dataSource.getConnection();
+				final PreparedStatement stmt = conn.prepareStatement(SCN_QUERY);
+				final ResultSet rs = stmt.executeQuery()) {
+			rs.next();
+			return rs.getLong(1);
+		}
+	}
+
+	List<String> listTables(CaptureFilter filter) throws SQLException {
+		final List<String> tables = new ArrayList<String>();
+		try (final Connection conn = dataSource.getConnection();
+				final PreparedStatement stmt = conn.prepareStatement(TABLES_QUERY);
+				final ResultSet rs = stmt.executeQuery()) {
+			while (rs.next()) {
+				if (filter == null || filter.includesTable(rs.getString(1), rs.getString(2))) {
+					tables.add(rs.getString(1) + "." + rs.getString(2));
+				}
+			}
+		}
+		return tables;
+	}
+
+	/**
+	 * splits a table into ROWID ranges of about chunkRows rows from its extents and statistics,
+	 * which only reads the dictionary. A range may hold more or fewer rows where the statistics
+	 * are stale or the rows are not spread evenly over the blocks.
+	 */
+	List<SnapshotChunk> plan(String owner, String table, long scn, int chunkRows) throws SQLException {
+		try (final Connection conn = dataSource.getConnection()) {
+			final long rowsPerBlock;
+			try (final PreparedStatement stmt = conn.prepareStatement(TABLE_QUERY)) {
+				stmt.setString(1, owner);
+				stmt.setString(2, table);
+				try (final ResultSet rs = stmt.executeQuery()) {
+					if (!rs.next()) {
+						return new ArrayList<SnapshotChunk>();
+					}
+					if (rs.getString(1) != null) {
+						// rows of an index organized table have logical ROWIDs, which do not form ranges
+						return new ArrayList<SnapshotChunk>(Arrays.asList(new SnapshotChunk(owner, table, scn, 0, null, null)));
+					}
+					rowsPerBlock = rowsPerBlock(rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5));
+				}
+			}
+			final List<long[]> extents = new ArrayList<long[]>();
+			try (final PreparedStatement stmt = conn.prepareStatement(EXTENTS_QUERY)) {
+				stmt.setString(1, owner);
+				stmt.setString(2, table);
+				try (final ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						extents.add(new long[] {rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)});
+					}
+				}
+			}
+			return ranges(owner, table, scn, extents, Math.max(1, (chunkRows + rowsPerBlock - 1) / rowsPerBlock));
+		}
+	}
+
+	/**
+	 * @return the rows per block from the row and block counts, else from the row length, else a default
+	 */
+	static long rowsPerBlock(long rows, long blocks, long rowLength, long blockSize) {
+		if (rows > 0 && blocks > 0) {
+			return Math.max(1, (rows + blocks - 1) / blocks);
+		}
+		if (rowLength > 0 && blockSize > 0) {
+			return Math.max(1, blockSize / rowLength);
+		}
+		return DEFAULT_ROWS_PER_BLOCK;
+	}
+
+	/**
+	 * groups extents in ROWID order into ranges of chunkBlocks blocks, splitting larger extents.
+	 * A range does not span segments.
+	 *
+	 * @param extents data object id, relative file number, first block and blocks of each extent
+	 */
+	static List<SnapshotChunk> ranges(String owner, String table, long scn, List<long[]> extents, long chunkBlocks) {
+		final List<SnapshotChunk> chunks = new ArrayList<SnapshotChunk>();
+		long object = 0;
+		long firstFile = 0;
+		long firstBlock = 0;
+		long lastFile = 0;
+		long lastBlock = 0;
+		long blocks = 0;
+		for (long[] extent : extents) {
+			if (blocks > 0 && extent[0] != object) {
+				chunks.add(new SnapshotChunk(owner, table, scn, chunks.size(), rowid(object, firstFile, firstBlock, 0),
+						rowid(object, lastFile, lastBlock, MAX_ROW)));
+				blocks = 0;
+			}
+			long block = extent[2];
+			long left = extent[3];
+			while (left > 0) {
+				if (blocks == 0) {
+					object = extent[0];
+					firstFile = extent[1];
+					firstBlock = block;
+				}
+				final long taken = Math.min(left, chunkBlocks - blocks);
+				blocks += taken;
+				block += taken;
+				left -= taken;
+				lastFile = extent[1];
+				lastBlock = block - 1;
+				if (blocks == chunkBlocks) {
+					chunks.add(new SnapshotChunk(owner, table, scn, chunks.size(), rowid(object, firstFile, firstBlock, 0),
+							rowid(object, lastFile, lastBlock, MAX_ROW)));
+					blocks = 0;
+				}
+			}
+		}
+		if (blocks > 0) {
+			chunks.add(new SnapshotChunk(owner, table, scn, chunks.size(), rowid(object, firstFile, firstBlock, 0),
+					rowid(object, lastFile, lastBlock, MAX_ROW)));
+		}
+		return chunks;
+	}
+
+	/**
+	 * @return the extended ROWID, like DBMS_ROWID.ROWID_CREATE: 6 digits data object id, 3 relative
+	 * file number, 6 block and 3 row
+	 */
+	static String rowid(long object, long file, long block, int row) {
+		final StringBuilder rowid = new StringBuilder(18);
+		digits(rowid, object, 6);
+		digits(rowid, file, 3);
+		digits(rowid, block, 6);
+		digits(rowid, row, 3);
+		return rowid.toString();
+	}
+
+	private static void digits(StringBuilder rowid, long value, int count) {
+		for (int i = count - 1; i >= 0; i--) {
+			rowid.append(ROWID_DIGITS.charAt((int) ((value >> (6 * i)) & 63)));
+		}
+	}
+
+	long read(SnapshotChunk chunk, CaptureFilter filter, OracleCDCEventHandler handler) throws Throwable {
+		final byte[] position = binding.convertSCNToPosition(chunk.getScn());
+		final String sql = String.format(CHUNK_QUERY, quote(chunk.getOwner(), chunk.getTable()))
+				+ (chunk.isBounded() ? ROWID_RANGE : "");
+		final ChangeEvent event = new ChangeEvent();
+		event.setDatabase(database());
+		event.setSchema(chunk.getOwner());
+		event.setTable(chunk.getTable());
+		final Set<String> projected = projection(filter, event);
+		try (final Connection conn = dataSource.getConnection();
+				final PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.setFetchSize(FETCH_SIZE);
+			stmt.setLong(1, chunk.getScn());
+			if (chunk.isBounded()) {
+				stmt.setString(2, chunk.getLowRowid());
+				stmt.setString(3, chunk.getHighRowid());
+			}
+			final long readTime = System.currentTimeMillis();
+			try (final ResultSet rs = stmt.executeQuery()) {
+				final Column[] columns = describe(rs.getMetaData(), projected);
+				final TableMetadata metadata = metadata(event.getTableKey(), columns);
+				final Object oracleResultSet = binding.unwrapResultSet(rs);
+				long rows = 0;
+				while (rs.next()) {
+					event.clear();
+					event.setDatabase(database);
+					event.setSchema(chunk.getOwner());
+					event.setTable(chunk.getTable());
+					event.setCommandType("INSERT");
+					event.setPosition(position);
+					event.setTimestamp(readTime);
+					event.setMetadata(metadata);
+					for (Column column : columns) {
+						read(rs, oracleResultSet, column, event, handler);
+					}
+					if (primaryKeys != null) {
+						event.setKeyHash(primaryKeys.hash(event));
+						event.setKeyColumns(primaryKeys.getKeyColumns(event));
+					}
+					handler.inserts(event);
+					rows++;
+				}
+				return rows;
+			}
+		}
+	}
+
+	private String database() throws SQLException {
+		if (database == null) {
+			try (final Connection conn = dataSource.getConnection();
+					final PreparedStatement stmt = conn.prepareStatement(DATABASE_QUERY);
+					final ResultSet rs = stmt.executeQuery()) {
+				rs.next();
+				database = rs.getString(1);
+			}
+		}
+		return database;
+	}
+
+	/**
+	 * @return the columns read, with the key columns the partition hash needs, null for all
+	 */
+	private Set<String> projection(CaptureFilter filter, ChangeEvent event) {
+		final Set<String> projected = filter == null ? null : filter.getColumns(event.getSchema(), event.getTable());
+		if (projected == null || primaryKeys == null) {
+			return projected;
+		}
+		final Set<String> withKeys = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		withKeys.addAll(projected);
+		withKeys.addAll(primaryKeys.getKeyColumns(event));
+		return withKeys;
+	}
+
+	private Column[] describe(ResultSetMetaData metaData, Set<String> projected) throws SQLException {
+		final List<Column> columns = new ArrayList<Column>();
+		for (int i = 1; i <= metaData.getColumnCount(); i++) {
+			final String name = metaData.getColumnName(i);
+			if (projected != null && !projected.contains(name)) {
+				continue;
+			}
+			final String typeName = metaData.getColumnTypeName(i);
+			switch (typeName) {
+			case "BLOB":
+			case "LONG RAW":
+				columns.add(new Column(i, name, KIND_BINARY_LOB, binding.chunkTypeOf(typeName.replace(" ", ""))));
+				break;
+			case "CLOB":
+			case "NCLOB":
+			case "LONG":
+				columns.add(new Column(i, name, KIND_CHARACTER_LOB, binding.chunkTypeOf(typeName)));
+				break;
+			default:
+				final String xstreamType = xstreamType(typeName);
+				columns.add(new Column(i, name, "CHAR".equals(xstreamType) ? KIND_STRING : KIND_DATUM, typeCode(xstreamType)));
+				break;
+			}
+		}
+		return columns.toArray(new Column[columns.size()]);
+	}
+
+	/**
+	 * @return the name of the ColumnValue type constant of LCR columns of the SQL type
+	 */
+	static String xstreamType(String typeName) {
+		switch (typeName) {
+		case "NUMBER":
+		case "FLOAT":
+			return "NUMBER";
+		case "DATE":
+		case "RAW":
+		case "BINARY_FLOAT":
+		case "BINARY_DOUBLE":
+		case "INTERVALYM":
+		case "INTERVALDS":
+			return typeName;
+		case "TIMESTAMP WITH TIME ZONE":
+			return "TIMESTAMPTZ";
+		case "TIMESTAMP WITH LOCAL TIME ZONE":
+			return "TIMESTAMPLTZ";
+		default:
+			return typeName.startsWith("TIMESTAMP") ? "TIMESTAMP" : "CHAR";
+		}
+	}
+
+	private int typeCode(String xstreamType) {
+		Integer code = typeCodes.get(xstreamType);
+		if (code == null) {
+			try {
+				code = binding.getColumnValueClass().getField(xstreamType).getInt(null);
+			} catch (ReflectiveOperationException e) {
+				code = -1;
+			}
+			typeCodes.put(xstreamType, code);
+		}
+		return code;
+	}
+
+	private TableMetadata metadata(String tableKey, Column[] columns) {
+		final int version = nextVersion.getAndIncrement();
+		TableMetadata metadata = new TableMetadata(version, tableKey);
+		for (Column column : columns) {
+			// LOB references are not part of the table schema, as with LCRs
+			if (column.kind == KIND_STRING || column.kind == KIND_DATUM) {
+				metadata = metadata.withColumn(version, column.name, column.type, converters.get(column.type).getType());
+			}
+		}
+		return metadata;
+	}
+
+	private void read(ResultSet rs, Object oracleResultSet, Column column, ChangeEvent event, OracleCDCEventHandler handler)
+			throws Throwable {
+		switch (column.kind) {
+		case KIND_STRING:
+			final String value = rs.getString(column.index);
+			if (value != null) {
+				event.getNewValues().add(column.name, column.type, "String", value);
+			}
+			break;
+		case KIND_DATUM:
+			final Object datum = binding.getOracleObject(oracleResultSet, column.index);
+			if (datum != null) {
+				final ColumnConverters.Converter converter = converters.get(column.type);
+				event.getNewValues().add(column.name, column.type, converter.getType(), converter.convert(datum));
+			}
+			break;
+		case KIND_BINARY_LOB:
+			try (final InputStream in = rs.getBinaryStream(column.index)) {
+				if (in != null) {
+					final byte[] buffer = new byte[LOB_CHUNK_SIZE];
+					stream(column, event, handler, () -> readBytes(in, buffer));
+				}
+			}
+			break;
+		default:
+			try (final Reader in = rs.getCharacterStream(column.index)) {
+				if (in != null) {
+					final char[] buffer = new char[LOB_CHUNK_SIZE];
+					stream(column, event, handler, () -> readChars(in, buffer));
+				}
+			}
+			break;
+		}
+	}
+
+	private interface PieceReader {
+		/**
+		 * @return the next piece, empty at the end
+		 */
+		byte[] next() throws IOException;
+	}
+
+	/**
+	 * hands the pieces to the handler, marking the last one, and adds the reference it returns
+	 */
+	private static void stream(Column column, ChangeEvent event, OracleCDCEventHandler handler, PieceReader pieces) throws IOException {
+		byte[] piece = pieces.next();
+		String reference;
+		while (true) {
+			final byte[] next = piece.length == 0 ? piece : pieces.next();
+			reference = handler.chunk(event, column.name, piece, next.length == 0);
+			if (next.length == 0) {
+				break;
+			}
+			piece = next;
+		}
+		event.getNewValues().add(column.name, ChangeEvent.lobType(column.type), "LOB", reference);
+	}
+
+	private static byte[] readBytes(InputStream in, byte[] buffer) throws IOException {
+		int length = 0;
+		for (int read; length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) > 0;) {
+			length += read;
+		}
+		return Arrays.copyOf(buffer, length);
+	}
+
+	private static byte[] readChars(Reader in, char[] buffer) throws IOException {
+		// one char is kept free for the low half of a surrogate pair, which must not be split
+		int length = 0;
+		for (int read; length < buffer.length - 1 && (read = in.read(buffer, length, buffer.length - 1 - length)) > 0;) {
+			length += read;
+		}
+		if (length > 0 && Character.isHighSurrogate(buffer[length - 1])) {
+			final int low = in.read();
+			if (low >= 0) {
+				buffer[length++] = (char) low;
+			}
+		}
+		return new String(buffer, 0, length).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String quote(String owner, String table) {
+		return quote(owner) + "." + quote(table);
+	}
+
+	private static String quote(String identifier) {
+		return "\"" + identifier.replace("\"", "\"\"") + "\"";
+	}
+
+	/**
+	 * a column of the chunk query and how its values are read
+	 */
+	private static class Column {
+		final int index;
+		final String name;
+		final int kind;
+		// the ColumnValue type, or the ChunkColumnValue type for LOBs
+		final int type;
+
+		Column(int index, String name, int kind, int type) {
+			this.index = index;
+			this.name = name;
+			this.kind = kind;
+			this.type = type;
+		}
+	}
+
+}
@@ -1,29 +1,39 @@
 package org.apache.nifi.processors.oraclecdc.controller.impl;
 
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.net.MalformedURLException;
-import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.codec.binary.Base32;
 import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.nifi.annotation.lifecycle.OnDisabled;
 import org.apache.nifi.annotation.lifecycle.OnEnabled;
 import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationResult;
 import org.apache.nifi.controller.AbstractControllerService;
 import org.apache.nifi.controller.ConfigurationContext;
 import org.apache.nifi.expression.AttributeExpression;
 import org.apache.nifi.expression.ExpressionLanguageScope;
+import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.processor.util.StandardValidators;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureFilter;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureMetrics;
 import org.apache.nifi.processors.oraclecdc.controller.OracleCDCEventHandler;
 import org.apache.nifi.processors.oraclecdc.controller.OracleCDCService;
-import org.apache.nifi.processors.oraclecdc.utils.LCRCallBackHandler;
+import org.apache.nifi.processors.oraclecdc.controller.SnapshotChunk;
+import org.apache.nifi.processors.oraclecdc.utils.EventRingBuffer;
+import org.apache.nifi.processors.oraclecdc.utils.PrimaryKeys;
+import org.apache.nifi.processors.oraclecdc.utils.XStreamBinding;
 import org.apache.nifi.reporting.InitializationException;
 import org.apache.nifi.util.file.classloader.ClassLoaderUtils;
 
@@ -113,6 +123,85 @@ public class StandardOracleCDCService extends AbstractControllerService implemen
 	            .expressionLanguageSupported(ExpressionLanguageScope.VARIABLE_REGISTRY)
 	            .build();
 	
+	    public static final PropertyDescriptor RECEIVE_BUFFER_SIZE = new PropertyDescriptor.Builder()
+	            .name("RECEIVE_BUFFER_SIZE")
+	            .displayName("Receive Buffer Size")
+	            .description("The number of change events the receiver thread of an outbound server can decode ahead "
+	                + "of the processor. The receiver stops reading from the outbound server while the buffer is full.")
+	            .defaultValue("10000")
+	            .required(true)
+	            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+	            .build();
+	
+	    public static final PropertyDescriptor RECEIVE_BUFFER_DATA_SIZE = new PropertyDescriptor.Builder()
+	            .name("RECEIVE_BUFFER_DATA_SIZE")
+	            .displayName("Receive Buffer Data Size")
+	            .description("The LOB, LONG and XMLTYPE chunk content the receive buffer of an outbound server can hold. The receiver "
+	                + "stops reading from the outbound server while it is reached, as on a full buffer; a larger chunk is buffered alone.")
+	            .defaultValue("64 MB")
+	            .required(true)
+	            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+	            .build();
+	
+	    public static final PropertyDescriptor PRIMARY_KEYS = new PropertyDescriptor.Builder()
+	            .name("PRIMARY_KEYS")
+	            .displayName("Primary Key Columns")
+	            .description("Key columns used to hash row changes into partitions, as OWNER.TABLE=COLUMN[,COLUMN...] entries "
+	                + "separated by semicolons. The primary key of a table that is not listed is looked up in the data dictionary.")
+	            .required(false)
+	            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+	            .build();
+	
+	    public static final PropertyDescriptor RECONNECT_ATTEMPTS = new PropertyDescriptor.Builder()
+	            .name("RECONNECT_ATTEMPTS")
+	            .displayName("Reconnect Attempts")
+	            .description("The number of times an outbound server is attached again after its session broke, for example on a "
+	                + "network failure or a RAC failover, before the failure is raised to the processor. The server is attached from "
+	                + "the last processed position and changes already received are not emitted twice. Zero raises the failure right away.")
+	            .defaultValue("10")
+	            .required(true)
+	            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+	            .build();
+	
+	    public static final PropertyDescriptor RECONNECT_MAX_BACKOFF = new PropertyDescriptor.Builder()
+	            .name("RECONNECT_MAX_BACKOFF")
+	            .displayName("Max Reconnect Backoff")
+	            .description("The longest wait between two attempts to attach an outbound server again. The first wait is half a second "
+	                + "and doubles with every failed attempt up to this value.")
+	            .defaultValue("30 sec")
+	            .required(true)
+	            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+	            .build();
+	
+	    public static final PropertyDescriptor STANDBY_CONNECTION = new PropertyDescriptor.Builder()
+	            .name("STANDBY_CONNECTION")
+	            .displayName("Standby Connection")
+	            .description("Keeps one connection open ahead of time that the next attach, or reattach after a failure, takes instead of "
+	                + "logging in to the database. It is validated before use and replaced in the background.")
+	            .allowableValues("true", "false")
+	            .defaultValue("false")
+	            .required(true)
+	            .build();
+	
+	    public static final PropertyDescriptor DB_TIME_ZONE = new PropertyDescriptor.Builder()
+	            .name("DB_TIME_ZONE")
+	            .displayName("Database Time Zone")
+	            .description("The time zone of the database, as returned by SELECT DBTIMEZONE FROM DUAL, for example +00:00 or "
+	                + "Europe/Berlin. TIMESTAMP WITH LOCAL TIME ZONE values are stored normalized to this zone and are read in it.")
+	            .defaultValue("+00:00")
+	            .required(true)
+	            .addValidator((subject, input, validationContext) -> {
+	                String explanation = null;
+	                try {
+	                    ZoneId.of(input);
+	                } catch (final DateTimeException e) {
+	                    explanation = e.getMessage();
+	                }
+	                return new ValidationResult.Builder().subject(subject).input(input)
+	                        .valid(explanation == null).explanation(explanation).build();
+	            })
+	            .build();
+
 	    private static final List<PropertyDescriptor> properties;
 
 	    protected ClassLoader driverClassLoader;
@@ -127,11 +216,28 @@ public class StandardOracleCDCService extends AbstractControllerService implemen
 	        props.add(MAX_TOTAL_CONNECTIONS);
 	        props.add(MAX_IDLE);
 	        props.add(MIN_IDLE);
+	        props.add(RECEIVE_BUFFER_SIZE);
+	        props.add(RECEIVE_BUFFER_DATA_SIZE);
+	        props.add(PRIMARY_KEYS);
+	        props.add(RECONNECT_ATTEMPTS);
+	        props.add(RECONNECT_MAX_BACKOFF);
+	        props.add(STANDBY_CONNECTION);
+	        props.add(DB_TIME_ZONE);
 
 	        properties = Collections.unmodifiableList(props);
 	    }
 
 	    private volatile BasicDataSource dataSource;
+	    private volatile XStreamBinding binding;
+	    private volatile int receiveBufferSize;
+	    private volatile long receiveBufferBytes;
+	    private volatile PrimaryKeys primaryKeys;
+	    private volatile XStreamConnector connector;
+	    private volatile int reconnectAttempts;
+	    private volatile long reconnectMaxBackoff;
+	    private volatile TimeZone databaseTimeZone;
+	    private volatile SnapshotReader snapshotReader;
+	    private final Map<String,CaptureMetrics> metrics = new ConcurrentHashMap<String,CaptureMetrics>();
 	    //private volatile String dbUrl;
 	    
 	    @Override
@@ -193,72 +299,99 @@ public class StandardOracleCDCService extends AbstractControllerService implemen
 	        context.getProperties().keySet().stream().filter(PropertyDescriptor::isDynamic)
 	                .forEach((dynamicPropDescriptor) -> dataSource.addConnectionProperty(dynamicPropDescriptor.getName(),
 	                        context.getProperty(dynamicPropDescriptor).evaluateAttributeExpressions().getValue()));
-	    	
+
+	        receiveBufferSize = context.getProperty(RECEIVE_BUFFER_SIZE).asInteger();
+	        receiveBufferBytes = context.getProperty(RECEIVE_BUFFER_DATA_SIZE).asDataSize(DataUnit.B).longValue();
+	        primaryKeys = new PrimaryKeys(PrimaryKeys.parse(context.getProperty(PRIMARY_KEYS).getValue()), dataSource, getLogger());
+	        reconnectAttempts = context.getProperty(RECONNECT_ATTEMPTS).asInteger();
+	        reconnectMaxBackoff = context.getProperty(RECONNECT_MAX_BACKOFF).asTimePeriod(TimeUnit.MILLISECONDS);
+	        databaseTimeZone = TimeZone.getTimeZone(ZoneId.of(context.getProperty(DB_TIME_ZONE).getValue()));
+
+	        try {
+	            binding = new XStreamBinding(this.driverClassLoader);
+	        } catch (final ReflectiveOperationException e) {
+	            throw new InitializationException("Can't resolve xstream classes from the driver location", e);
+	        }
+	        connector = new XStreamConnector(dataSource, context.getProperty(STANDBY_CONNECTION).asBoolean(), getLogger());
+	        snapshotReader = new SnapshotReader(binding, dataSource, primaryKeys, databaseTimeZone);
+	    }
+	
+	    /**
+	     * closes the standby connection and the pool, outbound servers are detached by their processors when stopped
+	     */
+	    @OnDisabled
+	    public void onDisabled() {
+	        if (connector != null) {
+	            connector.shutdown();
+	            connector = null;
+	        }
+	        if (dataSource != null) {
+	            try {
+	                dataSource.close();
+	            } catch (final SQLException e) {
+	                getLogger().warn("cannot close the connection pool", e);
+	            }
+	            dataSource = null;
+	        }
 	    }
 	
 	@Override
-	public void receiveEvents(Object xsOut, OracleCDCEventHandler handler) {
+	public int receiveEvents(Object xsOut, OracleCDCEventHandler handler, int maxEvents) {
 		if (null == xsOut)
         {
           getLogger().info("xstreamOut is null");
-          return;
+          return 0;
         }
-     
-        try
+		final XStreamReceiver receiver = (XStreamReceiver) xsOut;
+		final EventRingBuffer buffer = receiver.getBuffer();
+		final int drained = buffer.drain(handler, maxEvents);
+		if (drained == 0 && receiver.getFailure() != null)
         {
-          	  LCRCallBackHandler hdlr =  new LCRCallBackHandler(this.driverClassLoader,handler);
-        	  Object proxy=Proxy.newProxyInstance(this.driverClassLoader,
-        			new Class[] {loadClass("oracle.streams.XStreamLCRCallbackHandler")},hdlr);
-          	  Class<?> xstreamOut = loadClass("oracle.streams.XStreamOut");
-          	  Method method = xstreamOut.getMethod("receiveLCRCallback", loadClass("oracle.streams.XStreamLCRCallbackHandler"),int.class);
-          	  method.invoke(xsOut, proxy,loadClass("oracle.streams.XStreamOut").getDeclaredField("DEFAULT_MODE").getInt(null));
-          	  System.out.print("done");
-        }
-        catch(Exception e)
-        { 
-          e.printStackTrace();
+          final Throwable e = receiver.getFailure();
           getLogger().warn("exception when processing LCRs");
           getLogger().warn(e.getMessage());
-          throw new ProcessException("exception when processing LCRs "+e.getMessage());
+          throw new ProcessException("exception when processing LCRs "+e.getMessage(), e);
         }
+		return drained;
 	}
 	
 	
 	@Override
 	public void setProcessedLowWaterMark(Object xsOutServer,byte[] position){
-		try{
-		System.out.println(new String(new Base32(true).encode(position)));
-		Class<?> xstreamOut = loadClass("oracle.streams.XStreamOut");
-  		Method method = xstreamOut.getMethod("setProcessedLowWatermark",byte[].class, int.class);
-      	method.invoke(xsOutServer,position,loadClass("oracle.streams.XStreamOut").getDeclaredField("DEFAULT_MODE").getInt(null));
-		}catch(Exception e)
-        { 
-	          e.printStackTrace();
-	          getLogger().warn("exception when set low watermark");
-	          getLogger().warn(e.getMessage());
-	          throw new ProcessException("exception when setting low water mark "+e.getMessage());
-	        }
+		((XStreamReceiver) xsOutServer).setProcessedLowWatermark(position);
+	}
+	
+	@Override
+	public CaptureMetrics getMetrics(Object xsOutServer){
+		return ((XStreamReceiver) xsOutServer).getMetrics();
+	}
+	
+	@Override
+	public Map<String,CaptureMetrics> getMetrics(){
+		return Collections.unmodifiableMap(metrics);
 	}
 	
 	
 	
 	@Override
 	public Object attach(String xsOutName,byte[] lastPosition){
+		return attach(xsOutName, lastPosition, null);
+	}
+	
+	@Override
+	public Object attach(String xsOutName,byte[] lastPosition,CaptureFilter filter){
     	getLogger().info("in attach");
    	 try
    	    {
-   		 final Connection conn = getConnection();
-   		 Class<?> xstreamOut = loadClass("oracle.streams.XStreamOut");
-   		 Method method = xstreamOut.getMethod("attach", loadClass("oracle.jdbc.OracleConnection"),String.class,byte[].class,int.class);
-   		 Object xsOut = method.invoke(null,conn.unwrap(loadClass("oracle.jdbc.OracleConnection")),xsOutName,lastPosition, 
-   				 xstreamOut.getDeclaredField("DEFAULT_MODE").getInt(null)); 
-   		 return xsOut;
+   		 final XStreamReceiver receiver = new XStreamReceiver(binding, connector, xsOutName, lastPosition, receiveBufferSize, receiveBufferBytes, primaryKeys,
+   				 filter, databaseTimeZone, reconnectAttempts, reconnectMaxBackoff, getLogger());
+   		 receiver.start();
+   		 metrics.put(xsOutName, receiver.getMetrics());
+   		 return receiver;
    	    }
-   	    catch(Exception e)
+   	    catch(Throwable e)
    	    {
-   	      System.out.println("cannot attach to outbound server: "+xsOutName);
-   	      getLogger().error(e.getMessage());
-   	      e.printStackTrace();
+   	      getLogger().error("cannot attach to outbound server: "+xsOutName, e);
    	      throw new ProcessException("cannot attach to outbound server: "+xsOutName);
    	    }
     }
@@ -267,11 +400,11 @@ public class StandardOracleCDCService extends AbstractControllerService implemen
 	public void detach(Object xsOut) {
 		try
         {
-    	  Class xstreamOut = loadClass("oracle.streams.XStreamOut");
-    	  Method method = xstreamOut.getDeclaredMethod("detach", int.class);
-    	  method.invoke(xsOut, xstreamOut.getDeclaredField("DEFAULT_MODE").getInt(null));
+    	  final XStreamReceiver receiver = (XStreamReceiver) xsOut;
+    	  metrics.remove(receiver.getMetrics().getName(), receiver.getMetrics());
+    	  receiver.stop();
         }
-        catch(Exception e)
+        catch(Throwable e)
         {
           getLogger().info("cannot detach from the outbound server: ");
           throw new ProcessException("cannot detach from the outbound server: ");
@@ -279,14 +412,74 @@ public class StandardOracleCDCService extends AbstractControllerService implemen
 		
 	}
 	
-    private Connection getConnection() throws ProcessException {
-        try {
-            final Connection con = dataSource.getConnection();
-            return con;
-        } catch (final SQLException e) {
-            throw new ProcessException(e);
+	@Override
+	public long getCurrentScn() {
+		try
+        {
+		  return snapshotReader.currentScn();
         }
-    }
+        catch(SQLException e)
+        {
+          getLogger().error("cannot read the current SCN", e);
+          throw new ProcessException("cannot read the current SCN", e);
+        }
+	}
+	
+	@Override
+	public byte[] getPosition(long scn) {
+		try
+        {
+		  return binding.convertSCNToPosition(scn);
+        }
+        catch(Throwable e)
+        {
+          getLogger().error("cannot convert SCN "+scn+" to a position", e);
+          throw new ProcessException("cannot convert SCN "+scn+" to a position", e);
+        }
+	}
+	
+	@Override
+	public List<String> listTables(CaptureFilter filter) {
+		try
+        {
+		  return snapshotReader.listTables(filter);
+        }
+        catch(SQLException e)
+        {
+          getLogger().error("cannot list the tables to load", e);
+          throw new ProcessException("cannot list the tables to load", e);
+        }
+	}
+	
+	@Override
+	public List<SnapshotChunk> planSnapshot(String owner, String table, long scn, int chunkRows) {
+		try
+        {
+		  return snapshotReader.plan(owner, table, scn, chunkRows);
+        }
+        catch(SQLException e)
+        {
+          getLogger().error("cannot split "+owner+"."+table+" into chunks", e);
+          throw new ProcessException("cannot split "+owner+"."+table+" into chunks", e);
+        }
+	}
+	
+	@Override
+	public long readSnapshot(SnapshotChunk chunk, CaptureFilter filter, OracleCDCEventHandler handler) {
+		try
+        {
+		  return snapshotReader.read(chunk, filter, handler);
+        }
+        catch(ProcessException e)
+        {
+          throw e;
+        }
+        catch(Throwable e)
+        {
+          getLogger().error("cannot read snapshot chunk "+chunk, e);
+          throw new ProcessException("cannot read snapshot chunk "+chunk, e);
+        }
+	}
 	
 	/**
      * using Thread.currentThread().getContextClassLoader(); will ensure that you are using the ClassLoader for you NAR.
@@ -327,9 +520,6 @@ public class StandardOracleCDCService extends AbstractControllerService implemen
         }
         
     }
-    private Class<?> loadClass(String className) throws ClassNotFoundException{
-    	return Class.forName(className,false,this.driverClassLoader);
-    }
 
 
 }
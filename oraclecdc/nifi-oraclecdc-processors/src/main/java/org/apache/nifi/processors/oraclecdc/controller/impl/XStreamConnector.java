@@ -0,0 +1,134 @@
+package org.apache.nifi.processors.oraclecdc.controller.impl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.nifi.logging.ComponentLog;
+
+/**
+ * Hands out the pooled connections outbound servers are attached with. With a standby it keeps
+ * one authenticated connection open ahead of time and replaces it in the background once taken,
+ * so reattaching after a failover does not wait for a new session to be established.
+ */
+class XStreamConnector {
+
+	private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+	private final BasicDataSource dataSource;
+	private final ComponentLog logger;
+	private final ExecutorService executor;
+	private final AtomicReference<Connection> standby = new AtomicReference<Connection>();
+	private volatile boolean shutdown = false;
+
+	/**
+	 * @param keepStandby opens the first standby connection right away
+	 */
+	XStreamConnector(BasicDataSource dataSource, boolean keepStandby, ComponentLog logger) {
+		this.dataSource = dataSource;
+		this.logger = logger;
+		if (keepStandby) {
+			this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "OracleCDC standby connection");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			prepareStandby();
+		} else {
+			this.executor = null;
+		}
+	}
+
+	/**
+	 * @return the standby connection if it is still valid, otherwise a new one from the pool
+	 */
+	Connection connect() throws SQLException {
+		if (executor == null) {
+			return dataSource.getConnection();
+		}
+		final Connection spare = standby.getAndSet(null);
+		prepareStandby();
+		if (spare != null) {
+			if (isValid(spare)) {
+				return spare;
+			}
+			// opened on the node that failed
+			invalidate(spare);
+		}
+		return dataSource.getConnection();
+	}
+
+	private void prepareStandby() {
+		if (shutdown) {
+			return;
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (shutdown || standby.get() != null) {
+					return;
+				}
+				try {
+					final Connection connection = dataSource.getConnection();
+					if (shutdown || !standby.compareAndSet(null, connection)) {
+						release(connection);
+					}
+				} catch (SQLException e) {
+					logger.warn("cannot open the standby connection, it is opened again with the next attach", e);
+				}
+			}
+		});
+	}
+
+	private static boolean isValid(Connection connection) {
+		try {
+			return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * returns a connection to the pool
+	 */
+	void release(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			logger.warn("cannot return a connection to the pool", e);
+		}
+	}
+
+	/**
+	 * drops a connection whose session broke from the pool
+	 */
+	void invalidate(Connection connection) {
+		try {
+			dataSource.invalidateConnection(connection);
+		} catch (IllegalStateException e) {
+			logger.warn("cannot drop a broken connection from the pool", e);
+		}
+	}
+
+	/**
+	 * closes the standby connection, connections handed out are released by their users
+	 */
+	void shutdown() {
+		shutdown = true;
+		if (executor != null) {
+			executor.shutdownNow();
+			final Connection spare = standby.getAndSet(null);
+			if (spare != null) {
+				release(spare);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,276 @@
+package org.apache.nifi.processors.oraclecdc.controller.impl;
+
+import java.sql.Connection;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureFilter;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureMetrics;
+import org.apache.nifi.processors.oraclecdc.utils.EventRingBuffer;
+import org.apache.nifi.processors.oraclecdc.utils.LCRCallBackHandler;
+import org.apache.nifi.processors.oraclecdc.utils.PrimaryKeys;
+import org.apache.nifi.processors.oraclecdc.utils.XStreamBinding;
+
+/**
+ * Owns an attached outbound server and receives its LCRs on a dedicated thread, decoding
+ * them into a ring buffer that the processor drains. All calls on the xstream handle,
+ * including setting the processed low watermark, are made from the receiver thread.
+ * <p>
+ * When the session breaks, the receiver drops its connection and attaches again from the
+ * last processed position, retrying with a doubling backoff. LCRs the server sends again
+ * up to the last one already decoded are skipped, so the processor sees no gap and no
+ * duplicate. Only when the attempts are used up is the failure raised to the processor.
+ * The same applies to the first attach: LCRs up to the position attached from are skipped
+ * if the server replays them from an older watermark.
+ */
+class XStreamReceiver implements Runnable {
+
+	private static final long STOP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+	private static final long FIRST_BACKOFF_MILLIS = 500;
+	private static final long PAUSE_STEP_MILLIS = 100;
+
+	private final XStreamBinding binding;
+	private final XStreamConnector connector;
+	private final String xsOutName;
+	private final EventRingBuffer buffer;
+	private final PrimaryKeys primaryKeys;
+	private final CaptureFilter filter;
+	private final TimeZone databaseTimeZone;
+	private final int reconnectAttempts;
+	private final long maxBackoffMillis;
+	private final ComponentLog logger;
+	private final CaptureMetrics metrics;
+	private final AtomicReference<byte[]> pendingWatermark = new AtomicReference<byte[]>();
+	private final Thread thread;
+	private volatile Connection connection;
+	private volatile Object xsOut;
+	// the position the server was last told was processed, where a reattach starts from
+	private volatile byte[] processedPosition;
+	private volatile boolean running = true;
+	private volatile Throwable failure;
+
+	/**
+	 * @param lastPosition the position to attach from, null for the processed low watermark of the server
+	 * @param filter the tables and columns decoded, null for all
+	 * @param bufferBytes the LOB chunk content the buffer holds at most
+	 * @param reconnectAttempts attempts to attach again after the session broke, 0 to fail right away
+	 */
+	XStreamReceiver(XStreamBinding binding, XStreamConnector connector, String xsOutName, byte[] lastPosition, int bufferSize,
+			long bufferBytes, PrimaryKeys primaryKeys, CaptureFilter filter, TimeZone databaseTimeZone, int reconnectAttempts, long maxBackoffMillis,
+			ComponentLog logger) {
+		this.binding = binding;
+		this.connector = connector;
+		this.primaryKeys = primaryKeys;
+		this.filter = filter;
+		this.databaseTimeZone = databaseTimeZone;
+		this.xsOutName = xsOutName;
+		this.processedPosition = lastPosition;
+		this.buffer = new EventRingBuffer(bufferSize, bufferBytes);
+		this.reconnectAttempts = reconnectAttempts;
+		this.maxBackoffMillis = maxBackoffMillis;
+		this.logger = logger;
+		this.metrics = new CaptureMetrics(xsOutName);
+		this.thread = new Thread(this, "XStream receiver " + xsOutName);
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * attaches to the outbound server and starts receiving
+	 */
+	void start() throws Throwable {
+		attach(processedPosition);
+		thread.start();
+	}
+
+	private void attach(byte[] position) throws Throwable {
+		final Connection attaching = connector.connect();
+		try {
+			xsOut = binding.attach(attaching, xsOutName, position);
+		} catch (Throwable t) {
+			connector.invalidate(attaching);
+			throw t;
+		}
+		connection = attaching;
+	}
+
+	@Override
+	public void run() {
+		try {
+			final LCRCallBackHandler hdlr = new LCRCallBackHandler(binding, buffer, primaryKeys, filter, databaseTimeZone);
+			final Object callback = binding.newCallbackHandler(hdlr);
+			if (processedPosition != null) {
+				hdlr.skipThrough(processedPosition);
+			}
+			while (running) {
+				try {
+					receive(hdlr, callback);
+				} catch (Throwable t) {
+					if (!running) {
+						return;
+					}
+					if (!isSessionFailure(t) || reconnectAttempts <= 0) {
+						throw t;
+					}
+					reconnect(hdlr, t);
+				}
+			}
+		} catch (Throwable t) {
+			if (running) {
+				failure = t;
+				logger.error("xstream receiver for " + xsOutName + " failed", t);
+				// nothing is published any more
+				buffer.close();
+			}
+		}
+	}
+
+	private void receive(LCRCallBackHandler hdlr, Object callback) throws Throwable {
+		applyWatermark();
+		final long decodeNanos = hdlr.getDecodeNanos();
+		final long decoded = hdlr.getDecoded();
+		final long skipped = hdlr.getSkipped();
+		final long waitNanos = buffer.getFullWaitNanos();
+		final long waits = buffer.getFullWaits();
+		final long start = System.nanoTime();
+		binding.receiveLCRCallback(xsOut, callback);
+		record(System.nanoTime() - start, hdlr.getDecodeNanos() - decodeNanos, hdlr.getDecoded() - decoded,
+				buffer.getFullWaitNanos() - waitNanos, buffer.getFullWaits() - waits);
+		if (hdlr.getSkipped() > skipped) {
+			metrics.skippedReplayed(hdlr.getSkipped() - skipped);
+		}
+	}
+
+	/**
+	 * @return false for failures of the decoding or the event buffer, which a new session would not fix
+	 */
+	private static boolean isSessionFailure(Throwable t) {
+		for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ProcessException) {
+				return false;
+			}
+		}
+		return !(t instanceof Error);
+	}
+
+	private void reconnect(LCRCallBackHandler hdlr, Throwable cause) throws Throwable {
+		logger.warn("xstream session of outbound server " + xsOutName + " broke, attaching again from the last processed position", cause);
+		release(true);
+		long backoff = FIRST_BACKOFF_MILLIS;
+		for (int attempt = 1; ; attempt++) {
+			try {
+				final byte[] pending = pendingWatermark.get();
+				attach(pending != null ? pending : processedPosition);
+				hdlr.resume();
+				metrics.reconnected();
+				logger.info("attached outbound server " + xsOutName + " again after " + attempt + " attempt(s)");
+				return;
+			} catch (Throwable t) {
+				if (attempt >= reconnectAttempts || !running) {
+					throw t;
+				}
+				logger.warn("attempt " + attempt + " to attach outbound server " + xsOutName + " failed, retrying in " + backoff + " ms", t);
+				pause(backoff);
+				backoff = Math.min(backoff * 2, maxBackoffMillis);
+			}
+		}
+	}
+
+	private void pause(long millis) throws InterruptedException {
+		final long end = System.currentTimeMillis() + millis;
+		long left = millis;
+		while (running && left > 0) {
+			Thread.sleep(Math.min(left, PAUSE_STEP_MILLIS));
+			left = end - System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * detaches from the outbound server and gives up the connection
+	 *
+	 * @param broken the session broke, detaching is only attempted and the connection is dropped from the pool
+	 */
+	private void release(boolean broken) throws Throwable {
+		final Object attached = xsOut;
+		final Connection released = connection;
+		xsOut = null;
+		connection = null;
+		try {
+			if (attached != null) {
+				binding.detach(attached);
+			}
+		} catch (Throwable t) {
+			if (!broken) {
+				throw t;
+			}
+		} finally {
+			if (released != null) {
+				if (broken) {
+					connector.invalidate(released);
+				} else {
+					connector.release(released);
+				}
+			}
+		}
+	}
+
+	/**
+	 * splits the time of a receive call into the wait for the outbound server, the decoding in
+	 * the callbacks and the wait on a full buffer
+	 */
+	private void record(long elapsedNanos, long decodeNanos, long decoded, long waitNanos, long waits) {
+		metrics.addStage(CaptureMetrics.RECEIVE, elapsedNanos - decodeNanos, 1);
+		metrics.addStage(CaptureMetrics.DECODE, decodeNanos - waitNanos, decoded);
+		if (waits > 0) {
+			metrics.addStage(CaptureMetrics.BACKPRESSURE, waitNanos, waits);
+		}
+	}
+
+	private void applyWatermark() throws Throwable {
+		final byte[] position = pendingWatermark.get();
+		if (position != null) {
+			binding.setProcessedLowWatermark(xsOut, position);
+			// a newer position set meanwhile stays pending
+			pendingWatermark.compareAndSet(position, null);
+			processedPosition = position;
+		}
+	}
+
+	EventRingBuffer getBuffer() {
+		return buffer;
+	}
+
+	Throwable getFailure() {
+		return failure;
+	}
+
+	CaptureMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * the watermark is applied by the receiver thread before its next receive call
+	 */
+	void setProcessedLowWatermark(byte[] position) {
+		pendingWatermark.set(position);
+	}
+
+	/**
+	 * stops receiving, applies the last pending watermark and detaches
+	 */
+	void stop() throws Throwable {
+		running = false;
+		buffer.close();
+		thread.join(STOP_TIMEOUT_MILLIS);
+		if (thread.isAlive()) {
+			logger.warn("xstream receiver for " + xsOutName + " did not stop within " + STOP_TIMEOUT_MILLIS + " ms");
+		}
+		if (xsOut != null) {
+			applyWatermark();
+		}
+		release(failure != null);
+	}
+
+}
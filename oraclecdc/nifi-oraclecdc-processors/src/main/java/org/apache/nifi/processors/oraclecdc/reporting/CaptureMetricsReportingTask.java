@@ -0,0 +1,138 @@
+package org.apache.nifi.processors.oraclecdc.reporting;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.processor.util.StandardValidators;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureMetrics;
+import org.apache.nifi.processors.oraclecdc.controller.OracleCDCService;
+import org.apache.nifi.reporting.AbstractReportingTask;
+import org.apache.nifi.reporting.ReportingContext;
+
+@Tags({"Oracle","CDC","metrics","lag"})
+@CapabilityDescription("Logs the capture metrics of the outbound servers attached through an Oracle CDC service: change events per second "
+		+ "by operation and by table, the time per second spent in each stage of the capture, the duration of the last checkpoint "
+		+ "and the capture lag. A warning bulletin is raised for an outbound server whose lag exceeds the threshold.")
+public class CaptureMetricsReportingTask extends AbstractReportingTask {
+
+    public static final PropertyDescriptor CDC_SERVICE = new PropertyDescriptor.Builder()
+            .name("CDC_SERVICE")
+            .displayName("Oracle CDC Service")
+            .description("The service the outbound servers are attached through")
+            .required(true)
+            .identifiesControllerService(OracleCDCService.class)
+            .build();
+
+    public static final PropertyDescriptor LAG_THRESHOLD = new PropertyDescriptor.Builder()
+            .name("LAG_THRESHOLD")
+            .displayName("Lag Threshold")
+            .description("The capture lag above which a warning is logged, the time between a change in the database and its emission")
+            .defaultValue("5 min")
+            .required(true)
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    private static final List<PropertyDescriptor> PROPERTIES = Collections.unmodifiableList(Arrays.asList(CDC_SERVICE, LAG_THRESHOLD));
+
+    // totals of the previous run by outbound server, only touched by the reporting thread
+    private final Map<String,Totals> previous = new HashMap<String,Totals>();
+
+    @Override
+    protected List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return PROPERTIES;
+    }
+
+    @Override
+    public void onTrigger(final ReportingContext context) {
+        final OracleCDCService service = context.getProperty(CDC_SERVICE).asControllerService(OracleCDCService.class);
+        final long lagThreshold = context.getProperty(LAG_THRESHOLD).asTimePeriod(TimeUnit.MILLISECONDS);
+        final Map<String,CaptureMetrics> attached = service.getMetrics();
+        previous.keySet().retainAll(attached.keySet());
+        for (CaptureMetrics metrics : attached.values()) {
+            final Totals totals = new Totals(metrics, nanoTime());
+            final Totals last = previous.put(metrics.getName(), totals);
+            if (last != null && last.metrics == metrics) {
+                // rates of a server attached since the last run are reported from the next one
+                getLogger().info(describe(totals, last));
+            }
+            final long lag = metrics.getLagMillis();
+            if (lag > lagThreshold) {
+                getLogger().warn("capture lag of outbound server " + metrics.getName() + " is " + lag + " ms, above the threshold of "
+                        + lagThreshold + " ms");
+            }
+        }
+    }
+
+    /**
+     * the time the totals are taken at, replaced by tests
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private String describe(Totals totals, Totals last) {
+        final double seconds = Math.max(1, totals.nanos - last.nanos) / 1e9;
+        final StringBuilder message = new StringBuilder(totals.metrics.getName());
+        message.append(": events/s ");
+        appendRates(message, totals.operations, last.operations, seconds);
+        message.append("; table events/s ");
+        appendRates(message, totals.tables, last.tables, seconds);
+        message.append("; stage ms/s {");
+        for (int stage = 0; stage < CaptureMetrics.getStageCount(); stage++) {
+            if (stage > 0) {
+                message.append(", ");
+            }
+            message.append(CaptureMetrics.getStageName(stage)).append('=')
+                    .append(String.format("%.1f", (totals.stageNanos[stage] - last.stageNanos[stage]) / 1e6 / seconds));
+        }
+        message.append("}; last checkpoint ").append(totals.metrics.getLastCheckpointMillis()).append(" ms");
+        message.append("; lag ").append(totals.metrics.getLagMillis()).append(" ms");
+        message.append("; reconnects ").append(totals.metrics.getReconnects());
+        message.append("; replay skipped ").append(totals.metrics.getReplaySkipped());
+        return message.toString();
+    }
+
+    private static void appendRates(StringBuilder message, Map<String,Long> counts, Map<String,Long> lastCounts, double seconds) {
+        message.append('{');
+        boolean first = true;
+        for (Map.Entry<String,Long> entry : counts.entrySet()) {
+            final Long last = lastCounts.get(entry.getKey());
+            if (!first) {
+                message.append(", ");
+            }
+            message.append(entry.getKey()).append('=')
+                    .append(String.format("%.1f", (entry.getValue() - (last == null ? 0 : last)) / seconds));
+            first = false;
+        }
+        message.append('}');
+    }
+
+    /**
+     * the totals of one outbound server at one run
+     */
+    private static class Totals {
+        final CaptureMetrics metrics;
+        final long nanos;
+        final Map<String,Long> operations;
+        final Map<String,Long> tables;
+        final long[] stageNanos = new long[CaptureMetrics.getStageCount()];
+
+        Totals(CaptureMetrics metrics, long nanos) {
+            this.metrics = metrics;
+            this.nanos = nanos;
+            operations = metrics.getOperationCounts();
+            tables = metrics.getTableCounts();
+            for (int stage = 0; stage < stageNanos.length; stage++) {
+                stageNanos[stage] = metrics.getStageNanos(stage);
+            }
+        }
+    }
+
+}
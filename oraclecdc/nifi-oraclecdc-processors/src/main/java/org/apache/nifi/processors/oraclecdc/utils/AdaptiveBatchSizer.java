@@ -0,0 +1,65 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+/**
+ * Sizes each capture cycle from the measured cost per event, so that draining a cycle takes
+ * about the target duration. The cost is an exponentially weighted moving average, which
+ * lets the size follow slower downstream writes without reacting to a single slow cycle.
+ * Back pressure halves the size and caps it, the cap doubling with every cycle recorded after.
+ * Back pressure is reported by any task, the cycles by the task working on the capture.
+ */
+public class AdaptiveBatchSizer {
+
+	private static final double WEIGHT = 0.2;
+
+	private final int minSize;
+	private final int maxSize;
+	private final long targetNanos;
+	private double nanosPerEvent = -1;
+	private int size;
+	// the most the size may grow to since the last back pressure
+	private int limit;
+
+	public AdaptiveBatchSizer(int minSize,int maxSize,long targetNanos){
+		this.minSize=Math.min(minSize, maxSize);
+		this.maxSize=maxSize;
+		this.targetNanos=targetNanos;
+		this.size=this.minSize;
+		this.limit=maxSize;
+	}
+
+	/**
+	 * @return the number of events to take in the next cycle
+	 */
+	public synchronized int nextSize(){
+		return size;
+	}
+
+	/**
+	 * records a completed cycle and resizes the next one
+	 */
+	public synchronized void record(int events,long elapsedNanos){
+		if(events<=0){
+			return;
+		}
+		final double cost = (double)elapsedNanos/events;
+		nanosPerEvent = nanosPerEvent<0 ? cost : WEIGHT*cost+(1-WEIGHT)*nanosPerEvent;
+		long target = (long)(targetNanos/Math.max(nanosPerEvent, 1d));
+		if(events<size){
+			// the source is slower than the target, no need to grow beyond what arrived
+			target = Math.min(target, Math.max(size, events*2L));
+		}
+		size = (int)Math.max(minSize, Math.min(limit, target));
+		limit = (int)Math.min(maxSize, limit*2L);
+	}
+
+	/**
+	 * records a cycle skipped because a downstream connection is full. The processor API only
+	 * tells whether a relationship has room, not how much, so the full connection is taken as
+	 * the sign the cycles deliver more than downstream keeps up with.
+	 */
+	public synchronized void backPressure(){
+		size = Math.max(minSize, size/2);
+		limit = size;
+	}
+
+}
@@ -0,0 +1,206 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Set;
+
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.apache.nifi.processors.oraclecdc.controller.TableMetadata;
+
+/**
+ * Renders change events in the compact binary format, read back by {@link ChangeEventBinaryReader}.
+ * <p>
+ * A stream is a sequence of frames, each starting with a tag byte. Integers are unsigned
+ * varints, longs are zigzag varints, and strings and byte arrays are prefixed by their length
+ * plus one, so that 0 stands for null.
+ * <ul>
+ * <li>schema frame {@value #SCHEMA_FRAME}: version, table key, column count, then name,
+ * oracle type and java type of every column. Written once per table version and flowfile,
+ * before the first event that refers to it.</li>
+ * <li>event frame {@value #EVENT_FRAME}: schema version (0 for none), timestamp, database,
+ * schema, table, cdc type, transaction id, position, then the new and the old values.</li>
+ * </ul>
+ * A value block starts with a bitmap over the columns of the schema version, one bit per
+ * column set when the column has a value, followed by those values in column order. Columns
+ * that are not part of the schema, such as LOB references, follow as a count and name, oracle
+ * type, java type and value each. A value is a kind byte and its length prefixed bytes; integral
+ * NUMBER values are a big-endian two's complement of at most 8 bytes. A decimal is its scale as
+ * a zigzag varint, then the length prefixed two's complement of its unscaled value. A timestamp
+ * with fractional seconds is its epoch milliseconds followed by its nanoseconds as a varint.
+ */
+public class ChangeEventBinary {
+
+	public static final int SCHEMA_FRAME = 'S';
+	public static final int EVENT_FRAME = 'E';
+
+	static final int KIND_STRING = 0;
+	static final int KIND_DOUBLE = 1;
+	static final int KIND_FLOAT = 2;
+	static final int KIND_DECIMAL = 3;
+	static final int KIND_TIMESTAMP = 4;
+	static final int KIND_BYTES = 5;
+	static final int KIND_LONG = 6;
+	static final int KIND_TIMESTAMP_NANOS = 7;
+
+	private final ChangeEventJson.EventBuffer buffer = new ChangeEventJson.EventBuffer();
+	private final byte[] scratch = new byte[8];
+	// values of the schema columns of the block being written, by column position
+	private Object[] values = new Object[64];
+
+	/**
+	 * @param writtenSchemas versions already written to the destination, the schema frame of a
+	 * version that is not in the set is written first and the version added
+	 * @return the buffer holding the frames, valid until the next call
+	 */
+	public ChangeEventJson.EventBuffer write(ChangeEvent event, Set<Integer> writtenSchemas) throws IOException {
+		buffer.reset();
+		final TableMetadata metadata = event.getMetadata();
+		if (metadata != null && writtenSchemas.add(metadata.getVersion())) {
+			writeSchema(metadata);
+		}
+		buffer.write(EVENT_FRAME);
+		writeVarint(metadata == null ? 0 : metadata.getVersion());
+		writeVarlong((event.getTimestamp() << 1) ^ (event.getTimestamp() >> 63));
+		writeString(event.getDatabase());
+		writeString(event.getSchema());
+		writeString(event.getTable());
+		writeString(event.getCommandType());
+		writeString(event.getTransactionId());
+		writeBytes(event.getPosition());
+		writeValues(metadata, event.getNewValues());
+		writeValues(metadata, event.getOldValues());
+		return buffer;
+	}
+
+	private void writeSchema(TableMetadata metadata) throws IOException {
+		buffer.write(SCHEMA_FRAME);
+		writeVarint(metadata.getVersion());
+		writeString(metadata.getTableKey());
+		writeVarint(metadata.size());
+		for (int i = 0; i < metadata.size(); i++) {
+			writeString(metadata.getName(i));
+			writeVarint(metadata.getOracleType(i));
+			writeString(metadata.getType(i));
+		}
+	}
+
+	private void writeValues(TableMetadata metadata, ChangeEvent.ColumnList columns) throws IOException {
+		final int size = metadata == null ? 0 : metadata.size();
+		if (values.length < size) {
+			values = new Object[size];
+		}
+		int extra = 0;
+		for (int i = 0; i < columns.size(); i++) {
+			final ChangeEvent.Column column = columns.get(i);
+			final int index = size == 0 ? -1 : metadata.indexOf(column.getName());
+			if (index >= 0 && column.getValue() != null) {
+				values[index] = column.getValue();
+			} else {
+				extra++;
+			}
+		}
+		for (int b = 0; b < size; b += 8) {
+			int bits = 0;
+			for (int i = b; i < Math.min(b + 8, size); i++) {
+				if (values[i] != null) {
+					bits |= 1 << (i - b);
+				}
+			}
+			buffer.write(bits);
+		}
+		for (int i = 0; i < size; i++) {
+			if (values[i] != null) {
+				writeValue(values[i]);
+				values[i] = null;
+			}
+		}
+		writeVarint(extra);
+		for (int i = 0; i < columns.size() && extra > 0; i++) {
+			final ChangeEvent.Column column = columns.get(i);
+			if (size > 0 && column.getValue() != null && metadata.indexOf(column.getName()) >= 0) {
+				continue;
+			}
+			writeString(column.getName());
+			writeVarint(column.getOracleType());
+			writeString(column.getType());
+			writeValue(column.getValue());
+		}
+	}
+
+	private void writeValue(Object value) throws IOException {
+		if (value instanceof Long) {
+			final long l = (Long) value;
+			// the fewest bytes that keep the two's complement sign
+			int length = 1;
+			while (length < 8 && (l >> (length * 8 - 1)) != 0 && (l >> (length * 8 - 1)) != -1) {
+				length++;
+			}
+			buffer.write(KIND_LONG);
+			writeLong(l, length);
+		} else if (value instanceof Double) {
+			buffer.write(KIND_DOUBLE);
+			writeLong(Double.doubleToLongBits((Double) value), 8);
+		} else if (value instanceof Float) {
+			buffer.write(KIND_FLOAT);
+			writeLong(Float.floatToIntBits((Float) value) & 0xffffffffL, 4);
+		} else if (value instanceof BigDecimal) {
+			final BigDecimal decimal = (BigDecimal) value;
+			final byte[] unscaled = decimal.unscaledValue().toByteArray();
+			buffer.write(KIND_DECIMAL);
+			// NUMBER scales run from -84 to 130 and beyond once the precision is exceeded
+			writeVarlong((decimal.scale() << 1) ^ (decimal.scale() >> 31));
+			writeBytes(unscaled);
+		} else if (value instanceof Timestamp) {
+			buffer.write(KIND_TIMESTAMP_NANOS);
+			writeLong(((Timestamp) value).getTime(), 8);
+			writeVarint(((Timestamp) value).getNanos());
+		} else if (value instanceof Date) {
+			buffer.write(KIND_TIMESTAMP);
+			writeLong(((Date) value).getTime(), 8);
+		} else if (value instanceof byte[]) {
+			buffer.write(KIND_BYTES);
+			writeBytes((byte[]) value);
+		} else {
+			buffer.write(KIND_STRING);
+			writeString(value == null ? null : value.toString());
+		}
+	}
+
+	private void writeLong(long value, int length) {
+		writeVarint(length + 1);
+		for (int i = length - 1; i >= 0; i--) {
+			scratch[i] = (byte) value;
+			value >>>= 8;
+		}
+		buffer.write(scratch, 0, length);
+	}
+
+	private void writeString(String value) throws IOException {
+		writeBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void writeBytes(byte[] value) throws IOException {
+		if (value == null) {
+			buffer.write(0);
+			return;
+		}
+		writeVarint(value.length + 1);
+		buffer.write(value);
+	}
+
+	private void writeVarint(int value) {
+		writeVarlong(value & 0xffffffffL);
+	}
+
+	private void writeVarlong(long value) {
+		while ((value & ~0x7fL) != 0) {
+			buffer.write((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		buffer.write((int) value);
+	}
+
+}
@@ -0,0 +1,222 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.apache.nifi.processors.oraclecdc.controller.TableMetadata;
+
+/**
+ * Reads change events written by {@link ChangeEventBinary}, for example from the content of a
+ * flowfile emitted with the BINARY event format. Schema frames are remembered for the rest of
+ * the stream. The returned event is reused by the next call, like the events the service delivers.
+ */
+public class ChangeEventBinaryReader {
+
+	private final InputStream in;
+	private final Map<Integer,TableMetadata> schemas = new HashMap<Integer,TableMetadata>();
+	private final ChangeEvent event = new ChangeEvent();
+	private byte[] scratch = new byte[256];
+
+	public ChangeEventBinaryReader(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * @return the next event, or null at the end of the stream
+	 */
+	public ChangeEvent next() throws IOException {
+		int tag;
+		while ((tag = in.read()) == ChangeEventBinary.SCHEMA_FRAME) {
+			readSchema();
+		}
+		if (tag < 0) {
+			return null;
+		}
+		if (tag != ChangeEventBinary.EVENT_FRAME) {
+			throw new IOException("unknown frame " + tag);
+		}
+		event.clear();
+		final int version = readVarint();
+		TableMetadata metadata = null;
+		if (version != 0) {
+			metadata = schemas.get(version);
+			if (metadata == null) {
+				throw new IOException("event refers to schema version " + version + " that was not written before it");
+			}
+		}
+		event.setMetadata(metadata);
+		final long timestamp = readVarlong();
+		event.setTimestamp((timestamp >>> 1) ^ -(timestamp & 1));
+		event.setDatabase(readString());
+		event.setSchema(readString());
+		event.setTable(readString());
+		event.setCommandType(readString());
+		event.setTransactionId(readString());
+		event.setPosition(readBytes());
+		readValues(metadata, event.getNewValues());
+		readValues(metadata, event.getOldValues());
+		return event;
+	}
+
+	/**
+	 * @return the schema version read from the stream, or null if it has not been read
+	 */
+	public TableMetadata getSchema(int version) {
+		return schemas.get(version);
+	}
+
+	private void readSchema() throws IOException {
+		final int version = readVarint();
+		TableMetadata metadata = new TableMetadata(version, readString());
+		final int size = readVarint();
+		for (int i = 0; i < size; i++) {
+			metadata = metadata.withColumn(version, readString(), readVarint(), readString());
+		}
+		schemas.put(version, metadata);
+	}
+
+	private void readValues(TableMetadata metadata, ChangeEvent.ColumnList columns) throws IOException {
+		final int size = metadata == null ? 0 : metadata.size();
+		int bits = 0;
+		for (int i = 0; i < size; i++) {
+			if (i % 8 == 0) {
+				bits = readByte();
+			}
+			if ((bits & (1 << (i % 8))) != 0) {
+				columns.add(metadata.getName(i), metadata.getOracleType(i), metadata.getType(i), readValue());
+			}
+		}
+		final int extra = readVarint();
+		for (int i = 0; i < extra; i++) {
+			final String name = readString();
+			final int oracleType = readVarint();
+			final String type = readString();
+			columns.add(name, oracleType, type, readValue());
+		}
+	}
+
+	private Object readValue() throws IOException {
+		final int kind = readByte();
+		switch (kind) {
+		case ChangeEventBinary.KIND_LONG: {
+			final int length = readLength();
+			long value = 0;
+			for (int i = 0; i < length; i++) {
+				value = (value << 8) | readByte();
+			}
+			// sign extend
+			return length == 0 ? 0L : (value << (64 - length * 8)) >> (64 - length * 8);
+		}
+		case ChangeEventBinary.KIND_DOUBLE:
+			return Double.longBitsToDouble(readLong());
+		case ChangeEventBinary.KIND_FLOAT:
+			return Float.intBitsToFloat((int) readLong());
+		case ChangeEventBinary.KIND_DECIMAL: {
+			final int scale = readVarint();
+			final byte[] unscaled = readBytes();
+			if (unscaled == null) {
+				throw new IOException("unexpected null value");
+			}
+			return new BigDecimal(new BigInteger(unscaled), (scale >>> 1) ^ -(scale & 1));
+		}
+		case ChangeEventBinary.KIND_TIMESTAMP:
+			return new Date(readLong());
+		case ChangeEventBinary.KIND_TIMESTAMP_NANOS: {
+			final Timestamp timestamp = new Timestamp(readLong());
+			timestamp.setNanos(readVarint());
+			return timestamp;
+		}
+		case ChangeEventBinary.KIND_BYTES:
+			return readBytes();
+		case ChangeEventBinary.KIND_STRING:
+			return readString();
+		default:
+			throw new IOException("unknown value kind " + kind);
+		}
+	}
+
+	private long readLong() throws IOException {
+		final int length = readLength();
+		long value = 0;
+		for (int i = 0; i < length; i++) {
+			value = (value << 8) | readByte();
+		}
+		return value;
+	}
+
+	// length of a value that is never null
+	private int readLength() throws IOException {
+		final int length = readVarint() - 1;
+		if (length < 0) {
+			throw new IOException("unexpected null value");
+		}
+		return length;
+	}
+
+	private String readString() throws IOException {
+		final int length = readVarint() - 1;
+		if (length < 0) {
+			return null;
+		}
+		if (scratch.length < length) {
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		}
+		readFully(scratch, length);
+		return new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private byte[] readBytes() throws IOException {
+		final int length = readVarint() - 1;
+		if (length < 0) {
+			return null;
+		}
+		final byte[] value = new byte[length];
+		readFully(value, length);
+		return value;
+	}
+
+	private void readFully(byte[] b, int length) throws IOException {
+		int read = 0;
+		while (read < length) {
+			final int n = in.read(b, read, length - read);
+			if (n < 0) {
+				throw new EOFException("stream ends within a frame");
+			}
+			read += n;
+		}
+	}
+
+	private int readByte() throws IOException {
+		final int b = in.read();
+		if (b < 0) {
+			throw new EOFException("stream ends within a frame");
+		}
+		return b;
+	}
+
+	private int readVarint() throws IOException {
+		return (int) readVarlong();
+	}
+
+	private long readVarlong() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final int b = readByte();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("malformed varint");
+	}
+
+}
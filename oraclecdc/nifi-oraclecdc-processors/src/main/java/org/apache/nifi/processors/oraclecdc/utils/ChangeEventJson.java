@@ -0,0 +1,117 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.codec.binary.Base32;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Renders change events as the JSON document emitted by the processor. Each event is
+ * streamed field by field into a buffer that is reused for every event, so rendering
+ * does not build a JSON tree or an intermediate String.
+ */
+public class ChangeEventJson {
+
+	private static final Base32 BASE32 = new Base32(true);
+	// the format of Date.toGMTString, which DATE values have always been written in
+	private static final DateTimeFormatter GMT_FORMAT = DateTimeFormatter.ofPattern("d MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+			.withZone(ZoneOffset.UTC);
+	private static final String[] TYPE_CODES = new String[256];
+	static{
+		for(int i=0;i<TYPE_CODES.length;i++){
+			TYPE_CODES[i]=String.valueOf(i);
+		}
+	}
+
+	private final EventBuffer buffer = new EventBuffer();
+	private final JsonWriter writer;
+
+	public ChangeEventJson(){
+		this.writer = new JsonWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
+		// the writer renders one top level document per event into the same buffer
+		this.writer.setLenient(true);
+	}
+
+	/**
+	 * @return the buffer holding the UTF-8 JSON document, valid until the next call
+	 */
+	public EventBuffer write(ChangeEvent event) throws IOException{
+		buffer.reset();
+		writer.beginObject();
+		writer.name("timestamp").value(event.getTimestamp());
+		writer.name("database").value(event.getDatabase());
+		writer.name("schema").value(event.getSchema());
+		writer.name("table").value(event.getTable());
+		writer.name("cdc_type").value(event.getCommandType());
+		writer.name("transactionId").value(event.getTransactionId());
+		writer.name("position").value(BASE32.encodeAsString(event.getPosition()));
+		if(event.getMetadata()!=null){
+			writer.name("schemaVersion").value(event.getMetadata().getVersion());
+		}
+		writer.name("newValues");
+		writeColumns(event.getNewValues());
+		writer.name("oldValues");
+		writeColumns(event.getOldValues());
+		writer.endObject();
+		writer.flush();
+		return buffer;
+	}
+
+	private void writeColumns(List<ChangeEvent.Column> values) throws IOException{
+		writer.beginArray();
+		for(int i=0;i<values.size();i++){
+			ChangeEvent.Column value = values.get(i);
+			writer.beginObject();
+			writer.name("name").value(value.getName());
+			writer.name("oracleType").value(typeCode(value.getOracleType()));
+			writer.name("type").value(value.getType());
+			writer.name("value");
+			Object v = value.getValue();
+			if(v instanceof Number){
+				writer.value((Number)v);
+			}else if(v instanceof Timestamp){
+				writer.value(DateTimeFormatter.ISO_INSTANT.format(((Timestamp)v).toInstant()));
+			}else if(v instanceof Date){
+				writer.value(GMT_FORMAT.format(Instant.ofEpochMilli(((Date)v).getTime())));
+			}else if(v instanceof byte[]){
+				writer.value(Base64.getEncoder().encodeToString((byte[])v));
+			}else{
+				writer.value(String.valueOf(v));
+			}
+			writer.endObject();
+		}
+		writer.endArray();
+	}
+
+	private static String typeCode(int oracleType){
+		return oracleType>=0 && oracleType<TYPE_CODES.length ? TYPE_CODES[oracleType] : String.valueOf(oracleType);
+	}
+
+	/**
+	 * byte buffer that exposes its backing array to avoid copying the rendered event
+	 */
+	public static class EventBuffer extends ByteArrayOutputStream{
+
+		EventBuffer(){
+			super(1024);
+		}
+
+		public byte[] array(){
+			return buf;
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Base32;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.apache.nifi.serialization.SimpleRecordSchema;
+import org.apache.nifi.serialization.record.DataType;
+import org.apache.nifi.serialization.record.MapRecord;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordField;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.serialization.record.RecordSchema;
+
+/**
+ * Converts change events to records. The record schema of a table is derived from the
+ * column metadata of its change events and widened whenever a column is seen for the
+ * first time, since updates only carry the columns that were supplied to the statement.
+ */
+public class ChangeEventRecords {
+
+	private final Map<String,TableSchema> tables = new HashMap<String,TableSchema>();
+
+	public Record toRecord(ChangeEvent event){
+		final TableSchema table = getTable(event.getTableKey());
+		table.addColumns(event.getNewValues());
+		table.addColumns(event.getOldValues());
+
+		final Map<String,Object> values = new HashMap<String,Object>();
+		values.put("timestamp", event.getTimestamp());
+		values.put("database", event.getDatabase());
+		values.put("schema", event.getSchema());
+		values.put("table", event.getTable());
+		values.put("cdc_type", event.getCommandType());
+		values.put("transactionId", event.getTransactionId());
+		values.put("position", new String(new Base32(true).encode(event.getPosition())));
+		values.put("newValues", table.toRecord(event.getNewValues()));
+		values.put("oldValues", table.toRecord(event.getOldValues()));
+		return new MapRecord(table.getEventSchema(), values);
+	}
+
+	/**
+	 * @return the widest schema seen so far for the table
+	 */
+	public RecordSchema getSchema(String tableKey){
+		return getTable(tableKey).getEventSchema();
+	}
+
+	private TableSchema getTable(String tableKey){
+		TableSchema table = tables.get(tableKey);
+		if(table==null){
+			table = new TableSchema();
+			tables.put(tableKey, table);
+		}
+		return table;
+	}
+
+	static DataType toDataType(String type){
+		switch(type==null ? "" : type){
+		case "double":
+			return RecordFieldType.DOUBLE.getDataType();
+		case "float":
+			return RecordFieldType.FLOAT.getDataType();
+		case "Date":
+		case "Timestamp":
+			return RecordFieldType.TIMESTAMP.getDataType();
+		default:
+			// NUMBER is kept as its exact decimal text, the record API has no decimal type
+			return RecordFieldType.STRING.getDataType();
+		}
+	}
+
+	static Object toRecordValue(Object value){
+		if(value instanceof BigDecimal){
+			return ((BigDecimal)value).toPlainString();
+		}
+		if(value instanceof Long){
+			// integral NUMBER values, written as text like the other NUMBER values
+			return value.toString();
+		}
+		if(value instanceof Date && !(value instanceof Timestamp)){
+			return new Timestamp(((Date)value).getTime());
+		}
+		if(value instanceof byte[]){
+			// RAW is written as base64 text, like in the JSON format
+			return Base64.getEncoder().encodeToString((byte[])value);
+		}
+		return value;
+	}
+
+	private static class TableSchema{
+		private final Map<String,DataType> columns = new LinkedHashMap<String,DataType>();
+		private RecordSchema columnSchema;
+		private RecordSchema eventSchema;
+
+		void addColumns(List<ChangeEvent.Column> values){
+			for(ChangeEvent.Column value : values){
+				if(!columns.containsKey(value.getName())){
+					columns.put(value.getName(), toDataType(value.getType()));
+					eventSchema=null;
+				}
+			}
+		}
+
+		Record toRecord(List<ChangeEvent.Column> values){
+			final Map<String,Object> columnValues = new HashMap<String,Object>();
+			for(ChangeEvent.Column value : values){
+				columnValues.put(value.getName(), toRecordValue(value.getValue()));
+			}
+			getEventSchema();
+			return new MapRecord(columnSchema, columnValues);
+		}
+
+		RecordSchema getEventSchema(){
+			if(eventSchema==null){
+				final List<RecordField> columnFields = new ArrayList<RecordField>();
+				for(Map.Entry<String,DataType> column : columns.entrySet()){
+					columnFields.add(new RecordField(column.getKey(), column.getValue()));
+				}
+				columnSchema = new SimpleRecordSchema(columnFields);
+
+				final List<RecordField> fields = new ArrayList<RecordField>();
+				fields.add(new RecordField("timestamp", RecordFieldType.LONG.getDataType()));
+				fields.add(new RecordField("database", RecordFieldType.STRING.getDataType()));
+				fields.add(new RecordField("schema", RecordFieldType.STRING.getDataType()));
+				fields.add(new RecordField("table", RecordFieldType.STRING.getDataType()));
+				fields.add(new RecordField("cdc_type", RecordFieldType.STRING.getDataType()));
+				fields.add(new RecordField("transactionId", RecordFieldType.STRING.getDataType()));
+				fields.add(new RecordField("position", RecordFieldType.STRING.getDataType()));
+				fields.add(new RecordField("newValues", RecordFieldType.RECORD.getRecordDataType(columnSchema)));
+				fields.add(new RecordField("oldValues", RecordFieldType.RECORD.getRecordDataType(columnSchema)));
+				eventSchema = new SimpleRecordSchema(fields);
+			}
+			return eventSchema;
+		}
+	}
+
+}
@@ -0,0 +1,264 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Period;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Converters from xstream column data to the values of a change event, indexed by the
+ * xstream data type code and built once per binding. The type codes are read from the
+ * constants of oracle.streams.ColumnValue, so a type the driver does not know keeps the
+ * string converter.
+ * <p>
+ * DATE, TIMESTAMP and INTERVAL values are decoded from the Oracle internal bytes shared by
+ * the datum, without a Calendar or a driver Timestamp. DATE and TIMESTAMP hold no time zone
+ * and are read in the JVM default time zone like before; TIMESTAMP WITH TIME ZONE is stored in
+ * UTC and converted exactly. TIMESTAMP WITH LOCAL TIME ZONE is stored normalized to the
+ * database time zone and read in that zone. Each value is still a new Date or Timestamp, since
+ * events hold on to their values after the next row is converted.
+ */
+public class ColumnConverters {
+
+	public interface Converter {
+		/**
+		 * @return the java type name of the converted values
+		 */
+		String getType();
+
+		Object convert(Object datum) throws Throwable;
+	}
+
+	private static final int INTERVAL_OFFSET = 0x80000000;
+	private static final long MILLIS_PER_DAY = 86400000L;
+	public static final TimeZone DEFAULT_DATABASE_TIME_ZONE = TimeZone.getTimeZone("UTC");
+
+	private final XStreamBinding binding;
+	private final TimeZone timeZone = TimeZone.getDefault();
+	private final TimeZone databaseTimeZone;
+	private final Converter string;
+	private Converter[] converters = new Converter[256];
+
+	public ColumnConverters(XStreamBinding binding) {
+		this(binding, DEFAULT_DATABASE_TIME_ZONE);
+	}
+
+	/**
+	 * @param databaseTimeZone DBTIMEZONE, which TIMESTAMP WITH LOCAL TIME ZONE values are normalized to
+	 */
+	public ColumnConverters(XStreamBinding binding, TimeZone databaseTimeZone) {
+		this.binding = binding;
+		this.databaseTimeZone = databaseTimeZone;
+		this.string = new Converter() {
+			public String getType() {
+				return "String";
+			}
+
+			public Object convert(Object datum) throws Throwable {
+				return ColumnConverters.this.binding.stringValue(datum);
+			}
+		};
+		register("BINARY_DOUBLE", new Converter() {
+			public String getType() {
+				return "double";
+			}
+
+			public Object convert(Object datum) throws Throwable {
+				return ColumnConverters.this.binding.doubleValue(datum);
+			}
+		});
+		register("BINARY_FLOAT", new Converter() {
+			public String getType() {
+				return "float";
+			}
+
+			public Object convert(Object datum) throws Throwable {
+				return ColumnConverters.this.binding.floatValue(datum);
+			}
+		});
+		register("NUMBER", new Converter() {
+			// the type name is kept for consumers of the JSON format, integral values are Longs
+			public String getType() {
+				return "BigDecimal";
+			}
+
+			public Object convert(Object datum) throws Throwable {
+				return OracleNumber.decode(ColumnConverters.this.binding.shareBytes(datum));
+			}
+		});
+		register("DATE", new Converter() {
+			public String getType() {
+				return "Date";
+			}
+
+			public Object convert(Object datum) throws Throwable {
+				return new Date(toLocalEpochMillis(ColumnConverters.this.binding.shareBytes(datum)));
+			}
+		});
+		final Converter timestamp = new Converter() {
+			public String getType() {
+				return "Timestamp";
+			}
+
+			public Object convert(Object datum) throws Throwable {
+				final byte[] bytes = ColumnConverters.this.binding.shareBytes(datum);
+				return timestamp(toLocalEpochMillis(bytes), nanos(bytes));
+			}
+		};
+		register("TIMESTAMP", timestamp);
+		register("TIMESTAMPLTZ", new Converter() {
+			public String getType() {
+				return "Timestamp";
+			}
+
+			public Object convert(Object datum) throws Throwable {
+				final byte[] bytes = ColumnConverters.this.binding.shareBytes(datum);
+				return timestamp(toEpochMillis(bytes, ColumnConverters.this.databaseTimeZone), nanos(bytes));
+			}
+		});
+		register("TIMESTAMPTZ", new Converter() {
+			public String getType() {
+				return "Timestamp";
+			}
+
+			public Object convert(Object datum) throws Throwable {
+				final byte[] bytes = ColumnConverters.this.binding.shareBytes(datum);
+				return timestamp(toEpochMillis(bytes), nanos(bytes));
+			}
+		});
+		register("INTERVALYM", new Converter() {
+			public String getType() {
+				return "Period";
+			}
+
+			public Object convert(Object datum) throws Throwable {
+				return intervalYearToMonth(ColumnConverters.this.binding.shareBytes(datum));
+			}
+		});
+		register("INTERVALDS", new Converter() {
+			public String getType() {
+				return "Duration";
+			}
+
+			public Object convert(Object datum) throws Throwable {
+				return intervalDayToSecond(ColumnConverters.this.binding.shareBytes(datum));
+			}
+		});
+		register("RAW", new Converter() {
+			public String getType() {
+				return "bytes";
+			}
+
+			public Object convert(Object datum) throws Throwable {
+				return ColumnConverters.this.binding.getBytes(datum);
+			}
+		});
+	}
+
+	private void register(String typeName, Converter converter) {
+		final int code;
+		try {
+			code = binding.getColumnValueClass().getField(typeName).getInt(null);
+		} catch (ReflectiveOperationException e) {
+			return;
+		}
+		if (code < 0) {
+			return;
+		}
+		if (code >= converters.length) {
+			final Converter[] grown = new Converter[code + 1];
+			System.arraycopy(converters, 0, grown, 0, converters.length);
+			converters = grown;
+		}
+		converters[code] = converter;
+	}
+
+	/**
+	 * @return the converter of the xstream data type, the string converter for unknown types
+	 */
+	public Converter get(int dataType) {
+		final Converter converter = dataType >= 0 && dataType < converters.length ? converters[dataType] : null;
+		return converter == null ? string : converter;
+	}
+
+	/**
+	 * @return the epoch millis of a DATE or TIMESTAMP, read in the default time zone
+	 */
+	public long toLocalEpochMillis(byte[] bytes) {
+		return toEpochMillis(bytes, timeZone);
+	}
+
+	/**
+	 * @return the epoch millis of a DATE or TIMESTAMP, read in the time zone
+	 */
+	static long toEpochMillis(byte[] bytes, TimeZone zone) {
+		final long local = toEpochMillis(bytes);
+		return local - zone.getOffset(local - zone.getRawOffset());
+	}
+
+	private static Timestamp timestamp(long millis, int nanos) {
+		final Timestamp timestamp = new Timestamp(millis);
+		timestamp.setNanos(nanos);
+		return timestamp;
+	}
+
+	/**
+	 * @return the epoch millis of the date and time fields of a DATE or TIMESTAMP, taken as UTC
+	 */
+	static long toEpochMillis(byte[] bytes) {
+		final int year = ((bytes[0] & 0xff) - 100) * 100 + ((bytes[1] & 0xff) - 100);
+		final int month = bytes[2];
+		final int day = bytes[3];
+		final long millis = daysFromCivil(year, month, day) * MILLIS_PER_DAY
+				+ ((bytes[4] - 1) * 3600L + (bytes[5] - 1) * 60L + (bytes[6] - 1)) * 1000L;
+		return millis + nanos(bytes) / 1000000;
+	}
+
+	/**
+	 * @return the fraction of a second of a TIMESTAMP in nanoseconds, 0 for a DATE
+	 */
+	static int nanos(byte[] bytes) {
+		if (bytes.length < 11) {
+			return 0;
+		}
+		return ((bytes[7] & 0xff) << 24) | ((bytes[8] & 0xff) << 16) | ((bytes[9] & 0xff) << 8) | (bytes[10] & 0xff);
+	}
+
+	/**
+	 * days since 1970-01-01 of a proleptic gregorian date
+	 */
+	static long daysFromCivil(int year, int month, int day) {
+		final int y = month <= 2 ? year - 1 : year;
+		final int era = (y >= 0 ? y : y - 399) / 400;
+		final int yearOfEra = y - era * 400;
+		final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+	/**
+	 * @return the ISO-8601 period of an INTERVAL YEAR TO MONTH
+	 */
+	static String intervalYearToMonth(byte[] bytes) {
+		final int years = readInt(bytes, 0) - INTERVAL_OFFSET;
+		final int months = bytes[4] - 60;
+		return Period.of(years, months, 0).toString();
+	}
+
+	/**
+	 * @return the ISO-8601 duration of an INTERVAL DAY TO SECOND
+	 */
+	static String intervalDayToSecond(byte[] bytes) {
+		final long days = readInt(bytes, 0) - INTERVAL_OFFSET;
+		final long seconds = days * 86400L + (bytes[4] - 60) * 3600L + (bytes[5] - 60) * 60L + (bytes[6] - 60);
+		final int nanos = readInt(bytes, 7) - INTERVAL_OFFSET;
+		return Duration.ofSeconds(seconds, nanos).toString();
+	}
+
+	private static int readInt(byte[] bytes, int offset) {
+		return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+				| ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+	}
+
+}
@@ -0,0 +1,108 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Compresses flowfile content while it is written, so it reaches the content repository once,
+ * already compressed. GZIP content is a single gzip member and DEFLATE content a zlib stream,
+ * both read by CompressContent. One deflater is kept and reset for every flowfile instead of
+ * allocating its native state each time, so an instance is used by one task at a time.
+ */
+public class ContentCompressor {
+
+	public static final String GZIP = "GZIP";
+	public static final String DEFLATE = "DEFLATE";
+
+	private static final int BUFFER_SIZE = 16*1024;
+	// magic, deflate method, no flags, no modification time, no extra flags, unknown OS
+	private static final byte[] GZIP_HEADER = {0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+	private final boolean gzip;
+	private final Deflater deflater;
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * @param format {@link #GZIP} or {@link #DEFLATE}
+	 * @param level the deflate level from 0, no compression, to 9, best compression
+	 */
+	public ContentCompressor(String format,int level){
+		this.gzip=GZIP.equals(format);
+		// gzip writes its own header and trailer around raw deflate data
+		this.deflater=new Deflater(level, gzip);
+	}
+
+	/**
+	 * @return the mime type of the compressed content
+	 */
+	public String getMimeType(){
+		return gzip ? "application/gzip" : "application/deflate";
+	}
+
+	/**
+	 * @return a stream compressing into the flowfile content. Closing it writes the end of the
+	 * compressed data but leaves the content stream open
+	 */
+	public OutputStream open(OutputStream out) throws IOException{
+		deflater.reset();
+		crc.reset();
+		if(gzip){
+			out.write(GZIP_HEADER);
+		}
+		return new CompressingStream(out);
+	}
+
+	/**
+	 * releases the native state of the deflater
+	 */
+	public void end(){
+		deflater.end();
+	}
+
+	private class CompressingStream extends DeflaterOutputStream{
+
+		private boolean finished=false;
+
+		CompressingStream(OutputStream out){
+			super(out, deflater, BUFFER_SIZE);
+		}
+
+		@Override
+		public void write(byte[] b,int off,int len) throws IOException{
+			if(gzip){
+				crc.update(b, off, len);
+			}
+			super.write(b, off, len);
+		}
+
+		@Override
+		public void finish() throws IOException{
+			if(finished){
+				return;
+			}
+			finished=true;
+			super.finish();
+			if(gzip){
+				writeInt((int)crc.getValue());
+				writeInt((int)deflater.getBytesRead());
+			}
+		}
+
+		private void writeInt(int value) throws IOException{
+			out.write(value & 0xff);
+			out.write((value >>> 8) & 0xff);
+			out.write((value >>> 16) & 0xff);
+			out.write((value >>> 24) & 0xff);
+		}
+
+		@Override
+		public void close() throws IOException{
+			finish();
+			out.flush();
+		}
+	}
+
+}
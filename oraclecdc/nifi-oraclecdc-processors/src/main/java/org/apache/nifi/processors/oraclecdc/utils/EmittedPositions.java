@@ -0,0 +1,86 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.codec.binary.Base32;
+import org.apache.nifi.components.state.Scope;
+import org.apache.nifi.components.state.StateManager;
+import org.apache.nifi.components.state.StateMap;
+
+/**
+ * Keeps the position of the last change emitted from each outbound server in local state,
+ * written after the session holding the change was committed. The cluster checkpoint of
+ * {@link PositionCheckpointer} lags behind by up to a checkpoint interval, and the server
+ * replays everything after it when attached again; starting from the later of both positions
+ * lets the receiver drop the replayed LCRs before they are decoded.
+ * <p>
+ * The positions of an outbound server only increase, so the last one emitted is enough to
+ * tell a replayed LCR from a new one. Written from the tasks of all outbound servers.
+ */
+public class EmittedPositions {
+
+	public static final String EMITTED_KEY_PREFIX = "emitted.";
+
+	private final StateManager stateManager;
+	private final Map<String,byte[]> positions = new ConcurrentHashMap<String,byte[]>();
+	private final Object writeLock = new Object();
+
+	public EmittedPositions(StateManager stateManager,Map<String,byte[]> restored){
+		this.stateManager=stateManager;
+		this.positions.putAll(restored);
+	}
+
+	/**
+	 * @return the positions stored in local state by outbound server name
+	 */
+	public static Map<String,byte[]> restore(StateManager stateManager) throws IOException{
+		final Map<String,byte[]> restored = new HashMap<String,byte[]>();
+		final StateMap stateMap = stateManager.getState(Scope.LOCAL);
+		for(Map.Entry<String,String> entry : stateMap.toMap().entrySet()){
+			final String position = entry.getValue();
+			if(entry.getKey().startsWith(EMITTED_KEY_PREFIX) && position!=null && !position.isEmpty()){
+				restored.put(entry.getKey().substring(EMITTED_KEY_PREFIX.length()), new Base32(true).decode(position));
+			}
+		}
+		return restored;
+	}
+
+	/**
+	 * @return the later of two positions, either may be null
+	 */
+	public static byte[] later(byte[] a,byte[] b){
+		if(a==null || b==null){
+			return a==null ? b : a;
+		}
+		return LCRCallBackHandler.comparePositions(a, b)>=0 ? a : b;
+	}
+
+	/**
+	 * @return the last position emitted from an outbound server, null if none is known
+	 */
+	public byte[] get(String xsOutName){
+		return positions.get(xsOutName);
+	}
+
+	/**
+	 * records the position of the last change of a committed session, writing local state if it moved
+	 */
+	public void emitted(String xsOutName,byte[] position) throws IOException{
+		synchronized(writeLock){
+			if(Arrays.equals(positions.get(xsOutName), position)){
+				return;
+			}
+			positions.put(xsOutName, position);
+			final Map<String,String> state = new HashMap<String,String>();
+			for(Map.Entry<String,byte[]> entry : positions.entrySet()){
+				state.put(EMITTED_KEY_PREFIX+entry.getKey(), new String(new Base32(true).encode(entry.getValue())));
+			}
+			stateManager.setState(state, Scope.LOCAL);
+		}
+	}
+
+}
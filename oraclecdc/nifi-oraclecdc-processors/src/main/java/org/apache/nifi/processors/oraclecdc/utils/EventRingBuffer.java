@@ -0,0 +1,260 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.apache.nifi.processors.oraclecdc.controller.OracleCDCEventHandler;
+
+/**
+ * Bounded single producer, single consumer queue of change events between the xstream
+ * receiver thread and the processor. All slots and their events are allocated up front;
+ * publishing copies the event into the next free slot and blocks while the buffer is full,
+ * which holds back the outbound server until the processor catches up. The content of the
+ * queued LOB chunks is bounded by a byte budget the same way.
+ */
+public class EventRingBuffer implements OracleCDCEventHandler {
+
+	private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private final Slot[] slots;
+	private final long byteBudget;
+	private final AtomicLong published = new AtomicLong(0);
+	private final AtomicLong consumed = new AtomicLong(0);
+	// content of the chunks published and not consumed yet
+	private final AtomicLong queuedBytes = new AtomicLong(0);
+	private volatile boolean closed = false;
+	// the last LCR skipped by the producer, never takes a slot
+	private final AtomicReference<Skipped> skipped = new AtomicReference<Skipped>();
+	// only touched by the producer
+	private long fullWaitNanos = 0;
+	private long fullWaits = 0;
+
+	// chunk references of the row the consumer is assembling, kept across drains
+	private final Map<String,String> chunkReferences = new HashMap<String,String>();
+	// the consumer has delivered chunks of a row but not the row yet
+	private boolean inRow = false;
+
+	public EventRingBuffer(int capacity){
+		this(capacity, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param byteBudget maximum chunk content queued at once, a chunk larger than it is queued alone
+	 */
+	public EventRingBuffer(int capacity,long byteBudget){
+		this.byteBudget = byteBudget;
+		this.slots = new Slot[capacity];
+		for(int i=0;i<capacity;i++){
+			slots[i] = new Slot();
+		}
+	}
+
+	public int getCapacity(){
+		return slots.length;
+	}
+
+	public int size(){
+		return (int)(published.get()-consumed.get());
+	}
+
+	public long getQueuedBytes(){
+		return queuedBytes.get();
+	}
+
+	/**
+	 * @return the time the producer spent waiting on a full buffer, read by the producer
+	 */
+	public long getFullWaitNanos(){
+		return fullWaitNanos;
+	}
+
+	/**
+	 * @return the number of events the producer had to wait for a free slot or for chunk content
+	 * to be consumed, read by the producer
+	 */
+	public long getFullWaits(){
+		return fullWaits;
+	}
+
+	/**
+	 * stops the producer, a publish blocked on a full buffer fails
+	 */
+	public void close(){
+		closed = true;
+	}
+
+	/**
+	 * @param bytes the chunk content to queue, 0 for a row
+	 */
+	private Slot claim(int bytes){
+		final long sequence = published.get();
+		if(!fits(sequence, bytes)){
+			final long start = System.nanoTime();
+			while(!fits(sequence, bytes)){
+				if(closed){
+					throw new ProcessException("event buffer closed");
+				}
+				if(Thread.currentThread().isInterrupted()){
+					// parking returns at once for an interrupted thread
+					throw new ProcessException("interrupted while waiting for a free slot in the event buffer");
+				}
+				LockSupport.parkNanos(FULL_WAIT_NANOS);
+			}
+			fullWaitNanos += System.nanoTime()-start;
+			fullWaits++;
+		}
+		return slots[(int)(sequence%slots.length)];
+	}
+
+	private boolean fits(long sequence,int bytes){
+		if(sequence-consumed.get()>=slots.length){
+			return false;
+		}
+		final long queued = bytes==0 ? 0 : queuedBytes.get();
+		return queued==0 || queued+bytes<=byteBudget;
+	}
+
+	private void publish(){
+		published.lazySet(published.get()+1);
+	}
+
+	private void publishRow(ChangeEvent event){
+		final Slot slot = claim(0);
+		slot.chunk = false;
+		slot.event.copyFrom(event, true);
+		slot.data = null;
+		publish();
+	}
+
+	@Override
+	public void inserts(ChangeEvent event) {
+		publishRow(event);
+	}
+
+	@Override
+	public void updates(ChangeEvent event) {
+		publishRow(event);
+	}
+
+	@Override
+	public void deletes(ChangeEvent event) {
+		publishRow(event);
+	}
+
+	@Override
+	public void commit(ChangeEvent event) {
+		publishRow(event);
+	}
+
+	@Override
+	public void other(ChangeEvent event) {
+		publishRow(event);
+	}
+
+	/**
+	 * keeps the position of the last skipped LCR, which replaces any skipped before
+	 */
+	@Override
+	public void skipped(byte[] position) {
+		skipped.lazySet(new Skipped(position, published.get()));
+	}
+
+	/**
+	 * queues the chunk, the reference is resolved by the consumer when it is drained
+	 */
+	@Override
+	public String chunk(ChangeEvent event, String columnName, byte[] data, boolean lastChunk) {
+		final Slot slot = claim(data.length);
+		slot.chunk = true;
+		slot.event.copyFrom(event, false);
+		slot.columnName = columnName;
+		slot.data = data;
+		slot.lastChunk = lastChunk;
+		queuedBytes.addAndGet(data.length);
+		publish();
+		return null;
+	}
+
+	/**
+	 * delivers up to max queued events to the handler, in the order they were published, without
+	 * waiting for the producer. A call can end between the chunks of a row, the handler then keeps
+	 * the part of the LOB it received until the next call delivers the rest and the row.
+	 *
+	 * @return the number of events delivered
+	 */
+	public int drain(OracleCDCEventHandler handler,int max){
+		long sequence = consumed.get();
+		long available = published.get()-sequence;
+		int delivered = 0;
+		while(delivered<max && available>0){
+			final Slot slot = slots[(int)(sequence%slots.length)];
+			if(slot.chunk){
+				final String reference = handler.chunk(slot.event, slot.columnName, slot.data, slot.lastChunk);
+				if(reference!=null){
+					// the reference of the last chunk names the whole column
+					chunkReferences.put(slot.columnName, reference);
+				}
+				queuedBytes.addAndGet(-slot.data.length);
+				slot.data = null;
+				inRow = true;
+			}else{
+				if(!chunkReferences.isEmpty()){
+					resolveChunkReferences(slot.event);
+				}
+				inRow = false;
+				LCRCallBackHandler.dispatch(slot.event, handler);
+			}
+			delivered++;
+			available--;
+			sequence++;
+			consumed.lazySet(sequence);
+		}
+		final Skipped last = skipped.get();
+		if(last!=null && !inRow && last.sequence<=sequence){
+			// the skip is reported only if no event published after it was delivered yet,
+			// later events carry later positions
+			if(skipped.compareAndSet(last, null) && last.sequence==sequence){
+				handler.skipped(last.position);
+				delivered++;
+			}
+		}
+		return delivered;
+	}
+
+	private void resolveChunkReferences(ChangeEvent event){
+		final ChangeEvent.ColumnList columns = event.getNewValues();
+		for(int i=0;i<columns.size();i++){
+			final ChangeEvent.Column column = columns.get(i);
+			if(column.getValue()==null && chunkReferences.containsKey(column.getName())){
+				column.setValue(chunkReferences.get(column.getName()));
+			}
+		}
+		chunkReferences.clear();
+	}
+
+	private static class Slot{
+		final ChangeEvent event = new ChangeEvent();
+		boolean chunk;
+		String columnName;
+		byte[] data;
+		boolean lastChunk;
+	}
+
+	private static class Skipped{
+		final byte[] position;
+		// the number of events published before the skipped LCR
+		final long sequence;
+
+		Skipped(byte[] position,long sequence){
+			this.position = position;
+			this.sequence = sequence;
+		}
+	}
+
+}
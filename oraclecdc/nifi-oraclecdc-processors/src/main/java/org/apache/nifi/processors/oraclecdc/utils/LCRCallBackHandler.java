@@ -1,200 +1,442 @@
 package org.apache.nifi.processors.oraclecdc.utils;
 
-import org.apache.commons.codec.binary.Base32;
-import org.apache.nifi.processor.ProcessContext;
-import org.apache.nifi.processor.ProcessSession;
 import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureFilter;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
 import org.apache.nifi.processors.oraclecdc.controller.OracleCDCEventHandler;
+import org.apache.nifi.processors.oraclecdc.controller.TableMetadata;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeSet;
 
-public class LCRCallBackHandler implements InvocationHandler {
+/**
+ * Decodes the LCRs and chunks of an outbound server into change events for the handler. The
+ * xstream callbacks reach it through the {@link XStreamCallbackAdapter} of the binding.
+ */
+public class LCRCallBackHandler {
 	
-	byte[] finalPosition;
-	boolean moveWatermark=false;
-	private ClassLoader classLoader;
-	private ProcessLCR processLCR;
+	private XStreamBinding binding;
 	private OracleCDCEventHandler handler;
+	private final PrimaryKeys primaryKeys;
+	private final CaptureFilter filter;
+	// filter decisions by owner and table, null for a table that is not captured
+	private final Map<String,Map<String,TableFilter>> filtered = new HashMap<String,Map<String,TableFilter>>();
+	// columns decoded for the row, null for all
+	private Set<String> columns;
+	// filter of the row's table, which caches the column lookups of its version, null without a filter
+	private TableFilter projection;
+	private final TableMetadataCache tables = new TableMetadataCache();
+	private final ColumnConverters converters;
+	// table version of the row being decoded
+	private TableMetadata metadata;
+	private final ChangeEvent event = new ChangeEvent();
+	// row event waiting for its LOB chunks
+	private boolean pendingChunks=false;
+	private String chunkColumn;
+	private int chunksDelivered=0;
+	// position of the last event delivered to the handler
+	private byte[] lastPosition;
+	// after a reattach or restart: LCRs up to this position were delivered already
+	private byte[] skipThrough;
+	private long skipped=0;
+	// after a reattach: the row cut off while its chunks were received, and how many were delivered
+	private byte[] resumedRow;
+	private int chunksToSkip=0;
+	// time spent in the xstream callbacks, including delivery to the handler
+	private long decodeNanos=0;
+	private long decoded=0;
 
-	public LCRCallBackHandler(ClassLoader classLoader,OracleCDCEventHandler handler) {
-		// TODO Auto-generated constructor stub
-		this.classLoader=classLoader;
-		this.processLCR=new ProcessLCR(classLoader);
-		this.handler=handler;
+	public LCRCallBackHandler(XStreamBinding binding,OracleCDCEventHandler handler) {
+		this(binding,handler,null);
 	}
 	
-	public Object createChunk() throws Throwable {
-		// TODO Auto-generated method stub
-		return null;
+	/**
+	 * @param primaryKeys sets the key hash of row changes, may be null
+	 */
+	public LCRCallBackHandler(XStreamBinding binding,OracleCDCEventHandler handler,PrimaryKeys primaryKeys) {
+		this(binding,handler,primaryKeys,null);
 	}
-
-	public Object createLCR() throws Throwable {
-		// TODO Auto-generated method stub
-		return null;
+	
+	/**
+	 * @param filter skips the LCRs of tables and the columns that are not captured, may be null
+	 */
+	public LCRCallBackHandler(XStreamBinding binding,OracleCDCEventHandler handler,PrimaryKeys primaryKeys,CaptureFilter filter) {
+		this(binding,handler,primaryKeys,filter,ColumnConverters.DEFAULT_DATABASE_TIME_ZONE);
 	}
-
-	public void processChunk(Object arg0) throws Throwable {
-		// TODO Auto-generated method stub
-		System.out.println("in process chunk");
+	
+	/**
+	 * @param databaseTimeZone the time zone TIMESTAMP WITH LOCAL TIME ZONE values are normalized to
+	 */
+	public LCRCallBackHandler(XStreamBinding binding,OracleCDCEventHandler handler,PrimaryKeys primaryKeys,CaptureFilter filter,
+			TimeZone databaseTimeZone) {
+		this.binding=binding;
+		this.handler=handler;
+		this.primaryKeys=primaryKeys;
+		this.filter=filter;
+		this.converters=new ColumnConverters(binding,databaseTimeZone);
+	}
+	
+	/**
+	 * streams a LOB, LONG or XMLTYPE chunk of the pending row to the event handler and
+	 * delivers the row once its last chunk has been received
+	 */
+	public void processChunk(Object chunk) throws Throwable {
+		if(!pendingChunks){
+			return;
+		}
+		if(chunksToSkip>0){
+			chunksToSkip--;
+			return;
+		}
+		chunksDelivered++;
+		final String name = binding.isEmptyChunk(chunk) ? null : binding.getColumnName(chunk).toString();
+		if(name!=null && (columns==null || columns.contains(name))){
+			int chunkType = binding.getChunkType(chunk);
+			Object datum = binding.getColumnData(chunk);
+			byte[] data;
+			if(datum==null){
+				data = new byte[0];
+			}else if(binding.isBinaryChunk(chunkType)){
+				data = binding.getBytes(datum);
+			}else{
+				data = binding.stringValue(datum).getBytes(StandardCharsets.UTF_8);
+			}
+			String reference = handler.chunk(event, name, data, binding.isLastChunk(chunk));
+			if(!name.equals(chunkColumn)){
+				event.getNewValues().add(name, ChangeEvent.lobType(chunkType), "LOB", reference);
+				chunkColumn=name;
+			}
+			if(binding.isLastChunk(chunk)){
+				// the content of a column can move while its chunks arrive, the last reference holds all of it
+				ChangeEvent.find(event.getNewValues(), name).setValue(reference);
+				chunkColumn=null;
+			}
+		}
+		if(binding.isEndOfRow(chunk)){
+			pendingChunks=false;
+			chunkColumn=null;
+			dispatch();
+		}
 	}
 
 
 	public void processLCR(Object alcr) throws Throwable {
-		// TODO Auto-generated method stub
-		  System.out.println("in process lcr");
-          //JsonObject jsonObj = processLCR.lcr2ff(alcr);
 		  try{
-	    		JsonObject jsonObj = new JsonObject();
+			  	if(skipThrough!=null && skipResent(binding.getPosition(alcr))){
+			  		return;
+			  	}
+	    		event.clear();
 	    		
-  	  		jsonObj.addProperty("timestamp", getTimeStamp(getValue(alcr, "getSourceTime").toString()));
-  	  		jsonObj.addProperty("database", getValue(alcr, "getSourceDatabaseName").toString());
-  	  		jsonObj.addProperty("schema", getValue(alcr, "getObjectOwner").toString());
-  	  		jsonObj.addProperty("table", getValue(alcr, "getObjectName").toString());
-  	  		String commandType=getValue(alcr, "getCommandType").toString();
-  	  		jsonObj.addProperty("cdc_type",  commandType);
-  	  		jsonObj.addProperty("transactionId", getValue(alcr, "getTransactionId").toString());
-  	  		byte[] position =(byte[])getValue(alcr, "getPosition");
-  	  		jsonObj.addProperty("position",new String(new Base32(true).encode(position)));
-  	  		JsonArray columns = new JsonArray(); 
-  	  		jsonObj.add("newValues",columns);
-  	  		for (Object columnValue : (Object[])getValue(alcr, "getNewValues")) {
-  	  			JsonObject column = convert(columnValue);
-  	  			if(column!=null){
-  	  				columns.add(column);
+  	  		event.setSchema(binding.getObjectOwner(alcr).toString());
+  	  		event.setTable(binding.getObjectName(alcr).toString());
+  	  		String commandType=binding.getCommandType(alcr).toString();
+  	  		event.setCommandType(commandType);
+  	  		if(filter!=null && !"COMMIT".equals(commandType)){
+  	  			final TableFilter tableFilter=filter();
+  	  			if(tableFilter==null){
+  	  				// its chunks are ignored as well, the low watermark moves past it
+  	  				pendingChunks=false;
+  	  				lastPosition=binding.getPosition(alcr);
+  	  				handler.skipped(lastPosition);
+  	  				return;
   	  			}
+  	  			projection=tableFilter;
+  	  			columns=tableFilter.columns;
+  	  		}else{
+  	  			projection=null;
+  	  			columns=null;
   	  		}
-  	  		columns = new JsonArray(); 
-	  		jsonObj.add("oldValues",columns);
-	  		for (Object columnValue : (Object[])getValue(alcr, "getOldValues")) {
-	  			JsonObject column = convert(columnValue);
-	  			if(column!=null){
-	  				columns.add(column);
-	  			}
+  	  		event.setTimestamp(getTimeStamp(binding.getSourceTime(alcr)));
+  	  		event.setDatabase(binding.getSourceDatabaseName(alcr).toString());
+  	  		event.setTransactionId(binding.getTransactionId(alcr).toString());
+  	  		event.setPosition(binding.getPosition(alcr));
+  	  		metadata = tables.get(event.getDatabase(), event.getSchema(), event.getTable());
+  	  		if(projection!=null){
+  	  			projection.use(metadata);
+  	  		}
+  	  		addColumns(event.getNewValues(), binding.getNewValues(alcr));
+	  		addColumns(event.getOldValues(), binding.getOldValues(alcr));
+	  		event.setMetadata(metadata);
+	  		if(binding.hasChunkData(alcr)){
+	  			// delivered by processChunk after the end of row chunk
+	  			pendingChunks=true;
+	  			chunkColumn=null;
+	  			chunksDelivered=0;
+	  			return;
 	  		}
-	    	  		
-  	  		System.out.println(jsonObj.toString());
-  	  		
-	  	  	//String cdc_type = jsonObj.get("cdc_type").getAsString();
-		        switch(commandType){
+  	  		dispatch();
+		    	}catch(Exception ex){
+		    		throw new ProcessException("error creating change event " +ex.getMessage(), ex);
+		    	}
+          
+	}
+	
+	/**
+	 * @return the filter of the event's table, resolved on its first row, null if it is not captured
+	 */
+	private TableFilter filter(){
+		Map<String,TableFilter> ownerTables=filtered.get(event.getSchema());
+		if(ownerTables==null){
+			ownerTables=new HashMap<String,TableFilter>();
+			filtered.put(event.getSchema(), ownerTables);
+		}
+		if(ownerTables.containsKey(event.getTable())){
+			return ownerTables.get(event.getTable());
+		}
+		TableFilter tableFilter=null;
+		if(filter.includesTable(event.getSchema(), event.getTable())){
+			Set<String> projected=filter.getColumns(event.getSchema(), event.getTable());
+			if(projected!=null && primaryKeys!=null){
+				// the key columns are needed for the partition hash
+				final Set<String> withKeys=new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+				withKeys.addAll(projected);
+				withKeys.addAll(primaryKeys.getKeyColumns(event));
+				projected=withKeys;
+			}
+			tableFilter=new TableFilter(projected);
+		}
+		ownerTables.put(event.getTable(), tableFilter);
+		return tableFilter;
+	}
+	
+	private void dispatch(){
+		if(primaryKeys!=null && !"COMMIT".equals(event.getCommandType())){
+			event.setKeyHash(primaryKeys.hash(event));
+			event.setKeyColumns(primaryKeys.getKeyColumns(event));
+		}
+		dispatch(event,handler);
+		lastPosition=event.getPosition();
+	}
+	
+	/**
+	 * prepares for the LCRs of a new attachment, which can start before the last position
+	 * delivered: LCRs up to it are skipped, and a row cut off while its chunks were received
+	 * continues with the chunks not delivered yet
+	 */
+	public void resume(){
+		skipThrough=lastPosition;
+		resumedRow=null;
+		chunksToSkip=0;
+		if(pendingChunks){
+			resumedRow=event.getPosition();
+			chunksToSkip=chunksDelivered;
+			pendingChunks=false;
+			if(skipThrough==null){
+				skipThrough=new byte[0];
+			}
+		}
+	}
+	
+	/**
+	 * skips the LCRs up to a position emitted before a restart, which the server sends again
+	 * when it replays from an older processed low watermark
+	 */
+	public void skipThrough(byte[] position){
+		skipThrough=position;
+		lastPosition=position;
+	}
+	
+	/**
+	 * @return true for an LCR delivered before the reattach, its chunks are ignored as well
+	 */
+	private boolean skipResent(byte[] position){
+		if(resumedRow!=null && comparePositions(position,resumedRow)==0){
+			// the event still holds the row, only its remaining chunks are delivered
+			pendingChunks=true;
+			chunksDelivered=chunksToSkip;
+			skipThrough=null;
+			resumedRow=null;
+			return true;
+		}
+		if(comparePositions(position,skipThrough)<=0){
+			skipped++;
+			return true;
+		}
+		skipThrough=null;
+		resumedRow=null;
+		chunksToSkip=0;
+		return false;
+	}
+	
+	/**
+	 * @return the position of the last event delivered to the handler, or skipped through before
+	 * the first, null if neither
+	 */
+	public byte[] getLastPosition(){
+		return lastPosition;
+	}
+	
+	/**
+	 * @return the number of LCRs sent again after a reattach or restart and skipped so far
+	 */
+	public long getSkipped(){
+		return skipped;
+	}
+	
+	/**
+	 * compares xstream positions, which order as unsigned bytes
+	 */
+	public static int comparePositions(byte[] a,byte[] b){
+		final int length=Math.min(a.length,b.length);
+		for(int i=0;i<length;i++){
+			final int difference=(a[i]&0xff)-(b[i]&0xff);
+			if(difference!=0){
+				return difference;
+			}
+		}
+		return a.length-b.length;
+	}
+	
+	/**
+	 * delivers a row event to the handler callback matching its command type
+	 */
+	public static void dispatch(ChangeEvent event,OracleCDCEventHandler handler){
+		        switch(event.getCommandType()){
 		      	  case "INSERT":
-		      		  handler.inserts(jsonObj.toString(),position);
+		      		  handler.inserts(event);
 		      		  break;
 		      	  case "UPDATE":
-		      		  handler.updates(jsonObj.toString(),position);
+		      		  handler.updates(event);
 		      		  break;
 		      	  case "DELETE":
-		      		  handler.deletes(jsonObj.toString(),position);
+		      		  handler.deletes(event);
+		      		  break;
+		      	  case "COMMIT":
+		      		  handler.commit(event);
 		      		  break;
 		      	 default:
-		      		 handler.other(jsonObj.toString(),position);
+		      		 handler.other(event);
 		      		 break;
 		        }
-		    	}catch(Exception ex){
-		    		ex.printStackTrace();
-		    		throw new ProcessException("error creating json message" +ex.getMessage());
-		    	}
-          
 	}
 	
-	public byte[] getFinalPosition(){
-		return this.finalPosition;
+	/**
+	 * adds the time of one xstream callback
+	 */
+	public void decoded(long nanos){
+		decodeNanos+=nanos;
+		decoded++;
 	}
 	
-	public boolean isMoveWaterMark(){
-		return this.moveWatermark;
+	/**
+	 * @return the nanoseconds spent in the xstream callbacks since the handler was created
+	 */
+	public long getDecodeNanos(){
+		return decodeNanos;
 	}
-
-	@Override
-	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-		// TODO Auto-generated method stub
-		switch(method.getName()){
-		case "processLCR":
-			if (Class.forName("oracle.streams.RowLCR",false,this.classLoader).isAssignableFrom(args[0].getClass()))
-				processLCR(args[0]);
-			break;
-		}
-		return null;
+	
+	/**
+	 * @return the number of LCRs and chunks received through the xstream callbacks
+	 */
+	public long getDecoded(){
+		return decoded;
 	}
+
+    /**
+     * drops the cached columns of the altered table, its next row is decoded under a new version
+     */
+    public void processDDL(Object ddl) throws Throwable {
+    	final Object owner = binding.getObjectOwner(ddl);
+    	final Object name = binding.getObjectName(ddl);
+    	if(owner==null || name==null){
+    		return;
+    	}
+    	tables.invalidate(String.valueOf(binding.getSourceDatabaseName(ddl)), owner.toString(), name.toString());
+    }
+	
+    private void addColumns(ChangeEvent.ColumnList columns,Object[] values) throws Throwable{
+    	// commit and other control LCRs carry no column values
+    	if(values==null){
+    		return;
+    	}
+    	for (Object columnValue : values) {
+    		convert(columnValue,columns);
+    	}
+    }
 	
-    protected final JsonObject convert(Object value) throws SQLException,Throwable {
-        Object datum = getColumnValue(value, "getColumnData");
-    	Class columnValue = Class.forName("oracle.streams.ColumnValue",false,this.classLoader);
+    protected final void convert(Object value,ChangeEvent.ColumnList columns) throws SQLException,Throwable {
+        final String name = binding.getColumnName(value).toString();
+        int column;
+        final Integer cached = projection == null ? null : projection.slots.get(name);
+        if (cached != null) {
+        	column = cached;
+        } else {
+        	column = lookup(name, value);
+        	if (projection != null) {
+        		projection.slots.put(name, column);
+        	}
+        }
+        if (column == TableFilter.DROPPED) {
+        	// not projected, the value is never read
+        	return;
+        }
+        Object datum = binding.getColumnData(value);
 
-        JsonObject column= new JsonObject();
         if (null == datum) {
-        	return null;
+        	return;
         }
-
-        column.addProperty("name", getColumnValue(value,"getColumnName").toString());
-        column.addProperty("oracleType", getColumnValue(value,"getColumnDataType").toString());
-        int dataType = (int)getColumnValue(value,"getColumnDataType");
-        DatumParser parser = new DatumParser(datum,this.classLoader);
-        switch (dataType) {
-          case 101:
-        	column.addProperty("type","double");
-          	column.addProperty("value",parser.doubleValue());
-            break;
-          case 100:
-        	  column.addProperty("type","float");
-          	column.addProperty("value",parser.floatValue());
-            break;
-          case 1:
-        	  column.addProperty("type","String");
-          	column.addProperty("value",parser.stringValue());
-            break;
-          case 12:
-        	  column.addProperty("type","Date");
-          	column.addProperty("value",new Date(parser.timeStampValue(Calendar.getInstance())).toGMTString());
-            break;
-          case 2:
-        	  column.addProperty("type","BigDecimal");
-          	column.addProperty("value",parser.bigDecimalValue());
-          	break;
-//          case 231:
-//            value = convertTimestampLTZ(changeKey, datum);
-//            break;
-//          case 100:
-//            value = convertTimestampTZ(changeKey, datum);
-//            break;
-          default:
-        	  column.addProperty("type","String");
-          	column.addProperty("value", parser.stringValue());
+        columns.add(metadata.getName(column),metadata.getOracleType(column),metadata.getType(column),
+        		converters.get(metadata.getOracleType(column)).convert(datum));
+    }
+    
+    /**
+     * @return the index of the column in the table version, registering it on its first value,
+     * {@link TableFilter#DROPPED} if it is not projected
+     */
+    private int lookup(String name,Object value) throws Throwable {
+        if (this.columns != null && !this.columns.contains(name)) {
+        	return TableFilter.DROPPED;
+        }
+        int column = metadata.indexOf(name);
+        if (column < 0) {
+        	// first time the column is seen for this table version, NULL or not, so the
+        	// version does not change when the column first carries a value
+        	int dataType = binding.getColumnDataType(value);
+        	metadata = tables.addColumn(event.getDatabase(), event.getSchema(), event.getTable(), name, dataType,
+        			converters.get(dataType).getType());
+        	column = metadata.size() - 1;
+        	if (projection != null) {
+        		// the columns keep their index in the new version
+        		projection.version = metadata;
+        	}
         }
         return column;
     }
     
-    protected  Object getValue(Object row,String methodName) throws Throwable{
-    	Class<?> rowLCR = Class.forName("oracle.streams.RowLCR",false,this.classLoader);
-    	Method method = rowLCR.getMethod(methodName);
-    	return method.invoke(row);
+    protected  long getTimeStamp(Object sourceTime) throws Throwable{
+    	// the source time is a DATE
+    	return converters.toLocalEpochMillis(binding.shareBytes(sourceTime));
     }
     
-    protected  long getTimeStamp(String timeStamp) throws Throwable{
+    /**
+     * the columns decoded for a captured table
+     */
+    private static class TableFilter {
+    	static final int DROPPED = -1;
     	
-    	SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-    	Date date = format.parse(timeStamp);
-    	return date.getTime();
-    }
-    
-    protected  Object getColumnValue(Object columnValue, String methodName) throws Throwable{
-    	 Class<?> columnCls = Class.forName("oracle.streams.ColumnValue",false,this.classLoader);
-    	 Method method = columnCls.getMethod(methodName);
-    	 return method.invoke(columnValue);
-    }
-    
-    protected  int getTypeConstant(String typeName) throws Throwable{
-    	Class<?> columnCls = Class.forName("oracle.streams.ColumnValue",false,this.classLoader);
-    	return columnCls.getDeclaredField(typeName).getInt(null);
+    	final Set<String> columns;
+    	// column index in the version below by column name, DROPPED if not projected
+    	final Map<String,Integer> slots = new HashMap<String,Integer>();
+    	TableMetadata version;
+    	
+    	TableFilter(Set<String> columns) {
+    		this.columns = columns;
+    	}
     	
+    	/**
+    	 * starts a row of the table version, a DDL or restart drops the cached lookups
+    	 */
+    	void use(TableMetadata metadata) {
+    		if (metadata != version) {
+    			slots.clear();
+    			version = metadata;
+    		}
+    	}
     }
 
 
@@ -0,0 +1,281 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent.Column;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent.ColumnList;
+
+/**
+ * Collapses the row changes of a transaction into one net change per row, identified by the
+ * table and its primary key values: an insert followed by updates is a single insert, an
+ * insert followed by a delete disappears, a delete followed by an insert is an update.
+ * Updates only keep the key columns and the columns whose value changed.
+ * <p>
+ * Rows of tables without a known key are kept as they are. Net changes are drained in the
+ * order of the first change of their row, so that a row is still inserted before the rows
+ * referencing it; a net change keeps the position of the last change of its row, the position
+ * of the last change added is {@link #getLastPosition()}. Used by the single task working on
+ * an outbound server.
+ */
+public class NetChangeCoalescer {
+
+	private static final String INSERT = "INSERT";
+	private static final String UPDATE = "UPDATE";
+	private static final String DELETE = "DELETE";
+
+	private static final Comparator<Net> BY_FIRST_POSITION = new Comparator<Net>() {
+		@Override
+		public int compare(Net a, Net b) {
+			return LCRCallBackHandler.comparePositions(a.first, b.first);
+		}
+	};
+
+	private final List<Net> nets = new ArrayList<Net>();
+	// pending net change by row, absent for rows without key
+	private final Map<String,Net> rows = new HashMap<String,Net>();
+	private final List<ChangeEvent> drained = new ArrayList<ChangeEvent>();
+	// events reused for the nets and for merging
+	private final List<ChangeEvent> spare = new ArrayList<ChangeEvent>();
+	private long coalesced = 0;
+	private byte[] lastPosition = null;
+
+	/**
+	 * adds a copy of an INSERT, UPDATE or DELETE event
+	 */
+	public void add(ChangeEvent event) {
+		if (lastPosition == null || LCRCallBackHandler.comparePositions(event.getPosition(), lastPosition) > 0) {
+			lastPosition = event.getPosition();
+		}
+		final boolean keyed = !event.getKeyColumns().isEmpty();
+		final String key = keyed ? rowKey(event, DELETE.equals(event.getCommandType()) || UPDATE.equals(event.getCommandType())) : null;
+		final Net previous = key == null ? null : rows.get(key);
+		final ChangeEvent merged = previous == null ? null : merge(previous.event, event);
+		if (merged == null) {
+			// first change of the row, or a sequence that does not merge
+			final Net net = new Net(take(), event.getPosition());
+			if (keyed && UPDATE.equals(event.getCommandType())) {
+				changed(event, event.getNewValues(), event.getOldValues(), net.event);
+			} else {
+				net.event.copyFrom(event, true);
+			}
+			nets.add(net);
+			if (key != null) {
+				rows.put(rowKey(net.event, DELETE.equals(net.event.getCommandType())), net);
+			}
+			return;
+		}
+		coalesced++;
+		rows.remove(key);
+		spare.add(previous.event);
+		if (merged == Net.REMOVED) {
+			// inserted and deleted again
+			previous.event = null;
+			return;
+		}
+		previous.event = merged;
+		rows.put(rowKey(merged, DELETE.equals(merged.getCommandType())), previous);
+	}
+
+	/**
+	 * @return the net change of the row, {@link Net#REMOVED} if nothing is left of it, null if the
+	 * changes do not merge
+	 */
+	private ChangeEvent merge(ChangeEvent previous, ChangeEvent event) {
+		final String before = previous.getCommandType();
+		final String after = event.getCommandType();
+		final ChangeEvent merged;
+		if (INSERT.equals(before) && UPDATE.equals(after)) {
+			merged = take();
+			merged.copyFrom(event, false);
+			merged.setCommandType(INSERT);
+			overlay(previous.getNewValues(), event.getNewValues(), merged.getNewValues());
+		} else if (INSERT.equals(before) && DELETE.equals(after)) {
+			return Net.REMOVED;
+		} else if (UPDATE.equals(before) && UPDATE.equals(after)) {
+			// new values of the last update against the values before the first
+			final ChangeEvent values = take();
+			overlay(previous.getNewValues(), event.getNewValues(), values.getNewValues());
+			overlay(event.getOldValues(), previous.getOldValues(), values.getOldValues());
+			merged = take();
+			changed(event, values.getNewValues(), values.getOldValues(), merged);
+			spare.add(values);
+		} else if (UPDATE.equals(before) && DELETE.equals(after)) {
+			merged = take();
+			merged.copyFrom(event, false);
+			overlay(event.getOldValues(), previous.getOldValues(), merged.getOldValues());
+		} else if (DELETE.equals(before) && INSERT.equals(after)) {
+			merged = take();
+			changed(event, event.getNewValues(), previous.getOldValues(), merged);
+			merged.setCommandType(UPDATE);
+		} else {
+			return null;
+		}
+		return merged;
+	}
+
+	/**
+	 * copies the columns of base, with the values of overlay where it has them, and the
+	 * columns only overlay has
+	 */
+	private static void overlay(ColumnList base, ColumnList overlay, ColumnList target) {
+		for (int i = 0; i < base.size(); i++) {
+			final Column column = ChangeEvent.find(overlay, base.get(i).getName());
+			target.addCopy(column != null ? column : base.get(i));
+		}
+		for (int i = 0; i < overlay.size(); i++) {
+			if (ChangeEvent.find(base, overlay.get(i).getName()) == null) {
+				target.addCopy(overlay.get(i));
+			}
+		}
+	}
+
+	/**
+	 * sets the key columns and the columns whose new value differs from the old one as the
+	 * values of the target
+	 */
+	private static void changed(ChangeEvent header, ColumnList newValues, ColumnList oldValues, ChangeEvent target) {
+		target.copyFrom(header, false);
+		for (String key : header.getKeyColumns()) {
+			final Column newKey = ChangeEvent.find(newValues, key);
+			final Column oldKey = ChangeEvent.find(oldValues, key);
+			if (newKey != null || oldKey != null) {
+				target.getNewValues().addCopy(newKey != null ? newKey : oldKey);
+			}
+			if (oldKey != null) {
+				target.getOldValues().addCopy(oldKey);
+			}
+		}
+		for (int i = 0; i < newValues.size(); i++) {
+			final Column column = newValues.get(i);
+			if (header.getKeyColumns().contains(column.getName())) {
+				continue;
+			}
+			final Column old = ChangeEvent.find(oldValues, column.getName());
+			if (old == null || !sameValue(column.getValue(), old.getValue())) {
+				target.getNewValues().addCopy(column);
+				if (old != null) {
+					target.getOldValues().addCopy(old);
+				}
+			}
+		}
+	}
+
+	private static boolean sameValue(Object a, Object b) {
+		if (a instanceof byte[] && b instanceof byte[]) {
+			return Arrays.equals((byte[]) a, (byte[]) b);
+		}
+		if (a instanceof BigDecimal && b instanceof BigDecimal) {
+			return ((BigDecimal) a).compareTo((BigDecimal) b) == 0;
+		}
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/**
+	 * @param before the key of the row before the change, from the old values
+	 */
+	private static String rowKey(ChangeEvent event, boolean before) {
+		final StringBuilder key = new StringBuilder(event.getTableKey());
+		for (String column : event.getKeyColumns()) {
+			Column value = ChangeEvent.find(before ? event.getOldValues() : event.getNewValues(), column);
+			if (value == null) {
+				value = ChangeEvent.find(before ? event.getNewValues() : event.getOldValues(), column);
+			}
+			key.append('\u0000');
+			if (value != null && value.getValue() != null) {
+				key.append(PrimaryKeys.canonical(value.getValue()));
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * @return a cleared event
+	 */
+	private ChangeEvent take() {
+		if (spare.isEmpty()) {
+			return new ChangeEvent();
+		}
+		final ChangeEvent event = spare.remove(spare.size() - 1);
+		event.clear();
+		return event;
+	}
+
+	/**
+	 * @return the number of rows with a pending net change
+	 */
+	public int size() {
+		return nets.size();
+	}
+
+	/**
+	 * @return the number of changes merged into an earlier change of their row so far
+	 */
+	public long getCoalesced() {
+		return coalesced;
+	}
+
+	/**
+	 * @return the highest position added, including changes that merged away, null before the
+	 * first change
+	 */
+	public byte[] getLastPosition() {
+		return lastPosition;
+	}
+
+	/**
+	 * @return the net changes in the order of the first change of their row, valid until the
+	 * next call
+	 */
+	public List<ChangeEvent> drain() {
+		recycleDrained();
+		Collections.sort(nets, BY_FIRST_POSITION);
+		for (Net net : nets) {
+			if (net.event != null) {
+				drained.add(net.event);
+			}
+		}
+		nets.clear();
+		rows.clear();
+		return drained;
+	}
+
+	private void recycleDrained() {
+		spare.addAll(drained);
+		drained.clear();
+	}
+
+	/**
+	 * drops the pending net changes, their transaction is delivered again
+	 */
+	public void clear() {
+		recycleDrained();
+		lastPosition = null;
+		nets.clear();
+		rows.clear();
+	}
+
+	/**
+	 * the pending net change of a row
+	 */
+	private static class Net {
+		static final ChangeEvent REMOVED = new ChangeEvent();
+
+		ChangeEvent event;
+		// position of the first change of the row, the order of the drain
+		final byte[] first;
+
+		Net(ChangeEvent event, byte[] first) {
+			this.event = event;
+			this.first = first;
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Decodes the Oracle internal NUMBER representation without the driver. The first byte holds
+ * the sign and the base 100 exponent, the following bytes one base 100 digit each: digit+1 for
+ * positive numbers, 101-digit followed by a 102 terminator for negative ones. Zero is the single
+ * byte 0x80.
+ * <p>
+ * Integers of up to 18 decimal digits are decoded into a long without allocating; only decimals
+ * and larger integers need a BigDecimal.
+ */
+public class OracleNumber {
+
+	private static final int ZERO = 0x80;
+	private static final int POSITIVE_EXPONENT_BIAS = 0xC1;
+	private static final int NEGATIVE_EXPONENT_BIAS = 0x3E;
+	private static final int NEGATIVE_TERMINATOR = 102;
+	// 100^9 > 10^18, so integers with an exponent below 9 always fit in a long
+	private static final int MAX_LONG_EXPONENT = 8;
+
+	private OracleNumber() {
+	}
+
+	/**
+	 * @return a Long for integers that fit, a BigDecimal otherwise, or a Double for the infinities
+	 */
+	public static Object decode(byte[] bytes) {
+		if (isLong(bytes)) {
+			return longValue(bytes);
+		}
+		if (isInfinity(bytes)) {
+			return isPositive(bytes) ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+		}
+		return bigDecimalValue(bytes);
+	}
+
+	/**
+	 * @return true if the number is an integer that {@link #longValue(byte[])} decodes exactly
+	 */
+	public static boolean isLong(byte[] bytes) {
+		if (isZero(bytes)) {
+			return true;
+		}
+		if (isInfinity(bytes)) {
+			return false;
+		}
+		final int exponent = exponent(bytes);
+		return exponent >= 0 && exponent <= MAX_LONG_EXPONENT && digitCount(bytes) <= exponent + 1;
+	}
+
+	/**
+	 * @return the value of a number for which {@link #isLong(byte[])} is true
+	 */
+	public static long longValue(byte[] bytes) {
+		if (isZero(bytes)) {
+			return 0;
+		}
+		final boolean positive = isPositive(bytes);
+		final int exponent = exponent(bytes);
+		final int digits = digitCount(bytes);
+		long value = 0;
+		for (int i = 0; i <= exponent; i++) {
+			value = value * 100 + (i < digits ? digit(bytes, i + 1, positive) : 0);
+		}
+		return positive ? value : -value;
+	}
+
+	public static BigDecimal bigDecimalValue(byte[] bytes) {
+		if (isZero(bytes)) {
+			return BigDecimal.ZERO;
+		}
+		if (isInfinity(bytes)) {
+			throw new ArithmeticException("NUMBER is infinite");
+		}
+		final boolean positive = isPositive(bytes);
+		final int exponent = exponent(bytes);
+		final int digits = digitCount(bytes);
+		final BigInteger unscaled;
+		if (digits <= 9) {
+			long value = 0;
+			for (int i = 0; i < digits; i++) {
+				value = value * 100 + digit(bytes, i + 1, positive);
+			}
+			unscaled = BigInteger.valueOf(positive ? value : -value);
+		} else {
+			final char[] chars = new char[digits * 2 + 1];
+			chars[0] = positive ? '+' : '-';
+			for (int i = 0; i < digits; i++) {
+				final int digit = digit(bytes, i + 1, positive);
+				chars[i * 2 + 1] = (char) ('0' + digit / 10);
+				chars[i * 2 + 2] = (char) ('0' + digit % 10);
+			}
+			unscaled = new BigInteger(new String(chars));
+		}
+		int scale = (digits - 1 - exponent) * 2;
+		BigDecimal value = new BigDecimal(unscaled, scale);
+		if (scale < 0) {
+			return value.setScale(0);
+		}
+		if (scale > 0 && digit(bytes, digits, positive) % 10 == 0) {
+			// the last base 100 digit is never 0, but its second decimal digit can be
+			value = value.setScale(scale - 1);
+		}
+		return value;
+	}
+
+	private static boolean isZero(byte[] bytes) {
+		return bytes.length == 1 && (bytes[0] & 0xff) == ZERO;
+	}
+
+	private static boolean isPositive(byte[] bytes) {
+		return (bytes[0] & 0x80) != 0;
+	}
+
+	private static boolean isInfinity(byte[] bytes) {
+		final int first = bytes[0] & 0xff;
+		return (first == 0xff && bytes.length == 2 && bytes[1] == 101) || (first == 0 && bytes.length == 1);
+	}
+
+	private static int exponent(byte[] bytes) {
+		final int first = bytes[0] & 0xff;
+		return isPositive(bytes) ? first - POSITIVE_EXPONENT_BIAS : NEGATIVE_EXPONENT_BIAS - first;
+	}
+
+	private static int digitCount(byte[] bytes) {
+		int length = bytes.length - 1;
+		if (!isPositive(bytes) && (bytes[bytes.length - 1] & 0xff) == NEGATIVE_TERMINATOR) {
+			length--;
+		}
+		return length;
+	}
+
+	private static int digit(byte[] bytes, int index, boolean positive) {
+		final int b = bytes[index] & 0xff;
+		return positive ? b - 1 : 101 - b;
+	}
+
+}
@@ -0,0 +1,207 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.binary.Base32;
+import org.apache.nifi.components.state.Scope;
+import org.apache.nifi.components.state.StateManager;
+import org.apache.nifi.components.state.StateMap;
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureMetrics;
+
+/**
+ * Keeps the last processed xstream position of each outbound server in cluster state. Updates
+ * only record the position in memory; a background thread writes all of them every flush
+ * interval, or as soon as the data emitted since the last write reaches the byte threshold,
+ * so consecutive positions are coalesced into a single state write.
+ * <p>
+ * The progress of an initial load is kept in the same state map under 'snapshot.&lt;outbound server&gt;'
+ * until the load is handed off to the outbound server, since every write replaces the whole map.
+ */
+public class PositionCheckpointer {
+
+	public static final String POSITION_KEY = "position";
+	public static final String POSITION_KEY_PREFIX = POSITION_KEY+".";
+	public static final String SNAPSHOT_KEY_PREFIX = "snapshot.";
+
+	private final StateManager stateManager;
+	private final long byteThreshold;
+	private final ComponentLog logger;
+	private final ScheduledExecutorService executor;
+	private final Object flushLock = new Object();
+	private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+	private final AtomicLong pendingBytes = new AtomicLong(0);
+	private final Map<String,byte[]> positions = new ConcurrentHashMap<String,byte[]>();
+	private final Map<String,String> snapshots = new ConcurrentHashMap<String,String>();
+	private final Map<String,CaptureMetrics> metrics = new ConcurrentHashMap<String,CaptureMetrics>();
+	private volatile boolean dirty = false;
+
+	public PositionCheckpointer(StateManager stateManager,long intervalMillis,long byteThreshold,ComponentLog logger){
+		this.stateManager=stateManager;
+		this.byteThreshold=byteThreshold;
+		this.logger=logger;
+		this.executor=Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "OracleCDC position checkpoint");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				flushQuietly();
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return the positions stored in cluster state by outbound server name; a position stored
+	 * before servers were named is returned under the empty name
+	 */
+	public static Map<String,byte[]> restore(StateManager stateManager) throws IOException{
+		final Map<String,byte[]> restored = new HashMap<String,byte[]>();
+		final StateMap stateMap = stateManager.getState(Scope.CLUSTER);
+		for(Map.Entry<String,String> entry : stateMap.toMap().entrySet()){
+			final String position = entry.getValue();
+			if(position==null || position.isEmpty()){
+				continue;
+			}
+			if(entry.getKey().equals(POSITION_KEY)){
+				restored.put("", new Base32(true).decode(position));
+			}else if(entry.getKey().startsWith(POSITION_KEY_PREFIX)){
+				restored.put(entry.getKey().substring(POSITION_KEY_PREFIX.length()), new Base32(true).decode(position));
+			}
+		}
+		return restored;
+	}
+
+	/**
+	 * @return the progress of the initial loads stored in cluster state by outbound server name
+	 */
+	public static Map<String,String> restoreSnapshots(StateManager stateManager) throws IOException{
+		final Map<String,String> restored = new HashMap<String,String>();
+		final StateMap stateMap = stateManager.getState(Scope.CLUSTER);
+		for(Map.Entry<String,String> entry : stateMap.toMap().entrySet()){
+			if(entry.getKey().startsWith(SNAPSHOT_KEY_PREFIX) && entry.getValue()!=null && !entry.getValue().isEmpty()){
+				restored.put(entry.getKey().substring(SNAPSHOT_KEY_PREFIX.length()), entry.getValue());
+			}
+		}
+		return restored;
+	}
+
+	/**
+	 * records the progress of the initial load of an outbound server, written with the next flush
+	 */
+	public void snapshot(String xsOutName,String progress){
+		snapshots.put(xsOutName, progress);
+		this.dirty=true;
+	}
+
+	/**
+	 * drops the progress of a completed initial load with the next flush
+	 */
+	public void snapshotDone(String xsOutName){
+		if(snapshots.remove(xsOutName)!=null){
+			this.dirty=true;
+		}
+	}
+
+	/**
+	 * starts from a restored position, which is written again with the next flush, under the key
+	 * of the outbound server if it was stored before servers were named
+	 */
+	public void restored(String xsOutName,byte[] position){
+		if(position!=null){
+			positions.put(xsOutName, position);
+			this.dirty=true;
+		}
+	}
+
+	/**
+	 * records the duration of every state write in the metrics of the outbound server
+	 */
+	public void register(String xsOutName,CaptureMetrics metrics){
+		this.metrics.put(xsOutName, metrics);
+	}
+
+	/**
+	 * records the position an outbound server was processed up to, together with the bytes emitted to reach it
+	 */
+	public void update(String xsOutName,byte[] position,long bytes){
+		positions.put(xsOutName, position);
+		this.dirty=true;
+		if(pendingBytes.addAndGet(bytes)>=byteThreshold && flushRequested.compareAndSet(false, true)){
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					flushRequested.set(false);
+					flushQuietly();
+				}
+			});
+		}
+	}
+
+	private void flushQuietly(){
+		try{
+			flush();
+		}catch(IOException e){
+			logger.warn("Failed to set the low watermark to State Manager", e);
+		}
+	}
+
+	/**
+	 * writes the latest positions if any changed since the last write
+	 */
+	public void flush() throws IOException{
+		synchronized(flushLock){
+			if(!dirty){
+				return;
+			}
+			dirty=false;
+			pendingBytes.set(0);
+			final Map<String,String> state = new HashMap<String,String>();
+			for(Map.Entry<String,byte[]> entry : positions.entrySet()){
+				state.put(POSITION_KEY_PREFIX+entry.getKey(), new String(new Base32(true).encode(entry.getValue())));
+			}
+			for(Map.Entry<String,String> entry : snapshots.entrySet()){
+				state.put(SNAPSHOT_KEY_PREFIX+entry.getKey(), entry.getValue());
+			}
+			try{
+				final long start = System.nanoTime();
+				stateManager.setState(state, Scope.CLUSTER);
+				final long elapsed = System.nanoTime()-start;
+				for(CaptureMetrics written : metrics.values()){
+					written.checkpointed(elapsed);
+				}
+			}catch(IOException e){
+				dirty=true;
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * stops the background writes and writes the latest positions synchronously
+	 */
+	public void shutdown() throws IOException{
+		executor.shutdown();
+		try{
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		flush();
+	}
+
+}
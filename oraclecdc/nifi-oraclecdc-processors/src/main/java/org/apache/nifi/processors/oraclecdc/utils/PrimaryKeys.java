@@ -0,0 +1,165 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+import org.apache.commons.codec.binary.Hex;
+
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+
+/**
+ * Hashes the primary key of a changed row, so that every change of the same row gets the same
+ * hash. The key columns of a table are taken from the configured list, or looked up once in the
+ * data dictionary. A table without a primary key hashes on the table alone, which keeps all of
+ * its changes together.
+ */
+public class PrimaryKeys {
+
+	private static final String PK_QUERY = "SELECT cc.column_name FROM all_constraints c "
+			+ "JOIN all_cons_columns cc ON cc.owner = c.owner AND cc.constraint_name = c.constraint_name "
+			+ "WHERE c.constraint_type = 'P' AND c.owner = ? AND c.table_name = ? ORDER BY cc.position";
+
+	private static final int FNV_OFFSET = 0x811c9dc5;
+	private static final int FNV_PRIME = 0x01000193;
+
+	private final Map<String,List<String>> configured;
+	private final DataSource dataSource;
+	private final ComponentLog logger;
+	private final Map<String,List<String>> keys = new ConcurrentHashMap<String,List<String>>();
+
+	/**
+	 * @param configured key columns by OWNER.TABLE, see {@link #parse(String)}
+	 * @param dataSource used to look up the keys of tables that are not configured, may be null
+	 */
+	public PrimaryKeys(Map<String,List<String>> configured,DataSource dataSource,ComponentLog logger){
+		this.configured=configured;
+		this.dataSource=dataSource;
+		this.logger=logger;
+	}
+
+	/**
+	 * parses key columns given as OWNER.TABLE=COLUMN[,COLUMN...] entries separated by semicolons
+	 */
+	public static Map<String,List<String>> parse(String value){
+		final Map<String,List<String>> parsed = new HashMap<String,List<String>>();
+		if(value==null){
+			return parsed;
+		}
+		for(String entry : value.split(";")){
+			final int separator = entry.indexOf('=');
+			if(separator<0){
+				continue;
+			}
+			final List<String> columns = new ArrayList<String>();
+			for(String column : entry.substring(separator+1).split(",")){
+				if(!column.trim().isEmpty()){
+					columns.add(column.trim().toUpperCase());
+				}
+			}
+			parsed.put(entry.substring(0, separator).trim().toUpperCase(), Collections.unmodifiableList(columns));
+		}
+		return parsed;
+	}
+
+	/**
+	 * @return the key columns of the event's table, empty if it has none
+	 */
+	public List<String> getKeyColumns(ChangeEvent event){
+		final String table = event.getSchema()+"."+event.getTable();
+		List<String> columns = keys.get(table);
+		if(columns==null){
+			columns = configured.get(table.toUpperCase());
+			if(columns==null){
+				columns = lookup(event.getSchema(), event.getTable());
+			}
+			keys.put(table, columns);
+		}
+		return columns;
+	}
+
+	private List<String> lookup(String owner,String table){
+		if(dataSource==null){
+			return Collections.emptyList();
+		}
+		final List<String> columns = new ArrayList<String>();
+		try(final Connection conn = dataSource.getConnection();
+				final PreparedStatement stmt = conn.prepareStatement(PK_QUERY)){
+			stmt.setString(1, owner);
+			stmt.setString(2, table);
+			try(final ResultSet rs = stmt.executeQuery()){
+				while(rs.next()){
+					columns.add(rs.getString(1));
+				}
+			}
+		}catch(SQLException e){
+			logger.warn("cannot look up the primary key of "+owner+"."+table+", its changes are kept in one partition", e);
+			return Collections.emptyList();
+		}
+		if(columns.isEmpty()){
+			logger.info(owner+"."+table+" has no primary key, its changes are kept in one partition");
+		}
+		return Collections.unmodifiableList(columns);
+	}
+
+	/**
+	 * FNV-1a over the table key and the key values. Values are taken from the new values and,
+	 * for deletes and updates that leave the key unchanged, from the old values.
+	 */
+	public int hash(ChangeEvent event){
+		int hash = update(FNV_OFFSET, event.getTableKey());
+		for(String column : getKeyColumns(event)){
+			Object value = valueOf(event.getNewValues(), column);
+			if(value==null){
+				value = valueOf(event.getOldValues(), column);
+			}
+			hash = update(hash, "\u0000");
+			if(value!=null){
+				hash = update(hash, canonical(value));
+			}
+		}
+		return hash;
+	}
+
+	private static Object valueOf(ChangeEvent.ColumnList columns,String name){
+		final ChangeEvent.Column column = ChangeEvent.find(columns, name);
+		return column==null ? null : column.getValue();
+	}
+
+	/**
+	 * @return the same text for the same key value however it was decoded
+	 */
+	public static String canonical(Object value){
+		if(value instanceof byte[]){
+			return Hex.encodeHexString((byte[])value);
+		}
+		if(value instanceof BigDecimal){
+			return ((BigDecimal)value).stripTrailingZeros().toPlainString();
+		}
+		if(value instanceof Date){
+			return String.valueOf(((Date)value).getTime());
+		}
+		return value.toString();
+	}
+
+	private static int update(int hash,String value){
+		for(byte b : value.getBytes(StandardCharsets.UTF_8)){
+			hash ^= (b & 0xff);
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+}
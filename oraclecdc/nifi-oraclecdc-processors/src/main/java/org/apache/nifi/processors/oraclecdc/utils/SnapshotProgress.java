@@ -0,0 +1,189 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The progress of the initial load of an outbound server: the SCN the tables are read as of,
+ * the tables to load and the chunks of each table already emitted. It is kept in state as text,
+ * one line per entry:
+ * <pre>
+ * scn=8812345
+ * rows=1200000
+ * HR.EMPLOYEES=*
+ * HR.ORDERS=0-11,14
+ * </pre>
+ * where * marks a table loaded completely and the numbers are the chunks loaded so far.
+ * Chunks are planned again after a restart; the rows of a table as of the SCN do not change,
+ * so a chunk number refers to the same rows. Updated from the tasks of all chunks.
+ */
+public class SnapshotProgress {
+
+	private static final String SCN = "scn";
+	private static final String ROWS = "rows";
+	private static final String COMPLETE = "*";
+
+	private final long scn;
+	private long rows;
+	// the chunks loaded by table, null once a table is complete
+	private final Map<String,BitSet> tables = new LinkedHashMap<String,BitSet>();
+	// the number of chunks of the tables planned since the load was started or restored
+	private final Map<String,Integer> planned = new HashMap<String,Integer>();
+
+	/**
+	 * @param tables the tables to load as OWNER.TABLE
+	 */
+	public SnapshotProgress(long scn,List<String> tables){
+		this.scn=scn;
+		for(String table : tables){
+			this.tables.put(table, new BitSet());
+		}
+	}
+
+	private SnapshotProgress(long scn){
+		this.scn=scn;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the text is not written by {@link #encode()}
+	 */
+	public static SnapshotProgress parse(String text){
+		final String[] lines = text.split("\n");
+		if(lines.length<2 || !lines[0].startsWith(SCN+"=") || !lines[1].startsWith(ROWS+"=")){
+			throw new IllegalArgumentException("not an initial load progress: "+text);
+		}
+		final SnapshotProgress progress;
+		try{
+			progress = new SnapshotProgress(Long.parseLong(lines[0].substring(SCN.length()+1)));
+			progress.rows=Long.parseLong(lines[1].substring(ROWS.length()+1));
+			for(int i=2;i<lines.length;i++){
+				// table names may hold '=' but the chunk list does not
+				final int separator = lines[i].lastIndexOf('=');
+				if(separator<=0){
+					throw new IllegalArgumentException("not an initial load progress: "+text);
+				}
+				final String chunks = lines[i].substring(separator+1);
+				progress.tables.put(lines[i].substring(0, separator), COMPLETE.equals(chunks) ? null : parseChunks(chunks));
+			}
+		}catch(NumberFormatException e){
+			throw new IllegalArgumentException("not an initial load progress: "+text, e);
+		}
+		return progress;
+	}
+
+	private static BitSet parseChunks(String chunks){
+		final BitSet done = new BitSet();
+		if(chunks.isEmpty()){
+			return done;
+		}
+		for(String range : chunks.split(",")){
+			final int dash = range.indexOf('-');
+			if(dash<0){
+				done.set(Integer.parseInt(range));
+			}else{
+				done.set(Integer.parseInt(range.substring(0, dash)), Integer.parseInt(range.substring(dash+1))+1);
+			}
+		}
+		return done;
+	}
+
+	public long getScn(){
+		return scn;
+	}
+
+	public synchronized long getRows(){
+		return rows;
+	}
+
+	/**
+	 * @return the tables to load, in the order they are loaded
+	 */
+	public synchronized List<String> getTables(){
+		return new ArrayList<String>(tables.keySet());
+	}
+
+	public synchronized boolean isTableDone(String table){
+		return tables.get(table)==null;
+	}
+
+	public synchronized boolean isChunkDone(String table,int index){
+		final BitSet done = tables.get(table);
+		return done==null || done.get(index);
+	}
+
+	/**
+	 * @return true once every table is complete
+	 */
+	public synchronized boolean isDone(){
+		for(BitSet done : tables.values()){
+			if(done!=null){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * records the number of chunks a table was split into, completing a table without chunks
+	 */
+	public synchronized void planned(String table,int chunks){
+		planned.put(table, chunks);
+		complete(table);
+	}
+
+	/**
+	 * records a chunk whose rows were emitted, completing its table with its last chunk
+	 */
+	public synchronized void chunkDone(String table,int index,long chunkRows){
+		final BitSet done = tables.get(table);
+		if(done==null || done.get(index)){
+			return;
+		}
+		done.set(index);
+		rows+=chunkRows;
+		complete(table);
+	}
+
+	private void complete(String table){
+		final BitSet done = tables.get(table);
+		final Integer chunks = planned.get(table);
+		if(done!=null && chunks!=null && done.cardinality()>=chunks){
+			tables.put(table, null);
+		}
+	}
+
+	public synchronized String encode(){
+		final StringBuilder text = new StringBuilder();
+		text.append(SCN).append('=').append(scn).append('\n');
+		text.append(ROWS).append('=').append(rows);
+		for(Map.Entry<String,BitSet> entry : tables.entrySet()){
+			text.append('\n').append(entry.getKey()).append('=');
+			final BitSet done = entry.getValue();
+			if(done==null){
+				text.append(COMPLETE);
+				continue;
+			}
+			String separator = "";
+			for(int from = done.nextSetBit(0); from>=0; from = done.nextSetBit(from)){
+				final int to = done.nextClearBit(from);
+				text.append(separator).append(from);
+				if(to-1>from){
+					text.append('-').append(to-1);
+				}
+				separator=",";
+				from=to;
+			}
+		}
+		return text.toString();
+	}
+
+	@Override
+	public String toString(){
+		return encode();
+	}
+
+}
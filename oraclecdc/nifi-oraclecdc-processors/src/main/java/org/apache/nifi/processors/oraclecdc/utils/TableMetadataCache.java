@@ -0,0 +1,74 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.nifi.processors.oraclecdc.controller.TableMetadata;
+
+/**
+ * Column metadata by database, owner and table, so the type and converter of a column are
+ * resolved once per table version instead of once per row. Used by a single receiver thread.
+ * An entry is built from the first rows of a table and dropped when a DDL LCR for the table
+ * arrives; version ids keep increasing across invalidations. The tables are nested by database
+ * and owner, so finding the table of a row does not build a key.
+ */
+public class TableMetadataCache {
+
+	private final Map<String,Map<String,Map<String,TableMetadata>>> tables = new HashMap<String,Map<String,Map<String,TableMetadata>>>();
+	private int nextVersion = 1;
+	private int size = 0;
+
+	/**
+	 * @return the current version of the table, created empty if the table is not cached
+	 */
+	public TableMetadata get(String database, String owner, String table) {
+		final Map<String,TableMetadata> ownerTables = ownerTables(database, owner);
+		TableMetadata metadata = ownerTables.get(table);
+		if (metadata == null) {
+			metadata = new TableMetadata(nextVersion++, database + "." + owner + "." + table);
+			ownerTables.put(table, metadata);
+			size++;
+		}
+		return metadata;
+	}
+
+	/**
+	 * adds a column seen for the first time to the current version of the table and makes the
+	 * result its current version
+	 */
+	public TableMetadata addColumn(String database, String owner, String table, String name, int oracleType, String type) {
+		final TableMetadata widened = get(database, owner, table).withColumn(nextVersion++, name, oracleType, type);
+		ownerTables(database, owner).put(table, widened);
+		return widened;
+	}
+
+	/**
+	 * drops the table, the next row rebuilds it under a new version
+	 */
+	public void invalidate(String database, String owner, String table) {
+		final Map<String,Map<String,TableMetadata>> owners = tables.get(database);
+		final Map<String,TableMetadata> ownerTables = owners == null ? null : owners.get(owner);
+		if (ownerTables != null && ownerTables.remove(table) != null) {
+			size--;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private Map<String,TableMetadata> ownerTables(String database, String owner) {
+		Map<String,Map<String,TableMetadata>> owners = tables.get(database);
+		if (owners == null) {
+			owners = new HashMap<String,Map<String,TableMetadata>>();
+			tables.put(database, owners);
+		}
+		Map<String,TableMetadata> ownerTables = owners.get(owner);
+		if (ownerTables == null) {
+			ownerTables = new HashMap<String,TableMetadata>();
+			owners.put(owner, ownerTables);
+		}
+		return ownerTables;
+	}
+
+}
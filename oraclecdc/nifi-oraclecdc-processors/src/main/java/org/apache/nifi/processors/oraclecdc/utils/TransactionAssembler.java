@@ -0,0 +1,189 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Buffers change events per transaction id until the transaction commits. Events are
+ * kept on heap until the buffered size of all open transactions exceeds the heap budget,
+ * after which the transaction being appended to is spilled to a local file and keeps
+ * growing there.
+ */
+public class TransactionAssembler {
+
+	private final long heapBudget;
+	private final File spillDirectory;
+	private final boolean newlineDelimited;
+	private final Map<String,TransactionBuffer> open = new LinkedHashMap<String,TransactionBuffer>();
+	private long heapBytes=0;
+
+	/**
+	 * @param heapBudget maximum bytes of event content kept on heap across all open transactions
+	 * @param spillDirectory directory for spill files, or null for the default temporary directory
+	 */
+	public TransactionAssembler(long heapBudget,File spillDirectory){
+		this(heapBudget,spillDirectory,true);
+	}
+
+	/**
+	 * @param newlineDelimited false for events that delimit themselves, such as binary frames
+	 */
+	public TransactionAssembler(long heapBudget,File spillDirectory,boolean newlineDelimited){
+		this.heapBudget=heapBudget;
+		this.spillDirectory=spillDirectory;
+		this.newlineDelimited=newlineDelimited;
+	}
+
+	/**
+	 * appends the first length bytes of event to the transaction
+	 */
+	public void add(String transactionId,byte[] event,int length,byte[] position) throws IOException{
+		TransactionBuffer buffer = open.get(transactionId);
+		if(buffer==null){
+			buffer = new TransactionBuffer(transactionId,newlineDelimited);
+			open.put(transactionId, buffer);
+		}
+		if(!buffer.isSpilled() && heapBytes+length+1>heapBudget){
+			heapBytes-=buffer.heapSize();
+			buffer.spill(spillDirectory);
+		}
+		heapBytes+=buffer.append(event,length,position);
+	}
+
+	/**
+	 * removes the transaction from the open set. The caller owns the returned buffer and
+	 * must {@link TransactionBuffer#discard()} it once its content has been consumed.
+	 *
+	 * @return the buffered transaction, or null if no row changes were captured for it
+	 */
+	public TransactionBuffer commit(String transactionId) throws IOException{
+		TransactionBuffer buffer = open.remove(transactionId);
+		if(buffer==null){
+			return null;
+		}
+		heapBytes-=buffer.heapSize();
+		buffer.close();
+		return buffer;
+	}
+
+	/**
+	 * drops all open transactions, they will be redelivered from the last processed low watermark
+	 */
+	public void clear(){
+		for(TransactionBuffer buffer : open.values()){
+			buffer.discard();
+		}
+		open.clear();
+		heapBytes=0;
+	}
+
+	public int getOpenTransactions(){
+		return open.size();
+	}
+
+	public static class TransactionBuffer{
+		private final String transactionId;
+		private final boolean newlineDelimited;
+		private final ByteArrayOutputStream heap = new ByteArrayOutputStream();
+		private File spillFile;
+		private OutputStream spillOut;
+		private int count=0;
+		private long size=0;
+		private byte[] firstPosition;
+		private byte[] lastPosition;
+
+		TransactionBuffer(String transactionId,boolean newlineDelimited){
+			this.transactionId=transactionId;
+			this.newlineDelimited=newlineDelimited;
+		}
+
+		/**
+		 * @return the number of bytes added to the heap
+		 */
+		long append(byte[] event,int length,byte[] position) throws IOException{
+			OutputStream out = spillOut!=null ? spillOut : heap;
+			int written=length;
+			if(count==0){
+				firstPosition=position;
+			}else if(newlineDelimited){
+				out.write('\n');
+				written++;
+			}
+			out.write(event,0,length);
+			lastPosition=position;
+			count++;
+			size+=written;
+			return spillOut!=null ? 0 : written;
+		}
+
+		void spill(File directory) throws IOException{
+			spillFile = File.createTempFile("oraclecdc-txn-", newlineDelimited ? ".json" : ".bin", directory);
+			spillOut = new BufferedOutputStream(new FileOutputStream(spillFile));
+			heap.writeTo(spillOut);
+			heap.reset();
+		}
+
+		void close() throws IOException{
+			if(spillOut!=null){
+				spillOut.close();
+				spillOut=null;
+			}
+		}
+
+		long heapSize(){
+			return heap.size();
+		}
+
+		public boolean isSpilled(){
+			return spillFile!=null;
+		}
+
+		public File getSpillFile(){
+			return spillFile;
+		}
+
+		public void writeTo(OutputStream out) throws IOException{
+			heap.writeTo(out);
+		}
+
+		public void discard(){
+			try{
+				close();
+			}catch(IOException e){
+				// nothing to recover, the file is removed below
+			}
+			if(spillFile!=null){
+				spillFile.delete();
+				spillFile=null;
+			}
+			heap.reset();
+		}
+
+		public String getTransactionId(){
+			return transactionId;
+		}
+
+		public int getCount(){
+			return count;
+		}
+
+		public long getSize(){
+			return size;
+		}
+
+		public byte[] getFirstPosition(){
+			return firstPosition;
+		}
+
+		public byte[] getLastPosition(){
+			return lastPosition;
+		}
+	}
+
+}
@@ -0,0 +1,432 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * Resolves the xstream and oracle driver classes once for a driver classloader and keeps
+ * method handles for every accessor used on the capture path, so the callback handler,
+ * the datum parser and the service never look up a class or method per call.
+ */
+public class XStreamBinding {
+
+	private final ClassLoader classLoader;
+
+	private final Class<?> xstreamOutCls;
+	private final Class<?> callbackHandlerCls;
+	private final Class<?> oracleConnectionCls;
+	private final Class<?> lcrCls;
+	private final Class<?> rowLCRCls;
+	private final Class<?> ddlLCRCls;
+	private final Class<?> columnValueCls;
+	private final Class<?> chunkColumnValueCls;
+	private final Class<?> datumCls;
+	private final Class<?> oracleResultSetCls;
+	private final int defaultMode;
+	private final int blobChunkType;
+	private final int longRawChunkType;
+
+	// XStreamCallbackAdapter(LCRCallBackHandler), defined in a child of the driver class loader.
+	// The adapter is only named by string, a class literal would load it with the nar class loader
+	private static final String CALLBACK_ADAPTER = "org.apache.nifi.processors.oraclecdc.utils.XStreamCallbackAdapter";
+	private final MethodHandle newCallbackAdapter;
+
+	// XStreamOut
+	private final MethodHandle attach;
+	private final MethodHandle receiveLCRCallback;
+	private final MethodHandle setProcessedLowWatermark;
+	private final MethodHandle detach;
+
+	// LCR
+	private final MethodHandle sourceTime;
+	private final MethodHandle sourceDatabaseName;
+	private final MethodHandle objectOwner;
+	private final MethodHandle objectName;
+	private final MethodHandle commandType;
+	private final MethodHandle transactionId;
+	private final MethodHandle position;
+
+	// RowLCR
+	private final MethodHandle newValues;
+	private final MethodHandle oldValues;
+	private final MethodHandle hasChunkData;
+
+	// ColumnValue
+	private final MethodHandle columnData;
+	private final MethodHandle columnName;
+	private final MethodHandle columnDataType;
+
+	// ChunkColumnValue
+	private final MethodHandle chunkType;
+	private final MethodHandle endOfRow;
+	private final MethodHandle lastChunk;
+	private final MethodHandle emptyChunk;
+
+	// Datum
+	private final MethodHandle doubleValue;
+	private final MethodHandle floatValue;
+	private final MethodHandle stringValue;
+	private final MethodHandle bigDecimalValue;
+	private final MethodHandle timeStampValue;
+	private final MethodHandle timeStampValueCal;
+	private final MethodHandle bytes;
+	private final MethodHandle shareBytes;
+	private final MethodHandle oracleObject;
+	// XStreamUtility.convertSCNToPosition(new NUMBER(scn)), null if the client does not have it
+	private final MethodHandle scnToPosition;
+
+	public XStreamBinding(ClassLoader classLoader) throws ReflectiveOperationException {
+		this.classLoader = classLoader;
+		this.xstreamOutCls = loadClass("oracle.streams.XStreamOut");
+		this.callbackHandlerCls = loadClass("oracle.streams.XStreamLCRCallbackHandler");
+		this.oracleConnectionCls = loadClass("oracle.jdbc.OracleConnection");
+		this.lcrCls = loadClass("oracle.streams.LCR");
+		this.rowLCRCls = loadClass("oracle.streams.RowLCR");
+		this.ddlLCRCls = loadClass("oracle.streams.DDLLCR");
+		this.columnValueCls = loadClass("oracle.streams.ColumnValue");
+		this.chunkColumnValueCls = loadClass("oracle.streams.ChunkColumnValue");
+		this.datumCls = loadClass("oracle.sql.Datum");
+		this.oracleResultSetCls = loadClass("oracle.jdbc.OracleResultSet");
+		this.defaultMode = xstreamOutCls.getDeclaredField("DEFAULT_MODE").getInt(null);
+		this.blobChunkType = chunkColumnValueCls.getField("BLOB").getInt(null);
+		this.longRawChunkType = chunkColumnValueCls.getField("LONGRAW").getInt(null);
+		this.newCallbackAdapter = MethodHandles.publicLookup()
+				.unreflectConstructor(new AdapterClassLoader(classLoader).loadClass(CALLBACK_ADAPTER)
+						.getConstructor(LCRCallBackHandler.class))
+				.asType(MethodType.methodType(Object.class, LCRCallBackHandler.class));
+
+		this.attach = handle(xstreamOutCls, "attach", oracleConnectionCls, String.class, byte[].class, int.class)
+				.asType(MethodType.methodType(Object.class, Object.class, String.class, byte[].class, int.class));
+		this.receiveLCRCallback = handle(xstreamOutCls, "receiveLCRCallback", callbackHandlerCls, int.class)
+				.asType(MethodType.methodType(void.class, Object.class, Object.class, int.class));
+		this.setProcessedLowWatermark = handle(xstreamOutCls, "setProcessedLowWatermark", byte[].class, int.class)
+				.asType(MethodType.methodType(void.class, Object.class, byte[].class, int.class));
+		this.detach = handle(xstreamOutCls, "detach", int.class)
+				.asType(MethodType.methodType(void.class, Object.class, int.class));
+
+		// header accessors are declared by LCR, so they serve row and DDL LCRs alike
+		this.sourceTime = getter(lcrCls, "getSourceTime");
+		this.sourceDatabaseName = getter(lcrCls, "getSourceDatabaseName");
+		this.objectOwner = getter(lcrCls, "getObjectOwner");
+		this.objectName = getter(lcrCls, "getObjectName");
+		this.commandType = getter(lcrCls, "getCommandType");
+		this.transactionId = getter(lcrCls, "getTransactionId");
+		this.position = getter(lcrCls, "getPosition");
+		this.newValues = getter(rowLCRCls, "getNewValues");
+		this.oldValues = getter(rowLCRCls, "getOldValues");
+		this.hasChunkData = handle(rowLCRCls, "hasChunkData").asType(MethodType.methodType(boolean.class, Object.class));
+
+		this.columnData = getter(columnValueCls, "getColumnData");
+		this.columnName = getter(columnValueCls, "getColumnName");
+		this.columnDataType = handle(columnValueCls, "getColumnDataType")
+				.asType(MethodType.methodType(int.class, Object.class));
+
+		this.chunkType = handle(chunkColumnValueCls, "getChunkType").asType(MethodType.methodType(int.class, Object.class));
+		this.endOfRow = handle(chunkColumnValueCls, "isEndOfRow").asType(MethodType.methodType(boolean.class, Object.class));
+		this.lastChunk = handle(chunkColumnValueCls, "isLastChunk").asType(MethodType.methodType(boolean.class, Object.class));
+		this.emptyChunk = handle(chunkColumnValueCls, "isEmptyChunk").asType(MethodType.methodType(boolean.class, Object.class));
+
+		this.doubleValue = handle(datumCls, "doubleValue").asType(MethodType.methodType(double.class, Object.class));
+		this.floatValue = handle(datumCls, "floatValue").asType(MethodType.methodType(float.class, Object.class));
+		this.stringValue = handle(datumCls, "stringValue").asType(MethodType.methodType(String.class, Object.class));
+		this.bigDecimalValue = handle(datumCls, "bigDecimalValue").asType(MethodType.methodType(BigDecimal.class, Object.class));
+		this.timeStampValue = handle(datumCls, "timeStampValue").asType(MethodType.methodType(Timestamp.class, Object.class));
+		this.timeStampValueCal = handle(datumCls, "timeStampValue", Calendar.class)
+				.asType(MethodType.methodType(Timestamp.class, Object.class, Calendar.class));
+		this.bytes = handle(datumCls, "getBytes").asType(MethodType.methodType(byte[].class, Object.class));
+		this.shareBytes = handle(datumCls, "shareBytes").asType(MethodType.methodType(byte[].class, Object.class));
+
+		this.oracleObject = handle(oracleResultSetCls, "getOracleObject", int.class)
+				.asType(MethodType.methodType(Object.class, Object.class, int.class));
+		MethodHandle convertScn = null;
+		try {
+			final Class<?> numberCls = loadClass("oracle.sql.NUMBER");
+			convertScn = MethodHandles.filterArguments(
+					handle(loadClass("oracle.streams.XStreamUtility"), "convertSCNToPosition", numberCls),
+					0, MethodHandles.publicLookup().unreflectConstructor(numberCls.getConstructor(long.class)))
+					.asType(MethodType.methodType(byte[].class, long.class));
+		} catch (ReflectiveOperationException e) {
+			// only needed to attach from the SCN of an initial load
+		}
+		this.scnToPosition = convertScn;
+	}
+
+	private Class<?> loadClass(String className) throws ClassNotFoundException {
+		return Class.forName(className, false, this.classLoader);
+	}
+
+	private static MethodHandle handle(Class<?> cls, String name, Class<?>... params) throws ReflectiveOperationException {
+		return MethodHandles.publicLookup().unreflect(cls.getMethod(name, params));
+	}
+
+	private static MethodHandle getter(Class<?> cls, String name) throws ReflectiveOperationException {
+		return handle(cls, name).asType(MethodType.methodType(Object.class, Object.class));
+	}
+
+	public ClassLoader getClassLoader() {
+		return classLoader;
+	}
+
+	public Class<?> getCallbackHandlerClass() {
+		return callbackHandlerCls;
+	}
+
+	/**
+	 * @return an XStreamLCRCallbackHandler of the driver that delivers the callbacks to the handler
+	 */
+	public Object newCallbackHandler(LCRCallBackHandler handler) throws Throwable {
+		return (Object) newCallbackAdapter.invokeExact(handler);
+	}
+
+	public Class<?> getColumnValueClass() {
+		return columnValueCls;
+	}
+
+	public boolean isRowLCR(Object lcr) {
+		return rowLCRCls.isInstance(lcr);
+	}
+
+	public boolean isDDLLCR(Object lcr) {
+		return ddlLCRCls.isInstance(lcr);
+	}
+
+	public int getDefaultMode() {
+		return defaultMode;
+	}
+
+	/* XStreamOut */
+
+	public Object attach(Connection conn, String xsOutName, byte[] lastPosition) throws Throwable {
+		return (Object) attach.invokeExact((Object) conn.unwrap(oracleConnectionCls), xsOutName, lastPosition, defaultMode);
+	}
+
+	public void receiveLCRCallback(Object xsOut, Object callbackHandler) throws Throwable {
+		receiveLCRCallback.invokeExact(xsOut, callbackHandler, defaultMode);
+	}
+
+	public void setProcessedLowWatermark(Object xsOut, byte[] position) throws Throwable {
+		setProcessedLowWatermark.invokeExact(xsOut, position, defaultMode);
+	}
+
+	public void detach(Object xsOut) throws Throwable {
+		detach.invokeExact(xsOut, defaultMode);
+	}
+
+	/* XStreamUtility */
+
+	/**
+	 * @return the position to attach from to receive the transactions committed after the SCN
+	 * @throws UnsupportedOperationException if the xstream client cannot convert SCNs
+	 */
+	public byte[] convertSCNToPosition(long scn) throws Throwable {
+		if (scnToPosition == null) {
+			throw new UnsupportedOperationException("the xstream client has no XStreamUtility.convertSCNToPosition");
+		}
+		return (byte[]) scnToPosition.invokeExact(scn);
+	}
+
+	/* LCR */
+
+	public Object getSourceTime(Object lcr) throws Throwable {
+		return (Object) sourceTime.invokeExact(lcr);
+	}
+
+	public Object getSourceDatabaseName(Object lcr) throws Throwable {
+		return (Object) sourceDatabaseName.invokeExact(lcr);
+	}
+
+	public Object getObjectOwner(Object lcr) throws Throwable {
+		return (Object) objectOwner.invokeExact(lcr);
+	}
+
+	public Object getObjectName(Object lcr) throws Throwable {
+		return (Object) objectName.invokeExact(lcr);
+	}
+
+	public Object getCommandType(Object lcr) throws Throwable {
+		return (Object) commandType.invokeExact(lcr);
+	}
+
+	public Object getTransactionId(Object lcr) throws Throwable {
+		return (Object) transactionId.invokeExact(lcr);
+	}
+
+	public byte[] getPosition(Object lcr) throws Throwable {
+		return (byte[]) (Object) position.invokeExact(lcr);
+	}
+
+	/* RowLCR */
+
+	public Object[] getNewValues(Object lcr) throws Throwable {
+		return (Object[]) (Object) newValues.invokeExact(lcr);
+	}
+
+	public Object[] getOldValues(Object lcr) throws Throwable {
+		return (Object[]) (Object) oldValues.invokeExact(lcr);
+	}
+
+	public boolean hasChunkData(Object lcr) throws Throwable {
+		return (boolean) hasChunkData.invokeExact(lcr);
+	}
+
+	/* ColumnValue */
+
+	public Object getColumnData(Object columnValue) throws Throwable {
+		return (Object) columnData.invokeExact(columnValue);
+	}
+
+	public Object getColumnName(Object columnValue) throws Throwable {
+		return (Object) columnName.invokeExact(columnValue);
+	}
+
+	public int getColumnDataType(Object columnValue) throws Throwable {
+		return (int) columnDataType.invokeExact(columnValue);
+	}
+
+	/* ChunkColumnValue */
+
+	public int getChunkType(Object chunk) throws Throwable {
+		return (int) chunkType.invokeExact(chunk);
+	}
+
+	/**
+	 * @return true for chunks of BLOB and LONG RAW columns, which carry raw bytes instead of characters
+	 */
+	public boolean isBinaryChunk(int chunkType) {
+		return chunkType == blobChunkType || chunkType == longRawChunkType;
+	}
+
+	/**
+	 * @return the chunk type constant of ChunkColumnValue with the name, -1 if the driver has none
+	 */
+	public int chunkTypeOf(String name) {
+		try {
+			return chunkColumnValueCls.getField(name).getInt(null);
+		} catch (ReflectiveOperationException e) {
+			return -1;
+		}
+	}
+
+	public boolean isEndOfRow(Object chunk) throws Throwable {
+		return (boolean) endOfRow.invokeExact(chunk);
+	}
+
+	public boolean isLastChunk(Object chunk) throws Throwable {
+		return (boolean) lastChunk.invokeExact(chunk);
+	}
+
+	public boolean isEmptyChunk(Object chunk) throws Throwable {
+		return (boolean) emptyChunk.invokeExact(chunk);
+	}
+
+	/* Datum */
+
+	public double doubleValue(Object datum) throws Throwable {
+		return (double) doubleValue.invokeExact(datum);
+	}
+
+	public float floatValue(Object datum) throws Throwable {
+		return (float) floatValue.invokeExact(datum);
+	}
+
+	public String stringValue(Object datum) throws Throwable {
+		return (String) stringValue.invokeExact(datum);
+	}
+
+	public BigDecimal bigDecimalValue(Object datum) throws Throwable {
+		return (BigDecimal) bigDecimalValue.invokeExact(datum);
+	}
+
+	public Timestamp timeStampValue(Object datum) throws Throwable {
+		return (Timestamp) timeStampValue.invokeExact(datum);
+	}
+
+	public Timestamp timeStampValue(Object datum, Calendar cal) throws Throwable {
+		return (Timestamp) timeStampValueCal.invokeExact(datum, cal);
+	}
+
+	public byte[] getBytes(Object datum) throws Throwable {
+		return (byte[]) bytes.invokeExact(datum);
+	}
+
+	/**
+	 * @return the internal bytes of the datum without copying them, must not be modified
+	 */
+	public byte[] shareBytes(Object datum) throws Throwable {
+		return (byte[]) shareBytes.invokeExact(datum);
+	}
+
+	/* OracleResultSet */
+
+	/**
+	 * @return the driver result set behind a pooled one, to read datums from
+	 */
+	public Object unwrapResultSet(ResultSet resultSet) throws Throwable {
+		return resultSet.unwrap(oracleResultSetCls);
+	}
+
+	/**
+	 * @param oracleResultSet a result set returned by {@link #unwrapResultSet(ResultSet)}
+	 * @return the column value of the current row as a datum, null for NULL
+	 */
+	public Object getOracleObject(Object oracleResultSet, int column) throws Throwable {
+		return (Object) oracleObject.invokeExact(oracleResultSet, column);
+	}
+
+	/**
+	 * defines the callback adapter from the class file next to this class, so it links against
+	 * the xstream classes of the driver class loader and against the handler of the nar
+	 */
+	private static class AdapterClassLoader extends ClassLoader {
+
+		AdapterClassLoader(ClassLoader driverClassLoader) {
+			super(driverClassLoader);
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!CALLBACK_ADAPTER.equals(name)) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> adapter = findLoadedClass(name);
+				if (adapter == null) {
+					final byte[] classFile = readClassFile(name);
+					adapter = defineClass(name, classFile, 0, classFile.length, XStreamBinding.class.getProtectionDomain());
+				}
+				if (resolve) {
+					resolveClass(adapter);
+				}
+				return adapter;
+			}
+		}
+
+		private static byte[] readClassFile(String name) throws ClassNotFoundException {
+			final String resource = name.replace('.', '/') + ".class";
+			try (InputStream in = XStreamBinding.class.getClassLoader().getResourceAsStream(resource)) {
+				if (in == null) {
+					throw new ClassNotFoundException(name);
+				}
+				final ByteArrayOutputStream out = new ByteArrayOutputStream();
+				final byte[] buffer = new byte[4096];
+				int read;
+				while ((read = in.read(buffer)) >= 0) {
+					out.write(buffer, 0, read);
+				}
+				return out.toByteArray();
+			} catch (IOException e) {
+				throw new ClassNotFoundException(name, e);
+			}
+		}
+	}
+
+}
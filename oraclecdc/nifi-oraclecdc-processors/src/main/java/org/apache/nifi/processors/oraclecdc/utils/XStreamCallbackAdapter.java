@@ -0,0 +1,68 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import org.apache.nifi.processor.exception.ProcessException;
+
+import oracle.streams.ChunkColumnValue;
+import oracle.streams.DDLLCR;
+import oracle.streams.LCR;
+import oracle.streams.RowLCR;
+import oracle.streams.StreamsException;
+import oracle.streams.XStreamLCRCallbackHandler;
+
+/**
+ * The xstream callback handler passed to receiveLCRCallback. It is compiled against the xstream
+ * interfaces but never loaded by the nar class loader, which can not see them: {@link XStreamBinding}
+ * defines it from its class file in a child of the driver class loader, once per binding, so the
+ * callbacks are plain interface calls into the {@link LCRCallBackHandler}.
+ */
+public final class XStreamCallbackAdapter implements XStreamLCRCallbackHandler {
+
+	private final LCRCallBackHandler handler;
+
+	public XStreamCallbackAdapter(LCRCallBackHandler handler) {
+		this.handler = handler;
+	}
+
+	@Override
+	public void processLCR(LCR lcr) throws StreamsException {
+		final long start = System.nanoTime();
+		try {
+			if (lcr instanceof RowLCR) {
+				handler.processLCR(lcr);
+			} else if (lcr instanceof DDLLCR) {
+				handler.processDDL(lcr);
+			}
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new ProcessException("error processing LCR " + t.getMessage(), t);
+		} finally {
+			handler.decoded(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void processChunk(ChunkColumnValue chunk) throws StreamsException {
+		final long start = System.nanoTime();
+		try {
+			handler.processChunk(chunk);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new ProcessException("error processing chunk " + t.getMessage(), t);
+		} finally {
+			handler.decoded(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public LCR createLCR() throws StreamsException {
+		return null;
+	}
+
+	@Override
+	public ChunkColumnValue createChunk() throws StreamsException {
+		return null;
+	}
+
+}
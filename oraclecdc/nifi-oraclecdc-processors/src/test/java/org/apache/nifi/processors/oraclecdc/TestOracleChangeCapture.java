@@ -16,75 +16,1065 @@
  */
 package org.apache.nifi.processors.oraclecdc;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.codec.binary.Base32;
+
+import org.apache.nifi.components.state.Scope;
+import org.apache.nifi.controller.AbstractControllerService;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.processor.Relationship;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureFilter;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureMetrics;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.apache.nifi.processors.oraclecdc.controller.OracleCDCEventHandler;
+import org.apache.nifi.processors.oraclecdc.controller.OracleCDCService;
+import org.apache.nifi.processors.oraclecdc.controller.SnapshotChunk;
+import org.apache.nifi.processors.oraclecdc.controller.TableMetadata;
 import org.apache.nifi.processors.oraclecdc.controller.impl.StandardOracleCDCService;
-import org.apache.nifi.reporting.InitializationException;
+import org.apache.nifi.processors.oraclecdc.standin.LcrGenerator;
+import org.apache.nifi.processors.oraclecdc.standin.LoadProfile;
+import org.apache.nifi.processors.oraclecdc.standin.StandInServer;
+import org.apache.nifi.processors.oraclecdc.utils.ChangeEventBinaryReader;
+import org.apache.nifi.processors.oraclecdc.utils.ContentCompressor;
+import org.apache.nifi.processors.oraclecdc.utils.LCRCallBackHandler;
+import org.apache.nifi.processors.oraclecdc.utils.SnapshotProgress;
+import org.apache.nifi.serialization.RecordSetWriter;
+import org.apache.nifi.serialization.WriteResult;
+import org.apache.nifi.serialization.record.MockRecordWriter;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.apache.nifi.serialization.record.RecordSet;
+import org.apache.nifi.serialization.record.type.RecordDataType;
+import org.apache.nifi.util.MockFlowFile;
 import org.apache.nifi.util.TestRunner;
 import org.apache.nifi.util.TestRunners;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
+import oracle.streams.ChunkColumnValue;
+import oracle.streams.XStreamOut;
+
+/**
+ * Runs the processor against the xstream stand-in, which generates the LCRs of an outbound
+ * server without a database. Point DB_DRIVER_LOCATION at the real ojdbc and xstreams jars and
+ * the host at a database to run the same flow against Oracle.
+ */
 public class TestOracleChangeCapture {
 
+    private static final long TIMEOUT_MILLIS = 30000;
+
     private TestRunner testRunner;
-    
+
     @Before
-    public void setup() throws InitializationException{
+    public void setup() throws Exception{
+        StandInServer.reset();
         testRunner = TestRunners.newTestRunner(OracleChangeCapture.class);
-        //final DBCPService dbcp = new DBCPServiceSimpleImpl();
-        //final Map<String, String> dbcpProperties = new HashMap<>();
-
-        //testRunner.addControllerService("dbcp", dbcp, dbcpProperties);
-        //testRunner.enableControllerService(dbcp);
         StandardOracleCDCService service = new StandardOracleCDCService();
         testRunner.addControllerService("cdcservice", service);
         testRunner.setProperty(service,StandardOracleCDCService.DB_HOST,"localhost");
-        testRunner.setProperty(service,StandardOracleCDCService.DB_PORT,"32776");
+        testRunner.setProperty(service,StandardOracleCDCService.DB_PORT,"1521");
         testRunner.setProperty(service,StandardOracleCDCService.DB_USER,"xstrmadmin");
         testRunner.setProperty(service,StandardOracleCDCService.DB_PASS,"welcome1");
         testRunner.setProperty(service,StandardOracleCDCService.DB_SID,"orcl");
-        testRunner.setProperty(service,StandardOracleCDCService.DB_DRIVER_LOCATION,"/Users/knarayanan/Downloads/instantclient_12_2/ojdbc8.jar,"
-        		+ "/Users/knarayanan/Downloads/instantclient_12_2/xstreams.jar");
+        testRunner.setProperty(service,StandardOracleCDCService.PRIMARY_KEYS,"STANDIN.T0=ID;STANDIN.T1=ID");
+        // the stand-in is on the test classpath, which the driver class loader delegates to
+        testRunner.setProperty(service,StandardOracleCDCService.DB_DRIVER_LOCATION,
+        		new File(XStreamOut.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath());
         testRunner.enableControllerService(service);
         testRunner.setProperty(OracleChangeCapture.CDC_SERVICE, "cdcservice");
-        
     }
 
     @Test
-    public void testProcessor() {
-    	
+    public void testProcessor() throws Exception {
+    	StandInServer.get("xout1").setProfile(new LoadProfile().transactionSize(5).tables(2).transactions(20).batch(50, 100));
     	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout1");
-    	//testRunner.setRunSchedule(5000);
-    	testRunner.run(5);
-    	//testRunner.shutdown();
-    	
-    }
-    
-//    class DBCPServiceSimpleImpl extends AbstractControllerService implements DBCPService {
-//
-//        @Override
-//        public String getIdentifier() {
-//            return "dbcp";
-//        }
-//
-//        @Override
-//        public Connection getConnection() throws ProcessException {
-//        	String host="oracledb.cyfepzqonej8.us-west-2.rds.amazonaws.com";
-//        	String port="1521";
-//        	String orasid="orcl";
-//        	String xstreamuser = "xstream_admin";
-//        	xstreamuser="xstrmadmin";
-//        	host="localhost";
-//        	port="32770";
-//            String out_url = "jdbc:oracle:oci:@"+host+":"+port+":"+orasid;
-//            try {
-//                Class.forName("oracle.jdbc.OracleDriver");
-//                final Connection con = DriverManager.getConnection(out_url,xstreamuser,"welcome1");
-//                return con;
-//            } catch (final Exception e) {
-//                throw new ProcessException("getConnection failed: " + e);
-//            }
-//        }
-//    }
+    	runUntil(OracleChangeCapture.UNMATCHED, 20);
+
+    	// 100 row changes cycling INSERT, UPDATE and DELETE, then one COMMIT per transaction
+    	assertEquals(34, testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS).size());
+    	assertEquals(33, testRunner.getFlowFilesForRelationship(OracleChangeCapture.UPDATES).size());
+    	assertEquals(33, testRunner.getFlowFilesForRelationship(OracleChangeCapture.DELETES).size());
+    	assertEquals(20, testRunner.getFlowFilesForRelationship(OracleChangeCapture.UNMATCHED).size());
+    	final MockFlowFile insert = testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS).get(0);
+    	assertEquals("xout1", insert.getAttribute("cdc.xstream.server"));
+    	assertEquals(19, StandInServer.transactionOf(StandInServer.get("xout1").getProcessedLowWatermark()));
+    	assertEquals(Long.valueOf(34), testRunner.getCounterValue("xout1 INSERT events"));
+    	assertEquals(Long.valueOf(20), testRunner.getCounterValue("xout1 COMMIT events"));
+    	assertEquals(Long.valueOf(50), testRunner.getCounterValue("xout1 STANDIN.STANDIN.T0 events"));
+    }
+
+    @Test
+    public void testTransactions() throws Exception {
+    	StandInServer.get("xout2").setProfile(new LoadProfile().transactionSize(7).ddlEvery(4).transactions(25).batch(50, 100));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout2");
+    	testRunner.setProperty(OracleChangeCapture.GROUPING, OracleChangeCapture.GROUP_TRANSACTION);
+    	runUntil(OracleChangeCapture.TRANSACTIONS, 20);
+
+    	// every fifth transaction is a DDL, which is not emitted
+    	assertEquals(20, testRunner.getFlowFilesForRelationship(OracleChangeCapture.TRANSACTIONS).size());
+    	for (MockFlowFile transaction : testRunner.getFlowFilesForRelationship(OracleChangeCapture.TRANSACTIONS)) {
+    		assertEquals("7", transaction.getAttribute("record.count"));
+    	}
+    	assertEquals(0, testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS).size());
+    }
+
+    @Test
+    public void testNetChanges() throws Exception {
+    	StandInServer.get("xout4").setProfile(new LoadProfile().transactionSize(5).tables(1).transactions(21).batch(50, 100));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout4");
+    	testRunner.setProperty(OracleChangeCapture.NET_CHANGES, "true");
+    	runUntil(OracleChangeCapture.UNMATCHED, 21);
+
+    	// every ID is inserted, updated and deleted: within a transaction only the first or last change is left
+    	assertEquals(14, testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS).size());
+    	assertEquals(0, testRunner.getFlowFilesForRelationship(OracleChangeCapture.UPDATES).size());
+    	assertEquals(14, testRunner.getFlowFilesForRelationship(OracleChangeCapture.DELETES).size());
+    	assertEquals(Long.valueOf(56), testRunner.getCounterValue("xout4 coalesced events"));
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+    	final StandInServer server = StandInServer.get("xout3");
+    	server.setProfile(new LoadProfile().rate(500).transactionSize(5).tables(2).transactions(20).batch(10, 100));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout3");
+    	final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    	testRunner.run(1, false, true);
+    	while (testRunner.getFlowFilesForRelationship(OracleChangeCapture.UNMATCHED).size() < 5 && System.currentTimeMillis() < deadline) {
+    		testRunner.run(1, false, false);
+    		Thread.sleep(10);
+    	}
+    	server.disconnect();
+    	runUntil(OracleChangeCapture.UNMATCHED, 20, false);
+
+    	// the session is attached again from the last processed position without gaps or duplicates
+    	assertEquals(2, server.getAttachCount());
+    	assertEquals(34, testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS).size());
+    	assertEquals(33, testRunner.getFlowFilesForRelationship(OracleChangeCapture.UPDATES).size());
+    	assertEquals(33, testRunner.getFlowFilesForRelationship(OracleChangeCapture.DELETES).size());
+    	assertEquals(20, testRunner.getFlowFilesForRelationship(OracleChangeCapture.UNMATCHED).size());
+    }
+
+    @Test
+    public void testServers() throws Exception {
+    	StandInServer.get("xa").setProfile(new LoadProfile().rate(500).transactionSize(5).tables(2).transactions(20).batch(10, 100));
+    	StandInServer.get("xb").setProfile(new LoadProfile().rate(500).transactionSize(7).tables(2).transactions(20).batch(10, 100));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xa, xb");
+    	testRunner.setThreadCount(4);
+    	final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    	testRunner.run(4, false, true);
+    	while (testRunner.getFlowFilesForRelationship(OracleChangeCapture.UNMATCHED).size() < 10 && System.currentTimeMillis() < deadline) {
+    		testRunner.run(4, false, false);
+    		Thread.sleep(10);
+    	}
+    	testRunner.run(1, true, false);
+    	final Map<String,String> stopped = testRunner.getStateManager().getState(Scope.CLUSTER).toMap();
+    	assertTrue(stopped.containsKey("position.xa"));
+    	assertTrue(stopped.containsKey("position.xb"));
+    	// restarted from the checkpoint of each server alone, without the positions emitted since
+    	testRunner.getStateManager().clear(Scope.LOCAL);
+    	runUntil(OracleChangeCapture.UNMATCHED, 40);
+
+    	final Map<String,Integer> commits = new HashMap<String,Integer>();
+    	for (MockFlowFile commit : testRunner.getFlowFilesForRelationship(OracleChangeCapture.UNMATCHED)) {
+    		final String server = commit.getAttribute("cdc.xstream.server");
+    		commits.put(server, commits.containsKey(server) ? commits.get(server) + 1 : 1);
+    	}
+    	assertEquals(Integer.valueOf(20), commits.get("xa"));
+    	assertEquals(Integer.valueOf(20), commits.get("xb"));
+    	assertEquals(Long.valueOf(20), testRunner.getCounterValue("xa COMMIT events"));
+    	assertEquals(Long.valueOf(20), testRunner.getCounterValue("xb COMMIT events"));
+    	// 100 and 140 row changes, none of them replayed
+    	assertEquals(100 + 140, testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS).size()
+    			+ testRunner.getFlowFilesForRelationship(OracleChangeCapture.UPDATES).size()
+    			+ testRunner.getFlowFilesForRelationship(OracleChangeCapture.DELETES).size());
+    	assertEquals(2, StandInServer.get("xa").getAttachCount());
+    	assertEquals(2, StandInServer.get("xb").getAttachCount());
+    	assertEquals(19, StandInServer.transactionOf(StandInServer.get("xa").getProcessedLowWatermark()));
+    	assertEquals(19, StandInServer.transactionOf(StandInServer.get("xb").getProcessedLowWatermark()));
+    	final Map<String,String> state = testRunner.getStateManager().getState(Scope.CLUSTER).toMap();
+    	assertEquals(new HashSet<String>(Arrays.asList("position.xa", "position.xb")), state.keySet());
+    	assertFalse(state.get("position.xa").equals(state.get("position.xb")));
+    }
+
+    @Test
+    public void testReplayDeduplication() throws Exception {
+    	StandInServer.get("xout5").setProfile(new LoadProfile().transactionSize(5).tables(2).transactions(20).batch(50, 100));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout5");
+    	runUntil(OracleChangeCapture.UNMATCHED, 10);
+    	// a restart from a checkpoint older than the changes emitted
+    	testRunner.getStateManager().setState(Collections.<String,String>emptyMap(), Scope.CLUSTER);
+    	runUntil(OracleChangeCapture.UNMATCHED, 20);
+
+    	assertEquals(34, testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS).size());
+    	assertEquals(33, testRunner.getFlowFilesForRelationship(OracleChangeCapture.UPDATES).size());
+    	assertEquals(33, testRunner.getFlowFilesForRelationship(OracleChangeCapture.DELETES).size());
+    	assertEquals(20, testRunner.getFlowFilesForRelationship(OracleChangeCapture.UNMATCHED).size());
+    }
+
+    @Test
+    public void testCheckpointInterval() throws Exception {
+    	StandInServer.get("xout27").setProfile(new LoadProfile().transactionSize(5).tables(2).transactions(20).batch(50, 100));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout27");
+    	testRunner.setProperty(OracleChangeCapture.CHECKPOINT_INTERVAL, "1 hour");
+    	testRunner.setProperty(OracleChangeCapture.CHECKPOINT_SIZE, "1 GB");
+    	start("xout27", 20);
+    	final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    	while (testRunner.getFlowFilesForRelationship(OracleChangeCapture.UNMATCHED).size() < 20 && System.currentTimeMillis() < deadline) {
+    		testRunner.run(1, false, false);
+    		Thread.sleep(10);
+    	}
+    	assertEquals(20, testRunner.getFlowFilesForRelationship(OracleChangeCapture.UNMATCHED).size());
+    	// every position is coalesced in memory until the processor stops
+    	testRunner.getStateManager().assertStateNotSet(Scope.CLUSTER);
+    	testRunner.run(1, true, false);
+
+    	final List<MockFlowFile> commits = testRunner.getFlowFilesForRelationship(OracleChangeCapture.UNMATCHED);
+    	testRunner.getStateManager().assertStateEquals(Collections.singletonMap("position.xout27",
+    			commits.get(commits.size() - 1).getAttribute("cdc.last.position")), Scope.CLUSTER);
+    }
+
+    @Test
+    public void testCheckpointSize() throws Exception {
+    	StandInServer.get("xout28").setProfile(new LoadProfile().transactionSize(5).tables(2).transactions(20).batch(50, 100));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout28");
+    	testRunner.setProperty(OracleChangeCapture.CHECKPOINT_INTERVAL, "1 hour");
+    	testRunner.setProperty(OracleChangeCapture.CHECKPOINT_SIZE, "1 KB");
+    	start("xout28", 20);
+    	final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    	while (testRunner.getStateManager().getState(Scope.CLUSTER).toMap().isEmpty() && System.currentTimeMillis() < deadline) {
+    		testRunner.run(1, false, false);
+    		Thread.sleep(10);
+    	}
+    	// written once a kilobyte was emitted, long before the interval
+    	testRunner.getStateManager().assertStateSet("position.xout28", Scope.CLUSTER);
+    	testRunner.run(1, true, false);
+    }
+
+    @Test
+    public void testLegacyPosition() throws Exception {
+    	StandInServer.get("xout29").setProfile(new LoadProfile().transactionSize(5).tables(2).transactions(20).batch(50, 100));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout29");
+    	runUntil(OracleChangeCapture.UNMATCHED, 20);
+    	final String position = testRunner.getStateManager().getState(Scope.CLUSTER).get("position.xout29");
+    	// stored before the position was kept per outbound server
+    	testRunner.getStateManager().setState(Collections.singletonMap("position", position), Scope.CLUSTER);
+    	testRunner.run(1, true, true);
+
+    	// nothing new is captured, the restored position is still written under the server name
+    	assertEquals(20, testRunner.getFlowFilesForRelationship(OracleChangeCapture.UNMATCHED).size());
+    	testRunner.getStateManager().assertStateEquals(Collections.singletonMap("position.xout29", position), Scope.CLUSTER);
+    }
+
+    @Test
+    public void testBatching() throws Exception {
+    	StandInServer.get("xout6").setProfile(new LoadProfile().transactionSize(5).tables(2).transactions(20).batch(50, 100));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout6");
+    	testRunner.setProperty(OracleChangeCapture.BATCH_MAX_RECORDS, "10");
+    	testRunner.setProperty(OracleChangeCapture.BATCH_MAX_LATENCY, "1 min");
+    	start("xout6", 20);
+    	runUntilRecords(OracleChangeCapture.UNMATCHED, 20);
+
+    	assertEquals(34, records(OracleChangeCapture.INSERTS));
+    	assertEquals(33, records(OracleChangeCapture.UPDATES));
+    	assertEquals(33, records(OracleChangeCapture.DELETES));
+    	assertEquals(20, records(OracleChangeCapture.UNMATCHED));
+    	for (Relationship relationship : new Relationship[] {OracleChangeCapture.INSERTS, OracleChangeCapture.UPDATES,
+    			OracleChangeCapture.DELETES, OracleChangeCapture.UNMATCHED}) {
+    		byte[] previous = null;
+    		int largest = 0;
+    		for (MockFlowFile batch : testRunner.getFlowFilesForRelationship(relationship)) {
+    			final int count = Integer.parseInt(batch.getAttribute("record.count"));
+    			assertTrue(count <= 10);
+    			largest = Math.max(largest, count);
+    			final String[] events = new String(batch.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    			assertEquals(count, events.length);
+    			assertEquals(position(events[0]), batch.getAttribute("cdc.first.position"));
+    			assertEquals(position(events[count - 1]), batch.getAttribute("cdc.last.position"));
+    			// the batches of a relationship follow each other in position order
+    			final byte[] first = new Base32(true).decode(batch.getAttribute("cdc.first.position"));
+    			assertTrue(previous == null || LCRCallBackHandler.comparePositions(previous, first) < 0);
+    			previous = new Base32(true).decode(batch.getAttribute("cdc.last.position"));
+    		}
+    		if (relationship != OracleChangeCapture.UNMATCHED) {
+    			// more than 10 rows of each operation are drained in one trigger
+    			assertEquals(10, largest);
+    		}
+    	}
+    }
+
+    @Test
+    public void testBatchSize() throws Exception {
+    	StandInServer.get("xout7").setProfile(new LoadProfile().transactionSize(5).tables(2).transactions(20).batch(50, 100));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout7");
+    	testRunner.setProperty(OracleChangeCapture.BATCH_MAX_RECORDS, "1000");
+    	testRunner.setProperty(OracleChangeCapture.BATCH_MAX_SIZE, "2 KB");
+    	testRunner.setProperty(OracleChangeCapture.BATCH_MAX_LATENCY, "1 min");
+    	start("xout7", 20);
+    	runUntilRecords(OracleChangeCapture.UNMATCHED, 20);
+
+    	assertEquals(34, records(OracleChangeCapture.INSERTS));
+    	final List<MockFlowFile> inserts = testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS);
+    	assertTrue(inserts.size() > 1);
+    	for (MockFlowFile batch : inserts) {
+    		// a batch is emitted with the event that reaches the size
+    		final String content = new String(batch.toByteArray(), StandardCharsets.UTF_8);
+    		assertTrue(content.lastIndexOf('\n') < 2048);
+    	}
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+    	StandInServer.get("xout13").setProfile(new LoadProfile().transactionSize(5).tables(2).transactions(20).batch(50, 100));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout13");
+    	testRunner.setProperty(OracleChangeCapture.BATCH_MAX_RECORDS, "10");
+    	testRunner.setProperty(OracleChangeCapture.BATCH_MAX_LATENCY, "1 min");
+    	testRunner.setProperty(OracleChangeCapture.COMPRESSION_FORMAT, ContentCompressor.GZIP);
+    	start("xout13", 20);
+    	runUntilRecords(OracleChangeCapture.UNMATCHED, 20);
+
+    	assertEquals(34, records(OracleChangeCapture.INSERTS));
+    	for (MockFlowFile batch : testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS)) {
+    		batch.assertAttributeEquals(CoreAttributes.MIME_TYPE.key(), "application/gzip");
+    		final String[] events = new String(inflate(new GZIPInputStream(new ByteArrayInputStream(batch.toByteArray()))),
+    				StandardCharsets.UTF_8).split("\n");
+    		assertEquals(Integer.parseInt(batch.getAttribute("record.count")), events.length);
+    		assertEquals(position(events[0]), batch.getAttribute("cdc.first.position"));
+    		assertEquals(position(events[events.length - 1]), batch.getAttribute("cdc.last.position"));
+    		for (String event : events) {
+    			assertEquals("INSERT", new JsonParser().parse(event).getAsJsonObject().get("cdc_type").getAsString());
+    		}
+    	}
+    }
+
+    @Test
+    public void testCompressedTransactions() throws Exception {
+    	StandInServer.get("xout14").setProfile(new LoadProfile().transactionSize(7).transactions(20).batch(50, 100));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout14");
+    	testRunner.setProperty(OracleChangeCapture.GROUPING, OracleChangeCapture.GROUP_TRANSACTION);
+    	testRunner.setProperty(OracleChangeCapture.COMPRESSION_FORMAT, ContentCompressor.DEFLATE);
+    	runUntil(OracleChangeCapture.TRANSACTIONS, 20);
+
+    	assertEquals(20, testRunner.getFlowFilesForRelationship(OracleChangeCapture.TRANSACTIONS).size());
+    	for (MockFlowFile transaction : testRunner.getFlowFilesForRelationship(OracleChangeCapture.TRANSACTIONS)) {
+    		transaction.assertAttributeEquals(CoreAttributes.MIME_TYPE.key(), "application/deflate");
+    		final String[] events = new String(inflate(new InflaterInputStream(new ByteArrayInputStream(transaction.toByteArray()))),
+    				StandardCharsets.UTF_8).split("\n");
+    		assertEquals(7, events.length);
+    		final String id = new JsonParser().parse(events[0]).getAsJsonObject().get("transactionId").getAsString();
+    		for (String event : events) {
+    			assertEquals(id, new JsonParser().parse(event).getAsJsonObject().get("transactionId").getAsString());
+    		}
+    	}
+    }
+
+    @Test
+    public void testSpilledTransactions() throws Exception {
+    	int server = 21;
+    	for (String format : new String[] {OracleChangeCapture.FORMAT_JSON, OracleChangeCapture.FORMAT_BINARY}) {
+    		for (String compression : new String[] {OracleChangeCapture.COMPRESSION_NONE, ContentCompressor.GZIP, ContentCompressor.DEFLATE}) {
+    			final String name = "xout" + server++;
+    			final File spillDirectory = Files.createTempDirectory("oraclecdc-spill").toFile();
+    			try {
+    				setup();
+    				StandInServer.get(name).setProfile(new LoadProfile().transactionSize(7).transactions(20).batch(50, 100));
+    				testRunner.setProperty(OracleChangeCapture.XS_OUT, name);
+    				testRunner.setProperty(OracleChangeCapture.GROUPING, OracleChangeCapture.GROUP_TRANSACTION);
+    				testRunner.setProperty(OracleChangeCapture.EVENT_FORMAT, format);
+    				testRunner.setProperty(OracleChangeCapture.COMPRESSION_FORMAT, compression);
+    				// every transaction outgrows the budget with its second event
+    				testRunner.setProperty(OracleChangeCapture.TXN_HEAP_BUDGET, "100 B");
+    				testRunner.setProperty(OracleChangeCapture.TXN_SPILL_DIRECTORY, spillDirectory.getAbsolutePath());
+    				runUntil(OracleChangeCapture.TRANSACTIONS, 20);
+
+    				final String combination = format + "/" + compression;
+    				assertEquals(combination, 20, testRunner.getFlowFilesForRelationship(OracleChangeCapture.TRANSACTIONS).size());
+    				assertEquals(combination, Long.valueOf(20), testRunner.getCounterValue(name + " spilled transactions"));
+    				for (MockFlowFile transaction : testRunner.getFlowFilesForRelationship(OracleChangeCapture.TRANSACTIONS)) {
+    					InputStream in = new ByteArrayInputStream(transaction.toByteArray());
+    					if (ContentCompressor.GZIP.equals(compression)) {
+    						in = new GZIPInputStream(in);
+    					} else if (ContentCompressor.DEFLATE.equals(compression)) {
+    						in = new InflaterInputStream(in);
+    					}
+    					final List<String> ids = new ArrayList<String>();
+    					if (OracleChangeCapture.FORMAT_BINARY.equals(format)) {
+    						final ChangeEventBinaryReader reader = new ChangeEventBinaryReader(in);
+    						for (ChangeEvent event = reader.next(); event != null; event = reader.next()) {
+    							ids.add(event.getTransactionId());
+    						}
+    					} else {
+    						for (String event : new String(inflate(in), StandardCharsets.UTF_8).split("\n")) {
+    							ids.add(new JsonParser().parse(event).getAsJsonObject().get("transactionId").getAsString());
+    						}
+    					}
+    					assertEquals(combination, 7, ids.size());
+    					assertEquals(combination, 1, new HashSet<String>(ids).size());
+    				}
+    				// the spill files are removed once their transaction is emitted
+    				assertEquals(combination, 0, spillDirectory.list().length);
+    			} finally {
+    				for (File file : spillDirectory.listFiles()) {
+    					file.delete();
+    				}
+    				spillDirectory.delete();
+    			}
+    		}
+    	}
+    }
+
+    @Test
+    public void testPartitions() throws Exception {
+    	StandInServer.get("xout12").setProfile(new LoadProfile().transactionSize(5).tables(2).transactions(20).batch(50, 100));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout12");
+    	testRunner.setProperty(OracleChangeCapture.PARTITION_COUNT, "4");
+    	testRunner.setProperty(OracleChangeCapture.BATCH_MAX_LATENCY, "1 min");
+    	start("xout12", 20);
+    	runUntilRecords(OracleChangeCapture.UNMATCHED, 20);
+
+    	assertEquals(34 + 33 + 33, records(OracleChangeCapture.INSERTS) + records(OracleChangeCapture.UPDATES)
+    			+ records(OracleChangeCapture.DELETES));
+    	// the partition of each row, by table and ID, and the position of its last change
+    	final Map<String,String> partitions = new HashMap<String,String>();
+    	final Map<String,byte[]> lastPositions = new HashMap<String,byte[]>();
+    	for (Relationship relationship : new Relationship[] {OracleChangeCapture.INSERTS, OracleChangeCapture.UPDATES,
+    			OracleChangeCapture.DELETES}) {
+    		for (MockFlowFile batch : testRunner.getFlowFilesForRelationship(relationship)) {
+    			final String partition = batch.getAttribute("partition");
+    			assertTrue(Integer.parseInt(partition) >= 0 && Integer.parseInt(partition) < 4);
+    			for (String line : new String(batch.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+    				final JsonObject event = new JsonParser().parse(line).getAsJsonObject();
+    				final JsonArray values = event.getAsJsonArray(relationship == OracleChangeCapture.DELETES ? "oldValues" : "newValues");
+    				String row = null;
+    				for (JsonElement column : values) {
+    					if ("ID".equals(column.getAsJsonObject().get("name").getAsString())) {
+    						row = event.get("table").getAsString() + "/" + column.getAsJsonObject().get("value").getAsString();
+    					}
+    				}
+    				// every change of a row is in the same partition
+    				final String previous = partitions.put(row, partition);
+    				assertTrue(previous == null || previous.equals(partition));
+    				final byte[] position = new Base32(true).decode(event.get("position").getAsString());
+    				final byte[] last = lastPositions.put(row, position);
+    				if (last != null) {
+    					// INSERT, UPDATE and DELETE of a row are read in this order
+    					assertTrue(LCRCallBackHandler.comparePositions(last, position) < 0);
+    				}
+    			}
+    		}
+    	}
+    	assertEquals(4, new HashSet<String>(partitions.values()).size());
+    	for (MockFlowFile commit : testRunner.getFlowFilesForRelationship(OracleChangeCapture.UNMATCHED)) {
+    		commit.assertAttributeNotExists("partition");
+    	}
+    }
+
+    @Test
+    public void testRecordWriter() throws Exception {
+    	StandInServer.get("xout8").setProfile(new LoadProfile().transactionSize(5).tables(2).transactions(20).batch(50, 100));
+    	final SchemaRecordingWriter writer = new SchemaRecordingWriter();
+    	testRunner.addControllerService("writer", writer);
+    	testRunner.enableControllerService(writer);
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout8");
+    	testRunner.setProperty(OracleChangeCapture.RECORD_WRITER, "writer");
+    	testRunner.setProperty(OracleChangeCapture.BATCH_MAX_RECORDS, "10");
+    	testRunner.setProperty(OracleChangeCapture.BATCH_MAX_LATENCY, "1 min");
+    	start("xout8", 20);
+    	runUntilRecords(OracleChangeCapture.UNMATCHED, 20);
+
+    	assertEquals(34, records(OracleChangeCapture.INSERTS));
+    	assertEquals(33, records(OracleChangeCapture.UPDATES));
+    	for (Relationship relationship : new Relationship[] {OracleChangeCapture.INSERTS, OracleChangeCapture.UPDATES,
+    			OracleChangeCapture.DELETES}) {
+    		for (MockFlowFile batch : testRunner.getFlowFilesForRelationship(relationship)) {
+    			batch.assertAttributeEquals(CoreAttributes.MIME_TYPE.key(), "text/plain");
+    			final String[] records = new String(batch.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    			assertEquals(Integer.parseInt(batch.getAttribute("record.count")), records.length);
+    		}
+    	}
+    	// a record set holds the rows of one table, all written with the schema of that table
+    	assertEquals(34 + 33 + 33 + 20, writer.records);
+    	assertEquals(1, writer.schemas.get("T0").size());
+    	assertEquals(1, writer.schemas.get("T1").size());
+    }
+
+    @Test
+    public void testLobs() throws Exception {
+    	StandInServer.get("xout9").setProfile(new LoadProfile().transactionSize(5).tables(2).transactions(20).batch(50, 100).lobChunks(2));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout9");
+    	runUntil(OracleChangeCapture.UNMATCHED, 20);
+
+    	// the row is emitted with the end of row chunk, after the LOB content
+    	assertEquals(34, testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS).size());
+    	assertEquals(33, testRunner.getFlowFilesForRelationship(OracleChangeCapture.UPDATES).size());
+    	assertEquals(33, testRunner.getFlowFilesForRelationship(OracleChangeCapture.DELETES).size());
+    	final List<MockFlowFile> lobs = testRunner.getFlowFilesForRelationship(OracleChangeCapture.LOBS);
+    	assertEquals(34 + 33, lobs.size());
+    	final Map<String,MockFlowFile> lobsByUuid = new HashMap<String,MockFlowFile>();
+    	for (MockFlowFile lob : lobs) {
+    		lob.assertAttributeEquals("cdc_type", "LOB");
+    		lob.assertAttributeEquals("cdc.lob.column", LcrGenerator.LOB_COLUMN);
+    		lobsByUuid.put(lob.getAttribute(CoreAttributes.UUID.key()), lob);
+    	}
+    	for (Relationship relationship : new Relationship[] {OracleChangeCapture.INSERTS, OracleChangeCapture.UPDATES}) {
+    		for (MockFlowFile row : testRunner.getFlowFilesForRelationship(relationship)) {
+    			final JsonObject event = new JsonParser().parse(new String(row.toByteArray(), StandardCharsets.UTF_8)).getAsJsonObject();
+    			JsonObject doc = null;
+    			long id = -1;
+    			for (JsonElement column : event.getAsJsonArray("newValues")) {
+    				final String name = column.getAsJsonObject().get("name").getAsString();
+    				if (LcrGenerator.LOB_COLUMN.equals(name)) {
+    					doc = column.getAsJsonObject();
+    				} else if ("ID".equals(name)) {
+    					id = column.getAsJsonObject().get("value").getAsLong();
+    				}
+    			}
+    			assertEquals("LOB", doc.get("type").getAsString());
+    			assertEquals(String.valueOf(ChangeEvent.lobType(ChunkColumnValue.CLOB)), doc.get("oracleType").getAsString());
+    			// the column refers to the LOB flowfile, which holds the chunks in order
+    			final MockFlowFile lob = lobsByUuid.get(doc.get("value").getAsString());
+    			final long rowNumber = id * 3 + (relationship == OracleChangeCapture.INSERTS ? 0 : 1);
+    			lob.assertContentEquals(LcrGenerator.chunkText(rowNumber, 0) + LcrGenerator.chunkText(rowNumber, 1));
+    			lob.assertAttributeEquals("cdc.first.position", event.get("position").getAsString());
+    		}
+    	}
+    }
+
+    @Test
+    public void testLobAcrossTriggers() throws Exception {
+    	// a row of 250 chunks through a buffer of 64 events, with at most 100 events a trigger
+    	StandInServer.get("xout11").setProfile(new LoadProfile().transactionSize(3).tables(1).transactions(4).batch(50, 100).lobChunks(250));
+    	testRunner.disableControllerService(testRunner.getControllerService("cdcservice"));
+    	testRunner.setProperty(testRunner.getControllerService("cdcservice"), StandardOracleCDCService.RECEIVE_BUFFER_SIZE, "64");
+    	testRunner.enableControllerService(testRunner.getControllerService("cdcservice"));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout11");
+    	testRunner.setProperty(OracleChangeCapture.MAX_EVENTS_PER_TRIGGER, "100");
+    	// the part of a column received when a trigger ends waits there for the rest
+    	final File spillDirectory = Files.createTempDirectory("oraclecdc-lob").toFile();
+    	testRunner.setProperty(OracleChangeCapture.TXN_SPILL_DIRECTORY, spillDirectory.getAbsolutePath());
+    	try {
+    		runUntil(OracleChangeCapture.UNMATCHED, 4);
+    		assertEquals(0, spillDirectory.list().length);
+    	} finally {
+    		for (File file : spillDirectory.listFiles()) {
+    			file.delete();
+    		}
+    		spillDirectory.delete();
+    	}
+
+    	assertLobs("xout11", 250);
+    }
+
+    @Test
+    public void testLobKeptUntilStop() throws Exception {
+    	StandInServer.get("xout30").setProfile(new LoadProfile().transactionSize(3).tables(1).transactions(4).batch(50, 100).lobChunks(250));
+    	testRunner.disableControllerService(testRunner.getControllerService("cdcservice"));
+    	testRunner.setProperty(testRunner.getControllerService("cdcservice"), StandardOracleCDCService.RECEIVE_BUFFER_SIZE, "64");
+    	testRunner.enableControllerService(testRunner.getControllerService("cdcservice"));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout30");
+    	testRunner.setProperty(OracleChangeCapture.MAX_EVENTS_PER_TRIGGER, "100");
+    	final File spillDirectory = Files.createTempDirectory("oraclecdc-lob").toFile();
+    	testRunner.setProperty(OracleChangeCapture.TXN_SPILL_DIRECTORY, spillDirectory.getAbsolutePath());
+    	try {
+    		final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    		testRunner.run(1, false, true);
+    		while (spillDirectory.list().length == 0 && System.currentTimeMillis() < deadline) {
+    			testRunner.run(1, false, false);
+    			Thread.sleep(10);
+    		}
+    		// stopped with part of a column kept, its row is delivered again from the start
+    		assertEquals(1, spillDirectory.list().length);
+    		testRunner.run(1, true, false);
+    		assertEquals(0, spillDirectory.list().length);
+    		runUntil(OracleChangeCapture.UNMATCHED, 4);
+    		assertEquals(0, spillDirectory.list().length);
+    	} finally {
+    		for (File file : spillDirectory.listFiles()) {
+    			file.delete();
+    		}
+    		spillDirectory.delete();
+    	}
+    	assertLobs("xout30", 250);
+    }
+
+    @Test
+    public void testLobsFiltered() throws Exception {
+    	StandInServer.get("xout10").setProfile(new LoadProfile().transactionSize(5).tables(2).transactions(20).batch(50, 100).lobChunks(2));
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, "xout10");
+    	testRunner.setProperty(OracleChangeCapture.EXCLUDE_TABLES, "STANDIN.T1");
+    	testRunner.setProperty(OracleChangeCapture.CAPTURED_COLUMNS, "STANDIN.T0=ID,C1");
+    	runUntil(OracleChangeCapture.UNMATCHED, 20);
+
+    	// the chunks of an excluded table and of a column not captured are skipped, the rows of T0 still end with theirs
+    	assertEquals(0, testRunner.getFlowFilesForRelationship(OracleChangeCapture.LOBS).size());
+    	assertEquals(50, testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS).size()
+    			+ testRunner.getFlowFilesForRelationship(OracleChangeCapture.UPDATES).size()
+    			+ testRunner.getFlowFilesForRelationship(OracleChangeCapture.DELETES).size());
+    	for (MockFlowFile insert : testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS)) {
+    		final JsonObject event = new JsonParser().parse(new String(insert.toByteArray(), StandardCharsets.UTF_8)).getAsJsonObject();
+    		assertEquals("T0", event.get("table").getAsString());
+    		assertEquals(2, event.getAsJsonArray("newValues").size());
+    	}
+    }
+
+    @Test
+    public void testSnapshotResume() throws Exception {
+    	final StubCDCService service = stub("xout15");
+    	final SnapshotProgress stored = new SnapshotProgress(777L, Arrays.asList("HR.A", "HR.B"));
+    	stored.planned("HR.A", 2);
+    	stored.chunkDone("HR.A", 0, StubCDCService.CHUNK_ROWS);
+    	stored.chunkDone("HR.A", 1, StubCDCService.CHUNK_ROWS);
+    	stored.planned("HR.B", 2);
+    	stored.chunkDone("HR.B", 1, StubCDCService.CHUNK_ROWS);
+    	testRunner.getStateManager().setState(Collections.singletonMap("snapshot.xout15", stored.encode()), Scope.CLUSTER);
+    	runUntilAttached(service, 1);
+
+    	// only the chunk not loaded before the restart is read, as of the stored SCN
+    	assertEquals(Arrays.asList("plan HR.B 777", "read HR.B#0", "position 777"), service.calls.subList(0, 3));
+    	assertEquals(StubCDCService.CHUNK_ROWS, records(OracleChangeCapture.INSERTS));
+    	assertHandedOff("xout15", service, 777L);
+    }
+
+    @Test
+    public void testSnapshotChunkRetry() throws Exception {
+    	final StubCDCService service = stub("xout16");
+    	service.failing.add("HR.A#1");
+    	runUntilAttached(service, 1);
+
+    	// the failed chunk is rolled back with its rows and read again
+    	assertEquals(1, Collections.frequency(service.calls, "scn"));
+    	assertEquals(2, Collections.frequency(service.calls, "read HR.A#1"));
+    	assertEquals(4 * StubCDCService.CHUNK_ROWS, records(OracleChangeCapture.INSERTS));
+    	final Set<String> rows = new HashSet<String>();
+    	for (MockFlowFile batch : testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS)) {
+    		for (String event : new String(batch.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+    			final JsonArray values = new JsonParser().parse(event).getAsJsonObject().getAsJsonArray("newValues");
+    			assertTrue(rows.add(values.get(0).getAsJsonObject().get("value").getAsString()));
+    		}
+    	}
+    	assertHandedOff("xout16", service, StubCDCService.SCN);
+    }
+
+    @Test
+    public void testSnapshotHandoff() throws Exception {
+    	final StubCDCService service = stub("xout17");
+    	service.positionFailures.set(1);
+    	testRunner.setThreadCount(4);
+    	runUntilAttached(service, 4);
+
+    	// the tasks racing for the completed load attach once, after the failed handoff is retried
+    	assertEquals(1, Collections.frequency(service.calls, "plan HR.A " + StubCDCService.SCN));
+    	assertEquals(1, Collections.frequency(service.calls, "plan HR.B " + StubCDCService.SCN));
+    	assertEquals(2, Collections.frequency(service.calls, "position " + StubCDCService.SCN));
+    	assertEquals(1, service.attaches.get());
+    	assertEquals(4 * StubCDCService.CHUNK_ROWS, records(OracleChangeCapture.INSERTS));
+    	assertHandedOff("xout17", service, StubCDCService.SCN);
+    }
+
+    @Test
+    public void testSnapshotAlongsideStreaming() throws Exception {
+    	final StubCDCService service = stub("xout18,xout19");
+    	testRunner.getStateManager().setState(Collections.singletonMap("position.xout18",
+    			new String(new Base32(true).encode(StubCDCService.position(1L)))), Scope.CLUSTER);
+    	testRunner.run(4, true, true);
+
+    	// a single task serves the attached outbound server while the other one is loaded
+    	assertEquals(1, service.attaches.get());
+    	assertEquals(Arrays.asList("scn", "tables", "plan HR.A 1000", "read HR.A#0", "receive xout18", "read HR.A#1",
+    			"plan HR.B 1000", "read HR.B#0", "receive xout18", "read HR.B#1"), service.calls);
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void testSnapshotPlannedOutsideLock() throws Exception {
+    	final StubCDCService service = new StubCDCService();
+    	service.planGate = new CountDownLatch(1);
+    	final OracleChangeCapture.Snapshot snapshot = new OracleChangeCapture.Snapshot("xout20",
+    			new SnapshotProgress(StubCDCService.SCN, Arrays.asList("HR.A", "HR.B")), null, null, 0);
+    	final SnapshotChunk first = snapshot.next(service, 10);
+    	final SnapshotChunk second = snapshot.next(service, 10);
+    	final AtomicReference<SnapshotChunk> planned = new AtomicReference<SnapshotChunk>();
+    	final Thread planner = new Thread(new Runnable() {
+    		@Override
+    		public void run() {
+    			planned.set(snapshot.next(service, 10));
+    		}
+    	});
+    	planner.start();
+    	while (!service.calls.contains("plan HR.B " + StubCDCService.SCN)) {
+    		Thread.sleep(1);
+    	}
+
+    	// while HR.B is planned, the chunks of HR.A are finished and no handoff is claimed
+    	assertNull(snapshot.next(service, 10));
+    	for (SnapshotChunk chunk : new SnapshotChunk[] {first, second}) {
+    		snapshot.progress.chunkDone(chunk.getTableName(), chunk.getIndex(), StubCDCService.CHUNK_ROWS);
+    		snapshot.finished(chunk, new OracleChangeCapture.Capture("xout20", null), true);
+    	}
+    	assertFalse(snapshot.claimHandoff());
+    	service.planGate.countDown();
+    	planner.join();
+    	assertEquals("HR.B#0", planned.get().getTableName() + "#" + planned.get().getIndex());
+    }
+
+    /**
+     * the outbound server is attached from the position of the SCN, which replaces the stored load
+     */
+    private void assertHandedOff(String server, StubCDCService service, long scn) throws IOException {
+    	assertTrue(Arrays.equals(StubCDCService.position(scn), service.attachedFrom));
+    	final Map<String,String> state = testRunner.getStateManager().getState(Scope.CLUSTER).toMap();
+    	assertEquals(new String(new Base32(true).encode(StubCDCService.position(scn))), state.get("position." + server));
+    	assertTrue(!state.containsKey("snapshot." + server));
+    }
+
+    private StubCDCService stub(String server) throws Exception {
+    	final StubCDCService service = new StubCDCService();
+    	testRunner.addControllerService("stub", service);
+    	testRunner.enableControllerService(service);
+    	testRunner.setProperty(OracleChangeCapture.CDC_SERVICE, "stub");
+    	testRunner.setProperty(OracleChangeCapture.XS_OUT, server);
+    	testRunner.setProperty(OracleChangeCapture.INITIAL_LOAD, "true");
+    	testRunner.setProperty(OracleChangeCapture.INCLUDE_TABLES, "HR.*");
+    	return service;
+    }
+
+    /**
+     * asserts that every row with a LOB references a flowfile holding all chunks of its column
+     */
+    private void assertLobs(String server, int chunks) {
+    	final List<MockFlowFile> lobs = testRunner.getFlowFilesForRelationship(OracleChangeCapture.LOBS);
+    	assertEquals(testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS).size()
+    			+ testRunner.getFlowFilesForRelationship(OracleChangeCapture.UPDATES).size(), lobs.size());
+    	for (MockFlowFile lob : lobs) {
+    		lob.assertAttributeEquals("cdc_type", "LOB");
+    		lob.assertAttributeEquals("cdc.xstream.server", server);
+    		// every LOB flowfile holds all chunks of its row
+    		final String content = new String(lob.toByteArray(), StandardCharsets.UTF_8);
+    		final long row = Long.parseLong(content.substring("row ".length(), content.indexOf(' ', "row ".length())));
+    		final StringBuilder expected = new StringBuilder();
+    		for (int chunk = 0; chunk < chunks; chunk++) {
+    			expected.append(LcrGenerator.chunkText(row, chunk));
+    		}
+    		assertEquals(expected.toString(), content);
+    	}
+    	for (MockFlowFile insert : testRunner.getFlowFilesForRelationship(OracleChangeCapture.INSERTS)) {
+    		final JsonObject event = new JsonParser().parse(new String(insert.toByteArray(), StandardCharsets.UTF_8)).getAsJsonObject();
+    		boolean referenced = false;
+    		for (JsonElement column : event.getAsJsonArray("newValues")) {
+    			if (LcrGenerator.LOB_COLUMN.equals(column.getAsJsonObject().get("name").getAsString())) {
+    				final String uuid = column.getAsJsonObject().get("value").getAsString();
+    				for (MockFlowFile lob : lobs) {
+    					referenced |= uuid.equals(lob.getAttribute(CoreAttributes.UUID.key()));
+    				}
+    			}
+    		}
+    		assertTrue(referenced);
+    	}
+    }
+
+    /**
+     * starts the processor and waits for the stand-in to deliver the transactions, so the
+     * following triggers find them all decoded
+     */
+    private void start(String server, int transactions) throws InterruptedException {
+    	final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    	testRunner.run(1, false, true);
+    	while (StandInServer.get(server).getDeliveredTransactions() < transactions && System.currentTimeMillis() < deadline) {
+    		Thread.sleep(10);
+    	}
+    }
+
+    private int records(Relationship relationship) {
+    	int records = 0;
+    	for (MockFlowFile flowFile : testRunner.getFlowFilesForRelationship(relationship)) {
+    		records += Integer.parseInt(flowFile.getAttribute("record.count"));
+    	}
+    	return records;
+    }
+
+    private static byte[] inflate(InputStream in) throws IOException {
+    	final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    	final byte[] buffer = new byte[4096];
+    	int read;
+    	while ((read = in.read(buffer)) > 0) {
+    		out.write(buffer, 0, read);
+    	}
+    	in.close();
+    	return out.toByteArray();
+    }
+
+    private static String position(String event) {
+    	return new JsonParser().parse(event).getAsJsonObject().get("position").getAsString();
+    }
+
+    /**
+     * triggers a started processor until the flowfiles of the relationship hold the number of events, then stops it
+     */
+    private void runUntilRecords(Relationship relationship, int count) throws InterruptedException {
+    	final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    	while (records(relationship) < count && System.currentTimeMillis() < deadline) {
+    		testRunner.run(1, false, false);
+    		Thread.sleep(10);
+    	}
+    	testRunner.run(1, true, false);
+    }
+
+    /**
+     * triggers the processor until the relationship holds the number of flowfiles, then stops it
+     */
+    private void runUntil(Relationship relationship, int count) throws InterruptedException {
+    	runUntil(relationship, count, true);
+    }
+
+    /**
+     * @param initialize false to continue a run already started
+     */
+    private void runUntil(Relationship relationship, int count, boolean initialize) throws InterruptedException {
+    	final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    	while (testRunner.getFlowFilesForRelationship(relationship).size() < count && System.currentTimeMillis() < deadline) {
+    		testRunner.run(1, false, initialize);
+    		initialize = false;
+    		// the receiver decodes on its own thread
+    		Thread.sleep(10);
+    	}
+    	testRunner.run(1, true, false);
+    }
+
+    /**
+     * triggers the processor until the stub attaches the outbound server, then stops it. A trigger
+     * failing on a stub failure is rolled back and the next one continues
+     */
+    private void runUntilAttached(StubCDCService service, int iterations) throws InterruptedException {
+    	final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    	boolean initialize = true;
+    	while (service.attaches.get() == 0 && System.currentTimeMillis() < deadline) {
+    		try {
+    			testRunner.run(iterations, false, initialize);
+    		} catch (AssertionError e) {
+    			assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof ProcessException);
+    		}
+    		initialize = false;
+    	}
+    	testRunner.run(1, true, false);
+    }
+
+    /**
+     * writes records as text and keeps the column schemas each table was written with
+     */
+    private static class SchemaRecordingWriter extends MockRecordWriter {
+
+    	private final Map<String,Set<List<String>>> schemas = new HashMap<String,Set<List<String>>>();
+    	private int records;
+
+    	@Override
+    	public RecordSchema getSchema(Map<String,String> variables, RecordSchema readSchema) {
+    		return readSchema;
+    	}
+
+    	@Override
+    	public RecordSetWriter createWriter(ComponentLog logger, final RecordSchema schema, OutputStream out) {
+    		final RecordSetWriter writer = super.createWriter(logger, schema, out);
+    		return new RecordSetWriter() {
+
+    			private String table;
+
+    			@Override
+    			public WriteResult write(Record record) throws IOException {
+    				assertTrue(record.getSchema() == schema);
+    				assertTrue(table == null || table.equals(record.getAsString("table")));
+    				table = record.getAsString("table");
+    				final RecordSchema columns = ((RecordDataType) schema.getDataType("newValues").get()).getChildSchema();
+    				Set<List<String>> tableSchemas = schemas.get(table);
+    				if (tableSchemas == null) {
+    					tableSchemas = new HashSet<List<String>>();
+    					schemas.put(table, tableSchemas);
+    				}
+    				tableSchemas.add(columns.getFieldNames());
+    				records++;
+    				return writer.write(record);
+    			}
+
+    			@Override
+    			public WriteResult write(RecordSet recordSet) throws IOException {
+    				return writer.write(recordSet);
+    			}
+
+    			@Override
+    			public void beginRecordSet() throws IOException {
+    				writer.beginRecordSet();
+    			}
+
+    			@Override
+    			public WriteResult finishRecordSet() throws IOException {
+    				return writer.finishRecordSet();
+    			}
+
+    			@Override
+    			public String getMimeType() {
+    				return writer.getMimeType();
+    			}
+
+    			@Override
+    			public void flush() throws IOException {
+    				writer.flush();
+    			}
+
+    			@Override
+    			public void close() throws IOException {
+    				writer.close();
+    			}
+    		};
+    	}
+    }
+
+    /**
+     * serves an initial load of two tables of two chunks each without a database, failing the
+     * chunks and positions it is told to once
+     */
+    private static class StubCDCService extends AbstractControllerService implements OracleCDCService {
+
+    	static final long SCN = 1000L;
+    	static final int CHUNK_ROWS = 3;
+
+    	final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+    	// chunks failing after their rows were delivered, as OWNER.TABLE#index
+    	final Set<String> failing = Collections.synchronizedSet(new HashSet<String>());
+    	final AtomicInteger positionFailures = new AtomicInteger(0);
+    	final AtomicInteger attaches = new AtomicInteger(0);
+    	volatile byte[] attachedFrom;
+    	// holds the planning of HR.B until it is counted down
+    	volatile CountDownLatch planGate;
+
+    	static byte[] position(long scn) {
+    		return ("SCN" + scn).getBytes(StandardCharsets.UTF_8);
+    	}
+
+    	@Override
+    	public Object attach(String xstreamOutServerName, byte[] lastPostion) {
+    		return attach(xstreamOutServerName, lastPostion, null);
+    	}
+
+    	@Override
+    	public Object attach(String xstreamOutServerName, byte[] lastPostion, CaptureFilter filter) {
+    		attachedFrom = lastPostion;
+    		attaches.incrementAndGet();
+    		return xstreamOutServerName;
+    	}
+
+    	@Override
+    	public int receiveEvents(Object xsOutServer, OracleCDCEventHandler handler, int maxEvents) {
+    		calls.add("receive " + xsOutServer);
+    		return 0;
+    	}
+
+    	@Override
+    	public void detach(Object xsOutServer) {
+    	}
+
+    	@Override
+    	public void setProcessedLowWaterMark(Object xsOutServer, byte[] position) {
+    	}
+
+    	@Override
+    	public CaptureMetrics getMetrics(Object xsOutServer) {
+    		return new CaptureMetrics(String.valueOf(xsOutServer));
+    	}
+
+    	@Override
+    	public Map<String,CaptureMetrics> getMetrics() {
+    		return Collections.emptyMap();
+    	}
+
+    	@Override
+    	public long getCurrentScn() {
+    		calls.add("scn");
+    		return SCN;
+    	}
+
+    	@Override
+    	public byte[] getPosition(long scn) {
+    		calls.add("position " + scn);
+    		if (positionFailures.getAndDecrement() > 0) {
+    			throw new ProcessException("no position for SCN " + scn);
+    		}
+    		return position(scn);
+    	}
+
+    	@Override
+    	public List<String> listTables(CaptureFilter filter) {
+    		calls.add("tables");
+    		return Arrays.asList("HR.A", "HR.B");
+    	}
+
+    	@Override
+    	public List<SnapshotChunk> planSnapshot(String owner, String table, long scn, int chunkRows) {
+    		calls.add("plan " + owner + "." + table + " " + scn);
+    		if (planGate != null && "B".equals(table)) {
+    			try {
+    				planGate.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    			} catch (InterruptedException e) {
+    				throw new ProcessException(e);
+    			}
+    		}
+    		return Arrays.asList(new SnapshotChunk(owner, table, scn, 0, "AAAA", "AAAM"),
+    				new SnapshotChunk(owner, table, scn, 1, "AAAM", "AAAZ"));
+    	}
+
+    	@Override
+    	public long readSnapshot(SnapshotChunk chunk, CaptureFilter filter, OracleCDCEventHandler handler) {
+    		final String name = chunk.getTableName() + "#" + chunk.getIndex();
+    		calls.add("read " + name);
+    		final TableMetadata metadata = new TableMetadata(1, chunk.getTableName()).withColumn(2, "ID", 1, "String");
+    		final ChangeEvent event = new ChangeEvent();
+    		for (int row = 0; row < CHUNK_ROWS; row++) {
+    			event.clear();
+    			event.setDatabase("DB");
+    			event.setSchema(chunk.getOwner());
+    			event.setTable(chunk.getTable());
+    			event.setCommandType("INSERT");
+    			event.setPosition(position(chunk.getScn()));
+    			event.setTimestamp(System.currentTimeMillis());
+    			event.setMetadata(metadata);
+    			event.getNewValues().add("ID", 1, "String", name + "/" + row);
+    			handler.inserts(event);
+    		}
+    		if (failing.remove(name)) {
+    			throw new ProcessException("connection lost reading " + name);
+    		}
+    		return CHUNK_ROWS;
+    	}
+    }
 
 }
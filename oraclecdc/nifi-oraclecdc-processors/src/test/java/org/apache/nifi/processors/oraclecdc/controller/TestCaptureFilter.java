@@ -0,0 +1,52 @@
+package org.apache.nifi.processors.oraclecdc.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TestCaptureFilter {
+
+	@Test
+	public void testTables() {
+		final CaptureFilter filter = CaptureFilter.compile("HR.*, *.ORDERS", "HR.AUDIT*", null);
+		assertTrue(filter.includesTable("HR", "EMPLOYEES"));
+		assertTrue(filter.includesTable("sales", "orders"));
+		assertFalse(filter.includesTable("SALES", "ORDER_ITEMS"));
+		assertFalse(filter.includesTable("HR", "AUDIT_LOG"));
+		// the dot is not a wildcard
+		assertFalse(filter.includesTable("HRX", "EMPLOYEES"));
+		assertNull(filter.getColumns("HR", "EMPLOYEES"));
+	}
+
+	@Test
+	public void testColumns() {
+		final CaptureFilter filter = CaptureFilter.compile(null, null, "hr.employees=ID, Name ;HR.JOBS=TITLE");
+		assertTrue(filter.includesTable("SALES", "ORDERS"));
+		final Set<String> columns = filter.getColumns("HR", "EMPLOYEES");
+		assertEquals(2, columns.size());
+		assertTrue(columns.contains("NAME"));
+		assertFalse(columns.contains("SALARY"));
+		assertNull(filter.getColumns("HR", "DEPARTMENTS"));
+	}
+
+	@Test
+	public void testNothingFiltered() {
+		assertNull(CaptureFilter.compile(null, " ", null));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingOwner() {
+		CaptureFilter.parseTables("ORDERS");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingColumns() {
+		CaptureFilter.parseColumns("HR.EMPLOYEES=");
+	}
+
+}
@@ -0,0 +1,55 @@
+package org.apache.nifi.processors.oraclecdc.controller.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.nifi.processors.oraclecdc.controller.SnapshotChunk;
+import org.junit.Test;
+
+public class TestSnapshotReader {
+
+	@Test
+	public void testRowid() {
+		// data object AAAPec, file AAF, block AAAABS, row AAA
+		assertEquals("AAAPecAAFAAAABSAAA", SnapshotReader.rowid(63388, 5, 82, 0));
+		assertEquals("AAAAAAAABAAAAAAH//", SnapshotReader.rowid(0, 1, 0, 32767));
+	}
+
+	@Test
+	public void testRowsPerBlock() {
+		assertEquals(34, SnapshotReader.rowsPerBlock(1000, 30, 100, 8192));
+		assertEquals(81, SnapshotReader.rowsPerBlock(0, 0, 100, 8192));
+		assertEquals(50, SnapshotReader.rowsPerBlock(0, 0, 0, 0));
+	}
+
+	@Test
+	public void testRanges() {
+		final List<SnapshotChunk> chunks = SnapshotReader.ranges("HR", "ORDERS", 42L, Arrays.asList(
+				new long[] {100, 4, 128, 8},
+				new long[] {100, 4, 136, 8},
+				new long[] {100, 5, 16, 24},
+				// a second partition starts a range of its own
+				new long[] {101, 5, 64, 8}), 10);
+
+		assertEquals(5, chunks.size());
+		assertRange(chunks.get(0), 0, SnapshotReader.rowid(100, 4, 128, 0), SnapshotReader.rowid(100, 4, 137, 32767));
+		assertRange(chunks.get(1), 1, SnapshotReader.rowid(100, 4, 138, 0), SnapshotReader.rowid(100, 5, 19, 32767));
+		assertRange(chunks.get(2), 2, SnapshotReader.rowid(100, 5, 20, 0), SnapshotReader.rowid(100, 5, 29, 32767));
+		assertRange(chunks.get(3), 3, SnapshotReader.rowid(100, 5, 30, 0), SnapshotReader.rowid(100, 5, 39, 32767));
+		assertRange(chunks.get(4), 4, SnapshotReader.rowid(101, 5, 64, 0), SnapshotReader.rowid(101, 5, 71, 32767));
+		assertEquals(42L, chunks.get(4).getScn());
+		assertEquals("HR.ORDERS", chunks.get(4).getTableName());
+
+		// a table without segment has no chunks
+		assertEquals(0, SnapshotReader.ranges("HR", "EMPTY", 42L, Arrays.<long[]>asList(), 10).size());
+	}
+
+	private static void assertRange(SnapshotChunk chunk, int index, String low, String high) {
+		assertEquals(index, chunk.getIndex());
+		assertEquals(low, chunk.getLowRowid());
+		assertEquals(high, chunk.getHighRowid());
+	}
+
+}
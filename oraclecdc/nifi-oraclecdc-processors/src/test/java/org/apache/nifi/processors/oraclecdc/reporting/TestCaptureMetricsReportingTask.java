@@ -0,0 +1,197 @@
+package org.apache.nifi.processors.oraclecdc.reporting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.controller.AbstractControllerService;
+import org.apache.nifi.controller.ControllerService;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureFilter;
+import org.apache.nifi.processors.oraclecdc.controller.CaptureMetrics;
+import org.apache.nifi.processors.oraclecdc.controller.OracleCDCEventHandler;
+import org.apache.nifi.processors.oraclecdc.controller.OracleCDCService;
+import org.apache.nifi.processors.oraclecdc.controller.SnapshotChunk;
+import org.apache.nifi.registry.VariableRegistry;
+import org.apache.nifi.state.MockStateManager;
+import org.apache.nifi.util.LogMessage;
+import org.apache.nifi.util.MockComponentLog;
+import org.apache.nifi.util.MockReportingContext;
+import org.apache.nifi.util.MockReportingInitializationContext;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCaptureMetricsReportingTask {
+
+	private final MetricsService service = new MetricsService();
+	private MockComponentLog logger;
+	private MockReportingContext context;
+	private long nanos = 0;
+
+	private final CaptureMetricsReportingTask task = new CaptureMetricsReportingTask() {
+		@Override
+		long nanoTime() {
+			return nanos;
+		}
+	};
+
+	@Before
+	public void setup() throws Exception {
+		logger = new MockComponentLog("metrics", task);
+		task.initialize(new MockReportingInitializationContext("metrics", "metrics", logger));
+		context = new MockReportingContext(Collections.<String,ControllerService>emptyMap(), new MockStateManager(task),
+				VariableRegistry.EMPTY_REGISTRY);
+		// the services passed to the constructor are not looked up by property values
+		context.addControllerService(service, "cdcservice");
+		context.setProperty(CaptureMetricsReportingTask.CDC_SERVICE.getName(), "cdcservice");
+		context.setProperty(CaptureMetricsReportingTask.LAG_THRESHOLD.getName(), "1 min");
+	}
+
+	private List<String> messages(List<LogMessage> logged, String server) {
+		final List<String> messages = new ArrayList<String>();
+		for (LogMessage message : logged) {
+			if (message.getMsg().contains(server)) {
+				messages.add(message.getMsg());
+			}
+		}
+		return messages;
+	}
+
+	@Test
+	public void testRates() {
+		final CaptureMetrics xa = service.attach("xa");
+		xa.addOperationEvents("INSERT", 100);
+		xa.addTableEvents("ORCL.SCOTT.EMP", 100);
+		task.onTrigger(context);
+		// the first run only takes the totals
+		assertEquals(0, messages(logger.getInfoMessages(), "xa").size());
+
+		xa.addOperationEvents("INSERT", 200);
+		xa.addOperationEvents("DELETE", 50);
+		xa.addTableEvents("ORCL.SCOTT.EMP", 250);
+		xa.addStage(CaptureMetrics.SERIALIZE, TimeUnit.MILLISECONDS.toNanos(500), 250);
+		nanos += TimeUnit.SECONDS.toNanos(2);
+		task.onTrigger(context);
+		final List<String> rates = messages(logger.getInfoMessages(), "xa");
+		assertEquals(1, rates.size());
+		assertTrue(rates.get(0), rates.get(0).contains("INSERT=100.0"));
+		assertTrue(rates.get(0), rates.get(0).contains("DELETE=25.0"));
+		assertTrue(rates.get(0), rates.get(0).contains("ORCL.SCOTT.EMP=125.0"));
+		assertTrue(rates.get(0), rates.get(0).contains("serialize=250.0"));
+		assertTrue(rates.get(0), rates.get(0).contains("receive=0.0"));
+	}
+
+	@Test
+	public void testAttached() {
+		service.attach("xa");
+		task.onTrigger(context);
+		final CaptureMetrics xb = service.attach("xb");
+		xb.addOperationEvents("INSERT", 1000);
+		nanos += TimeUnit.SECONDS.toNanos(1);
+		task.onTrigger(context);
+		// xb has no totals of a previous run to compute its rates from
+		assertEquals(1, messages(logger.getInfoMessages(), "xa").size());
+		assertEquals(0, messages(logger.getInfoMessages(), "xb").size());
+
+		// attached again, with metrics counted from zero
+		service.attach("xa");
+		xb.addOperationEvents("INSERT", 10);
+		nanos += TimeUnit.SECONDS.toNanos(1);
+		task.onTrigger(context);
+		assertEquals(1, messages(logger.getInfoMessages(), "xa").size());
+		final List<String> rates = messages(logger.getInfoMessages(), "xb");
+		assertEquals(1, rates.size());
+		assertTrue(rates.get(0), rates.get(0).contains("INSERT=10.0"));
+	}
+
+	@Test
+	public void testLagThreshold() {
+		service.attach("xa").setLagMillis(TimeUnit.SECONDS.toMillis(30));
+		service.attach("xb").setLagMillis(TimeUnit.MINUTES.toMillis(2));
+		task.onTrigger(context);
+		assertEquals(0, messages(logger.getWarnMessages(), "xa").size());
+		final List<String> warnings = messages(logger.getWarnMessages(), "xb");
+		assertEquals(1, warnings.size());
+		assertTrue(warnings.get(0), warnings.get(0).contains("120000 ms"));
+	}
+
+	/**
+	 * reports the metrics of the servers attached by the test
+	 */
+	private static class MetricsService extends AbstractControllerService implements OracleCDCService {
+
+		private final Map<String,CaptureMetrics> metrics = new LinkedHashMap<String,CaptureMetrics>();
+
+		CaptureMetrics attach(String name) {
+			final CaptureMetrics attached = new CaptureMetrics(name);
+			metrics.put(name, attached);
+			return attached;
+		}
+
+		@Override
+		public Map<String,CaptureMetrics> getMetrics() {
+			return metrics;
+		}
+
+		@Override
+		public Object attach(String xstreamOutServerName, byte[] lastPostion) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Object attach(String xstreamOutServerName, byte[] lastPostion, CaptureFilter filter) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int receiveEvents(Object xsOutServer, OracleCDCEventHandler handler, int maxEvents) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void detach(Object xsOutServer) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void setProcessedLowWaterMark(Object xsOutServer, byte[] position) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public CaptureMetrics getMetrics(Object xsOutServer) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long getCurrentScn() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public byte[] getPosition(long scn) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<String> listTables(CaptureFilter filter) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<SnapshotChunk> planSnapshot(String owner, String table, long scn, int chunkRows) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long readSnapshot(SnapshotChunk chunk, CaptureFilter filter, OracleCDCEventHandler handler) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -0,0 +1,39 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestAdaptiveBatchSizer {
+
+	private static final long MICROSECOND = TimeUnit.MICROSECONDS.toNanos(1);
+
+	@Test
+	public void testCostAndBackPressure() {
+		final AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 10000, TimeUnit.MILLISECONDS.toNanos(100));
+		assertEquals(100, sizer.nextSize());
+		// 1 microsecond per event fits far more than the maximum in 100 ms
+		sizer.record(100, 100 * MICROSECOND);
+		assertEquals(10000, sizer.nextSize());
+
+		sizer.backPressure();
+		assertEquals(5000, sizer.nextSize());
+		sizer.backPressure();
+		assertEquals(2500, sizer.nextSize());
+		// the cap doubles with every cycle until the cost allows the maximum again
+		sizer.record(2500, 2500 * MICROSECOND);
+		assertEquals(2500, sizer.nextSize());
+		sizer.record(2500, 2500 * MICROSECOND);
+		assertEquals(5000, sizer.nextSize());
+		sizer.record(5000, 5000 * MICROSECOND);
+		assertEquals(10000, sizer.nextSize());
+
+		for (int i = 0; i < 10; i++) {
+			sizer.backPressure();
+		}
+		assertEquals(100, sizer.nextSize());
+	}
+
+}
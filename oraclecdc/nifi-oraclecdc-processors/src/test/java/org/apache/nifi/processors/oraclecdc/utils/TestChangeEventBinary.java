@@ -0,0 +1,131 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.apache.nifi.processors.oraclecdc.controller.TableMetadata;
+import org.junit.Test;
+
+public class TestChangeEventBinary {
+
+	private static final TableMetadata EMP = new TableMetadata(7, "ORCL.SCOTT.EMP")
+			.withColumn(7, "EMPNO", 2, "BigDecimal")
+			.withColumn(7, "ENAME", 1, "String")
+			.withColumn(7, "HIREDATE", 12, "Date")
+			.withColumn(7, "SAL", 101, "double");
+
+	private static ChangeEvent event(String commandType, long timestamp){
+		final ChangeEvent event = new ChangeEvent();
+		event.setTimestamp(timestamp);
+		event.setDatabase("ORCL");
+		event.setSchema("SCOTT");
+		event.setTable("EMP");
+		event.setCommandType(commandType);
+		event.setTransactionId("1.2.3");
+		event.setPosition(new byte[] {1, 2, 3, 4});
+		event.setMetadata(EMP);
+		return event;
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		final ChangeEventBinary binary = new ChangeEventBinary();
+		final Set<Integer> schemas = new HashSet<Integer>();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		final ChangeEvent insert = event("INSERT", 1546300800000L);
+		insert.getNewValues().add("EMPNO", 2, "BigDecimal", new BigDecimal("-7369.50"));
+		insert.getNewValues().add("HIREDATE", 12, "Date", new Date(-86400000L));
+		insert.getNewValues().add("SAL", 101, "double", 800.25d);
+		insert.getNewValues().add("PHOTO", 113, "LOB", "0f8fad5b-d9cb-469f-a165-70867728950e");
+		binary.write(insert, schemas).writeTo(out);
+
+		final ChangeEvent update = event("UPDATE", 1546300801000L);
+		update.getNewValues().add("ENAME", 1, "String", "SM\u00cfTH");
+		update.getOldValues().add("EMPNO", 2, "BigDecimal", new BigDecimal("7369"));
+		binary.write(update, schemas).writeTo(out);
+		// the schema was written with the first event only
+		assertEquals(1, schemas.size());
+
+		final ChangeEvent commit = new ChangeEvent();
+		commit.setCommandType("COMMIT");
+		commit.setTransactionId("1.2.3");
+		commit.setPosition(new byte[] {5});
+		binary.write(commit, schemas).writeTo(out);
+
+		final ChangeEventBinaryReader reader = new ChangeEventBinaryReader(new ByteArrayInputStream(out.toByteArray()));
+		ChangeEvent read = reader.next();
+		assertEquals("INSERT", read.getCommandType());
+		assertEquals(1546300800000L, read.getTimestamp());
+		assertEquals("ORCL.SCOTT.EMP", read.getTableKey());
+		assertEquals("1.2.3", read.getTransactionId());
+		assertArrayEquals(new byte[] {1, 2, 3, 4}, read.getPosition());
+		assertEquals(7, read.getMetadata().getVersion());
+		assertEquals(4, read.getMetadata().size());
+		assertEquals(4, read.getNewValues().size());
+		assertEquals(new BigDecimal("-7369.50"), read.getNewValues().get(0).getValue());
+		assertEquals(new Date(-86400000L), read.getNewValues().get(1).getValue());
+		assertEquals(800.25d, read.getNewValues().get(2).getValue());
+		assertEquals("PHOTO", read.getNewValues().get(3).getName());
+		assertEquals("LOB", read.getNewValues().get(3).getType());
+		assertEquals("0f8fad5b-d9cb-469f-a165-70867728950e", read.getNewValues().get(3).getValue());
+		assertEquals(0, read.getOldValues().size());
+
+		read = reader.next();
+		assertEquals("UPDATE", read.getCommandType());
+		assertSame(reader.getSchema(7), read.getMetadata());
+		assertEquals("ENAME", read.getNewValues().get(0).getName());
+		assertEquals("SM\u00cfTH", read.getNewValues().get(0).getValue());
+		assertEquals(new BigDecimal("7369"), read.getOldValues().get(0).getValue());
+
+		read = reader.next();
+		assertEquals("COMMIT", read.getCommandType());
+		assertNull(read.getMetadata());
+		assertNull(read.getTable());
+
+		assertNull(reader.next());
+	}
+
+	@Test
+	public void testScalesAndNanos() throws Exception {
+		final TableMetadata readings = new TableMetadata(3, "ORCL.LAB.READINGS")
+				.withColumn(3, "TINY", 2, "BigDecimal")
+				.withColumn(3, "HUGE", 2, "BigDecimal")
+				.withColumn(3, "TAKEN", 5, "Timestamp")
+				.withColumn(3, "BEFORE_EPOCH", 5, "Timestamp");
+		final Timestamp taken = Timestamp.valueOf("2019-01-01 10:15:30.123456789");
+		final Timestamp beforeEpoch = Timestamp.valueOf("1969-12-31 23:59:59.000000001");
+		final ChangeEvent insert = event("INSERT", 1546300800000L);
+		insert.setMetadata(readings);
+		// scales beyond a byte either way
+		insert.getNewValues().add("TINY", 2, "BigDecimal", new BigDecimal("-1E-130"));
+		insert.getNewValues().add("HUGE", 2, "BigDecimal", new BigDecimal("9.99E125"));
+		insert.getNewValues().add("TAKEN", 5, "Timestamp", taken);
+		insert.getNewValues().add("BEFORE_EPOCH", 5, "Timestamp", beforeEpoch);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new ChangeEventBinary().write(insert, new HashSet<Integer>()).writeTo(out);
+
+		final ChangeEvent read = new ChangeEventBinaryReader(new ByteArrayInputStream(out.toByteArray())).next();
+		assertEquals(new BigDecimal("-1E-130"), read.getNewValues().get(0).getValue());
+		assertEquals(130, ((BigDecimal) read.getNewValues().get(0).getValue()).scale());
+		assertEquals(new BigDecimal("9.99E125"), read.getNewValues().get(1).getValue());
+		assertEquals(-123, ((BigDecimal) read.getNewValues().get(1).getValue()).scale());
+		assertTrue(read.getNewValues().get(2).getValue() instanceof Timestamp);
+		assertEquals(taken, read.getNewValues().get(2).getValue());
+		assertEquals(123456789, ((Timestamp) read.getNewValues().get(2).getValue()).getNanos());
+		assertEquals(beforeEpoch, read.getNewValues().get(3).getValue());
+	}
+
+}
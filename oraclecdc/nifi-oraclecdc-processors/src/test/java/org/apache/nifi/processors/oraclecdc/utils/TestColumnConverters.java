@@ -0,0 +1,126 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import oracle.sql.BINARY_DOUBLE;
+import oracle.sql.BINARY_FLOAT;
+import oracle.sql.CHAR;
+import oracle.sql.CharacterSet;
+import oracle.sql.DATE;
+import oracle.sql.Datum;
+import oracle.sql.NUMBER;
+import oracle.sql.RAW;
+import oracle.sql.TIMESTAMP;
+import oracle.streams.ColumnValue;
+
+public class TestColumnConverters {
+
+	// Oracle internal TIMESTAMP bytes: century and year of century +100, month, day,
+	// hour, minute and second +1, then the nanoseconds
+	private static byte[] timestamp(LocalDateTime time){
+		final int nanos = time.getNano();
+		return new byte[] {(byte)(time.getYear()/100+100), (byte)(time.getYear()%100+100), (byte)time.getMonthValue(),
+				(byte)time.getDayOfMonth(), (byte)(time.getHour()+1), (byte)(time.getMinute()+1), (byte)(time.getSecond()+1),
+				(byte)(nanos>>>24), (byte)(nanos>>>16), (byte)(nanos>>>8), (byte)nanos};
+	}
+
+	@Test
+	public void testDaysFromCivil(){
+		for(LocalDate date = LocalDate.of(1, 1, 1); date.getYear()<=9999; date = date.plusDays(97)){
+			assertEquals(date.toString(), date.toEpochDay(),
+					ColumnConverters.daysFromCivil(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+		}
+	}
+
+	@Test
+	public void testTimestamp(){
+		final LocalDateTime[] times = {LocalDateTime.of(1970, 1, 1, 0, 0), LocalDateTime.of(2000, 2, 29, 23, 59, 59, 999999999),
+				LocalDateTime.of(1899, 12, 31, 12, 30, 15, 1000), LocalDateTime.of(2038, 1, 19, 3, 14, 8, 123000000)};
+		for(LocalDateTime time : times){
+			final byte[] bytes = timestamp(time);
+			assertEquals(time.toString(), time.toInstant(ZoneOffset.UTC).toEpochMilli(), ColumnConverters.toEpochMillis(bytes));
+			assertEquals(time.toString(), time.getNano(), ColumnConverters.nanos(bytes));
+			// a DATE is the first 7 bytes
+			assertEquals(time.toString(), time.withNano(0).toInstant(ZoneOffset.UTC).toEpochMilli(),
+					ColumnConverters.toEpochMillis(Arrays.copyOf(bytes, 7)));
+		}
+	}
+
+	@Test
+	public void testIntervals(){
+		// +02-03
+		assertEquals("P2Y3M", ColumnConverters.intervalYearToMonth(new byte[] {(byte)0x80, 0, 0, 2, 63}));
+		// -01-06
+		assertEquals("P-1Y-6M", ColumnConverters.intervalYearToMonth(new byte[] {0x7f, (byte)0xff, (byte)0xff, (byte)0xff, 54}));
+		// +1 02:03:04.5
+		assertEquals("PT26H3M4.5S", ColumnConverters.intervalDayToSecond(
+				new byte[] {(byte)0x80, 0, 0, 1, 62, 63, 64, (byte)0x9d, (byte)0xcd, 0x65, 0}));
+		// -0 00:00:01.5
+		assertEquals("PT-1.5S", ColumnConverters.intervalDayToSecond(
+				new byte[] {(byte)0x80, 0, 0, 0, 60, 60, 59, 0x62, 0x32, (byte)0x9b, 0}));
+	}
+
+	// a datum of the internal bytes of a type the stand-in has no class for
+	private static Datum datum(byte[] bytes){
+		return new Datum(bytes) {
+		};
+	}
+
+	private static Object convert(ColumnConverters converters, int type, String typeName, Datum datum) throws Throwable{
+		assertEquals(typeName, converters.get(type).getType());
+		return converters.get(type).convert(datum);
+	}
+
+	@Test
+	public void testConvertByType() throws Throwable{
+		final ColumnConverters converters = new ColumnConverters(new XStreamBinding(getClass().getClassLoader()),
+				TimeZone.getTimeZone("Europe/Berlin"));
+		assertEquals(12345L, convert(converters, ColumnValue.NUMBER, "BigDecimal", new NUMBER(12345)));
+		assertEquals(new BigDecimal("-12.5"), convert(converters, ColumnValue.NUMBER, "BigDecimal", new NUMBER(new BigDecimal("-12.5"))));
+		assertEquals(1.5d, convert(converters, ColumnValue.BINARY_DOUBLE, "double", new BINARY_DOUBLE(1.5d)));
+		assertEquals(2.5f, convert(converters, ColumnValue.BINARY_FLOAT, "float", new BINARY_FLOAT(2.5f)));
+		assertEquals("h\u00e9llo", convert(converters, ColumnValue.CHAR, "String",
+				new CHAR("h\u00e9llo", CharacterSet.make(CharacterSet.AL32UTF8_CHARSET))));
+		assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) convert(converters, ColumnValue.RAW, "bytes", new RAW(new byte[] {1, 2, 3})));
+
+		// DATE and TIMESTAMP are read in the JVM time zone
+		final Timestamp local = Timestamp.valueOf("2019-07-01 10:15:30.123456789");
+		assertEquals(new Date(Timestamp.valueOf("2019-07-01 10:15:30").getTime()),
+				convert(converters, ColumnValue.DATE, "Date", new DATE(local)));
+		assertEquals(local, convert(converters, ColumnValue.TIMESTAMP, "Timestamp", new TIMESTAMP(local)));
+
+		// TIMESTAMP WITH LOCAL TIME ZONE is normalized to the database time zone, two hours ahead of UTC in July
+		final LocalDateTime time = LocalDateTime.of(2019, 7, 1, 10, 15, 30, 500000000);
+		final Timestamp ltz = (Timestamp) convert(converters, ColumnValue.TIMESTAMPLTZ, "Timestamp", datum(timestamp(time)));
+		assertEquals(time.atZone(ZoneId.of("Europe/Berlin")).toInstant(), ltz.toInstant());
+		assertEquals(500000000, ltz.getNanos());
+		final ColumnConverters utc = new ColumnConverters(new XStreamBinding(getClass().getClassLoader()));
+		assertEquals(time.toInstant(ZoneOffset.UTC),
+				((Timestamp) convert(utc, ColumnValue.TIMESTAMPLTZ, "Timestamp", datum(timestamp(time)))).toInstant());
+
+		// TIMESTAMP WITH TIME ZONE is stored in UTC, followed by the zone
+		final byte[] tz = Arrays.copyOf(timestamp(time), 13);
+		tz[11] = 20 + 2;
+		tz[12] = 60;
+		assertEquals(time.toInstant(ZoneOffset.UTC),
+				((Timestamp) convert(converters, ColumnValue.TIMESTAMPTZ, "Timestamp", datum(tz))).toInstant());
+
+		assertEquals("P2Y3M", convert(converters, ColumnValue.INTERVALYM, "Period", datum(new byte[] {(byte)0x80, 0, 0, 2, 63})));
+		assertEquals("PT26H3M4.5S", convert(converters, ColumnValue.INTERVALDS, "Duration",
+				datum(new byte[] {(byte)0x80, 0, 0, 1, 62, 63, 64, (byte)0x9d, (byte)0xcd, 0x65, 0})));
+	}
+
+}
@@ -0,0 +1,74 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Test;
+
+public class TestContentCompressor {
+
+	private static byte[] events(int count) {
+		final StringBuilder json = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			json.append("{\"type\":\"INSERT\",\"table\":\"SCOTT.EMP\",\"newValues\":[{\"name\":\"EMPNO\",\"value\":")
+					.append(i).append("}]}\n");
+		}
+		return json.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] compress(ContentCompressor compressor, byte[] content) throws IOException {
+		final ByteArrayOutputStream flowFile = new ByteArrayOutputStream();
+		final OutputStream compressed = compressor.open(flowFile);
+		compressed.write(content, 0, 10);
+		compressed.write(content[10]);
+		compressed.write(content, 11, content.length - 11);
+		compressed.close();
+		// a record writer closes the stream as well
+		compressed.close();
+		return flowFile.toByteArray();
+	}
+
+	private static byte[] read(InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		for (int read; (read = in.read(buffer)) > 0;) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testGzip() throws IOException {
+		final ContentCompressor compressor = new ContentCompressor(ContentCompressor.GZIP, 1);
+		// the deflater is reused from one flowfile to the next
+		for (int count : new int[] {1000, 3}) {
+			final byte[] content = events(count);
+			final byte[] compressed = compress(compressor, content);
+			assertArrayEquals(content, read(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+		}
+		assertEquals("application/gzip", compressor.getMimeType());
+		compressor.end();
+	}
+
+	@Test
+	public void testDeflate() throws IOException {
+		final ContentCompressor compressor = new ContentCompressor(ContentCompressor.DEFLATE, 6);
+		final byte[] content = events(1000);
+		final byte[] compressed = compress(compressor, content);
+		assertTrue(compressed.length * 8 < content.length);
+		assertArrayEquals(content, read(new InflaterInputStream(new ByteArrayInputStream(compressed))));
+		assertArrayEquals(content, read(new InflaterInputStream(new ByteArrayInputStream(compress(compressor, content)))));
+		compressor.end();
+	}
+
+}
@@ -0,0 +1,157 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.apache.nifi.processors.oraclecdc.controller.OracleCDCEventHandler;
+import org.junit.Test;
+
+public class TestEventRingBuffer {
+
+	private static final long TIMEOUT_MILLIS = 10000;
+
+	private static ChangeEvent insert() {
+		final ChangeEvent event = new ChangeEvent();
+		event.setDatabase("ORCL");
+		event.setSchema("HR");
+		event.setTable("NOTES");
+		event.setCommandType("INSERT");
+		event.setPosition(new byte[] {1});
+		return event;
+	}
+
+	/**
+	 * publishes from a thread of its own, like the receiver
+	 */
+	private static Thread produce(final EventRingBuffer ring, final AtomicReference<Throwable> failure, final int... chunks) {
+		final Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					final ChangeEvent event = insert();
+					for (int i = 0; i < chunks.length; i++) {
+						ring.chunk(event, "NOTE", new byte[chunks[i]], i == chunks.length - 1);
+					}
+					ring.inserts(event);
+				} catch (Throwable t) {
+					failure.set(t);
+				}
+			}
+		});
+		producer.start();
+		return producer;
+	}
+
+	private static void awaitSize(EventRingBuffer ring, int size) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (ring.size() < size && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		// the producer had the time to publish more if it could
+		Thread.sleep(50);
+		assertEquals(size, ring.size());
+	}
+
+	@Test
+	public void testByteBudget() throws Exception {
+		final EventRingBuffer ring = new EventRingBuffer(16, 250);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Thread producer = produce(ring, failure, 100, 100, 100, 100);
+		// a third chunk would exceed the budget while slots are left
+		awaitSize(ring, 2);
+		assertEquals(200, ring.getQueuedBytes());
+
+		final Recorder recorder = new Recorder();
+		assertEquals(1, ring.drain(recorder, 1));
+		awaitSize(ring, 2);
+		final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (recorder.events.size() < 5 && System.currentTimeMillis() < deadline) {
+			ring.drain(recorder, 1);
+		}
+		producer.join(TIMEOUT_MILLIS);
+		assertNull(failure.get());
+		assertEquals(Arrays.asList("CHUNK 100", "CHUNK 100", "CHUNK 100", "CHUNK 100 last", "INSERT"), recorder.events);
+		assertEquals(0, ring.getQueuedBytes());
+		assertTrue(ring.getFullWaits() >= 2);
+	}
+
+	@Test
+	public void testLargeChunk() throws Exception {
+		final EventRingBuffer ring = new EventRingBuffer(16, 50);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Thread producer = produce(ring, failure, 100, 10);
+		// queued alone, the next chunk waits for it
+		awaitSize(ring, 1);
+		assertEquals(100, ring.getQueuedBytes());
+
+		final Recorder recorder = new Recorder();
+		final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (recorder.events.size() < 3 && System.currentTimeMillis() < deadline) {
+			ring.drain(recorder, 10);
+		}
+		producer.join(TIMEOUT_MILLIS);
+		assertNull(failure.get());
+		assertEquals(Arrays.asList("CHUNK 100", "CHUNK 10 last", "INSERT"), recorder.events);
+	}
+
+	@Test
+	public void testInterrupted() throws Exception {
+		final EventRingBuffer ring = new EventRingBuffer(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Thread producer = produce(ring, failure, 10);
+		awaitSize(ring, 1);
+		// the row waits for the slot of the chunk
+		producer.interrupt();
+		producer.join(TIMEOUT_MILLIS);
+		assertTrue(String.valueOf(failure.get()), failure.get() instanceof ProcessException);
+	}
+
+	private static class Recorder implements OracleCDCEventHandler {
+		final List<String> events = new ArrayList<String>();
+
+		@Override
+		public void inserts(ChangeEvent event) {
+			events.add(event.getCommandType());
+		}
+
+		@Override
+		public void updates(ChangeEvent event) {
+			events.add(event.getCommandType());
+		}
+
+		@Override
+		public void deletes(ChangeEvent event) {
+			events.add(event.getCommandType());
+		}
+
+		@Override
+		public void commit(ChangeEvent event) {
+			events.add(event.getCommandType());
+		}
+
+		@Override
+		public void other(ChangeEvent event) {
+			events.add(event.getCommandType());
+		}
+
+		@Override
+		public String chunk(ChangeEvent event, String columnName, byte[] data, boolean lastChunk) {
+			events.add("CHUNK " + data.length + (lastChunk ? " last" : ""));
+			return "ref";
+		}
+
+		@Override
+		public void skipped(byte[] position) {
+			events.add("SKIPPED");
+		}
+	}
+
+}
@@ -0,0 +1,138 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.nifi.processors.oraclecdc.controller.CaptureFilter;
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.apache.nifi.processors.oraclecdc.controller.OracleCDCEventHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+import oracle.sql.CHAR;
+import oracle.sql.CharacterSet;
+import oracle.sql.DATE;
+import oracle.sql.NUMBER;
+import oracle.streams.ColumnValue;
+import oracle.streams.DefaultColumnValue;
+import oracle.streams.DefaultRowLCR;
+import oracle.streams.LCR;
+
+/**
+ * Decodes LCRs of the xstream stand-in, which is on the test classpath.
+ */
+public class TestLCRCallBackHandler {
+
+	private static final CharacterSet CHARSET = CharacterSet.make(CharacterSet.AL32UTF8_CHARSET);
+
+	private final List<String> events = new ArrayList<String>();
+	private XStreamBinding binding;
+	private LCRCallBackHandler handler;
+
+	@Before
+	public void setup() throws Exception {
+		binding = new XStreamBinding(getClass().getClassLoader());
+		handler = new LCRCallBackHandler(binding, new Collector());
+	}
+
+	@Test
+	public void testNullColumnRegistered() throws Throwable {
+		final DefaultColumnValue empty = new DefaultColumnValue("NOTE", null);
+		empty.setColumnDataType(ColumnValue.CHAR);
+		handler.processLCR(insert(1, empty));
+		handler.processLCR(insert(2, new DefaultColumnValue("NOTE", new CHAR("first note", CHARSET))));
+
+		// the NULL value is not emitted, but its column belongs to the table version already
+		assertEquals("INSERT v3 ID", events.get(0));
+		assertEquals("INSERT v3 ID NOTE", events.get(1));
+	}
+
+	@Test
+	public void testSkippedTable() throws Throwable {
+		final EventRingBuffer ring = new EventRingBuffer(16);
+		final Collector collector = new Collector();
+		final LCRCallBackHandler filtered = new LCRCallBackHandler(binding, ring, null, CaptureFilter.compile(null, "HR.SECRET", "HR.NOTES=ID"));
+		filtered.processLCR(insert("NOTES", 1, new DefaultColumnValue("NOTE", new CHAR("first note", CHARSET))));
+		filtered.processLCR(insert("SECRET", 2, new DefaultColumnValue("NOTE", new CHAR("secret", CHARSET))));
+		filtered.processLCR(insert("SECRET", 3, new DefaultColumnValue("NOTE", new CHAR("secret", CHARSET))));
+		assertEquals(3, filtered.getLastPosition()[7]);
+
+		// the dropped column is not registered, the skipped LCRs are reported by the last one
+		assertEquals(2, ring.drain(collector, 10));
+		assertEquals(Arrays.asList("INSERT v2 ID", "SKIPPED 3"), events);
+
+		// a row delivered after a skipped LCR carries the later position
+		filtered.processLCR(insert("SECRET", 4, new DefaultColumnValue("NOTE", new CHAR("secret", CHARSET))));
+		filtered.processLCR(insert("NOTES", 5, new DefaultColumnValue("NOTE", new CHAR("second note", CHARSET))));
+		assertEquals(1, ring.drain(collector, 10));
+		assertEquals(Arrays.asList("INSERT v2 ID", "SKIPPED 3", "INSERT v2 ID"), events);
+	}
+
+	private static DefaultRowLCR insert(long id, ColumnValue note) {
+		return insert("NOTES", id, note);
+	}
+
+	private static DefaultRowLCR insert(String table, long id, ColumnValue note) {
+		final DefaultRowLCR lcr = new DefaultRowLCR("DB", LCR.INSERT, "HR", table, "1.2.3", null, new byte[] {0, 0, 0, 0, 0, 0, 0, (byte) id});
+		lcr.setSourceTime(new DATE(new Timestamp(System.currentTimeMillis())));
+		lcr.setNewValues(new ColumnValue[] {new DefaultColumnValue("ID", new NUMBER(id)), note});
+		return lcr;
+	}
+
+	/**
+	 * records each event as its command, table version and column names
+	 */
+	private class Collector implements OracleCDCEventHandler {
+
+		private void add(ChangeEvent event) {
+			final StringBuilder text = new StringBuilder(event.getCommandType());
+			if (event.getMetadata() != null) {
+				text.append(" v").append(event.getMetadata().getVersion());
+			}
+			for (ChangeEvent.Column column : event.getNewValues()) {
+				text.append(' ').append(column.getName());
+			}
+			events.add(text.toString());
+		}
+
+		@Override
+		public void inserts(ChangeEvent event) {
+			add(event);
+		}
+
+		@Override
+		public void updates(ChangeEvent event) {
+			add(event);
+		}
+
+		@Override
+		public void deletes(ChangeEvent event) {
+			add(event);
+		}
+
+		@Override
+		public void commit(ChangeEvent event) {
+			add(event);
+		}
+
+		@Override
+		public void other(ChangeEvent event) {
+			add(event);
+		}
+
+		@Override
+		public String chunk(ChangeEvent event, String columnName, byte[] data, boolean lastChunk) {
+			return columnName;
+		}
+
+		@Override
+		public void skipped(byte[] position) {
+			events.add("SKIPPED " + position[position.length - 1]);
+		}
+	}
+
+}
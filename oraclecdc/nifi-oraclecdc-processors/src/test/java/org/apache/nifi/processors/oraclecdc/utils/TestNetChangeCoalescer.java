@@ -0,0 +1,154 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.nifi.processors.oraclecdc.controller.ChangeEvent;
+import org.junit.Test;
+
+public class TestNetChangeCoalescer {
+
+	private int position = 0;
+
+	private ChangeEvent event(String commandType, boolean keyed){
+		final ChangeEvent event = new ChangeEvent();
+		event.setDatabase("ORCL");
+		event.setSchema("SCOTT");
+		event.setTable("EMP");
+		event.setCommandType(commandType);
+		event.setTransactionId("1.2.3");
+		event.setPosition(new byte[] {0, (byte)++position});
+		event.setKeyColumns(keyed ? Arrays.asList("EMPNO") : Collections.<String>emptyList());
+		return event;
+	}
+
+	private ChangeEvent insert(int empno, String ename, double sal){
+		final ChangeEvent insert = event("INSERT", true);
+		insert.getNewValues().add("EMPNO", 2, "BigDecimal", new BigDecimal(empno));
+		insert.getNewValues().add("ENAME", 1, "String", ename);
+		insert.getNewValues().add("SAL", 101, "double", sal);
+		return insert;
+	}
+
+	private ChangeEvent update(int empno, String ename, double oldSal, double newSal){
+		final ChangeEvent update = event("UPDATE", true);
+		update.getOldValues().add("EMPNO", 2, "BigDecimal", new BigDecimal(empno));
+		update.getOldValues().add("ENAME", 1, "String", ename);
+		update.getOldValues().add("SAL", 101, "double", oldSal);
+		update.getNewValues().add("EMPNO", 2, "BigDecimal", new BigDecimal(empno + ".0"));
+		update.getNewValues().add("ENAME", 1, "String", ename);
+		update.getNewValues().add("SAL", 101, "double", newSal);
+		return update;
+	}
+
+	private ChangeEvent delete(int empno, String ename, double sal){
+		final ChangeEvent delete = event("DELETE", true);
+		delete.getOldValues().add("EMPNO", 2, "BigDecimal", new BigDecimal(empno));
+		delete.getOldValues().add("ENAME", 1, "String", ename);
+		delete.getOldValues().add("SAL", 101, "double", sal);
+		return delete;
+	}
+
+	private static Object value(ChangeEvent.ColumnList columns, String name){
+		final ChangeEvent.Column column = ChangeEvent.find(columns, name);
+		return column == null ? null : column.getValue();
+	}
+
+	@Test
+	public void testInsertThenUpdates() {
+		final NetChangeCoalescer coalescer = new NetChangeCoalescer();
+		coalescer.add(insert(7369, "SMITH", 800));
+		for (int i = 1; i <= 200; i++) {
+			coalescer.add(update(7369, "SMITH", 800 + i - 1, 800 + i));
+		}
+		final List<ChangeEvent> net = coalescer.drain();
+		assertEquals(1, net.size());
+		assertEquals("INSERT", net.get(0).getCommandType());
+		assertEquals(1000d, value(net.get(0).getNewValues(), "SAL"));
+		assertEquals("SMITH", value(net.get(0).getNewValues(), "ENAME"));
+		assertEquals(201, net.get(0).getPosition()[1] & 0xff);
+		assertEquals(200, coalescer.getCoalesced());
+	}
+
+	@Test
+	public void testChangedColumnsOnly() {
+		final NetChangeCoalescer coalescer = new NetChangeCoalescer();
+		coalescer.add(update(7369, "SMITH", 800, 900));
+		coalescer.add(update(7369, "SMITH", 900, 950));
+		// changed back, nothing but the key is left of the row
+		coalescer.add(update(7499, "ALLEN", 1600, 1700));
+		coalescer.add(update(7499, "ALLEN", 1700, 1600));
+		final List<ChangeEvent> net = coalescer.drain();
+		assertEquals(2, net.size());
+		final ChangeEvent smith = net.get(0);
+		assertEquals("UPDATE", smith.getCommandType());
+		assertEquals(2, smith.getNewValues().size());
+		assertEquals(950d, value(smith.getNewValues(), "SAL"));
+		assertEquals(800d, value(smith.getOldValues(), "SAL"));
+		assertNull(value(smith.getNewValues(), "ENAME"));
+		assertEquals(1, net.get(1).getNewValues().size());
+		assertEquals(new BigDecimal("7499.0"), value(net.get(1).getNewValues(), "EMPNO"));
+	}
+
+	@Test
+	public void testDeletes() {
+		final NetChangeCoalescer coalescer = new NetChangeCoalescer();
+		coalescer.add(insert(1, "NEW", 10));
+		coalescer.add(update(7369, "SMITH", 800, 900));
+		coalescer.add(delete(1, "NEW", 10));
+		coalescer.add(delete(7369, "SMITH", 900));
+		coalescer.add(delete(7499, "ALLEN", 1600));
+		coalescer.add(insert(7499, "ALLEN", 1700));
+		final List<ChangeEvent> net = coalescer.drain();
+		assertEquals(2, net.size());
+		// the values before the transaction
+		assertEquals("DELETE", net.get(0).getCommandType());
+		assertEquals(800d, value(net.get(0).getOldValues(), "SAL"));
+		assertEquals("SMITH", value(net.get(0).getOldValues(), "ENAME"));
+		assertEquals("UPDATE", net.get(1).getCommandType());
+		assertEquals(1700d, value(net.get(1).getNewValues(), "SAL"));
+		assertEquals(1600d, value(net.get(1).getOldValues(), "SAL"));
+		assertEquals(0, coalescer.size());
+	}
+
+	@Test
+	public void testFirstChangeOrder() {
+		final NetChangeCoalescer coalescer = new NetChangeCoalescer();
+		// a parent row, a child row referencing it, then the parent changes again
+		coalescer.add(insert(7839, "KING", 5000));
+		coalescer.add(insert(7566, "JONES", 2975));
+		coalescer.add(update(7839, "KING", 5000, 5500));
+		coalescer.add(insert(1, "NEW", 10));
+		coalescer.add(delete(1, "NEW", 10));
+		final List<ChangeEvent> net = coalescer.drain();
+		assertEquals(2, net.size());
+		// the parent is still inserted first, with the position of its last change
+		assertEquals("KING", value(net.get(0).getNewValues(), "ENAME"));
+		assertEquals(5500d, value(net.get(0).getNewValues(), "SAL"));
+		assertEquals(3, net.get(0).getPosition()[1] & 0xff);
+		assertEquals("JONES", value(net.get(1).getNewValues(), "ENAME"));
+		assertEquals(2, net.get(1).getPosition()[1] & 0xff);
+		// the marker goes past the changes that merged away
+		assertEquals(5, coalescer.getLastPosition()[1] & 0xff);
+	}
+
+	@Test
+	public void testWithoutKey() {
+		final NetChangeCoalescer coalescer = new NetChangeCoalescer();
+		final ChangeEvent first = event("UPDATE", false);
+		first.getNewValues().add("ENAME", 1, "String", "SMITH");
+		first.getOldValues().add("ENAME", 1, "String", "SMITH");
+		coalescer.add(first);
+		coalescer.add(event("UPDATE", false));
+		final List<ChangeEvent> net = coalescer.drain();
+		assertEquals(2, net.size());
+		assertEquals(1, net.get(0).getNewValues().size());
+		assertEquals(0, coalescer.getCoalesced());
+	}
+
+}
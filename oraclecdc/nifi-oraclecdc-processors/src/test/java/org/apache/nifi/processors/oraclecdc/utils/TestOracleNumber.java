@@ -0,0 +1,162 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Round trips NUMBER values through the Oracle internal representation. The encoding below is
+ * checked against bytes written by the Oracle driver (DUMP of the same values), the oracle.sql
+ * classes on the test classpath are the xstream stand-in and are no reference.
+ */
+public class TestOracleNumber {
+
+	private static final BigDecimal MAX_LONG_DIGITS = new BigDecimal("1000000000000000000");
+
+	/**
+	 * the Oracle NUMBER bytes of a value of at most 38 significant digits
+	 */
+	static byte[] encode(BigDecimal value) {
+		if (value.signum() == 0) {
+			return new byte[] {(byte) 0x80};
+		}
+		BigInteger unscaled = value.unscaledValue().abs();
+		int scale = value.scale();
+		if (scale % 2 != 0) {
+			// align the decimal point to a base 100 digit
+			unscaled = unscaled.multiply(BigInteger.TEN);
+			scale++;
+		}
+		final List<Integer> digits = new ArrayList<Integer>();
+		final BigInteger hundred = BigInteger.valueOf(100);
+		while (unscaled.signum() > 0) {
+			final BigInteger[] qr = unscaled.divideAndRemainder(hundred);
+			digits.add(0, qr[1].intValue());
+			unscaled = qr[0];
+		}
+		final int exponent = digits.size() - 1 - scale / 2;
+		while (digits.get(digits.size() - 1) == 0) {
+			digits.remove(digits.size() - 1);
+		}
+		final boolean positive = value.signum() > 0;
+		final boolean terminator = !positive && digits.size() < 20;
+		final byte[] bytes = new byte[1 + digits.size() + (terminator ? 1 : 0)];
+		bytes[0] = (byte) (positive ? 0xC1 + exponent : 0x3E - exponent);
+		for (int i = 0; i < digits.size(); i++) {
+			bytes[i + 1] = (byte) (positive ? digits.get(i) + 1 : 101 - digits.get(i));
+		}
+		if (terminator) {
+			bytes[bytes.length - 1] = 102;
+		}
+		return bytes;
+	}
+
+	private void roundTrip(BigDecimal value) throws Exception {
+		final byte[] bytes = encode(value);
+		BigDecimal expected = value.stripTrailingZeros();
+		if (expected.scale() < 0) {
+			expected = expected.setScale(0);
+		}
+		final Object decoded = OracleNumber.decode(bytes);
+		if (expected.scale() == 0 && expected.abs().compareTo(MAX_LONG_DIGITS) < 0) {
+			assertEquals(value.toString(), Long.valueOf(expected.longValueExact()), decoded);
+			assertTrue(value.toString(), OracleNumber.isLong(bytes));
+		} else {
+			assertEquals(value.toString(), expected, decoded);
+		}
+		assertEquals(value.toString(), expected, OracleNumber.bigDecimalValue(bytes));
+	}
+
+	private static void driverBytes(String value, int... dump) {
+		final byte[] bytes = new byte[dump.length];
+		for (int i = 0; i < dump.length; i++) {
+			bytes[i] = (byte) dump[i];
+		}
+		final BigDecimal expected = new BigDecimal(value);
+		assertArrayEquals(value, bytes, encode(expected));
+		assertEquals(value, 0, expected.compareTo(OracleNumber.bigDecimalValue(bytes)));
+		assertEquals(value, expected.stripTrailingZeros().scale() <= 0 && expected.abs().compareTo(MAX_LONG_DIGITS) < 0, OracleNumber.isLong(bytes));
+	}
+
+	@Test
+	public void testDriverBytes() {
+		driverBytes("0", 128);
+		driverBytes("1", 193, 2);
+		driverBytes("100", 194, 2);
+		driverBytes("123.45", 194, 2, 24, 46);
+		driverBytes("0.01", 192, 2);
+		driverBytes("-1", 62, 100, 102);
+		driverBytes("-0.5", 63, 51, 102);
+		driverBytes("-123.45", 61, 100, 78, 56, 102);
+		driverBytes("1E-130", 128, 2);
+		driverBytes("-1E-130", 127, 100, 102);
+		driverBytes("9.99E125", 255, 100, 91);
+		driverBytes("-9.99E125", 0, 2, 11, 102);
+		// 20 base 100 digits leave no room for the terminator of a negative number
+		driverBytes("-1.2345678901234567890123456789012345678", 62, 100, 78, 56, 34, 12, 100, 78, 56, 34, 12, 100, 78, 56, 34, 12, 100, 78, 56, 34, 21);
+		assertEquals(Long.valueOf(-123), OracleNumber.decode(new byte[] {61, 100, 78, 102}));
+		assertEquals(new BigDecimal("-123.45"), OracleNumber.decode(new byte[] {61, 100, 78, 56, 102}));
+	}
+
+	@Test
+	public void testSmallIntegers() throws Exception {
+		for (int i = -100000; i <= 100000; i++) {
+			roundTrip(BigDecimal.valueOf(i));
+		}
+	}
+
+	@Test
+	public void testPowersAndBoundaries() throws Exception {
+		for (int exponent = 0; exponent <= 37; exponent++) {
+			final BigDecimal power = BigDecimal.TEN.pow(exponent);
+			for (BigDecimal value : new BigDecimal[] {power, power.subtract(BigDecimal.ONE), power.add(BigDecimal.ONE)}) {
+				roundTrip(value);
+				roundTrip(value.negate());
+				roundTrip(value.movePointLeft(exponent + 1));
+				roundTrip(value.negate().movePointLeft(exponent + 1));
+			}
+		}
+		roundTrip(BigDecimal.valueOf(Long.MAX_VALUE));
+		roundTrip(BigDecimal.valueOf(Long.MIN_VALUE));
+		roundTrip(BigDecimal.valueOf(999999999999999999L));
+		roundTrip(BigDecimal.valueOf(-999999999999999999L));
+		roundTrip(new BigDecimal("1E+100"));
+		roundTrip(new BigDecimal("-1E-100"));
+		roundTrip(new BigDecimal("12345678901234567890123456789012345678"));
+		roundTrip(new BigDecimal("-0.12345678901234567890123456789012345678"));
+	}
+
+	@Test
+	public void testRandomDecimals() throws Exception {
+		final Random random = new Random(20190101L);
+		for (int i = 0; i < 200000; i++) {
+			final int precision = 1 + random.nextInt(38);
+			final BigInteger unscaled = new BigInteger(precision * 4, random).mod(BigInteger.TEN.pow(precision));
+			final BigDecimal value = new BigDecimal(random.nextBoolean() ? unscaled : unscaled.negate(), random.nextInt(60) - 20);
+			roundTrip(value);
+		}
+	}
+
+	@Test
+	public void testRandomLongs() throws Exception {
+		final Random random = new Random(20190102L);
+		for (int i = 0; i < 200000; i++) {
+			roundTrip(BigDecimal.valueOf(random.nextLong() >> random.nextInt(64)));
+		}
+	}
+
+	@Test
+	public void testInfinity() {
+		assertEquals(Double.POSITIVE_INFINITY, OracleNumber.decode(new byte[] {(byte) 0xff, 101}));
+		assertEquals(Double.NEGATIVE_INFINITY, OracleNumber.decode(new byte[] {0}));
+	}
+
+}
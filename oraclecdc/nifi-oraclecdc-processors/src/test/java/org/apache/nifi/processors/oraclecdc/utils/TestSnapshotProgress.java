@@ -0,0 +1,52 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TestSnapshotProgress {
+
+	@Test
+	public void testChunksAndRestore() {
+		final SnapshotProgress progress = new SnapshotProgress(8812345L, Arrays.asList("HR.EMPLOYEES", "HR.ORDERS", "HR.EMPTY"));
+		progress.planned("HR.EMPLOYEES", 2);
+		progress.chunkDone("HR.EMPLOYEES", 1, 100);
+		progress.chunkDone("HR.EMPLOYEES", 0, 100);
+		progress.planned("HR.ORDERS", 20);
+		for (int index : new int[] {0, 1, 2, 3, 5, 7, 8}) {
+			progress.chunkDone("HR.ORDERS", index, 10);
+		}
+		// a chunk read again after a failure is counted once
+		progress.chunkDone("HR.ORDERS", 3, 10);
+		assertTrue(progress.isTableDone("HR.EMPLOYEES"));
+		assertFalse(progress.isDone());
+		assertEquals("scn=8812345\nrows=270\nHR.EMPLOYEES=*\nHR.ORDERS=0-3,5,7-8\nHR.EMPTY=", progress.encode());
+
+		final SnapshotProgress restored = SnapshotProgress.parse(progress.encode());
+		assertEquals(8812345L, restored.getScn());
+		assertEquals(270L, restored.getRows());
+		assertEquals(Arrays.asList("HR.EMPLOYEES", "HR.ORDERS", "HR.EMPTY"), restored.getTables());
+		assertTrue(restored.isChunkDone("HR.ORDERS", 7));
+		assertFalse(restored.isChunkDone("HR.ORDERS", 4));
+		assertEquals(progress.encode(), restored.encode());
+
+		// chunks are planned again after a restart
+		restored.planned("HR.ORDERS", 10);
+		restored.chunkDone("HR.ORDERS", 4, 10);
+		restored.chunkDone("HR.ORDERS", 6, 10);
+		restored.chunkDone("HR.ORDERS", 9, 10);
+		restored.planned("HR.EMPTY", 0);
+		assertTrue(restored.isDone());
+		assertEquals("scn=8812345\nrows=300\nHR.EMPLOYEES=*\nHR.ORDERS=*\nHR.EMPTY=*", restored.encode());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNotProgress() {
+		SnapshotProgress.parse("position=ABC");
+	}
+
+}
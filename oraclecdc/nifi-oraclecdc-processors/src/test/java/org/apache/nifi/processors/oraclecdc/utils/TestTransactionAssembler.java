@@ -0,0 +1,109 @@
+package org.apache.nifi.processors.oraclecdc.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.nifi.processors.oraclecdc.utils.TransactionAssembler.TransactionBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestTransactionAssembler {
+
+	private File spillDirectory;
+
+	@Before
+	public void setup() throws Exception {
+		spillDirectory = Files.createTempDirectory("oraclecdc-spill").toFile();
+	}
+
+	@After
+	public void cleanup() {
+		for (File file : spillDirectory.listFiles()) {
+			file.delete();
+		}
+		spillDirectory.delete();
+	}
+
+	private static void add(TransactionAssembler assembler, String transactionId, String event, int position) throws Exception {
+		final byte[] bytes = event.getBytes(StandardCharsets.UTF_8);
+		assembler.add(transactionId, bytes, bytes.length, new byte[] {(byte) position});
+	}
+
+	private static String content(TransactionBuffer buffer) throws Exception {
+		if (buffer.isSpilled()) {
+			return new String(Files.readAllBytes(buffer.getSpillFile().toPath()), StandardCharsets.UTF_8);
+		}
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		buffer.writeTo(out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testCommit() throws Exception {
+		final TransactionAssembler assembler = new TransactionAssembler(20, spillDirectory);
+		add(assembler, "A", "aaaaaaaa", 1);
+		add(assembler, "B", "bbbbbbbb", 2);
+		// 16 bytes on heap, the next event of A does not fit and A moves to a file
+		add(assembler, "A", "AAAAAAAA", 3);
+		assertEquals(2, assembler.getOpenTransactions());
+		assertEquals(1, spillDirectory.list().length);
+
+		final TransactionBuffer b = assembler.commit("B");
+		assertFalse(b.isSpilled());
+		assertEquals("bbbbbbbb", content(b));
+		assertEquals(1, b.getCount());
+		b.discard();
+
+		// the committed transactions gave their heap back
+		add(assembler, "C", "cccccccc", 4);
+		add(assembler, "C", "CCCCCCCC", 5);
+		final TransactionBuffer c = assembler.commit("C");
+		assertFalse(c.isSpilled());
+		assertEquals("cccccccc\nCCCCCCCC", content(c));
+		assertEquals(17, c.getSize());
+		c.discard();
+
+		final TransactionBuffer a = assembler.commit("A");
+		assertTrue(a.isSpilled());
+		assertEquals("aaaaaaaa\nAAAAAAAA", content(a));
+		assertEquals(2, a.getCount());
+		assertEquals(17, a.getSize());
+		assertArrayEquals(new byte[] {1}, a.getFirstPosition());
+		assertArrayEquals(new byte[] {3}, a.getLastPosition());
+		a.discard();
+		assertEquals(0, spillDirectory.list().length);
+		assertEquals(0, assembler.getOpenTransactions());
+		assertNull(assembler.commit("A"));
+	}
+
+	@Test
+	public void testClear() throws Exception {
+		final TransactionAssembler assembler = new TransactionAssembler(20, spillDirectory, false);
+		add(assembler, "D", "dddddddddddddddddddddddddddddd", 1);
+		add(assembler, "E", "eeeeeeeeeeeeeee", 2);
+		assertEquals(1, spillDirectory.list().length);
+		assembler.clear();
+		assertEquals(0, assembler.getOpenTransactions());
+		assertEquals(0, spillDirectory.list().length);
+
+		// the heap of the dropped transactions is free again
+		add(assembler, "F", "fffffffffffffff", 3);
+		add(assembler, "F", "FFF", 4);
+		final TransactionBuffer f = assembler.commit("F");
+		assertFalse(f.isSpilled());
+		// binary frames are not delimited
+		assertEquals("fffffffffffffffFFF", content(f));
+		assertEquals(18, f.getSize());
+		f.discard();
+	}
+
+}
@@ -0,0 +1,10 @@
+package oracle.jdbc;
+
+import java.sql.Connection;
+
+/**
+ * Stand-in for the driver's connection interface, which XStreamOut attaches with.
+ */
+public interface OracleConnection extends Connection {
+
+}
@@ -0,0 +1,135 @@
+package oracle.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Stand-in for the Oracle JDBC driver. It accepts any jdbc:oracle: URL without connecting
+ * anywhere and returns connections that can be pooled, validated and attached to a stand-in
+ * outbound server, but run no SQL: statements fail with SQLFeatureNotSupportedException.
+ */
+public class OracleDriver implements Driver {
+
+	private static final String URL_PREFIX = "jdbc:oracle:";
+
+	static {
+		try {
+			DriverManager.registerDriver(new OracleDriver());
+		} catch (SQLException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	@Override
+	public Connection connect(String url, Properties info) throws SQLException {
+		if (!acceptsURL(url)) {
+			return null;
+		}
+		return (Connection) Proxy.newProxyInstance(OracleDriver.class.getClassLoader(),
+				new Class<?>[] {OracleConnection.class}, new StandInConnection(url));
+	}
+
+	@Override
+	public boolean acceptsURL(String url) {
+		return url != null && url.startsWith(URL_PREFIX);
+	}
+
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+		return new DriverPropertyInfo[0];
+	}
+
+	@Override
+	public int getMajorVersion() {
+		return 12;
+	}
+
+	@Override
+	public int getMinorVersion() {
+		return 2;
+	}
+
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	private static class StandInConnection implements InvocationHandler {
+
+		private final String url;
+		private boolean autoCommit = true;
+		private boolean closed = false;
+
+		StandInConnection(String url) {
+			this.url = url;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				closed = true;
+				return null;
+			case "isClosed":
+				return closed;
+			case "isValid":
+				return !closed;
+			case "getAutoCommit":
+				return autoCommit;
+			case "setAutoCommit":
+				autoCommit = (Boolean) args[0];
+				return null;
+			case "getTransactionIsolation":
+				return Connection.TRANSACTION_READ_COMMITTED;
+			case "unwrap":
+				if (((Class<?>) args[0]).isInstance(proxy)) {
+					return proxy;
+				}
+				throw new SQLException("not a wrapper for " + args[0]);
+			case "isWrapperFor":
+				return ((Class<?>) args[0]).isInstance(proxy);
+			case "createStatement":
+			case "prepareStatement":
+			case "prepareCall":
+				throw new SQLFeatureNotSupportedException("the xstream stand-in runs no SQL");
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "xstream stand-in connection to " + url;
+			default:
+				return defaultValue(method.getReturnType());
+			}
+		}
+
+		private static Object defaultValue(Class<?> type) {
+			if (type == boolean.class) {
+				return false;
+			}
+			if (type == int.class) {
+				return 0;
+			}
+			if (type == long.class) {
+				return 0L;
+			}
+			return null;
+		}
+
+	}
+
+}
@@ -0,0 +1,15 @@
+package oracle.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import oracle.sql.Datum;
+
+/**
+ * Stand-in for the driver's result set interface, which reads column values as datums.
+ */
+public interface OracleResultSet extends ResultSet {
+
+	Datum getOracleObject(int columnIndex) throws SQLException;
+
+}
@@ -0,0 +1,47 @@
+package oracle.sql;
+
+import java.math.BigDecimal;
+
+/**
+ * Stand-in for the driver's BINARY_DOUBLE, stored as Oracle does: the IEEE bits with the sign
+ * bit flipped for positive values and all bits flipped for negative ones, so bytes sort like values.
+ */
+public class BINARY_DOUBLE extends Datum {
+
+	private final double value;
+
+	public BINARY_DOUBLE(double value) {
+		super(toBytes(Double.doubleToLongBits(value), 8));
+		this.value = value;
+	}
+
+	static byte[] toBytes(long bits, int length) {
+		final long sortable = bits < 0 ? ~bits : bits ^ (1L << (length * 8 - 1));
+		final byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) (sortable >>> ((length - 1 - i) * 8));
+		}
+		return bytes;
+	}
+
+	@Override
+	public double doubleValue() {
+		return value;
+	}
+
+	@Override
+	public float floatValue() {
+		return (float) value;
+	}
+
+	@Override
+	public BigDecimal bigDecimalValue() {
+		return new BigDecimal(value);
+	}
+
+	@Override
+	public String stringValue() {
+		return Double.toString(value);
+	}
+
+}
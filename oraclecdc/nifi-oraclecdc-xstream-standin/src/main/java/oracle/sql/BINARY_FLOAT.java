@@ -0,0 +1,37 @@
+package oracle.sql;
+
+import java.math.BigDecimal;
+
+/**
+ * Stand-in for the driver's BINARY_FLOAT, stored like {@link BINARY_DOUBLE} in 4 bytes.
+ */
+public class BINARY_FLOAT extends Datum {
+
+	private final float value;
+
+	public BINARY_FLOAT(float value) {
+		super(BINARY_DOUBLE.toBytes(Float.floatToIntBits(value), 4));
+		this.value = value;
+	}
+
+	@Override
+	public double doubleValue() {
+		return value;
+	}
+
+	@Override
+	public float floatValue() {
+		return value;
+	}
+
+	@Override
+	public BigDecimal bigDecimalValue() {
+		return new BigDecimal(value);
+	}
+
+	@Override
+	public String stringValue() {
+		return Float.toString(value);
+	}
+
+}
@@ -0,0 +1,39 @@
+package oracle.sql;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+
+public class CHAR extends Datum {
+
+	private final String value;
+
+	public CHAR(String value, CharacterSet charSet) {
+		super(value.getBytes(charSet.charset()));
+		this.value = value;
+	}
+
+	@Override
+	public String stringValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return value;
+	}
+
+	@Override
+	public double doubleValue() throws SQLException {
+		return bigDecimalValue().doubleValue();
+	}
+
+	@Override
+	public BigDecimal bigDecimalValue() throws SQLException {
+		try {
+			return new BigDecimal(value.trim());
+		} catch (NumberFormatException e) {
+			throw new SQLException("Fail to convert to internal representation: " + value, e);
+		}
+	}
+
+}
@@ -0,0 +1,32 @@
+package oracle.sql;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stand-in for the driver's character set; every id is encoded as UTF-8.
+ */
+public class CharacterSet {
+
+	public static final int UTF8_CHARSET = 871;
+	public static final int AL32UTF8_CHARSET = 873;
+
+	private final int oracleId;
+
+	private CharacterSet(int oracleId) {
+		this.oracleId = oracleId;
+	}
+
+	public static CharacterSet make(int oracleId) {
+		return new CharacterSet(oracleId);
+	}
+
+	public int getOracleId() {
+		return oracleId;
+	}
+
+	Charset charset() {
+		return StandardCharsets.UTF_8;
+	}
+
+}
@@ -0,0 +1,68 @@
+package oracle.sql;
+
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * Stand-in for the driver's DATE: century and year of century +100, month, day, then hour,
+ * minute and second +1, taken from the local time of the value like the driver does.
+ */
+public class DATE extends Datum {
+
+	public DATE() {
+		this(new Timestamp(System.currentTimeMillis()));
+	}
+
+	public DATE(Timestamp value) {
+		super(toBytes(value, 7));
+	}
+
+	static byte[] toBytes(Timestamp value, int length) {
+		final Calendar calendar = Calendar.getInstance();
+		calendar.setTime(value);
+		final int year = calendar.get(Calendar.YEAR);
+		final byte[] bytes = new byte[length];
+		bytes[0] = (byte) (year / 100 + 100);
+		bytes[1] = (byte) (year % 100 + 100);
+		bytes[2] = (byte) (calendar.get(Calendar.MONTH) + 1);
+		bytes[3] = (byte) calendar.get(Calendar.DAY_OF_MONTH);
+		bytes[4] = (byte) (calendar.get(Calendar.HOUR_OF_DAY) + 1);
+		bytes[5] = (byte) (calendar.get(Calendar.MINUTE) + 1);
+		bytes[6] = (byte) (calendar.get(Calendar.SECOND) + 1);
+		if (length >= 11) {
+			final int nanos = value.getNanos();
+			bytes[7] = (byte) (nanos >>> 24);
+			bytes[8] = (byte) (nanos >>> 16);
+			bytes[9] = (byte) (nanos >>> 8);
+			bytes[10] = (byte) nanos;
+		}
+		return bytes;
+	}
+
+	static Timestamp toTimestamp(byte[] bytes, Calendar calendar) {
+		calendar.clear();
+		calendar.set(((bytes[0] & 0xff) - 100) * 100 + (bytes[1] & 0xff) - 100, bytes[2] - 1, bytes[3],
+				bytes[4] - 1, bytes[5] - 1, bytes[6] - 1);
+		final Timestamp timestamp = new Timestamp(calendar.getTimeInMillis());
+		if (bytes.length >= 11) {
+			timestamp.setNanos(((bytes[7] & 0xff) << 24) | ((bytes[8] & 0xff) << 16) | ((bytes[9] & 0xff) << 8) | (bytes[10] & 0xff));
+		}
+		return timestamp;
+	}
+
+	@Override
+	public Timestamp timeStampValue() {
+		return toTimestamp(shareBytes(), Calendar.getInstance());
+	}
+
+	@Override
+	public Timestamp timeStampValue(Calendar cal) {
+		return toTimestamp(shareBytes(), cal);
+	}
+
+	@Override
+	public String stringValue() {
+		return timeStampValue().toString();
+	}
+
+}
@@ -0,0 +1,75 @@
+package oracle.sql;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+
+/**
+ * Stand-in for the driver's datum: the Oracle internal bytes of a column value. Conversions a
+ * type does not support throw like the driver's.
+ */
+public abstract class Datum {
+
+	private final byte[] data;
+
+	protected Datum(byte[] data) {
+		this.data = data;
+	}
+
+	public byte[] shareBytes() {
+		return data;
+	}
+
+	public byte[] getBytes() {
+		return Arrays.copyOf(data, data.length);
+	}
+
+	public long getLength() {
+		return data.length;
+	}
+
+	public String stringValue() throws SQLException {
+		throw unsupported("String");
+	}
+
+	public double doubleValue() throws SQLException {
+		throw unsupported("double");
+	}
+
+	public float floatValue() throws SQLException {
+		throw unsupported("float");
+	}
+
+	public long longValue() throws SQLException {
+		throw unsupported("long");
+	}
+
+	public BigDecimal bigDecimalValue() throws SQLException {
+		throw unsupported("BigDecimal");
+	}
+
+	public Timestamp timeStampValue() throws SQLException {
+		throw unsupported("Timestamp");
+	}
+
+	public Timestamp timeStampValue(Calendar cal) throws SQLException {
+		throw unsupported("Timestamp");
+	}
+
+	private SQLException unsupported(String type) {
+		return new SQLException("Conversion to " + type + " not supported by " + getClass().getSimpleName());
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other != null && other.getClass() == getClass() && Arrays.equals(data, ((Datum) other).data);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(data);
+	}
+
+}
@@ -0,0 +1,117 @@
+package oracle.sql;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+/**
+ * Stand-in for the driver's NUMBER, encoded like Oracle: an exponent byte followed by base 100
+ * digits, digit+1 for positive numbers and 101-digit plus a 102 terminator for negative ones.
+ * Values are rounded to 38 significant digits.
+ */
+public class NUMBER extends Datum {
+
+	private static final BigInteger HUNDRED = BigInteger.valueOf(100);
+	private static final MathContext PRECISION = new MathContext(38);
+
+	private final BigDecimal value;
+
+	public NUMBER(int value) {
+		this(BigDecimal.valueOf(value));
+	}
+
+	public NUMBER(long value) {
+		this(BigDecimal.valueOf(value));
+	}
+
+	public NUMBER(double value) {
+		this(BigDecimal.valueOf(value));
+	}
+
+	public NUMBER(BigDecimal value) {
+		this(normalize(value), null);
+	}
+
+	// the second parameter only tells this constructor apart, the value is normalized once
+	private NUMBER(BigDecimal normalized, Void unused) {
+		super(toBytes(normalized));
+		this.value = normalized;
+	}
+
+	private static BigDecimal normalize(BigDecimal value) {
+		BigDecimal normalized = value.round(PRECISION).stripTrailingZeros();
+		if (normalized.scale() < 0) {
+			normalized = normalized.setScale(0);
+		}
+		return normalized;
+	}
+
+	static byte[] toBytes(BigDecimal value) {
+		if (value.signum() == 0) {
+			return new byte[] {(byte) 0x80};
+		}
+		BigInteger unscaled = value.unscaledValue().abs();
+		int scale = value.scale();
+		if (scale % 2 != 0) {
+			// align the decimal point to a base 100 digit
+			unscaled = unscaled.multiply(BigInteger.TEN);
+			scale++;
+		}
+		final byte[] reversed = new byte[unscaled.bitLength() / 6 + 2];
+		int count = 0;
+		while (unscaled.signum() > 0) {
+			final BigInteger[] qr = unscaled.divideAndRemainder(HUNDRED);
+			reversed[count++] = (byte) qr[1].intValue();
+			unscaled = qr[0];
+		}
+		final int exponent = count - 1 - scale / 2;
+		int trailing = 0;
+		while (reversed[trailing] == 0) {
+			trailing++;
+		}
+		final int digits = count - trailing;
+		final boolean positive = value.signum() > 0;
+		final boolean terminator = !positive && digits < 20;
+		final byte[] bytes = new byte[1 + digits + (terminator ? 1 : 0)];
+		bytes[0] = (byte) (positive ? 0xC1 + exponent : 0x3E - exponent);
+		for (int i = 0; i < digits; i++) {
+			final int digit = reversed[count - 1 - i];
+			bytes[i + 1] = (byte) (positive ? digit + 1 : 101 - digit);
+		}
+		if (terminator) {
+			bytes[bytes.length - 1] = 102;
+		}
+		return bytes;
+	}
+
+	@Override
+	public BigDecimal bigDecimalValue() {
+		return value;
+	}
+
+	@Override
+	public double doubleValue() {
+		return value.doubleValue();
+	}
+
+	@Override
+	public float floatValue() {
+		return value.floatValue();
+	}
+
+	@Override
+	public long longValue() {
+		return value.longValue();
+	}
+
+	@Override
+	public String stringValue() {
+		return value.toPlainString();
+	}
+
+	@Override
+	public String toString() {
+		return stringValue();
+	}
+
+}
@@ -0,0 +1,22 @@
+package oracle.sql;
+
+public class RAW extends Datum {
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	public RAW(byte[] value) {
+		super(value);
+	}
+
+	@Override
+	public String stringValue() {
+		final byte[] bytes = shareBytes();
+		final char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+
+}
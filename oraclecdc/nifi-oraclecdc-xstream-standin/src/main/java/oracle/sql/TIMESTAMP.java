@@ -0,0 +1,31 @@
+package oracle.sql;
+
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * Stand-in for the driver's TIMESTAMP: the DATE bytes followed by the nanoseconds as a
+ * big-endian int.
+ */
+public class TIMESTAMP extends Datum {
+
+	public TIMESTAMP(Timestamp value) {
+		super(DATE.toBytes(value, 11));
+	}
+
+	@Override
+	public Timestamp timeStampValue() {
+		return DATE.toTimestamp(shareBytes(), Calendar.getInstance());
+	}
+
+	@Override
+	public Timestamp timeStampValue(Calendar cal) {
+		return DATE.toTimestamp(shareBytes(), cal);
+	}
+
+	@Override
+	public String stringValue() {
+		return timeStampValue().toString();
+	}
+
+}
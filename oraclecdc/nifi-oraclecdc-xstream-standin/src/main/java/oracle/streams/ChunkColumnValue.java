@@ -0,0 +1,23 @@
+package oracle.streams;
+
+/**
+ * Stand-in for a piece of a LOB, LONG or XMLTYPE column that follows its row LCR.
+ */
+public interface ChunkColumnValue extends ColumnValue {
+
+	int CLOB = 1;
+	int NCLOB = 2;
+	int BLOB = 3;
+	int LONG = 4;
+	int LONGRAW = 5;
+	int XMLTYPE = 6;
+
+	int getChunkType();
+
+	boolean isEndOfRow();
+
+	boolean isLastChunk();
+
+	boolean isEmptyChunk();
+
+}
@@ -0,0 +1,29 @@
+package oracle.streams;
+
+import oracle.sql.Datum;
+
+/**
+ * Stand-in for a column value. The type codes are the stand-in's own; the capture path reads
+ * them by name, as it does from the driver.
+ */
+public interface ColumnValue {
+
+	int CHAR = 1;
+	int NUMBER = 2;
+	int RAW = 3;
+	int DATE = 4;
+	int TIMESTAMP = 5;
+	int TIMESTAMPTZ = 6;
+	int TIMESTAMPLTZ = 7;
+	int BINARY_FLOAT = 8;
+	int BINARY_DOUBLE = 9;
+	int INTERVALYM = 10;
+	int INTERVALDS = 11;
+
+	String getColumnName();
+
+	Datum getColumnData();
+
+	int getColumnDataType();
+
+}
@@ -0,0 +1,9 @@
+package oracle.streams;
+
+public interface DDLLCR extends LCR {
+
+	String getObjectType();
+
+	String getDDLText();
+
+}
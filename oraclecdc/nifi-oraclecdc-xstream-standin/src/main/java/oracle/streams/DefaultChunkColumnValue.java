@@ -0,0 +1,57 @@
+package oracle.streams;
+
+import oracle.sql.Datum;
+
+public class DefaultChunkColumnValue extends DefaultColumnValue implements ChunkColumnValue {
+
+	private int chunkType;
+	private boolean endOfRow;
+	private boolean lastChunk;
+	private boolean emptyChunk;
+
+	public DefaultChunkColumnValue() {
+	}
+
+	public DefaultChunkColumnValue(String columnName, Datum columnData, int chunkType) {
+		super(columnName, columnData);
+		this.chunkType = chunkType;
+		this.emptyChunk = columnData == null;
+	}
+
+	@Override
+	public int getChunkType() {
+		return chunkType;
+	}
+
+	public void setChunkType(int chunkType) {
+		this.chunkType = chunkType;
+	}
+
+	@Override
+	public boolean isEndOfRow() {
+		return endOfRow;
+	}
+
+	public void setEndOfRow(boolean endOfRow) {
+		this.endOfRow = endOfRow;
+	}
+
+	@Override
+	public boolean isLastChunk() {
+		return lastChunk;
+	}
+
+	public void setLastChunk(boolean lastChunk) {
+		this.lastChunk = lastChunk;
+	}
+
+	@Override
+	public boolean isEmptyChunk() {
+		return emptyChunk;
+	}
+
+	public void setEmptyChunk(boolean emptyChunk) {
+		this.emptyChunk = emptyChunk;
+	}
+
+}
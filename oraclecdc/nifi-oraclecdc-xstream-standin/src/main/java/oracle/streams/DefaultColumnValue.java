@@ -0,0 +1,73 @@
+package oracle.streams;
+
+import oracle.sql.Datum;
+
+public class DefaultColumnValue implements ColumnValue {
+
+	private String columnName;
+	private Datum columnData;
+	private int columnDataType;
+
+	public DefaultColumnValue() {
+	}
+
+	/**
+	 * the type code follows from the class of the datum
+	 */
+	public DefaultColumnValue(String columnName, Datum columnData) {
+		this.columnName = columnName;
+		setColumnData(columnData);
+	}
+
+	// the datum classes share their names with the type code constants
+	static int typeOf(Datum datum) {
+		if (datum instanceof oracle.sql.NUMBER) {
+			return NUMBER;
+		}
+		if (datum instanceof oracle.sql.DATE) {
+			return DATE;
+		}
+		if (datum instanceof oracle.sql.TIMESTAMP) {
+			return TIMESTAMP;
+		}
+		if (datum instanceof oracle.sql.BINARY_DOUBLE) {
+			return BINARY_DOUBLE;
+		}
+		if (datum instanceof oracle.sql.BINARY_FLOAT) {
+			return BINARY_FLOAT;
+		}
+		if (datum instanceof oracle.sql.RAW) {
+			return RAW;
+		}
+		return CHAR;
+	}
+
+	@Override
+	public String getColumnName() {
+		return columnName;
+	}
+
+	public void setColumnName(String columnName) {
+		this.columnName = columnName;
+	}
+
+	@Override
+	public Datum getColumnData() {
+		return columnData;
+	}
+
+	public void setColumnData(Datum columnData) {
+		this.columnData = columnData;
+		this.columnDataType = columnData == null ? CHAR : typeOf(columnData);
+	}
+
+	@Override
+	public int getColumnDataType() {
+		return columnDataType;
+	}
+
+	public void setColumnDataType(int columnDataType) {
+		this.columnDataType = columnDataType;
+	}
+
+}
@@ -0,0 +1,106 @@
+package oracle.streams;
+
+import oracle.sql.DATE;
+
+public class DefaultDDLLCR implements DDLLCR {
+
+	private String sourceDatabaseName;
+	private String objectOwner;
+	private String objectName;
+	private String objectType;
+	private String ddlText;
+	private String transactionId;
+	private DATE sourceTime;
+	private byte[] position;
+
+	public DefaultDDLLCR() {
+	}
+
+	@Override
+	public String getSourceDatabaseName() {
+		return sourceDatabaseName;
+	}
+
+	public void setSourceDatabaseName(String sourceDatabaseName) {
+		this.sourceDatabaseName = sourceDatabaseName;
+	}
+
+	/**
+	 * @return the statement verb, such as ALTER TABLE
+	 */
+	@Override
+	public String getCommandType() {
+		final String text = ddlText == null ? "" : ddlText.trim();
+		final String[] words = text.split("\\s+");
+		return words.length >= 2 ? (words[0] + " " + words[1]).toUpperCase() : text.toUpperCase();
+	}
+
+	@Override
+	public String getObjectOwner() {
+		return objectOwner;
+	}
+
+	public void setObjectOwner(String objectOwner) {
+		this.objectOwner = objectOwner;
+	}
+
+	@Override
+	public String getObjectName() {
+		return objectName;
+	}
+
+	public void setObjectName(String objectName) {
+		this.objectName = objectName;
+	}
+
+	@Override
+	public String getObjectType() {
+		return objectType;
+	}
+
+	public void setObjectType(String objectType) {
+		this.objectType = objectType;
+	}
+
+	@Override
+	public String getDDLText() {
+		return ddlText;
+	}
+
+	public void setDDLText(String ddlText) {
+		this.ddlText = ddlText;
+	}
+
+	@Override
+	public byte[] getTag() {
+		return null;
+	}
+
+	@Override
+	public String getTransactionId() {
+		return transactionId;
+	}
+
+	public void setTransactionId(String transactionId) {
+		this.transactionId = transactionId;
+	}
+
+	@Override
+	public DATE getSourceTime() {
+		return sourceTime;
+	}
+
+	public void setSourceTime(DATE sourceTime) {
+		this.sourceTime = sourceTime;
+	}
+
+	@Override
+	public byte[] getPosition() {
+		return position;
+	}
+
+	public void setPosition(byte[] position) {
+		this.position = position;
+	}
+
+}
@@ -0,0 +1,132 @@
+package oracle.streams;
+
+import oracle.sql.DATE;
+
+public class DefaultRowLCR implements RowLCR {
+
+	private String sourceDatabaseName;
+	private String commandType;
+	private String objectOwner;
+	private String objectName;
+	private byte[] tag;
+	private String transactionId;
+	private DATE sourceTime;
+	private byte[] position;
+	private ColumnValue[] newValues;
+	private ColumnValue[] oldValues;
+	private boolean chunkData;
+
+	public DefaultRowLCR() {
+	}
+
+	public DefaultRowLCR(String sourceDatabaseName, String commandType, String objectOwner, String objectName,
+			String transactionId, byte[] tag, byte[] position) {
+		this.sourceDatabaseName = sourceDatabaseName;
+		this.commandType = commandType;
+		this.objectOwner = objectOwner;
+		this.objectName = objectName;
+		this.transactionId = transactionId;
+		this.tag = tag;
+		this.position = position;
+	}
+
+	@Override
+	public String getSourceDatabaseName() {
+		return sourceDatabaseName;
+	}
+
+	public void setSourceDatabaseName(String sourceDatabaseName) {
+		this.sourceDatabaseName = sourceDatabaseName;
+	}
+
+	@Override
+	public String getCommandType() {
+		return commandType;
+	}
+
+	public void setCommandType(String commandType) {
+		this.commandType = commandType;
+	}
+
+	@Override
+	public String getObjectOwner() {
+		return objectOwner;
+	}
+
+	public void setObjectOwner(String objectOwner) {
+		this.objectOwner = objectOwner;
+	}
+
+	@Override
+	public String getObjectName() {
+		return objectName;
+	}
+
+	public void setObjectName(String objectName) {
+		this.objectName = objectName;
+	}
+
+	@Override
+	public byte[] getTag() {
+		return tag;
+	}
+
+	public void setTag(byte[] tag) {
+		this.tag = tag;
+	}
+
+	@Override
+	public String getTransactionId() {
+		return transactionId;
+	}
+
+	public void setTransactionId(String transactionId) {
+		this.transactionId = transactionId;
+	}
+
+	@Override
+	public DATE getSourceTime() {
+		return sourceTime;
+	}
+
+	public void setSourceTime(DATE sourceTime) {
+		this.sourceTime = sourceTime;
+	}
+
+	@Override
+	public byte[] getPosition() {
+		return position;
+	}
+
+	public void setPosition(byte[] position) {
+		this.position = position;
+	}
+
+	@Override
+	public ColumnValue[] getNewValues() {
+		return newValues;
+	}
+
+	public void setNewValues(ColumnValue[] newValues) {
+		this.newValues = newValues;
+	}
+
+	@Override
+	public ColumnValue[] getOldValues() {
+		return oldValues;
+	}
+
+	public void setOldValues(ColumnValue[] oldValues) {
+		this.oldValues = oldValues;
+	}
+
+	@Override
+	public boolean hasChunkData() {
+		return chunkData;
+	}
+
+	public void setChunkData(boolean chunkData) {
+		this.chunkData = chunkData;
+	}
+
+}
@@ -0,0 +1,31 @@
+package oracle.streams;
+
+import oracle.sql.DATE;
+
+/**
+ * Stand-in for the header of a logical change record.
+ */
+public interface LCR {
+
+	String INSERT = "INSERT";
+	String UPDATE = "UPDATE";
+	String DELETE = "DELETE";
+	String COMMIT = "COMMIT";
+
+	String getSourceDatabaseName();
+
+	String getCommandType();
+
+	String getObjectOwner();
+
+	String getObjectName();
+
+	byte[] getTag();
+
+	String getTransactionId();
+
+	DATE getSourceTime();
+
+	byte[] getPosition();
+
+}
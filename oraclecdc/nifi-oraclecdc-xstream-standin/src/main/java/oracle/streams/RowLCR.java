@@ -0,0 +1,14 @@
+package oracle.streams;
+
+/**
+ * Stand-in for a row change. COMMIT is a row LCR without values.
+ */
+public interface RowLCR extends LCR {
+
+	ColumnValue[] getNewValues();
+
+	ColumnValue[] getOldValues();
+
+	boolean hasChunkData();
+
+}
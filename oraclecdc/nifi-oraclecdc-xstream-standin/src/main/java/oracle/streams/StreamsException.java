@@ -0,0 +1,15 @@
+package oracle.streams;
+
+public class StreamsException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	public StreamsException(String message) {
+		super(message);
+	}
+
+	public StreamsException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
@@ -0,0 +1,48 @@
+package oracle.streams;
+
+import oracle.jdbc.OracleConnection;
+
+import org.apache.nifi.processors.oraclecdc.standin.StandInOutbound;
+
+/**
+ * Stand-in for the xstream outbound client. The LCRs are generated from the profile of the
+ * StandInServer of the same name instead of being read from a database.
+ */
+public class XStreamOut {
+
+	public static final int DEFAULT_MODE = 0;
+
+	private final StandInOutbound outbound;
+
+	private XStreamOut(StandInOutbound outbound) {
+		this.outbound = outbound;
+	}
+
+	/**
+	 * @param lastPosition the stream continues after this position, from its beginning for null
+	 */
+	public static XStreamOut attach(OracleConnection conn, String serverName, byte[] lastPosition, int mode)
+			throws StreamsException {
+		if (conn == null) {
+			throw new StreamsException("no connection to attach outbound server " + serverName + " with");
+		}
+		return new XStreamOut(new StandInOutbound(serverName, lastPosition));
+	}
+
+	public void receiveLCRCallback(XStreamLCRCallbackHandler handler, int mode) throws StreamsException {
+		outbound.receive(handler);
+	}
+
+	public void setProcessedLowWatermark(byte[] position, int mode) throws StreamsException {
+		outbound.setProcessedLowWatermark(position);
+	}
+
+	public byte[] getFetchLowWatermark() {
+		return outbound.getFetchLowWatermark();
+	}
+
+	public void detach(int mode) throws StreamsException {
+		outbound.detach();
+	}
+
+}
@@ -0,0 +1,20 @@
+package oracle.streams;
+
+import oracle.sql.NUMBER;
+
+import org.apache.nifi.processors.oraclecdc.standin.LcrGenerator;
+
+/**
+ * Stand-in for the xstream position utilities. The SCN of a stand-in stream is the number of
+ * the last transaction committed, so the position of an SCN is the end of that transaction.
+ */
+public class XStreamUtility {
+
+	private XStreamUtility() {
+	}
+
+	public static byte[] convertSCNToPosition(NUMBER scn) throws StreamsException {
+		return LcrGenerator.positionAfter(scn.longValue());
+	}
+
+}
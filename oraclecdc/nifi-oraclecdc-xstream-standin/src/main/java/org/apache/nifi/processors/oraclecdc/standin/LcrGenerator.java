@@ -0,0 +1,268 @@
+package org.apache.nifi.processors.oraclecdc.standin;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import oracle.sql.BINARY_DOUBLE;
+import oracle.sql.CHAR;
+import oracle.sql.CharacterSet;
+import oracle.sql.DATE;
+import oracle.sql.Datum;
+import oracle.sql.NUMBER;
+import oracle.sql.RAW;
+import oracle.sql.TIMESTAMP;
+import oracle.streams.ChunkColumnValue;
+import oracle.streams.ColumnValue;
+import oracle.streams.DefaultChunkColumnValue;
+import oracle.streams.DefaultColumnValue;
+import oracle.streams.DefaultDDLLCR;
+import oracle.streams.DefaultRowLCR;
+import oracle.streams.LCR;
+
+/**
+ * Generates the LCR stream of a profile. Every LCR is a function of the profile and its
+ * position, so a stream resumed after a position continues exactly where it left off and
+ * replays the same values.
+ * <p>
+ * Transaction t changes table t modulo the table count. Its row changes cycle INSERT,
+ * UPDATE and DELETE over a row counter, so every ID is inserted, updated and deleted in turn,
+ * and the old values of a change are the new values of the one before. The position of the
+ * i-th LCR of transaction t is t shifted left by 16 bits plus i, as 8 big-endian bytes.
+ * With LOB chunks in the profile, INSERT and UPDATE rows have chunk data, the chunks of the
+ * CLOB column DOC that follow the row LCR, see {@link #chunks()}.
+ */
+public class LcrGenerator {
+
+	public static final int MAX_TRANSACTION_SIZE = 0xfffe;
+	public static final String DATABASE = "STANDIN";
+	public static final String OWNER = "STANDIN";
+	public static final String LOB_COLUMN = "DOC";
+
+	private static final String[] COMMANDS = {LCR.INSERT, LCR.UPDATE, LCR.DELETE};
+	private static final CharacterSet CHARSET = CharacterSet.make(CharacterSet.AL32UTF8_CHARSET);
+	private static final long EPOCH_2017 = 1483228800000L;
+	private static final ChunkColumnValue[] NO_CHUNKS = new ChunkColumnValue[0];
+
+	private final LoadProfile profile;
+	private final int[] types;
+	private long transaction;
+	private int index;
+	private ChunkColumnValue[] chunks = NO_CHUNKS;
+
+	/**
+	 * @param lastPosition the stream starts after this position, at the beginning for null
+	 */
+	public LcrGenerator(LoadProfile profile, byte[] lastPosition) {
+		this.profile = profile;
+		this.types = new int[Math.max(1, profile.getWidth())];
+		for (int i = 1; i < types.length; i++) {
+			types[i] = columnType(profile.getMix(), i - 1);
+		}
+		types[0] = ColumnValue.NUMBER;
+		if (lastPosition == null || lastPosition.length != 8) {
+			transaction = 0;
+			index = 0;
+		} else {
+			final long position = toLong(lastPosition);
+			transaction = position >>> 16;
+			index = (int) (position & 0xffff);
+			if (index >= lcrsOf(transaction) - 1) {
+				transaction++;
+				index = 0;
+			} else {
+				index++;
+			}
+		}
+	}
+
+	static int columnType(String mix, int column) {
+		switch (mix) {
+		case LoadProfile.MIX_NUMERIC:
+			return ColumnValue.NUMBER;
+		case LoadProfile.MIX_TEXT:
+			return ColumnValue.CHAR;
+		case LoadProfile.MIX_MIXED:
+			final int[] mixed = {ColumnValue.NUMBER, ColumnValue.CHAR, ColumnValue.DATE, ColumnValue.TIMESTAMP,
+					ColumnValue.BINARY_DOUBLE, ColumnValue.RAW};
+			return mixed[column % mixed.length];
+		default:
+			throw new IllegalArgumentException("unknown column mix " + mix);
+		}
+	}
+
+	/**
+	 * @return false once the transactions of the profile have all been generated
+	 */
+	public boolean hasNext() {
+		return profile.getTransactions() <= 0 || transaction < profile.getTransactions();
+	}
+
+	/**
+	 * @return true if the next LCR ends a transaction
+	 */
+	public boolean isCommitNext() {
+		return index == lcrsOf(transaction) - 1;
+	}
+
+	public LCR next() {
+		final long t = transaction;
+		final int i = index;
+		final int lcrs = lcrsOf(t);
+		if (++index >= lcrs) {
+			transaction++;
+			index = 0;
+		}
+		chunks = NO_CHUNKS;
+		final byte[] position = toBytes((t << 16) | i);
+		final String table = "T" + (t % Math.max(1, profile.getTables()));
+		final String transactionId = (t % 10) + "." + (t % 100) + "." + t;
+		final DATE sourceTime = new DATE(new Timestamp(System.currentTimeMillis()));
+		if (isDDL(t) && i == 0) {
+			final DefaultDDLLCR ddl = new DefaultDDLLCR();
+			ddl.setSourceDatabaseName(DATABASE);
+			ddl.setObjectOwner(OWNER);
+			ddl.setObjectName(table);
+			ddl.setObjectType("TABLE");
+			ddl.setDDLText("ALTER TABLE " + OWNER + "." + table + " MODIFY (C1 DEFAULT NULL)");
+			ddl.setTransactionId(transactionId);
+			ddl.setSourceTime(sourceTime);
+			ddl.setPosition(position);
+			return ddl;
+		}
+		final DefaultRowLCR lcr = new DefaultRowLCR(DATABASE, LCR.COMMIT, OWNER, table, transactionId, null, position);
+		lcr.setSourceTime(sourceTime);
+		if (i == lcrs - 1) {
+			return lcr;
+		}
+		final long row = rowOf(t, i);
+		final String command = COMMANDS[(int) (row % COMMANDS.length)];
+		lcr.setCommandType(command);
+		if (!LCR.DELETE.equals(command)) {
+			lcr.setNewValues(values(row));
+			if (profile.getLobChunks() > 0) {
+				lcr.setChunkData(true);
+				chunks = chunks(row);
+			}
+		}
+		if (!LCR.INSERT.equals(command)) {
+			lcr.setOldValues(values(row - 1));
+		}
+		return lcr;
+	}
+
+	/**
+	 * @return the chunks that follow the LCR last returned by {@link #next()}, none for LCRs without chunk data
+	 */
+	public ChunkColumnValue[] chunks() {
+		return chunks;
+	}
+
+	/**
+	 * @return the text of a chunk of the LOB column of a row
+	 */
+	public static String chunkText(long row, int chunk) {
+		return "row " + row + " chunk " + chunk + ";";
+	}
+
+	private ChunkColumnValue[] chunks(long row) {
+		final DefaultChunkColumnValue[] rowChunks = new DefaultChunkColumnValue[profile.getLobChunks()];
+		for (int c = 0; c < rowChunks.length; c++) {
+			rowChunks[c] = new DefaultChunkColumnValue(LOB_COLUMN, new CHAR(chunkText(row, c), CHARSET), ChunkColumnValue.CLOB);
+		}
+		rowChunks[rowChunks.length - 1].setLastChunk(true);
+		rowChunks[rowChunks.length - 1].setEndOfRow(true);
+		return rowChunks;
+	}
+
+	private boolean isDDL(long t) {
+		final int every = profile.getDdlEvery();
+		return every > 0 && t % (every + 1) == every;
+	}
+
+	private int lcrsOf(long t) {
+		// a DDL transaction is the DDL LCR and its COMMIT
+		return isDDL(t) ? 2 : profile.getTransactionSize() + 1;
+	}
+
+	// row changes before transaction t, DDL transactions have none
+	private long rowOf(long t, int i) {
+		final int every = profile.getDdlEvery();
+		final long rowTransactions = every > 0 ? t - t / (every + 1) : t;
+		return rowTransactions * profile.getTransactionSize() + i;
+	}
+
+	private ColumnValue[] values(long row) {
+		final ColumnValue[] values = new ColumnValue[types.length];
+		// an ID goes through INSERT, UPDATE and DELETE
+		values[0] = new DefaultColumnValue("ID", new NUMBER(row / COMMANDS.length));
+		for (int c = 1; c < types.length; c++) {
+			values[c] = new DefaultColumnValue("C" + c, datum(types[c], c, random(row, c)));
+		}
+		return values;
+	}
+
+	private long random(long row, int column) {
+		long z = profile.getSeed() + row * 0x9E3779B97F4A7C15L + column * 0xC2B2AE3D27D4EB4FL;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static Datum datum(int type, int column, long random) {
+		final long positive = random >>> 1;
+		switch (type) {
+		case ColumnValue.NUMBER:
+			return column % 2 == 0 ? new NUMBER(positive % 10000000) : new NUMBER(BigDecimal.valueOf(positive % 100000000, 2));
+		case ColumnValue.DATE:
+			return new DATE(new Timestamp(EPOCH_2017 + positive % 100000000L * 1000L));
+		case ColumnValue.TIMESTAMP:
+			final Timestamp timestamp = new Timestamp(EPOCH_2017 + positive % 100000000L * 1000L);
+			timestamp.setNanos((int) (positive % 1000000) * 1000);
+			return new TIMESTAMP(timestamp);
+		case ColumnValue.BINARY_DOUBLE:
+			return new BINARY_DOUBLE((positive % 100000000) / 1000.0);
+		case ColumnValue.RAW:
+			final byte[] bytes = new byte[16];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = (byte) (random >>> ((i % 8) * 8) ^ i);
+			}
+			return new RAW(bytes);
+		default:
+			final char[] chars = new char[8 + (int) (positive % 24)];
+			long bits = random;
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = (char) ('a' + (int) ((bits & 0x7fffffffL) % 26));
+				bits = bits * 6364136223846793005L + 1442695040888963407L;
+			}
+			return new CHAR(new String(chars), CHARSET);
+		}
+	}
+
+	static long transactionOf(byte[] position) {
+		return toLong(position) >>> 16;
+	}
+
+	/**
+	 * @return the position of the end of a transaction, after all of its LCRs
+	 */
+	public static byte[] positionAfter(long transaction) {
+		return toBytes((transaction << 16) | 0xffff);
+	}
+
+	private static long toLong(byte[] bytes) {
+		long value = 0;
+		for (byte b : bytes) {
+			value = (value << 8) | (b & 0xff);
+		}
+		return value;
+	}
+
+	private static byte[] toBytes(long value) {
+		final byte[] bytes = new byte[8];
+		for (int i = 0; i < 8; i++) {
+			bytes[i] = (byte) (value >>> ((7 - i) * 8));
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,214 @@
+package org.apache.nifi.processors.oraclecdc.standin;
+
+import java.util.Properties;
+
+/**
+ * The shape of the LCR stream a stand-in outbound server generates. A profile is either set
+ * on the {@link StandInServer} by a test, or read from system properties named
+ * {@value #PROPERTY_PREFIX}&lt;server&gt;.&lt;key&gt; and, for every server,
+ * {@value #PROPERTY_PREFIX}&lt;key&gt;, with the keys of the setters below.
+ */
+public class LoadProfile {
+
+	public static final String PROPERTY_PREFIX = "oraclecdc.standin.";
+
+	// integral and decimal NUMBER columns
+	public static final String MIX_NUMERIC = "NUMERIC";
+	// VARCHAR2 columns
+	public static final String MIX_TEXT = "TEXT";
+	// NUMBER, VARCHAR2, DATE, TIMESTAMP, BINARY_DOUBLE and RAW columns in turn
+	public static final String MIX_MIXED = "MIXED";
+
+	private long rate = 0;
+	private int transactionSize = 10;
+	private int tables = 1;
+	private int width = 8;
+	private String mix = MIX_MIXED;
+	private long idleEveryMillis = 0;
+	private long idleForMillis = 0;
+	private int batchSize = 1000;
+	private long batchWaitMillis = 1000;
+	private int ddlEvery = 0;
+	private long transactions = 0;
+	private long seed = 42;
+	private int lobChunks = 0;
+
+	/**
+	 * @param rate LCRs per second, 0 for as fast as they are taken
+	 */
+	public LoadProfile rate(long rate) {
+		this.rate = rate;
+		return this;
+	}
+
+	/**
+	 * @param transactionSize row changes per transaction, followed by a COMMIT
+	 */
+	public LoadProfile transactionSize(int transactionSize) {
+		if (transactionSize < 1 || transactionSize > LcrGenerator.MAX_TRANSACTION_SIZE) {
+			throw new IllegalArgumentException("transaction size must be between 1 and " + LcrGenerator.MAX_TRANSACTION_SIZE);
+		}
+		this.transactionSize = transactionSize;
+		return this;
+	}
+
+	/**
+	 * @param tables number of tables, the transactions change them in turn
+	 */
+	public LoadProfile tables(int tables) {
+		this.tables = tables;
+		return this;
+	}
+
+	/**
+	 * @param width columns per row, including the ID primary key
+	 */
+	public LoadProfile width(int width) {
+		this.width = width;
+		return this;
+	}
+
+	/**
+	 * @param mix the column types, one of the MIX constants
+	 */
+	public LoadProfile mix(String mix) {
+		this.mix = mix;
+		return this;
+	}
+
+	/**
+	 * pauses the stream for idleFor after every idleEvery of traffic, 0 for no pauses
+	 */
+	public LoadProfile idle(long idleEveryMillis, long idleForMillis) {
+		this.idleEveryMillis = idleEveryMillis;
+		this.idleForMillis = idleForMillis;
+		return this;
+	}
+
+	/**
+	 * @param batchSize the most LCRs delivered by one receive call
+	 * @param batchWaitMillis how long a receive call waits for the first LCR
+	 */
+	public LoadProfile batch(int batchSize, long batchWaitMillis) {
+		this.batchSize = batchSize;
+		this.batchWaitMillis = batchWaitMillis;
+		return this;
+	}
+
+	/**
+	 * @param ddlEvery an ALTER TABLE transaction after every ddlEvery transactions, 0 for none
+	 */
+	public LoadProfile ddlEvery(int ddlEvery) {
+		this.ddlEvery = ddlEvery;
+		return this;
+	}
+
+	/**
+	 * @param transactions the number of transactions after which the stream goes quiet, 0 for no end
+	 */
+	public LoadProfile transactions(long transactions) {
+		this.transactions = transactions;
+		return this;
+	}
+
+	/**
+	 * @param seed the column values are a function of the seed and the position
+	 */
+	public LoadProfile seed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * @param lobChunks the chunks of the CLOB column DOC that INSERT and UPDATE rows carry after
+	 * the row LCR, 0 for rows without LOB columns
+	 */
+	public LoadProfile lobChunks(int lobChunks) {
+		this.lobChunks = lobChunks;
+		return this;
+	}
+
+	public long getRate() {
+		return rate;
+	}
+
+	public int getTransactionSize() {
+		return transactionSize;
+	}
+
+	public int getTables() {
+		return tables;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public String getMix() {
+		return mix;
+	}
+
+	public long getIdleEveryMillis() {
+		return idleEveryMillis;
+	}
+
+	public long getIdleForMillis() {
+		return idleForMillis;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public long getBatchWaitMillis() {
+		return batchWaitMillis;
+	}
+
+	public int getDdlEvery() {
+		return ddlEvery;
+	}
+
+	public long getTransactions() {
+		return transactions;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public int getLobChunks() {
+		return lobChunks;
+	}
+
+	/**
+	 * @return the profile of the server from the system properties, defaults for keys not set
+	 */
+	public static LoadProfile fromSystemProperties(String server) {
+		final Properties properties = System.getProperties();
+		final LoadProfile profile = new LoadProfile();
+		profile.rate(longValue(properties, server, "rate", profile.rate));
+		profile.transactionSize((int) longValue(properties, server, "transactionSize", profile.transactionSize));
+		profile.tables((int) longValue(properties, server, "tables", profile.tables));
+		profile.width((int) longValue(properties, server, "width", profile.width));
+		profile.mix(value(properties, server, "mix", profile.mix));
+		profile.idle(longValue(properties, server, "idleEvery", profile.idleEveryMillis),
+				longValue(properties, server, "idleFor", profile.idleForMillis));
+		profile.batch((int) longValue(properties, server, "batchSize", profile.batchSize),
+				longValue(properties, server, "batchWait", profile.batchWaitMillis));
+		profile.ddlEvery((int) longValue(properties, server, "ddlEvery", profile.ddlEvery));
+		profile.transactions(longValue(properties, server, "transactions", profile.transactions));
+		profile.seed(longValue(properties, server, "seed", profile.seed));
+		profile.lobChunks((int) longValue(properties, server, "lobChunks", profile.lobChunks));
+		return profile;
+	}
+
+	private static String value(Properties properties, String server, String key, String defaultValue) {
+		return properties.getProperty(PROPERTY_PREFIX + server + "." + key,
+				properties.getProperty(PROPERTY_PREFIX + key, defaultValue));
+	}
+
+	private static long longValue(Properties properties, String server, String key, long defaultValue) {
+		return Long.parseLong(value(properties, server, key, String.valueOf(defaultValue)).trim());
+	}
+
+}
@@ -0,0 +1,116 @@
+package org.apache.nifi.processors.oraclecdc.standin;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import oracle.streams.ChunkColumnValue;
+import oracle.streams.LCR;
+import oracle.streams.StreamsException;
+import oracle.streams.XStreamLCRCallbackHandler;
+
+/**
+ * One attachment to a stand-in outbound server, driven by the stand-in XStreamOut. A receive
+ * call delivers LCRs at the pace of the profile until a batch is full, or until the next LCR is
+ * not due yet and at least one was delivered. Without any LCR due it waits up to the batch wait,
+ * like an outbound server without traffic.
+ */
+public class StandInOutbound {
+
+	private final StandInServer server;
+	private final LoadProfile profile;
+	private final LcrGenerator generator;
+	private final long nanosPerLCR;
+	private final long idleEveryNanos;
+	private final long idleForNanos;
+	// due time of the first LCR, pushed back by every idle gap
+	private long start;
+	private long nextIdle;
+	private long generated;
+	private byte[] lastPosition;
+	private volatile boolean attached = true;
+	// disconnects of the server when attached, a later one breaks this session
+	private final int session;
+
+	public StandInOutbound(String serverName, byte[] lastPosition) {
+		this.server = StandInServer.get(serverName);
+		this.profile = server.getProfile();
+		this.generator = new LcrGenerator(profile, lastPosition);
+		this.nanosPerLCR = profile.getRate() > 0 ? TimeUnit.SECONDS.toNanos(1) / profile.getRate() : 0;
+		this.idleEveryNanos = TimeUnit.MILLISECONDS.toNanos(profile.getIdleEveryMillis());
+		this.idleForNanos = TimeUnit.MILLISECONDS.toNanos(profile.getIdleForMillis());
+		this.start = System.nanoTime();
+		this.nextIdle = start + idleEveryNanos;
+		this.lastPosition = lastPosition;
+		this.session = server.getDisconnects();
+		server.attached();
+	}
+
+	public void receive(XStreamLCRCallbackHandler handler) throws StreamsException {
+		checkAttached();
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(profile.getBatchWaitMillis());
+		int delivered = 0;
+		while (delivered < profile.getBatchSize() && attached && session == server.getDisconnects()) {
+			final long due = nextDue();
+			final long now = System.nanoTime();
+			if (!generator.hasNext() || due > now) {
+				if (delivered > 0) {
+					break;
+				}
+				final long wake = generator.hasNext() ? Math.min(due, deadline) : deadline;
+				if (now >= deadline) {
+					break;
+				}
+				LockSupport.parkNanos(wake - now);
+				continue;
+			}
+			final boolean commit = generator.isCommitNext();
+			final LCR lcr = generator.next();
+			generated++;
+			lastPosition = lcr.getPosition();
+			handler.processLCR(lcr);
+			for (ChunkColumnValue chunk : generator.chunks()) {
+				handler.processChunk(chunk);
+			}
+			server.delivered(commit);
+			delivered++;
+		}
+	}
+
+	private long nextDue() {
+		long due = start + generated * nanosPerLCR;
+		if (idleEveryNanos > 0 && due >= nextIdle) {
+			start += idleForNanos;
+			nextIdle += idleEveryNanos + idleForNanos;
+			due += idleForNanos;
+		}
+		return due;
+	}
+
+	public void setProcessedLowWatermark(byte[] position) throws StreamsException {
+		checkAttached();
+		server.processed(position);
+	}
+
+	/**
+	 * @return the position of the last LCR delivered
+	 */
+	public byte[] getFetchLowWatermark() {
+		return lastPosition;
+	}
+
+	public void detach() throws StreamsException {
+		checkAttached();
+		attached = false;
+	}
+
+	private void checkAttached() throws StreamsException {
+		if (session != server.getDisconnects()) {
+			attached = false;
+			throw new StreamsException("ORA-03113: end-of-file on communication channel");
+		}
+		if (!attached) {
+			throw new StreamsException("ORA-26804: not attached to outbound server " + server.getName());
+		}
+	}
+
+}
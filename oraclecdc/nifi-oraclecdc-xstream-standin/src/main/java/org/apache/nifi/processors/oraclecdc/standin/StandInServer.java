@@ -0,0 +1,121 @@
+package org.apache.nifi.processors.oraclecdc.standin;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stand-in outbound server by name: the profile its stream is generated from and what it
+ * has delivered, so load tests can set the shape of the stream and check what was processed.
+ * Servers live for the JVM unless {@link #reset()} is called.
+ */
+public class StandInServer {
+
+	private static final ConcurrentMap<String,StandInServer> SERVERS = new ConcurrentHashMap<String,StandInServer>();
+
+	private final String name;
+	private volatile LoadProfile profile;
+	private final AtomicLong lcrs = new AtomicLong();
+	private final AtomicLong transactions = new AtomicLong();
+	private final AtomicInteger attaches = new AtomicInteger();
+	private final AtomicInteger disconnects = new AtomicInteger();
+	private volatile byte[] processedLowWatermark;
+
+	private StandInServer(String name) {
+		this.name = name;
+	}
+
+	public static StandInServer get(String name) {
+		StandInServer server = SERVERS.get(name);
+		if (server == null) {
+			final StandInServer created = new StandInServer(name);
+			server = SERVERS.putIfAbsent(name, created);
+			if (server == null) {
+				server = created;
+			}
+		}
+		return server;
+	}
+
+	/**
+	 * forgets every server, their profiles and counters
+	 */
+	public static void reset() {
+		SERVERS.clear();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the profile set for the server, or the one of the system properties
+	 */
+	public LoadProfile getProfile() {
+		final LoadProfile set = profile;
+		return set != null ? set : LoadProfile.fromSystemProperties(name);
+	}
+
+	/**
+	 * @param profile used by the next attach
+	 */
+	public StandInServer setProfile(LoadProfile profile) {
+		this.profile = profile;
+		return this;
+	}
+
+	public long getDeliveredLCRs() {
+		return lcrs.get();
+	}
+
+	public long getDeliveredTransactions() {
+		return transactions.get();
+	}
+
+	public int getAttachCount() {
+		return attaches.get();
+	}
+
+	/**
+	 * @return the last position the client set as processed, null before the first
+	 */
+	public byte[] getProcessedLowWatermark() {
+		return processedLowWatermark;
+	}
+
+	/**
+	 * breaks the sessions attached so far, like a dropped connection or a node failure: their next
+	 * receive call fails with ORA-03113 and they can not be detached. Later attaches work again
+	 */
+	public void disconnect() {
+		disconnects.incrementAndGet();
+	}
+
+	int getDisconnects() {
+		return disconnects.get();
+	}
+
+	/**
+	 * @return the number of the transaction a position belongs to, counted from 0
+	 */
+	public static long transactionOf(byte[] position) {
+		return LcrGenerator.transactionOf(position);
+	}
+
+	void attached() {
+		attaches.incrementAndGet();
+	}
+
+	void delivered(boolean commit) {
+		lcrs.incrementAndGet();
+		if (commit) {
+			transactions.incrementAndGet();
+		}
+	}
+
+	void processed(byte[] position) {
+		processedLowWatermark = position;
+	}
+
+}